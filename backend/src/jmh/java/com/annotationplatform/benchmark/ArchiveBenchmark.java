@@ -0,0 +1,126 @@
+package com.annotationplatform.benchmark;
+
+import com.annotationplatform.entity.Annotation;
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.FormConfig;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.service.DocumentArchiveService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archive read-modify-write ({@code updateArchiveWithLock} via {@code updateArchiveForAnnotation}) and conflict
+ * counting, over archives of increasing size. Each submit rewrites the whole archive file under a file lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveBenchmark {
+
+    private static final long DOCUMENT_ID = 900_001L;
+
+    /**
+     * Number of fields already recorded in the archive
+     */
+    @Param({"10", "100", "1000"})
+    private int fields;
+
+    /**
+     * Annotator records per field
+     */
+    @Param({"3"})
+    private int entriesPerField;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private DocumentArchiveService archiveService;
+    private Path archivePath;
+    private byte[] archiveBytes;
+    private JsonNode archiveTree;
+
+    private Document document;
+    private Task task;
+    private TaskAssignment assignment;
+    private Annotation annotation;
+    private Object annotationData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkData data = new BenchmarkData();
+        archiveService = new DocumentArchiveService();
+        ReflectionTestUtils.setField(archiveService, "meterRegistry", new SimpleMeterRegistry());
+
+        List<User> users = data.users(5);
+        FormConfig formConfig = data.formConfig(1L, fields);
+        task = data.task(DOCUMENT_ID * 10, users.get(0), formConfig);
+        document = data.document(DOCUMENT_ID);
+        task.setDocument(document);
+        assignment = new TaskAssignment(task, users.get(1), TaskAssignment.AssignmentType.ANNOTATION);
+        assignment.setId(1L);
+        annotation = new Annotation();
+        annotation.setId(1L);
+        annotation.setVersion(1);
+        annotation.setSubmittedAt(LocalDateTime.of(2024, 6, 1, 10, 0));
+        annotationData = data.annotationData(fields);
+
+        JsonNode archive = data.archive(DOCUMENT_ID, fields, entriesPerField, 0.2);
+        archiveBytes = objectMapper.writeValueAsBytes(archive);
+        archiveTree = archive;
+
+        archivePath = Paths.get("./uploads/documents", DOCUMENT_ID + "_archive.json");
+        Files.createDirectories(archivePath.getParent());
+        Files.write(archivePath, archiveBytes);
+        // The first submit adds this task's records; later invocations update them in place (steady-state size)
+        archiveService.updateArchiveForAnnotation(document, task, assignment, annotation, annotationData);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(archivePath);
+    }
+
+    @Benchmark
+    public boolean updateArchiveForAnnotation() {
+        return archiveService.updateArchiveForAnnotation(document, task, assignment, annotation, annotationData);
+    }
+
+    /**
+     * Conflict count as served by the batch endpoint: parse the archive, then count
+     */
+    @Benchmark
+    public int parseAndCountConflicts() throws Exception {
+        return archiveService.countConflicts(objectMapper.readTree(archiveBytes));
+    }
+
+    @Benchmark
+    public int countConflicts() {
+        return archiveService.countConflicts(archiveTree);
+    }
+}
@@ -0,0 +1,70 @@
+package com.annotationplatform.benchmark;
+
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.service.WorkloadTracker;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotator selection used by {@code TaskAssignmentService}: least-loaded users from the in-memory
+ * {@link WorkloadTracker}, seeded with a synthetic workload distribution
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssignmentSelectionBenchmark {
+
+    @Param({"20", "200", "2000"})
+    private int annotators;
+
+    @Param({"2", "5"})
+    private int required;
+
+    private WorkloadTracker workloadTracker;
+    private List<User> candidates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        candidates = new BenchmarkData().users(annotators);
+
+        Random random = new Random(BenchmarkData.SEED);
+        List<Object[]> openCounts = new ArrayList<>(annotators);
+        for (User user : candidates) {
+            openCounts.add(new Object[]{user.getId(), TaskAssignment.AssignmentType.ANNOTATION, (long) random.nextInt(30)});
+        }
+        TaskAssignmentRepository repository = Mockito.mock(TaskAssignmentRepository.class);
+        Mockito.when(repository.countByStatusInGroupByUserAndType(ArgumentMatchers.any())).thenReturn(openCounts);
+
+        workloadTracker = new WorkloadTracker();
+        ReflectionTestUtils.setField(workloadTracker, "taskAssignmentRepository", repository);
+        workloadTracker.reconcile();
+    }
+
+    @Benchmark
+    public List<User> selectLeastLoaded() {
+        return workloadTracker.selectLeastLoaded(candidates, required, TaskAssignment.AssignmentType.ANNOTATION);
+    }
+}
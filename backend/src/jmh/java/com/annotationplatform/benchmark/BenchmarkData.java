@@ -0,0 +1,193 @@
+package com.annotationplatform.benchmark;
+
+import com.annotationplatform.entity.Category;
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.FormConfig;
+import com.annotationplatform.entity.FormField;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic, seeded data for the benchmarks. The same seed always produces the same users, tasks and archives,
+ * so results stay comparable between runs.
+ */
+public final class BenchmarkData {
+
+    public static final long SEED = 20240601L;
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 6, 1, 9, 0);
+
+    private static final User.Role[] ROLES = {User.Role.ANNOTATOR, User.Role.ANNOTATOR, User.Role.ANNOTATOR,
+        User.Role.REVIEWER, User.Role.EXPERT};
+
+    private final Random random;
+
+    public BenchmarkData() {
+        this(SEED);
+    }
+
+    public BenchmarkData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            User user = new User("user" + i, "user" + i + "@example.com", "{noop}secret", ROLES[random.nextInt(ROLES.length)]);
+            user.setId((long) i);
+            user.setScore(random.nextInt(5000));
+            users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * Users ordered by score descending, as returned by the ranking query
+     */
+    public List<User> usersByScore(int count) {
+        List<User> users = users(count);
+        users.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+        return users;
+    }
+
+    public Document document(long id) {
+        Document document = new Document();
+        document.setId(id);
+        document.setFilename(id + ".pdf");
+        document.setOriginalFilename("invoice-" + id + ".pdf");
+        document.setFilePath("./uploads/documents/" + id + ".pdf");
+        document.setFileSize(100_000L + random.nextInt(900_000));
+        document.setMimeType("application/pdf");
+        document.setCreatedAt(BASE_TIME);
+        return document;
+    }
+
+    public FormConfig formConfig(long id, int fieldCount) {
+        FormConfig formConfig = new FormConfig();
+        formConfig.setId(id);
+        formConfig.setName("Form " + id);
+        formConfig.setDescription("Synthetic form with " + fieldCount + " fields");
+        formConfig.setIsActive(true);
+        formConfig.setCreatedAt(BASE_TIME);
+        formConfig.setUpdatedAt(BASE_TIME);
+        List<FormField> fields = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            FormField field = new FormField();
+            field.setId(id * 1000 + i);
+            field.setFormConfig(formConfig);
+            field.setFieldName(fieldName(i));
+            field.setLabel("Field " + i);
+            field.setSortOrder(i);
+            fields.add(field);
+        }
+        formConfig.setFields(fields);
+        return formConfig;
+    }
+
+    public Task task(long id, User createdBy, FormConfig formConfig) {
+        Category category = new Category("Category " + (id % 10), null, null, createdBy);
+        category.setId(id % 10 + 1);
+
+        Task task = new Task();
+        task.setId(id);
+        task.setTitle("Task " + id);
+        task.setDescription("Synthetic task " + id);
+        task.setDocument(document(id));
+        task.setCategory(category);
+        task.setFormConfig(formConfig);
+        task.setCreatedBy(createdBy);
+        task.setCreatedAt(BASE_TIME.plusMinutes(id));
+        task.setUpdatedAt(BASE_TIME.plusMinutes(id));
+        task.setBatchId("BATCH_20240601_0900");
+        task.setBatchName("提交批次_2024-06-01 09:00");
+        return task;
+    }
+
+    public List<TaskAssignment> assignments(Task task, List<User> users, int count) {
+        List<TaskAssignment> assignments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = users.get(random.nextInt(users.size()));
+            TaskAssignment assignment = new TaskAssignment(task, user,
+                i == count - 1 && count > 2 ? TaskAssignment.AssignmentType.REVIEW : TaskAssignment.AssignmentType.ANNOTATION);
+            assignment.setId(task.getId() * 100 + i);
+            assignment.setAssignedAt(BASE_TIME.plusMinutes(i));
+            assignments.add(assignment);
+        }
+        return assignments;
+    }
+
+    /**
+     * Annotation payload with {@code fieldCount} fields: mostly short strings, some numbers and booleans
+     */
+    public Map<String, Object> annotationData(int fieldCount) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            data.put(fieldName(i), value(i));
+        }
+        return data;
+    }
+
+    /**
+     * Document archive with {@code fieldCount} fields and {@code entriesPerField} annotator records per field;
+     * about {@code conflictRate} of the fields carry disagreeing values
+     */
+    public ObjectNode archive(long documentId, int fieldCount, int entriesPerField, double conflictRate) {
+        JsonNodeFactory factory = JsonNodeFactory.instance;
+        ObjectNode archive = factory.objectNode();
+        ObjectNode fileInfo = archive.putObject("file_info");
+        fileInfo.put("file_id", "doc-" + documentId);
+        fileInfo.put("file_name", "invoice-" + documentId + ".pdf");
+
+        ObjectNode records = archive.putObject("annotation_records");
+        for (int i = 0; i < fieldCount; i++) {
+            ArrayNode entries = records.putArray(fieldName(i));
+            boolean conflict = random.nextDouble() < conflictRate;
+            String agreed = String.valueOf(value(i));
+            for (int e = 0; e < entriesPerField; e++) {
+                ObjectNode entry = entries.addObject();
+                entry.put("task_id", "TASK-" + (documentId * 10 + e));
+                entry.put("task_name", "Task " + documentId);
+                entry.put("role_type", e == entriesPerField - 1 && entriesPerField > 2 ? "reviewer" : "ordinary_annotator");
+                entry.put("operation_time", BASE_TIME.plusMinutes(e).toString());
+                entry.put("user_id", e + 1);
+                entry.put("username", "user" + (e + 1));
+                entry.put("annotation_content", conflict && e > 0 ? agreed + "-" + e : agreed);
+            }
+        }
+        archive.put("latest_annotation_version", "v1");
+        archive.put("last_modified_time", BASE_TIME.toString());
+        return archive;
+    }
+
+    public byte[] bytes(int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    public static String fieldName(int index) {
+        return "field_" + index;
+    }
+
+    private Object value(int index) {
+        switch (index % 5) {
+            case 0:
+                return random.nextInt(100_000);
+            case 1:
+                return random.nextBoolean();
+            default:
+                return "value-" + index + "-" + Integer.toHexString(random.nextInt());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.annotationplatform.benchmark;
+
+import com.annotationplatform.utils.ChecksumUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SHA-256 streaming checksum of uploaded files. Throughput is reported per file; divide the size by the
+ * score for bytes/sec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChecksumBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    private int size;
+
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        content = new BenchmarkData().bytes(size);
+    }
+
+    @Benchmark
+    public String sha256Stream() throws IOException {
+        return ChecksumUtils.sha256Hex(new ByteArrayInputStream(content));
+    }
+}
@@ -0,0 +1,58 @@
+package com.annotationplatform.benchmark;
+
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.ScoreService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ScoreService#getScoreRanking(int)} without the Spring cache in front of it, i.e. the cost of a cache miss.
+ * The repository is stubbed with a pre-sorted user list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoreRankingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int activeUsers;
+
+    @Param({"10", "50"})
+    private int limit;
+
+    private ScoreService scoreService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<User> ranked = new BenchmarkData().usersByScore(activeUsers);
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findAllActiveUsersOrderedByScore(User.Status.ACTIVE)).thenReturn(ranked);
+
+        scoreService = new ScoreService();
+        ReflectionTestUtils.setField(scoreService, "userRepository", userRepository);
+    }
+
+    @Benchmark
+    public List<ScoreService.UserScoreRanking> getScoreRanking() {
+        return scoreService.getScoreRanking(limit);
+    }
+}
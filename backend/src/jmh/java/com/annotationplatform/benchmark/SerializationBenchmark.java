@@ -0,0 +1,123 @@
+package com.annotationplatform.benchmark;
+
+import com.annotationplatform.controller.FormConfigController;
+import com.annotationplatform.controller.TaskController;
+import com.annotationplatform.entity.FormConfig;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response building for task and form config lists: the controllers' private {@code convertTaskToMap} /
+ * {@code convertToMap} followed by JSON serialization with a Spring-configured ObjectMapper.
+ * The assignment repository is stubbed, so this measures CPU cost only, not the per-task query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    /**
+     * Tasks per page
+     */
+    @Param({"10", "100"})
+    private int pageSize;
+
+    @Param({"2", "5"})
+    private int assignmentsPerTask;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private MethodHandle convertTaskToMap;
+    private MethodHandle convertFormConfigToMap;
+    private List<Task> tasks;
+    private List<FormConfig> formConfigs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkData data = new BenchmarkData();
+        List<User> users = data.users(50);
+        Map<Long, List<TaskAssignment>> assignmentsByTask = new HashMap<>();
+
+        tasks = new ArrayList<>(pageSize);
+        formConfigs = new ArrayList<>(pageSize);
+        for (int i = 1; i <= pageSize; i++) {
+            FormConfig formConfig = data.formConfig(i, 12);
+            Task task = data.task(i, users.get(0), formConfig);
+            assignmentsByTask.put(task.getId(), data.assignments(task, users, assignmentsPerTask));
+            tasks.add(task);
+            formConfigs.add(formConfig);
+        }
+
+        // One map-backed stub: per-task stubs would make Mockito's matching dominate the measurement
+        TaskAssignmentRepository taskAssignmentRepository = Mockito.mock(TaskAssignmentRepository.class);
+        Mockito.when(taskAssignmentRepository.findByTaskId(ArgumentMatchers.anyLong()))
+            .thenAnswer(invocation -> assignmentsByTask.get(invocation.<Long>getArgument(0)));
+
+        TaskController taskController = new TaskController();
+        ReflectionTestUtils.setField(taskController, "taskAssignmentRepository", taskAssignmentRepository);
+        convertTaskToMap = privateMethod(TaskController.class, "convertTaskToMap", Task.class).bindTo(taskController);
+
+        FormConfigController formConfigController = new FormConfigController();
+        convertFormConfigToMap = privateMethod(FormConfigController.class, "convertToMap", FormConfig.class)
+            .bindTo(formConfigController);
+    }
+
+    @Benchmark
+    public byte[] taskPage() throws Throwable {
+        List<Map<String, Object>> page = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            page.add(invoke(convertTaskToMap, task));
+        }
+        return objectMapper.writeValueAsBytes(Map.of("tasks", page, "totalElements", page.size()));
+    }
+
+    @Benchmark
+    public byte[] formConfigPage() throws Throwable {
+        List<Map<String, Object>> page = new ArrayList<>(formConfigs.size());
+        for (FormConfig formConfig : formConfigs) {
+            page.add(invoke(convertFormConfigToMap, formConfig));
+        }
+        return objectMapper.writeValueAsBytes(Map.of("formConfigs", page));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> invoke(MethodHandle handle, Object argument) throws Throwable {
+        return (Map<String, Object>) handle.invoke(argument);
+    }
+
+    private static MethodHandle privateMethod(Class<?> owner, String name, Class<?> parameterType) throws Exception {
+        return MethodHandles.privateLookupIn(owner, MethodHandles.lookup())
+            .findVirtual(owner, name, MethodType.methodType(Map.class, parameterType));
+    }
+}
@@ -0,0 +1,427 @@
+package com.annotationplatform.loadtest;
+
+import com.annotationplatform.AnnotationPlatformApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Workflow load test: seeds users, then runs concurrent virtual annotators through
+ * upload -> batch task -> assign -> draft -> submit -> quality check -> review and reports
+ * per-step throughput and latency percentiles.
+ *
+ * Arguments are key=value pairs (see {@link #DEFAULTS}). Without baseUrl an embedded server is started
+ * on a random port with the "loadtest" profile (in-memory H2). Scenario i always uses Random(seed + i), so
+ * two runs with the same arguments send the same requests and their reports can be compared with baseline=.
+ */
+public final class LoadTestRunner {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("baseUrl", "");
+        DEFAULTS.put("seed", "42");
+        DEFAULTS.put("annotators", "8");
+        DEFAULTS.put("reviewers", "2");
+        DEFAULTS.put("batches", "20");
+        DEFAULTS.put("documentsPerBatch", "3");
+        DEFAULTS.put("concurrency", "4");
+        DEFAULTS.put("fields", "10");
+        DEFAULTS.put("disagreement", "0.2");
+        DEFAULTS.put("documentSizeKb", "64");
+        DEFAULTS.put("qcTimeoutMs", "30000");
+        DEFAULTS.put("adminUsername", "admin");
+        DEFAULTS.put("adminPassword", "password");
+        DEFAULTS.put("failOnError", "false");
+        DEFAULTS.put("basedir", ".");
+        DEFAULTS.put("report", "loadtest-report.json");
+        DEFAULTS.put("baseline", "");
+    }
+
+    private static final String[] STEPS = {"login", "upload", "batch", "assign", "draft", "submit", "qc", "review"};
+    private static final String USER_PASSWORD = "password";
+
+    private final Map<String, String> config;
+    private final Map<String, StepStats> stats = new LinkedHashMap<>();
+    private final AtomicInteger completedScenarios = new AtomicInteger();
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private ApiClient client;
+    private String adminToken;
+    private final List<VirtualUser> annotators = new ArrayList<>();
+    private final List<VirtualUser> reviewers = new ArrayList<>();
+
+    private LoadTestRunner(Map<String, String> config) {
+        this.config = config;
+        for (String step : STEPS) {
+            stats.put(step, new StepStats(step));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> config = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0 || !DEFAULTS.containsKey(arg.substring(0, eq))) {
+                System.err.println("Unknown argument: " + arg + " (known: " + DEFAULTS.keySet() + ")");
+                System.exit(2);
+            }
+            config.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        ConfigurableApplicationContext context = null;
+        int exitCode;
+        try {
+            if (config.get("baseUrl").isEmpty()) {
+                context = startEmbeddedServer();
+                String port = context.getEnvironment().getProperty("local.server.port");
+                String contextPath = context.getEnvironment().getProperty("server.servlet.context-path", "");
+                config.put("baseUrl", "http://localhost:" + port + contextPath);
+            }
+            exitCode = new LoadTestRunner(config).run();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    private static ConfigurableApplicationContext startEmbeddedServer() {
+        // DevTools would otherwise restart the application by re-invoking this class's main method
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        SpringApplication application = new SpringApplication(AnnotationPlatformApplication.class);
+        application.setAdditionalProfiles("loadtest");
+        return application.run("--server.port=0");
+    }
+
+    private int run() throws Exception {
+        int concurrency = intValue("concurrency");
+        client = new ApiClient(config.get("baseUrl"), concurrency);
+        System.out.println("Load test against " + config.get("baseUrl") + " with " + config);
+
+        long seedStart = System.nanoTime();
+        seedUsers();
+        double seedSeconds = (System.nanoTime() - seedStart) / 1e9;
+
+        int batches = intValue("batches");
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < batches; i++) {
+            final int scenario = i;
+            futures.add(pool.submit(() -> runScenario(scenario)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        Map<String, Object> report = buildReport(seedSeconds, wallSeconds);
+        printReport(report);
+        Path reportPath = resolve(config.get("report"));
+        Files.createDirectories(reportPath.toAbsolutePath().getParent());
+        objectMapper.writeValue(reportPath.toFile(), report);
+        System.out.println("Report written to " + reportPath.toAbsolutePath());
+
+        if (!config.get("baseline").isEmpty()) {
+            compareWithBaseline(report, resolve(config.get("baseline")));
+        }
+
+        int errors = stats.values().stream().mapToInt(StepStats::getErrors).sum();
+        return errors > 0 && Boolean.parseBoolean(config.get("failOnError")) ? 1 : 0;
+    }
+
+    // Seeding
+
+    private void seedUsers() throws Exception {
+        adminToken = client.postJson("/auth/login", null,
+            Map.of("username", config.get("adminUsername"), "password", config.get("adminPassword"))).get("token").asText();
+        for (int i = 1; i <= intValue("annotators"); i++) {
+            annotators.add(seedUser("lt_annotator" + i, "ANNOTATOR"));
+        }
+        for (int i = 1; i <= intValue("reviewers"); i++) {
+            reviewers.add(seedUser("lt_reviewer" + i, "REVIEWER"));
+        }
+        if (annotators.size() < 2 || reviewers.isEmpty()) {
+            throw new IllegalArgumentException("At least 2 annotators and 1 reviewer are required");
+        }
+    }
+
+    private VirtualUser seedUser(String username, String role) throws Exception {
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username", username);
+        user.put("email", username + "@loadtest.local");
+        user.put("password", USER_PASSWORD);
+        user.put("role", role);
+        try {
+            client.postJson("/users", adminToken, user);
+        } catch (ApiClient.ApiException e) {
+            // Reused across runs against an external server
+            if (!e.getMessage().contains("用户名已存在")) {
+                throw e;
+            }
+        }
+        JsonNode login = timed("login", () ->
+            client.postJson("/auth/login", null, Map.of("username", username, "password", USER_PASSWORD)));
+        return new VirtualUser(login.get("id").asLong(), login.get("token").asText());
+    }
+
+    // Scenario: one batch annotated by two annotators and resolved by a reviewer
+
+    private void runScenario(int scenario) {
+        Random random = new Random(longValue("seed") + scenario);
+        VirtualUser first = annotators.get(random.nextInt(annotators.size()));
+        VirtualUser second;
+        do {
+            second = annotators.get(random.nextInt(annotators.size()));
+        } while (second == first);
+        VirtualUser reviewer = reviewers.get(random.nextInt(reviewers.size()));
+
+        try {
+            List<Long> documentIds = new ArrayList<>();
+            for (int d = 0; d < intValue("documentsPerBatch"); d++) {
+                byte[] content = documentContent(random, scenario, d);
+                String filename = "loadtest-" + scenario + "-" + d + ".pdf";
+                JsonNode uploaded = timed("upload", () ->
+                    client.upload("/documents/upload", first.token, filename, "application/pdf", content));
+                documentIds.add(uploaded.path("document").path("id").asLong());
+            }
+
+            Map<String, Object> batchRequest = new LinkedHashMap<>();
+            batchRequest.put("batchName", "loadtest-" + scenario);
+            batchRequest.put("documentIds", documentIds);
+            long taskId = timed("batch", () -> client.postJson("/tasks/batch", adminToken, batchRequest))
+                .path("task").path("id").asLong();
+
+            Map<String, Object> assignRequest = new LinkedHashMap<>();
+            assignRequest.put("userIds", List.of(first.id, second.id));
+            assignRequest.put("assignmentType", "ANNOTATION");
+            JsonNode assigned = timed("assign", () ->
+                client.postJson("/tasks/" + taskId + "/assign", adminToken, assignRequest));
+            Map<Long, Long> assignmentByUser = new LinkedHashMap<>();
+            for (JsonNode assignment : assigned.path("assignments")) {
+                assignmentByUser.put(assignment.path("user").path("id").asLong(), assignment.path("id").asLong());
+            }
+
+            Map<String, Object> baseAnnotation = annotationData(random, null);
+            for (Long documentId : documentIds) {
+                for (VirtualUser annotator : List.of(first, second)) {
+                    Map<String, Object> request = new LinkedHashMap<>();
+                    request.put("taskId", taskId);
+                    request.put("taskAssignmentId", assignmentByUser.get(annotator.id));
+                    request.put("documentId", documentId);
+                    request.put("annotationData", annotator == first ? baseAnnotation : annotationData(random, baseAnnotation));
+                    timed("draft", () -> client.postJson("/annotations/draft", annotator.token, request));
+                    timed("submit", () -> client.postJson("/annotations", annotator.token, request));
+                }
+            }
+
+            long qualityCheckId = timed("qc", () -> awaitQualityCheck(taskId, reviewer.token));
+
+            Map<String, Object> resolveRequest = new LinkedHashMap<>();
+            resolveRequest.put("selectedAnnotation", random.nextBoolean() ? "A" : "B");
+            resolveRequest.put("resolutionNotes", "load test scenario " + scenario);
+            timed("review", () -> client.postJson("/quality-checks/" + qualityCheckId + "/resolve", reviewer.token, resolveRequest));
+
+            int done = completedScenarios.incrementAndGet();
+            if (done % 10 == 0) {
+                System.out.println("  " + done + " scenarios completed");
+            }
+        } catch (Exception e) {
+            // Already counted against the failing step; the rest of this scenario is skipped
+        }
+    }
+
+    // Quality checks are created asynchronously by the submission outbox, so the step measures time-to-QC
+    private long awaitQualityCheck(long taskId, String token) throws Exception {
+        long deadline = System.currentTimeMillis() + longValue("qcTimeoutMs");
+        while (true) {
+            JsonNode page = client.get("/quality-checks?taskId=" + taskId, token);
+            if (page.path("totalItems").asLong() > 0) {
+                return page.path("qualityChecks").get(0).path("id").asLong();
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("No quality check for task " + taskId + " after " + config.get("qcTimeoutMs") + " ms");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private byte[] documentContent(Random random, int scenario, int document) {
+        int size = intValue("documentSizeKb") * 1024;
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        // Unique per run so uploads to a long-lived server are not deduplicated against an earlier run
+        byte[] header = ("%PDF-1.4\n% loadtest " + System.nanoTime() + " " + scenario + "-" + document + "\n")
+            .getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(header, 0, content, 0, Math.min(header.length, size));
+        return content;
+    }
+
+    // A fresh form, or a copy of base where each field disagrees with the configured probability
+    private Map<String, Object> annotationData(Random random, Map<String, Object> base) {
+        double disagreement = Double.parseDouble(config.get("disagreement"));
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (int f = 0; f < intValue("fields"); f++) {
+            String field = "field" + f;
+            if (base != null && random.nextDouble() >= disagreement) {
+                data.put(field, base.get(field));
+            } else {
+                data.put(field, "value-" + random.nextInt(1000));
+            }
+        }
+        return data;
+    }
+
+    // Reporting
+
+    private Map<String, Object> buildReport(double seedSeconds, double wallSeconds) {
+        Map<String, Object> steps = new LinkedHashMap<>();
+        for (StepStats step : stats.values()) {
+            // Logins only happen while seeding
+            steps.put(step.getName(), step.summarize("login".equals(step.getName()) ? seedSeconds : wallSeconds));
+        }
+        Map<String, Object> scenarioConfig = new LinkedHashMap<>(config);
+        scenarioConfig.remove("adminPassword");
+        scenarioConfig.remove("basedir");
+        scenarioConfig.remove("report");
+        scenarioConfig.remove("baseline");
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", scenarioConfig);
+        report.put("wallSeconds", Math.round(wallSeconds * 100) / 100.0);
+        report.put("scenariosCompleted", completedScenarios.get());
+        report.put("scenariosPerSec", Math.round(completedScenarios.get() / wallSeconds * 100) / 100.0);
+        report.put("steps", steps);
+        return report;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void printReport(Map<String, Object> report) {
+        System.out.println();
+        System.out.printf("%d/%s scenarios in %.2f s (%.2f/s)%n", report.get("scenariosCompleted"),
+            config.get("batches"), (Double) report.get("wallSeconds"), (Double) report.get("scenariosPerSec"));
+        System.out.printf("%-8s %7s %6s %9s %9s %9s %9s %9s %9s%n",
+            "step", "count", "errors", "ops/s", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        Map<String, Map<String, Object>> steps = (Map<String, Map<String, Object>>) report.get("steps");
+        for (Map.Entry<String, Map<String, Object>> entry : steps.entrySet()) {
+            Map<String, Object> s = entry.getValue();
+            System.out.printf("%-8s %7s %6s %9s %9s %9s %9s %9s %9s%n", entry.getKey(), s.get("count"), s.get("errors"),
+                s.get("throughputPerSec"), s.get("meanMs"), s.get("p50Ms"), s.get("p95Ms"), s.get("p99Ms"), s.get("maxMs"));
+        }
+        for (StepStats step : stats.values()) {
+            if (step.getFirstError() != null) {
+                System.out.println("First " + step.getName() + " error: " + step.getFirstError());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void compareWithBaseline(Map<String, Object> report, Path baselinePath) throws Exception {
+        if (!Files.exists(baselinePath)) {
+            System.out.println("Baseline " + baselinePath.toAbsolutePath() + " not found, skipping comparison");
+            return;
+        }
+        Map<String, Object> baseline = new ObjectMapper().readValue(baselinePath.toFile(), Map.class);
+        Map<String, Object> baselineConfig = (Map<String, Object>) baseline.get("config");
+        Map<String, Object> currentConfig = (Map<String, Object>) report.get("config");
+        if (baselineConfig != null) {
+            Map<String, Object> comparable = new LinkedHashMap<>(currentConfig);
+            comparable.remove("baseUrl");
+            for (Map.Entry<String, Object> entry : comparable.entrySet()) {
+                Object previous = baselineConfig.get(entry.getKey());
+                if (previous != null && !previous.toString().equals(String.valueOf(entry.getValue()))) {
+                    System.out.println("WARNING: " + entry.getKey() + " differs from baseline (" + previous
+                        + " -> " + entry.getValue() + "), results are not directly comparable");
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println("Change vs " + baselinePath.getFileName() + " (negative latency / positive ops/s is better)");
+        System.out.printf("%-8s %9s %9s %9s %9s%n", "step", "ops/s", "p50", "p95", "p99");
+        Map<String, Map<String, Object>> steps = (Map<String, Map<String, Object>>) report.get("steps");
+        Map<String, Map<String, Object>> baselineSteps = (Map<String, Map<String, Object>>) baseline.get("steps");
+        for (Map.Entry<String, Map<String, Object>> entry : steps.entrySet()) {
+            Map<String, Object> before = baselineSteps != null ? baselineSteps.get(entry.getKey()) : null;
+            if (before == null) {
+                continue;
+            }
+            Map<String, Object> after = entry.getValue();
+            System.out.printf("%-8s %9s %9s %9s %9s%n", entry.getKey(),
+                delta(before, after, "throughputPerSec"), delta(before, after, "p50Ms"),
+                delta(before, after, "p95Ms"), delta(before, after, "p99Ms"));
+        }
+    }
+
+    private static String delta(Map<String, Object> before, Map<String, Object> after, String key) {
+        double previous = ((Number) before.getOrDefault(key, 0)).doubleValue();
+        double current = ((Number) after.getOrDefault(key, 0)).doubleValue();
+        if (previous == 0) {
+            return "n/a";
+        }
+        return String.format("%+.1f%%", (current - previous) / previous * 100);
+    }
+
+    // Helpers
+
+    private <T> T timed(String step, ApiCall<T> call) throws Exception {
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            stats.get(step).record(System.nanoTime() - start);
+            return result;
+        } catch (Exception e) {
+            stats.get(step).error(e);
+            throw e;
+        }
+    }
+
+    private Path resolve(String path) {
+        Path p = Paths.get(path);
+        return p.isAbsolute() ? p : Paths.get(config.get("basedir")).resolve(p);
+    }
+
+    private int intValue(String key) {
+        return Integer.parseInt(config.get(key));
+    }
+
+    private long longValue(String key) {
+        return Long.parseLong(config.get(key));
+    }
+
+    @FunctionalInterface
+    private interface ApiCall<T> {
+        T call() throws Exception;
+    }
+
+    private static final class VirtualUser {
+        private final long id;
+        private final String token;
+
+        private VirtualUser(long id, String token) {
+            this.id = id;
+            this.token = token;
+        }
+    }
+}
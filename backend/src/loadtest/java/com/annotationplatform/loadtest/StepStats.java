@@ -0,0 +1,74 @@
+package com.annotationplatform.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latencies of one workflow step. Every sample is kept so percentiles are exact (runs are thousands of calls,
+ * not millions).
+ */
+final class StepStats {
+
+    private final String name;
+    private final List<Long> samplesNanos = new ArrayList<>();
+    private int errors;
+    private String firstError;
+
+    StepStats(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long nanos) {
+        samplesNanos.add(nanos);
+    }
+
+    synchronized void error(Exception e) {
+        errors++;
+        if (firstError == null) {
+            firstError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+    }
+
+    String getName() { return name; }
+
+    synchronized int getErrors() { return errors; }
+
+    synchronized String getFirstError() { return firstError; }
+
+    /**
+     * Count, error count, throughput over the whole run and latency percentiles in milliseconds
+     */
+    synchronized Map<String, Object> summarize(double wallSeconds) {
+        long[] sorted = samplesNanos.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", sorted.length);
+        summary.put("errors", errors);
+        summary.put("throughputPerSec", round(wallSeconds > 0 ? sorted.length / wallSeconds : 0));
+        summary.put("meanMs", round(sorted.length > 0 ? Arrays.stream(sorted).average().orElse(0) / 1e6 : 0));
+        summary.put("p50Ms", percentileMs(sorted, 0.50));
+        summary.put("p95Ms", percentileMs(sorted, 0.95));
+        summary.put("p99Ms", percentileMs(sorted, 0.99));
+        summary.put("maxMs", sorted.length > 0 ? round(sorted[sorted.length - 1] / 1e6) : 0);
+        if (firstError != null) {
+            summary.put("firstError", firstError);
+        }
+        return summary;
+    }
+
+    // Nearest-rank percentile
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return round(sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -1,11 +1,21 @@
 package com.annotationplatform.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
 import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Configuration
 @EnableCaching
 public class CacheConfig {
@@ -14,18 +24,116 @@ public class CacheConfig {
     public CacheManager cacheManager() {
         // 使用简单的内存缓存管理器
         // 在生产环境中，可以考虑使用Redis等分布式缓存
-        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager() {
+            @Override
+            protected Cache createConcurrentMapCache(String name) {
+                // ConcurrentMapCache 本身不统计命中率，使用带计数的子类以便导出 cache.gets 指标
+                return new InstrumentedConcurrentMapCache(name, isAllowNullValues());
+            }
+        };
+        cacheManager.setCacheNames(Arrays.asList(
             "categories",
             "formConfigs",
             "userStats",
             "scoreRankings",
             "taskStats"
-        );
+        ));
         return cacheManager;
     }
-}
 
+    /**
+     * 启动时由 actuator 为每个缓存注册 cache.gets / cache.puts / cache.evictions / cache.size
+     */
+    @Bean
+    public CacheMeterBinderProvider<InstrumentedConcurrentMapCache> instrumentedCacheMeterBinderProvider() {
+        return (cache, tags) -> new InstrumentedCacheMeterBinder(cache, tags);
+    }
+
+    /**
+     * 记录命中、未命中、写入与清除次数的 ConcurrentMapCache
+     */
+    public static class InstrumentedConcurrentMapCache extends ConcurrentMapCache {
+        private final AtomicLong hitCount = new AtomicLong();
+        private final AtomicLong missCount = new AtomicLong();
+        private final AtomicLong putCount = new AtomicLong();
+        private final AtomicLong evictionCount = new AtomicLong();
+
+        public InstrumentedConcurrentMapCache(String name, boolean allowNullValues) {
+            super(name, new ConcurrentHashMap<>(256), allowNullValues, null);
+        }
 
+        @Override
+        protected Object lookup(Object key) {
+            Object value = super.lookup(key);
+            (value != null ? hitCount : missCount).incrementAndGet();
+            return value;
+        }
 
+        @Override
+        public void put(Object key, Object value) {
+            putCount.incrementAndGet();
+            super.put(key, value);
+        }
 
+        @Override
+        public void evict(Object key) {
+            evictionCount.incrementAndGet();
+            super.evict(key);
+        }
 
+        @Override
+        public void clear() {
+            evictionCount.addAndGet(getNativeCache().size());
+            super.clear();
+        }
+
+        public long getHitCount() { return hitCount.get(); }
+
+        public long getMissCount() { return missCount.get(); }
+
+        public long getPutCount() { return putCount.get(); }
+
+        public long getEvictionCount() { return evictionCount.get(); }
+    }
+
+    static class InstrumentedCacheMeterBinder extends CacheMeterBinder<InstrumentedConcurrentMapCache> {
+
+        InstrumentedCacheMeterBinder(InstrumentedConcurrentMapCache cache, Iterable<Tag> tags) {
+            super(cache, cache.getName(), tags);
+        }
+
+        @Override
+        protected Long size() {
+            InstrumentedConcurrentMapCache cache = getCache();
+            return cache != null ? (long) cache.getNativeCache().size() : null;
+        }
+
+        @Override
+        protected long hitCount() {
+            InstrumentedConcurrentMapCache cache = getCache();
+            return cache != null ? cache.getHitCount() : 0;
+        }
+
+        @Override
+        protected Long missCount() {
+            InstrumentedConcurrentMapCache cache = getCache();
+            return cache != null ? cache.getMissCount() : null;
+        }
+
+        @Override
+        protected Long evictionCount() {
+            InstrumentedConcurrentMapCache cache = getCache();
+            return cache != null ? cache.getEvictionCount() : null;
+        }
+
+        @Override
+        protected long putCount() {
+            InstrumentedConcurrentMapCache cache = getCache();
+            return cache != null ? cache.getPutCount() : 0;
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        }
+    }
+}
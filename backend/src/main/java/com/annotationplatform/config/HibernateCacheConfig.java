@@ -0,0 +1,106 @@
+package com.annotationplatform.config;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hibernate 二级缓存与查询缓存（JCache，本地 Ehcache 堆内缓存）
+ * 每个区域有独立的条目上限与存活时间，可通过 hibernate-cache.regions.{区域名}.max-entries / ttl 覆盖默认值。
+ * 实体通过 @Cache(region = ...) 指定区域；未在此声明的区域启动时直接报错（missing_cache_strategy=fail）。
+ * 失效由 Hibernate 在事务提交时完成，子实体改变父引用时一并清除父实体的集合缓存（auto_evict_collection_cache）。
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    /**
+     * 查询缓存结果区域（Hibernate 默认名称）
+     */
+    public static final String QUERY_RESULTS_REGION = "default-query-results-region";
+
+    /**
+     * 表更新时间戳区域：查询缓存据此判断结果是否过期，不能先于查询结果过期
+     */
+    public static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    /**
+     * 区域默认配置（存活时间为 null 表示不过期）
+     */
+    private static final Map<String, Region> REGIONS = new LinkedHashMap<>();
+
+    static {
+        REGIONS.put("entity.user", new Region(10000, Duration.ofMinutes(10)));
+        REGIONS.put("entity.category", new Region(2000, Duration.ofHours(1)));
+        REGIONS.put("entity.category.children", new Region(2000, Duration.ofHours(1)));
+        REGIONS.put("entity.formConfig", new Region(1000, Duration.ofHours(1)));
+        REGIONS.put("entity.formConfig.fields", new Region(1000, Duration.ofHours(1)));
+        REGIONS.put("entity.formField", new Region(10000, Duration.ofHours(1)));
+        REGIONS.put("entity.documentType", new Region(500, Duration.ofHours(1)));
+        REGIONS.put("entity.documentType.formConfigs", new Region(500, Duration.ofHours(1)));
+        REGIONS.put(QUERY_RESULTS_REGION, new Region(2000, Duration.ofMinutes(10)));
+        REGIONS.put(UPDATE_TIMESTAMPS_REGION, new Region(1000, null));
+    }
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * 每个应用上下文独立的 JCache 管理器（URI 唯一，测试中多个上下文互不影响），随 SessionFactory 关闭
+     */
+    @Bean
+    public CacheManager hibernateJCacheManager() {
+        ConfigurationBuilder configuration = ConfigurationBuilder.newConfigurationBuilder();
+        for (Map.Entry<String, Region> region : REGIONS.entrySet()) {
+            String name = region.getKey();
+            String prefix = "hibernate-cache.regions." + name + ".";
+            long maxEntries = environment.getProperty(prefix + "max-entries", Long.class, region.getValue().maxEntries);
+            Duration ttl = environment.getProperty(prefix + "ttl", Duration.class, region.getValue().ttl);
+
+            configuration = configuration.withCache(name,
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                        ResourcePoolsBuilder.heap(maxEntries))
+                    .withExpiry(ttl != null
+                        ? ExpiryPolicyBuilder.timeToLiveExpiration(ttl)
+                        : ExpiryPolicyBuilder.noExpiration()));
+        }
+
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+            EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("urn:annotation-platform:hibernate:" + UUID.randomUUID()),
+            configuration.build());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateJCacheCustomizer(CacheManager hibernateJCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateJCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private static class Region {
+        final long maxEntries;
+        final Duration ttl;
+
+        Region(long maxEntries, Duration ttl) {
+            this.maxEntries = maxEntries;
+            this.ttl = ttl;
+        }
+    }
+}
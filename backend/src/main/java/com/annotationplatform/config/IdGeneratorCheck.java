@@ -0,0 +1,70 @@
+package com.annotationplatform.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 启动时只读检查 id_generators 中的池化主键计数器
+ * 计数器由迁移脚本（V2）建表并按已有的最大主键初始化，这里不建表也不改写；
+ * 若某个计数器落后于表中的 MAX(id)（例如绕过应用直接插入了数据），后续插入会主键冲突，因此直接启动失败
+ */
+@Component
+public class IdGeneratorCheck {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorCheck.class);
+
+    // 与各实体 @TableGenerator 的 allocationSize 一致
+    static final int ALLOCATION_SIZE = 50;
+
+    // 计数器名与表名相同
+    static final List<String> SEGMENTS = List.of(
+        "documents",
+        "tasks",
+        "task_assignments",
+        "annotations",
+        "score_history",
+        "document_annotation_history",
+        "batch_documents"
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 只为保证迁移已执行（EntityManagerFactory 依赖 Flyway）
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void check() {
+        Map<String, Long> values = jdbcTemplate.queryForList("SELECT gen_name, gen_value FROM id_generators").stream()
+            .collect(Collectors.toMap(row -> (String) row.get("gen_name"), row -> ((Number) row.get("gen_value")).longValue()));
+
+        List<String> behind = new ArrayList<>();
+        for (String segment : SEGMENTS) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + segment, Long.class);
+            if (maxId == null || maxId == 0) {
+                continue;
+            }
+            // 池化优化器分配 (gen_value - ALLOCATION_SIZE, gen_value]，并把 gen_value 前移一个块
+            Long value = values.get(segment);
+            if (value == null || value < maxId + ALLOCATION_SIZE) {
+                behind.add(segment + " (gen_value " + value + ", max id " + maxId + ")");
+            }
+        }
+        if (!behind.isEmpty()) {
+            throw new IllegalStateException("id_generators is behind existing primary keys, new rows would collide: "
+                + String.join(", ", behind) + ". Set gen_value to at least MAX(id) + " + ALLOCATION_SIZE);
+        }
+        logger.debug("Id generators are ahead of existing primary keys: {}", SEGMENTS);
+    }
+}
@@ -0,0 +1,135 @@
+package com.annotationplatform.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 读写分离：配置 replica-datasource.url 后启用，否则沿用 Spring Boot 默认的单一数据源。
+ * 主库连接池读取 spring.datasource.* 与 spring.datasource.hikari.*，
+ * 副本连接池读取 replica-datasource.* 与 replica-datasource.hikari.*（用户名、密码、驱动默认与主库相同）。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "replica-datasource", name = "url")
+public class ReadWriteRoutingConfig {
+
+    @Value("${replica-datasource.url}")
+    private String replicaUrl;
+
+    @Value("${replica-datasource.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${replica-datasource.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${replica-datasource.driver-class-name:}")
+    private String replicaDriverClassName;
+
+    @Value("${replica-datasource.max-lag-ms:5000}")
+    private long maxLagMs;
+
+    /**
+     * 主库连接池（同时供 Flyway 迁移使用）
+     */
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * 副本连接池，连接设为只读，误写会直接报错而不是静默写入副本
+     */
+    @Bean
+    @ConfigurationProperties("replica-datasource.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+            .type(HikariDataSource.class)
+            .driverClassName(replicaDriverClassName.isEmpty() ? properties.determineDriverClassName() : replicaDriverClassName)
+            .url(replicaUrl)
+            .username(replicaUsername)
+            .password(replicaPassword)
+            .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                               @Qualifier("replicaDataSource") DataSource replica) {
+        return new ReplicaLagMonitor(primary, replica, maxLagMs);
+    }
+
+    /**
+     * 应用使用的数据源：延迟到第一条语句才取连接，此时事务的只读标记已经确定
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(replicaLagMonitor);
+        routing.setTargetDataSources(Map.of(
+            ReadWriteRoutingDataSource.Route.PRIMARY, primary,
+            ReadWriteRoutingDataSource.Route.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * open-in-view 下 Hibernate 默认在整个请求内持有第一次取得的连接，
+     * 改为每个事务结束即归还，后续事务才能重新路由
+     */
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put("hibernate.connection.handling_mode",
+            "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+
+    /**
+     * 每个请求开始与结束时解除主库固定
+     */
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> readWriteRoutingFilter() {
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                ReadWriteRoutingDataSource.clearPin();
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    ReadWriteRoutingDataSource.clearPin();
+                }
+            }
+        });
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,92 @@
+package com.annotationplatform.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * 只读副本延迟监测
+ * 每个心跳周期先从副本读取 replication_heartbeat，再把当前时间写入主库；
+ * 延迟 = 当前时间 - 副本上最新的心跳时间（包含最多一个心跳周期）。
+ * 副本不可达或延迟超过 replica-datasource.max-lag-ms 时，只读事务退回主库，直到副本追上。
+ */
+public class ReplicaLagMonitor implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final JdbcTemplate primaryJdbcTemplate;
+
+    private final JdbcTemplate replicaJdbcTemplate;
+
+    private final long maxLagMs;
+
+    // 首次心跳之前不使用副本
+    private volatile boolean replicaUsable = false;
+
+    private volatile long lagMs = -1;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, long maxLagMs) {
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.maxLagMs = maxLagMs;
+    }
+
+    /**
+     * 导出 datasource.replica.lag 与 datasource.replica.usable（MeterBinder 由 actuator 注册，避免与数据源指标循环依赖）
+     */
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagMs)
+            .description("Replication lag seen by the last heartbeat, -1 when the replica is unreachable")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        Gauge.builder("datasource.replica.usable", this, monitor -> monitor.replicaUsable ? 1 : 0)
+            .description("1 while read-only transactions are routed to the replica")
+            .register(meterRegistry);
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public long getLagMs() {
+        return lagMs;
+    }
+
+    @Scheduled(fixedDelayString = "${replica-datasource.heartbeat-interval-ms:1000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        long lag;
+        try {
+            Long beatAt = replicaJdbcTemplate.queryForObject(
+                "SELECT beat_at FROM replication_heartbeat WHERE id = 1", Long.class);
+            lag = beatAt != null && beatAt > 0 ? Math.max(0, now - beatAt) : -1;
+        } catch (Exception e) {
+            logger.debug("Replica heartbeat read failed: {}", e.getMessage());
+            lag = -1;
+        }
+
+        try {
+            primaryJdbcTemplate.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", now);
+        } catch (Exception e) {
+            logger.warn("Primary heartbeat write failed: {}", e.getMessage());
+        }
+
+        lagMs = lag;
+        boolean usable = lag >= 0 && lag <= maxLagMs;
+        if (usable != replicaUsable) {
+            if (usable) {
+                logger.info("Replica caught up (lag {} ms), routing read-only transactions to it", lag);
+            } else {
+                logger.warn("Replica lag {} ms exceeds {} ms or replica unreachable, routing reads to primary", lag, maxLagMs);
+            }
+            replicaUsable = usable;
+        }
+    }
+}
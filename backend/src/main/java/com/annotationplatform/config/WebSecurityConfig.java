@@ -3,6 +3,7 @@ package com.annotationplatform.config;
 import com.annotationplatform.service.UserDetailsServiceImpl;
 import com.annotationplatform.utils.AuthTokenFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -57,8 +58,13 @@ public class WebSecurityConfig {
         http.csrf(csrf -> csrf.disable())
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .authorizeHttpRequests(authz -> authz
+                // Health/info stay public for probes; metrics, prometheus and any other actuator endpoint need an admin token
+                .requestMatchers(EndpointRequest.to("health", "info")).permitAll()
+                .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ADMIN")
                 .anyRequest().permitAll()
             )
+            .exceptionHandling(exceptions -> exceptions
+                .defaultAuthenticationEntryPointFor(unauthorizedHandler, EndpointRequest.toAnyEndpoint()))
             .authenticationProvider(authenticationProvider())
             .addFilterBefore(authenticationJwtTokenFilter(), org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter.class);
 
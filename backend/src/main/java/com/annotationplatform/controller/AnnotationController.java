@@ -8,14 +8,18 @@ import com.annotationplatform.entity.Document;
 import com.annotationplatform.repository.AnnotationRepository;
 import com.annotationplatform.repository.TaskRepository;
 import com.annotationplatform.repository.TaskAssignmentRepository;
-import com.annotationplatform.repository.UserRepository;
 import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.service.AnnotationSubmissionService;
+import com.annotationplatform.service.BatchDocumentService;
+import com.annotationplatform.service.DocumentArchiveService;
+import com.annotationplatform.service.OutboxProcessor;
 import com.annotationplatform.service.TaskAssignmentService;
+import com.annotationplatform.service.TaskStageCounterService;
+import com.annotationplatform.service.UserDetailsImpl;
 import com.annotationplatform.service.WorkflowService;
+import com.annotationplatform.utils.CurrentUser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -31,11 +35,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.RandomAccessFile;
 import java.math.BigDecimal;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
@@ -58,9 +58,6 @@ public class AnnotationController {
     @Autowired
     private TaskAssignmentRepository taskAssignmentRepository;
 
-    @Autowired
-    private UserRepository userRepository;
-
     @Autowired
     private DocumentRepository documentRepository;
 
@@ -70,12 +67,27 @@ public class AnnotationController {
     @Autowired
     private WorkflowService workflowService;
 
+    @Autowired
+    private BatchDocumentService batchDocumentService;
+
+    @Autowired
+    private TaskStageCounterService taskStageCounterService;
+
+    @Autowired
+    private DocumentArchiveService documentArchiveService;
+
+    @Autowired
+    private AnnotationSubmissionService annotationSubmissionService;
+
+    @Autowired
+    private OutboxProcessor outboxProcessor;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @PostMapping
     @PreAuthorize("hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT') or hasRole('ADMIN')")
     public ResponseEntity<?> submitAnnotation(@RequestBody Map<String, Object> request,
-                                             Authentication authentication) {
+                                             @CurrentUser User user) {
         logger.info("=== submitAnnotation called ===");
         logger.info("Request: taskId={}, taskAssignmentId={}, documentId={}", 
                    request.get("taskId"), request.get("taskAssignmentId"), request.get("documentId"));
@@ -96,12 +108,9 @@ public class AnnotationController {
             }
 
             // Get current user
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             // Validate task exists
             Optional<Task> taskOpt = taskRepository.findById(taskId);
@@ -122,101 +131,10 @@ public class AnnotationController {
                         .body(Map.of("message", "无权限提交此标注"));
             }
 
-            // Allow resubmission even if assignment is COMPLETED
-            boolean isResubmission = assignment.getStatus() == TaskAssignment.AssignmentStatus.COMPLETED;
-
-            // Check if annotation already exists for this assignment
-            Optional<Annotation> existingAnnotation = annotationRepository.findByTaskIdAndTaskAssignmentId(taskId, taskAssignmentId);
-
-            Annotation annotation;
-            if (existingAnnotation.isPresent()) {
-                // Update existing annotation (allow resubmission)
-                annotation = existingAnnotation.get();
-                annotation.setAnnotationData(objectMapper.writeValueAsString(annotationData));
-                annotation.setVersion(annotation.getVersion() + 1);
-                annotation.setConfidenceScore(confidenceScore);
-                annotation.setUpdatedAt(LocalDateTime.now());
-            } else {
-                // Create new annotation
-                annotation = new Annotation();
-                annotation.setTask(task);
-                annotation.setTaskAssignment(assignment);
-                annotation.setAnnotationData(objectMapper.writeValueAsString(annotationData));
-                annotation.setConfidenceScore(confidenceScore);
-                annotation.setVersion(1); // Initialize version to 1 for new annotations
-            }
-
-            // Set submission timestamp
-            annotation.setSubmittedAt(LocalDateTime.now());
-            annotation.setStatus(Annotation.AnnotationStatus.SUBMITTED);
-            // Clear review information when resubmitting
-            if (isResubmission) {
-                annotation.setReviewer(null);
-                annotation.setReviewedAt(null);
-                annotation.setReviewNotes(null);
-            }
-
-            Annotation savedAnnotation = annotationRepository.save(annotation);
-
-            // Update JSON archive with file lock for concurrent writes
-            // Use documentId from request if provided, otherwise use task's document
-            Document document = null;
-            if (documentId != null) {
-                logger.info("Looking for document with ID: {}", documentId);
-                Optional<Document> documentOpt = documentRepository.findById(documentId);
-                if (documentOpt.isPresent()) {
-                    document = documentOpt.get();
-                    logger.info("Found document: {} - {}", document.getId(), document.getOriginalFilename());
-                } else {
-                    logger.error("Document not found with ID: {}", documentId);
-                }
-            }
-            // Fallback to task's document if documentId not provided or not found
-            if (document == null) {
-                logger.info("Document ID not provided or not found, using task's document");
-                document = task.getDocument();
-                if (document != null) {
-                    logger.info("Using task's document: {} - {}", document.getId(), document.getOriginalFilename());
-                }
-            }
-            if (document != null) {
-                logger.info("Updating archive for document: {}", document.getId());
-                updateArchiveForAnnotation(document, task, assignment, savedAnnotation, annotationData);
-            } else {
-                logger.error("WARNING: Cannot update archive - no document found for task {}", task.getId());
-                logger.error("  documentId from request: {}", documentId);
-                logger.error("  task.getDocument(): {}", task.getDocument() != null ? task.getDocument().getId() : "null");
-            }
-
-            // Update assignment status
-            if (isResubmission) {
-                assignment.setStatus(TaskAssignment.AssignmentStatus.IN_PROGRESS);
-                assignment.setCompletedAt(null);
-            } else {
-                assignment.setStatus(TaskAssignment.AssignmentStatus.COMPLETED);
-                assignment.setCompletedAt(LocalDateTime.now());
-            }
-            taskAssignmentRepository.save(assignment);
-
-            // Generate batch ID if not set
-            LocalDateTime now = LocalDateTime.now();
-            if (task.getBatchId() == null || task.getBatchId().isEmpty()) {
-                String batchId = String.format("BATCH_%04d%02d%02d_%02d%02d",
-                    now.getYear(), now.getMonthValue(), now.getDayOfMonth(),
-                    now.getHour(), now.getMinute());
-                task.setBatchId(batchId);
-                
-                String batchName = String.format("提交批次_%04d-%02d-%02d %02d:%02d",
-                    now.getYear(), now.getMonthValue(), now.getDayOfMonth(),
-                    now.getHour(), now.getMinute());
-                task.setBatchName(batchName);
-            }
-            
-            task.setSubmittedAt(now);
-            taskRepository.save(task);
-
-            taskAssignmentService.checkForQualityControl(task);
-            workflowService.handleAnnotationSubmission(task, savedAnnotation);
+            // Persist the annotation and an outbox event in one transaction; archive update,
+            // quality control, workflow advance and scoring run asynchronously
+            Annotation savedAnnotation = annotationSubmissionService.submit(task, assignment, user,
+                annotationData, confidenceScore, documentId);
 
             return ResponseEntity.ok(Map.of(
                 "message", "标注提交成功",
@@ -229,10 +147,63 @@ public class AnnotationController {
         }
     }
 
+    /**
+     * Outbox backlog and processing lag for the asynchronous post-submit pipeline
+     */
+    @GetMapping("/outbox/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getOutboxStats() {
+        try {
+            return ResponseEntity.ok(Map.of("stats", outboxProcessor.getStats()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "获取发件箱状态失败: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/outbox/failed")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getFailedOutboxEvents(@RequestParam(defaultValue = "50") int limit) {
+        try {
+            List<Map<String, Object>> events = outboxProcessor.getFailedEvents(Math.max(1, Math.min(limit, 500))).stream()
+                .map(event -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("id", event.getId());
+                    map.put("eventType", event.getEventType());
+                    map.put("aggregateId", event.getAggregateId());
+                    map.put("taskId", event.getTaskId());
+                    map.put("attempts", event.getAttempts());
+                    map.put("completedSteps", event.getCompletedSteps());
+                    map.put("lastError", event.getLastError());
+                    map.put("createdAt", event.getCreatedAt());
+                    return map;
+                })
+                .collect(Collectors.toList());
+            return ResponseEntity.ok(Map.of("events", events));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "获取失败事件失败: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/outbox/{id}/retry")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> retryOutboxEvent(@PathVariable Long id) {
+        try {
+            if (!outboxProcessor.retry(id)) {
+                return ResponseEntity.badRequest().body(Map.of("message", "事件不存在或不是失败状态"));
+            }
+            return ResponseEntity.ok(Map.of("message", "事件已重新排队"));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "重试事件失败: " + e.getMessage()));
+        }
+    }
+
     @PostMapping("/draft")
     @PreAuthorize("hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT') or hasRole('ADMIN')")
     public ResponseEntity<?> saveDraftAnnotation(@RequestBody Map<String, Object> request,
-                                                Authentication authentication) {
+                                                @CurrentUser User user) {
         logger.info("=== saveDraftAnnotation called ===");
         logger.info("Request: taskId={}, taskAssignmentId={}, documentId={}", 
                    request.get("taskId"), request.get("taskAssignmentId"), request.get("documentId"));
@@ -252,12 +223,9 @@ public class AnnotationController {
             }
 
             // Get current user
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             // Validate task exists
             Optional<Task> taskOpt = taskRepository.findById(taskId);
@@ -328,11 +296,15 @@ public class AnnotationController {
             }
             if (document != null) {
                 logger.info("Updating archive for draft annotation, document: {}", document.getId());
-                updateArchiveForAnnotation(document, task, assignment, savedAnnotation, annotationData);
+                documentArchiveService.updateArchiveForAnnotation(document, task, assignment, savedAnnotation, annotationData);
             } else {
                 logger.error("WARNING: Cannot update archive - no document found for task {}", task.getId());
             }
 
+            if (document != null) {
+                batchDocumentService.recordAnnotationProgress(task, document.getId(), user, false);
+            }
+
             // Don't update assignment status for draft - keep it as is
             // Don't update task status for draft
 
@@ -350,24 +322,21 @@ public class AnnotationController {
 
     @GetMapping("/task/{taskId}")
     public ResponseEntity<?> getTaskAnnotations(@PathVariable Long taskId,
-                                               Authentication authentication) {
+                                               @CurrentUser UserDetailsImpl principal) {
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (principal == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             Optional<TaskAssignment> assignment = taskAssignmentRepository.findByTaskIdAndUserIdAndAssignmentType(
-                taskId, user.getId(), TaskAssignment.AssignmentType.ANNOTATION);
+                taskId, principal.getId(), TaskAssignment.AssignmentType.ANNOTATION);
             
             if (assignment.isEmpty()) {
                 assignment = taskAssignmentRepository.findByTaskIdAndUserIdAndAssignmentType(
-                    taskId, user.getId(), TaskAssignment.AssignmentType.AI_ANNOTATION);
+                    taskId, principal.getId(), TaskAssignment.AssignmentType.AI_ANNOTATION);
             }
             
-            boolean isAdmin = user.getRole() == User.Role.ADMIN;
+            boolean isAdmin = principal.getRole() == User.Role.ADMIN;
             
             if (assignment.isEmpty() && !isAdmin) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
@@ -390,7 +359,7 @@ public class AnnotationController {
 
     @GetMapping("/{id}")
     public ResponseEntity<?> getAnnotation(@PathVariable Long id,
-                                          Authentication authentication) {
+                                          @CurrentUser UserDetailsImpl principal) {
         try {
             Optional<Annotation> annotationOpt = annotationRepository.findById(id);
             if (annotationOpt.isEmpty()) {
@@ -399,17 +368,14 @@ public class AnnotationController {
 
             Annotation annotation = annotationOpt.get();
 
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (principal == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
-            boolean hasAccess = user.getRole() == User.Role.ADMIN ||
-                               annotation.getTaskAssignment().getUser().getId().equals(user.getId()) ||
+            boolean hasAccess = principal.getRole() == User.Role.ADMIN ||
+                               annotation.getTaskAssignment().getUser().getId().equals(principal.getId()) ||
                                taskAssignmentRepository.findByTaskIdAndUserIdAndAssignmentType(
-                                   annotation.getTask().getId(), user.getId(), TaskAssignment.AssignmentType.REVIEW).isPresent();
+                                   annotation.getTask().getId(), principal.getId(), TaskAssignment.AssignmentType.REVIEW).isPresent();
 
             if (!hasAccess) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
@@ -428,7 +394,7 @@ public class AnnotationController {
     @PreAuthorize("hasRole('REVIEWER') or hasRole('EXPERT')")
     public ResponseEntity<?> reviewAnnotation(@PathVariable Long id,
                                              @RequestBody Map<String, Object> request,
-                                             Authentication authentication) {
+                                             @CurrentUser User user) {
         try {
             String status = (String) request.get("status");
             String reviewNotes = (String) request.get("reviewNotes");
@@ -449,12 +415,9 @@ public class AnnotationController {
                 return ResponseEntity.badRequest().body(Map.of("message", "审核状态必须是APPROVED或REJECTED"));
             }
 
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             Optional<Annotation> annotationOpt = annotationRepository.findById(id);
             if (annotationOpt.isEmpty()) {
@@ -482,7 +445,7 @@ public class AnnotationController {
             Task task = annotation.getTask();
             Document document = task.getDocument();
             if (document != null) {
-                updateArchiveForReview(document, task, reviewAssignment.get(), annotation, reviewNotes);
+                documentArchiveService.updateArchiveForReview(document, task, reviewAssignment.get(), annotation, reviewNotes);
             }
 
             return ResponseEntity.ok(Map.of(
@@ -501,22 +464,19 @@ public class AnnotationController {
     public ResponseEntity<?> getMyAnnotations(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "submittedAt") String sortBy,
+            @RequestParam(defaultValue = "assignedAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
-            Authentication authentication) {
+            @CurrentUser UserDetailsImpl principal) {
 
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (principal == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             Sort.Direction direction = Sort.Direction.fromString(sortDir);
             Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
 
-            Page<TaskAssignment> assignmentPage = taskAssignmentRepository.findByUserId(user.getId(), pageable);
+            Page<TaskAssignment> assignmentPage = taskAssignmentRepository.findByUserId(principal.getId(), pageable);
 
             List<Map<String, Object>> result = assignmentPage.getContent().stream()
                     .map(assignment -> {
@@ -916,567 +876,6 @@ public class AnnotationController {
         return map;
     }
 
-    /**
-     * 将 AssignmentType 映射为 role_type 字符串
-     */
-    private String mapAssignmentTypeToRoleType(TaskAssignment.AssignmentType assignmentType) {
-        switch (assignmentType) {
-            case ANNOTATION:
-                return "ordinary_annotator";
-            case AI_ANNOTATION:
-                return "ai_annotator";
-            case REVIEW:
-                return "reviewer";
-            case EXPERT_REVIEW:
-                return "expert";
-            case INSPECTION:
-                return "reviewer"; // INSPECTION 也映射为 reviewer
-            default:
-                return "ordinary_annotator";
-        }
-    }
-
-    /**
-     * 更新审核存档（在审核标注时调用）
-     */
-    private void updateArchiveForReview(Document document, Task task, TaskAssignment assignment, 
-                                       Annotation annotation, String reviewNotes) {
-        try {
-            JsonNode annotationDataJson = objectMapper.readTree(annotation.getAnnotationData());
-            
-            updateArchiveWithLock(document.getId(), archive -> {
-                // Initialize annotation_records if not exists
-                JsonNode annotationRecordsNode = archive.path("annotation_records");
-                ObjectNode annotationRecords;
-                if (annotationRecordsNode.isMissingNode() || !(annotationRecordsNode instanceof ObjectNode)) {
-                    annotationRecords = archive.putObject("annotation_records");
-                } else {
-                    annotationRecords = (ObjectNode) annotationRecordsNode;
-                }
-
-                // Get role type
-                TaskAssignment.AssignmentType assignmentType = assignment.getAssignmentType();
-                String roleType = mapAssignmentTypeToRoleType(assignmentType);
-                
-                String taskName = task.getTitle();
-                String taskIdStr = "TASK-" + task.getId().toString();
-                String operationTime = LocalDateTime.now().toString();
-
-                // For each field in annotation data
-                Iterator<String> fieldNames = annotationDataJson.fieldNames();
-                while (fieldNames.hasNext()) {
-                    String fieldName = fieldNames.next();
-                    JsonNode valueNode = annotationDataJson.path(fieldName);
-
-                    // Get or create field array
-                    JsonNode fieldNode = annotationRecords.path(fieldName);
-                    ArrayNode fieldArray;
-                    if (fieldNode instanceof ArrayNode) {
-                        fieldArray = (ArrayNode) fieldNode;
-                    } else {
-                        fieldArray = annotationRecords.putArray(fieldName);
-                    }
-
-                    // Create review record entry
-                    ObjectNode entry = JsonNodeFactory.instance.objectNode();
-                    entry.put("task_id", taskIdStr);
-                    entry.put("task_name", taskName);
-                    entry.put("role_type", roleType);
-                    entry.put("operation_time", operationTime);
-                    
-                    // Set annotation_content (same as last entry or from annotation data)
-                    if (valueNode.isTextual()) {
-                        entry.put("annotation_content", valueNode.asText());
-                    } else if (valueNode.isNumber()) {
-                        if (valueNode.isDouble() || valueNode.isFloat()) {
-                            entry.put("annotation_content", valueNode.asDouble());
-                        } else {
-                            entry.put("annotation_content", valueNode.asLong());
-                        }
-                    } else if (valueNode.isBoolean()) {
-                        entry.put("annotation_content", valueNode.asBoolean());
-                    } else if (valueNode.isArray() || valueNode.isObject()) {
-                        entry.set("annotation_content", valueNode);
-                    } else {
-                        entry.put("annotation_content", valueNode.asText(""));
-                    }
-
-                    // Add review_comment or expert_note
-                    if (roleType.equals("reviewer") && reviewNotes != null && !reviewNotes.trim().isEmpty()) {
-                        entry.put("review_comment", reviewNotes);
-                    } else if (roleType.equals("expert") && reviewNotes != null && !reviewNotes.trim().isEmpty()) {
-                        entry.put("expert_note", reviewNotes);
-                    }
-
-                    fieldArray.add(entry);
-                }
-
-                // Update last_modified_time
-                archive.put("last_modified_time", LocalDateTime.now().toString());
-                
-                return archive;
-            });
-        } catch (Exception e) {
-            logger.error("Failed to update archive for review: {}", e.getMessage(), e);
-            e.printStackTrace();
-            // Don't fail review
-        }
-    }
-
-    /**
-     * 更新标注存档（在提交标注时调用）
-     */
-    private void updateArchiveForAnnotation(Document document, Task task, TaskAssignment assignment, 
-                                            Annotation annotation, Object annotationData) {
-        try {
-            logger.info("=== updateArchiveForAnnotation START ===");
-            logger.info("Document ID: {}, Task ID: {}, Annotation ID: {}", 
-                       document.getId(), task.getId(), annotation.getId());
-            
-            JsonNode dataJson = objectMapper.valueToTree(annotationData);
-            // Log annotation data keys (collect to list first to avoid consuming iterator)
-            List<String> fieldNamesList = new ArrayList<>();
-            dataJson.fieldNames().forEachRemaining(fieldNamesList::add);
-            logger.info("Annotation data keys: {}, size: {}", fieldNamesList, dataJson.size());
-            
-            boolean success = updateArchiveWithLock(document.getId(), archive -> {
-                // Initialize file_info if not exists
-                JsonNode fileInfoNode = archive.path("file_info");
-                ObjectNode fileInfo;
-                if (fileInfoNode.isMissingNode() || !(fileInfoNode instanceof ObjectNode)) {
-                    fileInfo = archive.putObject("file_info");
-                    fileInfo.put("file_id", "doc-" + document.getId().toString());
-                    fileInfo.put("file_name", document.getOriginalFilename());
-                    fileInfo.put("storage_path", document.getFilePath());
-                    fileInfo.put("upload_time", document.getCreatedAt() != null ? 
-                        document.getCreatedAt().toString() : LocalDateTime.now().toString());
-                    fileInfo.put("file_size_bytes", document.getFileSize());
-                    if (task.getFormConfig() != null) {
-                        fileInfo.put("template_id", "template_" + task.getFormConfig().getId().toString());
-                    }
-                }
-
-                // Initialize annotation_records if not exists
-                JsonNode annotationRecordsNode = archive.path("annotation_records");
-                ObjectNode annotationRecords;
-                if (annotationRecordsNode.isMissingNode() || !(annotationRecordsNode instanceof ObjectNode)) {
-                    annotationRecords = archive.putObject("annotation_records");
-                } else {
-                    annotationRecords = (ObjectNode) annotationRecordsNode;
-                }
-
-                // Get role type
-                String roleType = mapAssignmentTypeToRoleType(assignment.getAssignmentType());
-                
-                // Get task name
-                String taskName = task.getTitle();
-                String taskIdStr = "TASK-" + task.getId().toString();
-                
-                // Get operation time
-                String operationTime = annotation.getSubmittedAt() != null ? 
-                    annotation.getSubmittedAt().toString() : LocalDateTime.now().toString();
-
-                // For each field in annotation data
-                Iterator<String> fieldNames = dataJson.fieldNames();
-                int fieldCount = 0;
-                while (fieldNames.hasNext()) {
-                    String fieldName = fieldNames.next();
-                    fieldCount++;
-                    JsonNode valueNode = dataJson.path(fieldName);
-                    logger.debug("  Processing field: {} (type: {})", fieldName, valueNode.getNodeType());
-
-                    // Get or create field array
-                    JsonNode fieldNode = annotationRecords.path(fieldName);
-                    ArrayNode fieldArray;
-                    if (fieldNode instanceof ArrayNode) {
-                        fieldArray = (ArrayNode) fieldNode;
-                    } else {
-                        fieldArray = annotationRecords.putArray(fieldName);
-                    }
-
-                    // Check if there's an existing record with the same task_id and role_type
-                    boolean foundExisting = false;
-                    for (int i = 0; i < fieldArray.size(); i++) {
-                        JsonNode existingEntry = fieldArray.get(i);
-                        if (existingEntry != null && 
-                            taskIdStr.equals(existingEntry.path("task_id").asText()) &&
-                            roleType.equals(existingEntry.path("role_type").asText())) {
-                            // Update existing entry instead of adding a new one
-                            ObjectNode existingObj = (ObjectNode) existingEntry;
-                            existingObj.put("task_name", taskName);
-                            existingObj.put("operation_time", operationTime);
-                            
-                            // Update user information
-                            if (assignment.getUser() != null) {
-                                existingObj.put("user_id", assignment.getUser().getId());
-                                existingObj.put("username", assignment.getUser().getUsername());
-                            }
-                            
-                            // Update annotation_content based on value type
-                            existingObj.remove("annotation_content");
-                            if (valueNode.isTextual()) {
-                                existingObj.put("annotation_content", valueNode.asText());
-                            } else if (valueNode.isNumber()) {
-                                if (valueNode.isDouble() || valueNode.isFloat()) {
-                                    existingObj.put("annotation_content", valueNode.asDouble());
-                                } else {
-                                    existingObj.put("annotation_content", valueNode.asLong());
-                                }
-                            } else if (valueNode.isBoolean()) {
-                                existingObj.put("annotation_content", valueNode.asBoolean());
-                            } else if (valueNode.isArray() || valueNode.isObject()) {
-                                existingObj.set("annotation_content", valueNode);
-                            } else {
-                                existingObj.put("annotation_content", valueNode.asText(""));
-                            }
-
-                            // Update review_comment if reviewer
-                            if (roleType.equals("reviewer")) {
-                                if (annotation.getReviewNotes() != null) {
-                                    existingObj.put("review_comment", annotation.getReviewNotes());
-                                } else {
-                                    existingObj.remove("review_comment");
-                                }
-                            }
-
-                            // Update expert_note if expert
-                            if (roleType.equals("expert")) {
-                                if (annotation.getReviewNotes() != null) {
-                                    existingObj.put("expert_note", annotation.getReviewNotes());
-                                } else {
-                                    existingObj.remove("expert_note");
-                                }
-                            }
-
-                            // Add adjustment_reason if ordinary_annotator modified AI result
-                            if (roleType.equals("ordinary_annotator") && i > 0) {
-                                JsonNode prevEntry = fieldArray.get(i - 1);
-                                if (prevEntry != null && "ai_annotator".equals(prevEntry.path("role_type").asText())) {
-                                    JsonNode prevContent = prevEntry.path("annotation_content");
-                                    if (!prevContent.equals(valueNode)) {
-                                        existingObj.put("adjustment_reason", "修正AI提取结果");
-                                    } else {
-                                        existingObj.remove("adjustment_reason");
-                                    }
-                                }
-                            }
-                            
-                            foundExisting = true;
-                            logger.debug("Updated existing annotation record for task={}, role={}, field={}", 
-                                       taskIdStr, roleType, fieldName);
-                            break;
-                        }
-                    }
-
-                    // If no existing record found, create a new one
-                    if (!foundExisting) {
-                        ObjectNode entry = JsonNodeFactory.instance.objectNode();
-                        entry.put("task_id", taskIdStr);
-                        entry.put("task_name", taskName);
-                        entry.put("role_type", roleType);
-                        entry.put("operation_time", operationTime);
-                        
-                        // Add user information
-                        if (assignment.getUser() != null) {
-                            entry.put("user_id", assignment.getUser().getId());
-                            entry.put("username", assignment.getUser().getUsername());
-                        }
-                        
-                        // Set annotation_content based on value type
-                        if (valueNode.isTextual()) {
-                            entry.put("annotation_content", valueNode.asText());
-                        } else if (valueNode.isNumber()) {
-                            if (valueNode.isDouble() || valueNode.isFloat()) {
-                                entry.put("annotation_content", valueNode.asDouble());
-                            } else {
-                                entry.put("annotation_content", valueNode.asLong());
-                            }
-                        } else if (valueNode.isBoolean()) {
-                            entry.put("annotation_content", valueNode.asBoolean());
-                        } else if (valueNode.isArray() || valueNode.isObject()) {
-                            entry.set("annotation_content", valueNode);
-                        } else {
-                            entry.put("annotation_content", valueNode.asText(""));
-                        }
-
-                        // Add review_comment if reviewer
-                        if (roleType.equals("reviewer") && annotation.getReviewNotes() != null) {
-                            entry.put("review_comment", annotation.getReviewNotes());
-                        }
-
-                        // Add expert_note if expert
-                        if (roleType.equals("expert") && annotation.getReviewNotes() != null) {
-                            entry.put("expert_note", annotation.getReviewNotes());
-                        }
-
-                        // Add adjustment_reason if ordinary_annotator modified AI result
-                        if (roleType.equals("ordinary_annotator") && fieldArray.size() > 0) {
-                            JsonNode lastEntry = fieldArray.get(fieldArray.size() - 1);
-                            if (lastEntry != null && "ai_annotator".equals(lastEntry.path("role_type").asText())) {
-                                JsonNode lastContent = lastEntry.path("annotation_content");
-                                if (!lastContent.equals(valueNode)) {
-                                    entry.put("adjustment_reason", "修正AI提取结果");
-                                }
-                            }
-                        }
-
-                        fieldArray.add(entry);
-                        logger.debug("Added new annotation record for task={}, role={}, field={}", 
-                                   taskIdStr, roleType, fieldName);
-                    }
-                    logger.debug("  Processed field: {} (array size: {})", fieldName, fieldArray.size());
-                }
-                logger.info("Total fields processed: {} (one record per task+role+field)", fieldCount);
-
-                // Update template_info
-                if (task.getFormConfig() != null) {
-                    JsonNode templateInfoNode = archive.path("template_info");
-                    ObjectNode templateInfo;
-                    if (templateInfoNode.isMissingNode() || !(templateInfoNode instanceof ObjectNode)) {
-                        templateInfo = archive.putObject("template_info");
-                    } else {
-                        templateInfo = (ObjectNode) templateInfoNode;
-                    }
-                    templateInfo.put("template_id", "template_" + task.getFormConfig().getId().toString());
-                    templateInfo.put("template_name", task.getFormConfig().getName());
-                    
-                    // Get field names from form config
-                    ArrayNode fieldsDefined = templateInfo.putArray("fields_defined");
-                    if (task.getFormConfig().getFields() != null) {
-                        task.getFormConfig().getFields().forEach(field -> {
-                            fieldsDefined.add(field.getFieldName());
-                        });
-                    }
-                    
-                    // Version (could be based on form config update time or version field if exists)
-                    templateInfo.put("version", "v" + (task.getFormConfig().getUpdatedAt() != null ? 
-                        task.getFormConfig().getUpdatedAt().toString().substring(0, 10) : "1.0"));
-                }
-
-                // Update latest_annotation_version and last_modified_time
-                Integer version = annotation.getVersion();
-                if (version == null) {
-                    version = 1; // Default to 1 if version is null
-                }
-                archive.put("latest_annotation_version", "v" + version.toString());
-                archive.put("last_modified_time", LocalDateTime.now().toString());
-                
-                return archive;
-            });
-            
-            if (success) {
-                logger.info("=== updateArchiveForAnnotation SUCCESS ===");
-            } else {
-                logger.error("=== updateArchiveForAnnotation FAILED: updateArchiveWithLock returned false ===");
-            }
-        } catch (Exception e) {
-            logger.error("=== updateArchiveForAnnotation EXCEPTION ===", e);
-            logger.error("Failed to update archive for annotation: {}", e.getMessage(), e);
-            // Don't fail submission, but log the error
-        }
-    }
-
-    /**
-     * 使用文件锁安全地更新文档存档（处理并发写入）
-     * @param documentId 文档ID
-     * @param updateFunction 更新函数，接收当前存档并返回更新后的存档
-     * @return 是否更新成功
-     */
-    private boolean updateArchiveWithLock(Long documentId, java.util.function.Function<ObjectNode, ObjectNode> updateFunction) {
-        // Use the same path format as DocumentController for consistency
-        Path archivePath = Paths.get("./uploads/documents", documentId + "_archive.json");
-        File archiveFile = archivePath.toFile();
-        
-        logger.info("=== updateArchiveWithLock START ===");
-        logger.info("Document ID: {}, Archive path: {}, exists: {}, size: {}", 
-                   documentId, archivePath.toAbsolutePath(), archiveFile.exists(), archiveFile.length());
-        
-        // 确保目录存在
-        try {
-            if (archiveFile.getParentFile() != null && !archiveFile.getParentFile().exists()) {
-                boolean created = archiveFile.getParentFile().mkdirs();
-                logger.info("Created directory: {}", created);
-            }
-        } catch (Exception e) {
-            logger.error("Failed to create archive directory: {}", e.getMessage(), e);
-            return false;
-        }
-
-        FileLock lock = null;
-        FileChannel channel = null;
-        RandomAccessFile raf = null;
-        
-        try {
-            // 使用 RandomAccessFile 和 FileChannel 来获取文件锁
-            raf = new RandomAccessFile(archiveFile, "rw");
-            channel = raf.getChannel();
-            
-            // 尝试获取独占锁，最多等待5秒
-            int maxRetries = 50;
-            int retryCount = 0;
-            while (retryCount < maxRetries) {
-                lock = channel.tryLock();
-                if (lock != null) {
-                    break;
-                }
-                // 等待100ms后重试
-                Thread.sleep(100);
-                retryCount++;
-            }
-            
-            if (lock == null) {
-                logger.error("Failed to acquire file lock after {} retries", maxRetries);
-                return false;
-            }
-            
-            // 读取现有存档
-            ObjectNode archive = JsonNodeFactory.instance.objectNode();
-            if (archiveFile.exists() && archiveFile.length() > 0) {
-                try {
-                    // Need to read from RandomAccessFile since we have a lock on it
-                    raf.seek(0);
-                    byte[] bytes = new byte[(int) raf.length()];
-                    raf.readFully(bytes);
-                    String content = new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
-                    if (!content.trim().isEmpty()) {
-                        JsonNode temp = objectMapper.readTree(content);
-                        if (temp != null && !temp.isMissingNode() && temp instanceof ObjectNode) {
-                            archive = (ObjectNode) temp;
-                            logger.info("Loaded existing archive with {} fields", archive.size());
-                        } else {
-                            logger.warn("Archive file contains invalid JSON, creating new archive");
-                            archive = JsonNodeFactory.instance.objectNode();
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.error("Failed to parse existing archive, creating new one: {}", e.getMessage(), e);
-                    // Continue with empty archive
-                    archive = JsonNodeFactory.instance.objectNode();
-                }
-            } else {
-                logger.info("Creating new archive file (file doesn't exist or is empty)");
-            }
-            
-            // 应用更新函数
-            archive = updateFunction.apply(archive);
-            logger.info("Archive after update has {} fields", archive.size());
-            
-            // 先关闭RandomAccessFile和释放锁，然后再写入文件
-            if (raf != null) {
-                try {
-                    raf.close();
-                } catch (Exception e) {
-                    logger.error("Failed to close RandomAccessFile: {}", e.getMessage(), e);
-                }
-            }
-            if (channel != null) {
-                try {
-                    channel.close();
-                } catch (Exception e) {
-                    logger.error("Failed to close channel: {}", e.getMessage(), e);
-                }
-            }
-            if (lock != null) {
-                try {
-                    lock.release();
-                } catch (Exception e) {
-                    logger.error("Failed to release lock: {}", e.getMessage(), e);
-                }
-            }
-            // Set to null to prevent releasing again in finally block
-            lock = null;
-            channel = null;
-            raf = null;
-            
-            // 写回文件（使用临时文件确保原子性）
-            Path tempPath = Paths.get(archivePath.toString() + ".tmp");
-            File tempFile = tempPath.toFile();
-            
-            logger.info("Writing to temp file: {}", tempPath.toAbsolutePath());
-            // Ensure parent directory exists
-            if (tempFile.getParentFile() != null && !tempFile.getParentFile().exists()) {
-                tempFile.getParentFile().mkdirs();
-            }
-            // Convert to JSON string first, then write with UTF-8 encoding to ensure Unicode support
-            String jsonString = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(archive);
-            Files.write(tempPath, jsonString.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-            logger.info("Temp file written, size: {}", tempFile.length());
-            
-            // 验证临时文件是否成功写入
-            if (!tempFile.exists() || tempFile.length() == 0) {
-                logger.error("Temp file was not created or is empty!");
-                if (tempFile.exists()) {
-                    tempFile.delete();
-                }
-                return false;
-            }
-            
-            // 原子性地替换原文件
-            if (archiveFile.exists()) {
-                boolean deleted = archiveFile.delete();
-                logger.info("Deleted old archive file: {}", deleted);
-                if (!deleted) {
-                    logger.error("Failed to delete old archive file!");
-                    // Try to delete temp file
-                    if (tempFile.exists()) {
-                        tempFile.delete();
-                    }
-                    return false;
-                }
-            }
-            
-            // Move temp file to archive file
-            try {
-                Files.move(tempPath, archivePath, java.nio.file.StandardCopyOption.ATOMIC_MOVE, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                logger.info("Moved temp file to archive file");
-            } catch (Exception e) {
-                logger.error("Failed to move temp file: {}", e.getMessage(), e);
-                // Clean up temp file
-                if (tempFile.exists()) {
-                    tempFile.delete();
-                }
-                return false;
-            }
-            
-            // 验证文件是否成功写入
-            File finalFile = archivePath.toFile();
-            if (finalFile.exists() && finalFile.length() > 0) {
-                logger.info("=== updateArchiveWithLock SUCCESS === Final file size: {}", finalFile.length());
-                return true;
-            } else {
-                logger.error("=== updateArchiveWithLock FAILED: File not created or empty ===");
-                return false;
-            }
-            
-        } catch (Exception e) {
-            logger.error("Failed to update archive with lock: {}", e.getMessage(), e);
-            return false;
-        } finally {
-            // 释放锁和资源
-            if (lock != null) {
-                try {
-                    lock.release();
-                } catch (Exception e) {
-                    logger.error("Failed to release lock: {}", e.getMessage(), e);
-                }
-            }
-            if (channel != null) {
-                try {
-                    channel.close();
-                } catch (Exception e) {
-                    logger.error("Failed to close channel: {}", e.getMessage(), e);
-                }
-            }
-            if (raf != null) {
-                try {
-                    raf.close();
-                } catch (Exception e) {
-                    logger.error("Failed to close RandomAccessFile: {}", e.getMessage(), e);
-                }
-            }
-        }
-    }
-
     /**
      * 获取文档的标注档案内容
      */
@@ -1627,40 +1026,7 @@ public class AnnotationController {
                     }
 
                     JsonNode archive = objectMapper.readTree(archiveFile);
-                    JsonNode annotationRecords = archive.path("annotation_records");
-                    
-                    if (annotationRecords.isMissingNode() || !annotationRecords.isObject()) {
-                        conflictMap.put(documentId, 0);
-                        continue;
-                    }
-
-                    int conflictCount = 0;
-                    Iterator<String> fieldNames = annotationRecords.fieldNames();
-                    while (fieldNames.hasNext()) {
-                        String fieldName = fieldNames.next();
-                        JsonNode entries = annotationRecords.path(fieldName);
-                        
-                        if (!entries.isArray() || entries.size() < 2) {
-                            continue;
-                        }
-
-                        Set<String> uniqueValues = new HashSet<>();
-                        for (int i = 0; i < entries.size(); i++) {
-                            JsonNode entry = entries.get(i);
-                            if (entry == null) continue;
-                            
-                            JsonNode annotationContent = entry.path("annotation_content");
-                            String value = annotationContent.isTextual() ? annotationContent.asText() : 
-                                          annotationContent.toString();
-                            uniqueValues.add(value);
-                        }
-
-                        if (uniqueValues.size() > 1) {
-                            conflictCount++;
-                        }
-                    }
-                    
-                    conflictMap.put(documentId, conflictCount);
+                    conflictMap.put(documentId, documentArchiveService.countConflicts(archive));
                 } catch (Exception e) {
                     logger.warn("Failed to get conflicts for document {}: {}", documentId, e.getMessage());
                     conflictMap.put(documentId, 0);
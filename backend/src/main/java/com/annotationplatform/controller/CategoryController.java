@@ -4,19 +4,19 @@ import com.annotationplatform.entity.Category;
 import com.annotationplatform.entity.User;
 import com.annotationplatform.repository.CategoryRepository;
 import com.annotationplatform.repository.DocumentRepository;
-import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.CategoryTreeService;
+import com.annotationplatform.utils.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/categories")
@@ -30,18 +30,18 @@ public class CategoryController {
     private DocumentRepository documentRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private CategoryTreeService categoryTreeService;
 
     @GetMapping
     public ResponseEntity<?> getCategories() {
         try {
-            List<Category> rootCategories = categoryRepository.findRootCategories();
+            CategoryTreeService.CategoryTreeSnapshot snapshot = categoryTreeService.getTree();
 
-            List<Map<String, Object>> categoryTree = rootCategories.stream()
-                    .map(this::buildCategoryTree)
-                    .collect(Collectors.toList());
-
-            return ResponseEntity.ok(Map.of("categories", categoryTree));
+            // A matching If-None-Match is answered with 304 by Spring MVC; no-cache makes clients revalidate
+            return ResponseEntity.ok()
+                    .eTag(snapshot.getETag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(Map.of("categories", snapshot.getCategories()));
 
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -52,7 +52,7 @@ public class CategoryController {
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> createCategory(@RequestBody Map<String, Object> request,
-                                           Authentication authentication) {
+                                           @CurrentUser User user) {
         try {
             String name = (String) request.get("name");
             String description = (String) request.get("description");
@@ -63,12 +63,9 @@ public class CategoryController {
             }
 
             // Get current user
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             // Check if parent exists
             Category parent = null;
@@ -93,6 +90,7 @@ public class CategoryController {
             category.setCreatedBy(user);
 
             Category savedCategory = categoryRepository.save(category);
+            categoryTreeService.invalidate();
 
             return ResponseEntity.ok(Map.of(
                 "message", "分类创建成功",
@@ -134,6 +132,7 @@ public class CategoryController {
             }
 
             Category savedCategory = categoryRepository.save(category);
+            categoryTreeService.invalidate();
 
             return ResponseEntity.ok(Map.of(
                 "message", "分类更新成功",
@@ -169,6 +168,7 @@ public class CategoryController {
             }
 
             categoryRepository.delete(category);
+            categoryTreeService.invalidate();
 
             return ResponseEntity.ok(Map.of("message", "分类删除成功"));
 
@@ -180,6 +180,7 @@ public class CategoryController {
 
     @GetMapping("/{id}/stats")
     @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getCategoryStats(@PathVariable Long id) {
         try {
             Optional<Category> categoryOpt = categoryRepository.findById(id);
@@ -202,21 +203,6 @@ public class CategoryController {
         }
     }
 
-    private Map<String, Object> buildCategoryTree(Category category) {
-        Map<String, Object> map = convertToMap(category);
-
-        if (!category.getChildren().isEmpty()) {
-            List<Map<String, Object>> children = category.getChildren().stream()
-                    .map(this::buildCategoryTree)
-                    .collect(Collectors.toList());
-            map.put("children", children);
-        } else {
-            map.put("children", List.of());
-        }
-
-        return map;
-    }
-
     private Map<String, Object> convertToMap(Category category) {
         Map<String, Object> map = new HashMap<>();
         map.put("id", category.getId());
@@ -7,10 +7,15 @@ import com.annotationplatform.entity.Folder;
 import com.annotationplatform.entity.DocumentType;
 import com.annotationplatform.repository.DocumentRepository;
 import com.annotationplatform.repository.FolderRepository;
-import com.annotationplatform.repository.UserRepository;
 import com.annotationplatform.repository.CategoryRepository;
 import com.annotationplatform.repository.DocumentTypeRepository;
 import com.annotationplatform.service.FolderService;
+import com.annotationplatform.service.UserDetailsImpl;
+import com.annotationplatform.utils.ChecksumUtils;
+import com.annotationplatform.utils.CurrentUser;
+import com.annotationplatform.utils.FlightEvents;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -22,7 +27,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -33,13 +37,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RestController
@@ -50,9 +53,6 @@ public class DocumentController {
     @Autowired
     private DocumentRepository documentRepository;
 
-    @Autowired
-    private UserRepository userRepository;
-
     @Autowired
     private CategoryRepository categoryRepository;
 
@@ -65,6 +65,9 @@ public class DocumentController {
     @Autowired
     private FolderService folderService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private static final String UPLOAD_DIR = "./uploads/documents/";
     private static final long MAX_FILE_SIZE = 50 * 1024 * 1024; // 50MB
 
@@ -75,7 +78,7 @@ public class DocumentController {
                                            @RequestParam(value = "categoryId", required = false) Long categoryId,
                                            @RequestParam(value = "folderPath", required = false) String folderPath,
                                            @RequestParam(value = "folderId", required = false) Long folderId,
-                                           Authentication authentication) {
+                                           @CurrentUser User user) {
         Path filePath = null;
         try {
             // Log upload request for debugging
@@ -106,12 +109,9 @@ public class DocumentController {
             }
 
             // Get current user
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             // Get category if provided
             Category category = null;
@@ -148,8 +148,14 @@ public class DocumentController {
             
             // Calculate checksum from input stream to avoid loading entire file into memory
             String checksum;
+            FlightEvents.UploadIngestEvent flightEvent = new FlightEvents.UploadIngestEvent();
+            flightEvent.begin();
+            flightEvent.size = file.getSize();
+            long hashStart = System.nanoTime();
             try (InputStream inputStream = file.getInputStream()) {
-                checksum = calculateChecksumFromStream(inputStream);
+                checksum = ChecksumUtils.sha256Hex(inputStream);
+                flightEvent.hashTime = System.nanoTime() - hashStart;
+                meterRegistry.timer("annotation.upload.hash").record(flightEvent.hashTime, TimeUnit.NANOSECONDS);
             } catch (IOException e) {
                 System.out.println("UPLOAD ERROR: Failed to read file for checksum calculation: " + e.getMessage());
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -170,6 +176,8 @@ public class DocumentController {
                         response.put("message", "文件已存在");
                         response.put("document", convertToMap(existingDoc));
                         response.put("documentId", existingDoc.getId());
+                        flightEvent.dedupHit = true;
+                        flightEvent.commit();
                         return ResponseEntity.ok(response);
                     }
                 }
@@ -181,9 +189,11 @@ public class DocumentController {
             // Save file to disk first
             filePath = uploadPath.resolve(filename);
             System.out.println("UPLOAD: Saving file to: " + filePath.toString());
+            long storeStart = System.nanoTime();
             try (InputStream fileInputStream = file.getInputStream()) {
                 Files.copy(fileInputStream, filePath, StandardCopyOption.REPLACE_EXISTING);
             }
+            recordUploadMetrics(file.getSize(), System.nanoTime() - storeStart, System.nanoTime() - hashStart);
             System.out.println("UPLOAD: File saved successfully");
 
             // Create document record
@@ -217,6 +227,7 @@ public class DocumentController {
             // Flush to ensure data is persisted immediately
             documentRepository.flush();
             System.out.println("UPLOAD: Document saved successfully with ID: " + savedDocument.getId());
+            flightEvent.commit();
 
             Map<String, Object> response = new HashMap<>();
             response.put("message", "文件上传成功");
@@ -255,8 +266,24 @@ public class DocumentController {
         }
     }
 
+    // Upload size, disk write time and throughput (hash + write) for the Prometheus endpoint
+    private void recordUploadMetrics(long bytes, long storeNanos, long totalNanos) {
+        meterRegistry.timer("annotation.upload.store").record(storeNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("annotation.upload.size")
+            .baseUnit("bytes")
+            .register(meterRegistry)
+            .record(bytes);
+        if (totalNanos > 0) {
+            DistributionSummary.builder("annotation.upload.throughput")
+                .baseUnit("bytes.per.second")
+                .register(meterRegistry)
+                .record(bytes * 1_000_000_000d / totalNanos);
+        }
+    }
+
     @GetMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getDocuments(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
@@ -369,11 +396,9 @@ public class DocumentController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
     public ResponseEntity<?> updateDocumentCategory(@PathVariable Long id,
                                                    @RequestBody Map<String, Object> request,
-                                                   Authentication authentication) {
+                                                   @CurrentUser UserDetailsImpl principal) {
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (principal == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
 
@@ -385,8 +410,8 @@ public class DocumentController {
             Document document = documentOpt.get();
 
             // Check if user can modify this document (owner or admin)
-            boolean isAdmin = userOpt.get().getRole().name().equals("ADMIN");
-            boolean isOwner = document.getUploadedBy().getId().equals(userOpt.get().getId());
+            boolean isAdmin = principal.getRole() == User.Role.ADMIN;
+            boolean isOwner = document.getUploadedBy().getId().equals(principal.getId());
             if (!isAdmin && !isOwner) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "无权限修改此文档"));
             }
@@ -420,11 +445,9 @@ public class DocumentController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
     public ResponseEntity<?> updateDocumentType(@PathVariable Long id,
                                                @RequestBody Map<String, Object> request,
-                                               Authentication authentication) {
+                                               @CurrentUser UserDetailsImpl principal) {
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (principal == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
 
@@ -436,8 +459,8 @@ public class DocumentController {
             Document document = documentOpt.get();
 
             // Check if user can modify this document (owner or admin)
-            boolean isAdmin = userOpt.get().getRole().name().equals("ADMIN");
-            boolean isOwner = document.getUploadedBy().getId().equals(userOpt.get().getId());
+            boolean isAdmin = principal.getRole() == User.Role.ADMIN;
+            boolean isOwner = document.getUploadedBy().getId().equals(principal.getId());
             if (!isAdmin && !isOwner) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "无权限修改此文档"));
             }
@@ -471,11 +494,9 @@ public class DocumentController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
     public ResponseEntity<?> updateDocumentPriority(@PathVariable Long id,
                                                    @RequestBody Map<String, Object> request,
-                                                   Authentication authentication) {
+                                                   @CurrentUser UserDetailsImpl principal) {
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (principal == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
 
@@ -487,8 +508,8 @@ public class DocumentController {
             Document document = documentOpt.get();
 
             // Check if user can modify this document (owner or admin)
-            boolean isAdmin = userOpt.get().getRole().name().equals("ADMIN");
-            boolean isOwner = document.getUploadedBy().getId().equals(userOpt.get().getId());
+            boolean isAdmin = principal.getRole() == User.Role.ADMIN;
+            boolean isOwner = document.getUploadedBy().getId().equals(principal.getId());
             if (!isAdmin && !isOwner) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "无权限修改此文档"));
             }
@@ -603,43 +624,6 @@ public class DocumentController {
         return "pdf";
     }
 
-    private String calculateChecksum(byte[] data) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data);
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 algorithm not available", e);
-        }
-    }
-
-    private String calculateChecksumFromStream(InputStream inputStream) throws IOException {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] buffer = new byte[8192]; // 8KB buffer
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                digest.update(buffer, 0, bytesRead);
-            }
-            byte[] hash = digest.digest();
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 algorithm not available", e);
-        }
-    }
-
     @GetMapping("/folders")
     @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
     public ResponseEntity<?> getFolders(@RequestParam(required = false) Long categoryId) {
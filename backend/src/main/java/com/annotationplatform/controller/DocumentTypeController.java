@@ -5,12 +5,11 @@ import com.annotationplatform.entity.FormConfig;
 import com.annotationplatform.entity.User;
 import com.annotationplatform.repository.DocumentTypeRepository;
 import com.annotationplatform.repository.FormConfigRepository;
-import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.utils.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
@@ -31,8 +30,7 @@ public class DocumentTypeController {
     @Autowired
     private FormConfigRepository formConfigRepository;
 
-    @Autowired
-    private UserRepository userRepository;
+    // Redundancy bounds for multi-annotator consensus
 
     @GetMapping
     public ResponseEntity<?> getDocumentTypes(@RequestParam(defaultValue = "true") Boolean activeOnly) {
@@ -76,7 +74,7 @@ public class DocumentTypeController {
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> createDocumentType(@RequestBody Map<String, Object> request,
-                                                Authentication authentication) {
+                                                @CurrentUser User user) {
         try {
             String name = (String) request.get("name");
             String description = (String) request.get("description");
@@ -85,21 +83,15 @@ public class DocumentTypeController {
                 return ResponseEntity.badRequest().body(Map.of("message", "文档类型名称不能为空"));
             }
 
-            // Get current user
-            if (authentication == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "未认证"));
-            }
-
-            String username = authentication.getName();
-            if (username == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户名为空"));
+            Integer requiredAnnotators = parseRequiredAnnotators(request.get("requiredAnnotators"));
+            if (request.get("requiredAnnotators") != null && requiredAnnotators == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "标注人数必须在 " + DocumentType.MIN_REQUIRED_ANNOTATORS + " 到 " + DocumentType.MAX_REQUIRED_ANNOTATORS + " 之间"));
             }
 
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
+            // Current user (entity reference, no lookup)
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "未认证"));
             }
-            User user = userOpt.get();
 
             // Check for duplicate name
             if (documentTypeRepository.existsByName(name.trim())) {
@@ -111,6 +103,7 @@ public class DocumentTypeController {
             documentType.setName(name.trim());
             documentType.setDescription(description != null ? description.trim() : null);
             documentType.setIsActive(true);
+            documentType.setRequiredAnnotators(requiredAnnotators);
             documentType.setCreatedBy(user);
 
             DocumentType savedDocumentType = documentTypeRepository.save(documentType);
@@ -159,6 +152,14 @@ public class DocumentTypeController {
                 documentType.setIsActive(isActive);
             }
 
+            if (request.containsKey("requiredAnnotators")) {
+                Integer requiredAnnotators = parseRequiredAnnotators(request.get("requiredAnnotators"));
+                if (request.get("requiredAnnotators") != null && requiredAnnotators == null) {
+                    return ResponseEntity.badRequest().body(Map.of("message", "标注人数必须在 " + DocumentType.MIN_REQUIRED_ANNOTATORS + " 到 " + DocumentType.MAX_REQUIRED_ANNOTATORS + " 之间"));
+                }
+                documentType.setRequiredAnnotators(requiredAnnotators);
+            }
+
             DocumentType savedDocumentType = documentTypeRepository.save(documentType);
 
             return ResponseEntity.ok(Map.of(
@@ -281,12 +282,25 @@ public class DocumentTypeController {
         }
     }
 
+    private Integer parseRequiredAnnotators(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            int count = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString().trim());
+            return count >= DocumentType.MIN_REQUIRED_ANNOTATORS && count <= DocumentType.MAX_REQUIRED_ANNOTATORS ? count : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     private Map<String, Object> convertToMap(DocumentType documentType) {
         Map<String, Object> map = new HashMap<>();
         map.put("id", documentType.getId());
         map.put("name", documentType.getName());
         map.put("description", documentType.getDescription());
         map.put("isActive", documentType.getIsActive());
+        map.put("requiredAnnotators", documentType.getRequiredAnnotators());
         map.put("createdAt", documentType.getCreatedAt());
         map.put("updatedAt", documentType.getUpdatedAt());
         map.put("formConfigCount", documentType.getFormConfigs().size());
@@ -0,0 +1,83 @@
+package com.annotationplatform.controller;
+
+import com.annotationplatform.service.FlightRecordingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * On-demand JDK Flight Recorder recordings for production diagnosis (admin only).
+ * Dumps are written to the server's jfr.recording.dir and opened with JDK Mission Control.
+ */
+@RestController
+@RequestMapping("/diagnostics/recordings")
+@CrossOrigin(origins = "*", maxAge = 3600)
+@PreAuthorize("hasRole('ADMIN')")
+public class FlightRecordingController {
+
+    @Autowired
+    private FlightRecordingService flightRecordingService;
+
+    @GetMapping
+    public ResponseEntity<?> getStatus() {
+        return ResponseEntity.ok(Map.of("recording", flightRecordingService.getStatus()));
+    }
+
+    /**
+     * Start a bounded recording; settings is "default" (low overhead) or "profile"
+     */
+    @PostMapping("/start")
+    public ResponseEntity<?> start(@RequestBody(required = false) Map<String, Object> request) {
+        try {
+            String settings = request != null && request.get("settings") != null
+                ? request.get("settings").toString() : null;
+            Integer durationMinutes = request != null && request.get("durationMinutes") != null
+                ? Integer.valueOf(request.get("durationMinutes").toString()) : null;
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "记录已开始");
+            response.put("recording", flightRecordingService.start(settings, durationMinutes));
+            return ResponseEntity.ok(response);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "记录时长格式不正确"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Write a snapshot of the running recording to disk without stopping it
+     */
+    @PostMapping("/dump")
+    public ResponseEntity<?> dump() {
+        try {
+            Path file = flightRecordingService.dump();
+            return ResponseEntity.ok(Map.of("message", "记录已导出", "path", file.toString()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "导出记录失败: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<?> stop() {
+        try {
+            Path file = flightRecordingService.stop();
+            return ResponseEntity.ok(Map.of("message", "记录已停止并导出", "path", file.toString()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "导出记录失败: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+}
@@ -2,19 +2,17 @@ package com.annotationplatform.controller;
 
 import com.annotationplatform.entity.Folder;
 import com.annotationplatform.entity.User;
-import com.annotationplatform.repository.UserRepository;
 import com.annotationplatform.service.FolderService;
+import com.annotationplatform.utils.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
@@ -25,8 +23,6 @@ public class FolderController {
     @Autowired
     private FolderService folderService;
 
-    @Autowired
-    private UserRepository userRepository;
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
@@ -47,7 +43,7 @@ public class FolderController {
     @PostMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
     public ResponseEntity<?> createFolder(@RequestBody Map<String, Object> request,
-                                         Authentication authentication) {
+                                         @CurrentUser User user) {
         try {
             String folderName = request.get("name") != null ? request.get("name").toString() : null;
             Long parentId = request.get("parentId") != null
@@ -58,13 +54,12 @@ public class FolderController {
                 return ResponseEntity.badRequest().body(Map.of("message", "文件夹名称不能为空"));
             }
 
-            Optional<User> userOpt = userRepository.findByUsername(authentication.getName());
-            if (userOpt.isEmpty()) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("message", "用户未找到"));
             }
 
-            Folder folder = folderService.createFolder(folderName, parentId, userOpt.get());
+            Folder folder = folderService.createFolder(folderName, parentId, user);
             return ResponseEntity.ok(Map.of(
                     "message", "文件夹创建成功",
                     "folder", convertFolder(folder)
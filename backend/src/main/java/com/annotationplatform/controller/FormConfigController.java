@@ -7,11 +7,10 @@ import com.annotationplatform.entity.User;
 import com.annotationplatform.repository.CategoryRepository;
 import com.annotationplatform.repository.FormConfigRepository;
 import com.annotationplatform.repository.FormFieldRepository;
-import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.utils.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -34,9 +33,6 @@ public class FormConfigController {
     @Autowired
     private CategoryRepository categoryRepository;
 
-    @Autowired
-    private UserRepository userRepository;
-
     @GetMapping
     public ResponseEntity<?> getFormConfigs(@RequestParam(required = false) Long categoryId,
                                            @RequestParam(defaultValue = "true") Boolean activeOnly) {
@@ -95,7 +91,7 @@ public class FormConfigController {
 
     @PostMapping
     public ResponseEntity<?> createFormConfig(@RequestBody Map<String, Object> request,
-                                             Authentication authentication) {
+                                             @CurrentUser User user) {
         try {
             // Log request for debugging
             System.out.println("=== Received form config creation request: " + request);
@@ -140,22 +136,11 @@ public class FormConfigController {
                 }
             }
 
-            // Get current user
-            if (authentication == null) {
+            // Current user (entity reference, no lookup)
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "未认证"));
             }
 
-            String username = authentication.getName();
-            if (username == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户名为空"));
-            }
-
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
-            }
-            User user = userOpt.get();
-
             // Get category if provided
             Category category = null;
             if (categoryId != null) {
@@ -2,7 +2,11 @@ package com.annotationplatform.controller;
 
 import com.annotationplatform.entity.*;
 import com.annotationplatform.repository.*;
+import com.annotationplatform.service.AgreementStatsService;
+import com.annotationplatform.service.ConsensusService;
+import com.annotationplatform.service.UserDetailsImpl;
 import com.annotationplatform.service.WorkflowService;
+import com.annotationplatform.utils.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -10,10 +14,13 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,10 +42,16 @@ public class QualityCheckController {
     private AnnotationRepository annotationRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private WorkflowService workflowService;
 
     @Autowired
-    private WorkflowService workflowService;
+    private ConsensusService consensusService;
+
+    @Autowired
+    private AgreementStatsService agreementStatsService;
+
+    // Widest date range the agreement endpoint will aggregate in one request
+    private static final int MAX_AGREEMENT_RANGE_DAYS = 366;
 
     @GetMapping
     public ResponseEntity<?> getQualityChecks(
@@ -108,22 +121,25 @@ public class QualityCheckController {
 
     @PostMapping("/{id}/resolve")
     public ResponseEntity<?> resolveQualityCheck(@PathVariable Long id,
-                                               @RequestBody Map<String, Object> request) {
+                                               @RequestBody Map<String, Object> request,
+                                               @CurrentUser User user) {
         try {
             String selectedAnnotation = (String) request.get("selectedAnnotation"); // "A" or "B"
             String resolutionNotes = (String) request.get("resolutionNotes");
+            // Per-field decisions for disputed fields; agreed fields are taken from the consensus
+            Object fieldValues = request.get("fieldValues");
 
-            if (selectedAnnotation == null || (!selectedAnnotation.equals("A") && !selectedAnnotation.equals("B"))) {
+            if (fieldValues != null && !(fieldValues instanceof Map)) {
+                return ResponseEntity.badRequest().body(Map.of("message", "争议字段裁决格式错误"));
+            }
+            if (fieldValues == null && (selectedAnnotation == null
+                    || (!selectedAnnotation.equals("A") && !selectedAnnotation.equals("B")))) {
                 return ResponseEntity.badRequest().body(Map.of("message", "请选择要采纳的标注结果"));
             }
 
-            // For now, use a default user (since security is disabled)
-            // In production, this would come from authentication
-            Optional<User> userOpt = userRepository.findById(4L); // Assuming reviewer user ID
-            if (userOpt.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", "系统配置错误"));
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             Optional<QualityCheck> qualityCheckOpt = qualityCheckRepository.findById(id);
             if (qualityCheckOpt.isEmpty()) {
@@ -136,6 +152,25 @@ public class QualityCheckController {
                 return ResponseEntity.badRequest().body(Map.of("message", "此质量检查已处理完成"));
             }
 
+            if (fieldValues != null) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> decisions = (Map<String, Object>) fieldValues;
+                consensusService.resolveDisputedFields(qualityCheck, decisions, user, resolutionNotes);
+
+                qualityCheck.setResolvedBy(user);
+                qualityCheck.setResolutionNotes(resolutionNotes);
+                qualityCheck.setResolvedAt(LocalDateTime.now());
+                qualityCheck.setStatus(QualityCheck.QualityCheckStatus.RESOLVED);
+                qualityCheckRepository.save(qualityCheck);
+
+                workflowService.handleQualityCheckResolution(qualityCheck.getTask(), qualityCheck);
+
+                return ResponseEntity.ok(Map.of(
+                    "message", "质量检查完成",
+                    "qualityCheck", convertQualityCheckToMap(qualityCheck)
+                ));
+            }
+
             // Determine which annotation to approve
             Annotation selectedAnnotationObj;
             Annotation rejectedAnnotationObj;
@@ -190,19 +225,16 @@ public class QualityCheckController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDir) {
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @CurrentUser UserDetailsImpl principal) {
 
         try {
-            // For now, use a default user (since security is disabled)
-            // In production, this would come from authentication
-            Optional<User> userOpt = userRepository.findById(4L); // Assuming reviewer user ID
-            if (userOpt.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", "系统配置错误"));
+            if (principal == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             // Find quality checks for tasks where user is assigned as reviewer
-            List<QualityCheck> allQualityChecks = qualityCheckRepository.findByUserReviewTasks(user.getId());
+            List<QualityCheck> allQualityChecks = qualityCheckRepository.findByUserReviewTasks(principal.getId());
 
             // Manual pagination
             int totalItems = allQualityChecks.size();
@@ -227,6 +259,7 @@ public class QualityCheckController {
     }
 
     @GetMapping("/statistics")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getQualityStatistics() {
         try {
             Map<String, Object> stats = new HashMap<>();
@@ -249,11 +282,89 @@ public class QualityCheckController {
         }
     }
 
+    /**
+     * Inter-annotator agreement (exact match rate, Cohen's and Fleiss' kappa) aggregated from
+     * the per-day statistics rows, grouped by form, field, pair, annotator or day
+     */
+    @GetMapping("/agreement")
+    public ResponseEntity<?> getAgreementMetrics(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) Long formConfigId,
+            @RequestParam(required = false) String fieldName,
+            @RequestParam(required = false) Long annotatorId,
+            @RequestParam(defaultValue = "FORM") String groupBy) {
+        try {
+            AgreementStatsService.GroupBy grouping;
+            LocalDate toDate;
+            LocalDate fromDate;
+            try {
+                grouping = AgreementStatsService.GroupBy.valueOf(groupBy.toUpperCase());
+                toDate = to != null ? LocalDate.parse(to) : LocalDate.now();
+                fromDate = from != null ? LocalDate.parse(from) : toDate.minusDays(29);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                return ResponseEntity.badRequest().body(Map.of("message", "查询参数格式错误"));
+            }
+            if (fromDate.isAfter(toDate) || fromDate.plusDays(MAX_AGREEMENT_RANGE_DAYS).isBefore(toDate)) {
+                return ResponseEntity.badRequest().body(Map.of("message", "日期范围无效，最多查询" + MAX_AGREEMENT_RANGE_DAYS + "天"));
+            }
+
+            AgreementStatsService.AgreementReport report = agreementStatsService.getReport(
+                fromDate, toDate, formConfigId, fieldName, annotatorId, grouping);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("from", report.getFromDate());
+            response.put("to", report.getToDate());
+            response.put("groupBy", report.getGroupBy());
+            response.put("overall", convertAgreementGroupToMap(report.getOverall()));
+            response.put("groups", report.getGroups().stream()
+                .map(this::convertAgreementGroupToMap)
+                .collect(Collectors.toList()));
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "获取一致性指标失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Recompute agreement statistics from all existing quality checks
+     */
+    @PostMapping("/agreement/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildAgreementMetrics() {
+        try {
+            int processed = agreementStatsService.rebuild();
+            return ResponseEntity.ok(Map.of(
+                "message", "一致性统计已重建",
+                "qualityChecks", processed
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "重建一致性统计失败: " + e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> convertAgreementGroupToMap(AgreementStatsService.AgreementGroup group) {
+        Map<String, Object> map = new HashMap<>(group.getKey());
+        map.put("comparisons", group.getComparisons());
+        map.put("agreements", group.getAgreements());
+        map.put("exactMatchRate", group.getExactMatchRate());
+        map.put("cohenKappa", group.getCohenKappa());
+        map.put("fleissKappa", group.getFleissKappa());
+        map.put("documentComparisons", group.getDocumentComparisons());
+        map.put("documentExactMatchRate", group.getDocumentExactMatchRate());
+        return map;
+    }
+
     private Map<String, Object> convertQualityCheckToMap(QualityCheck qualityCheck) {
         Map<String, Object> map = new HashMap<>();
         map.put("id", qualityCheck.getId());
         map.put("comparisonResult", qualityCheck.getComparisonResult());
         map.put("conflictFields", qualityCheck.getConflictFields());
+        map.put("annotatorCount", qualityCheck.getAnnotatorCount() != null ? qualityCheck.getAnnotatorCount() : 2);
+        map.put("consensusData", qualityCheck.getConsensusData());
         map.put("resolutionNotes", qualityCheck.getResolutionNotes());
         map.put("status", qualityCheck.getStatus());
         map.put("createdAt", qualityCheck.getCreatedAt());
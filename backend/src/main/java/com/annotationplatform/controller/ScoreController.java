@@ -3,12 +3,16 @@ package com.annotationplatform.controller;
 import com.annotationplatform.entity.ScoreHistory;
 import com.annotationplatform.entity.User;
 import com.annotationplatform.service.ScoreService;
+import com.annotationplatform.utils.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/scores")
@@ -39,12 +43,11 @@ public class ScoreController {
      * 获取当前用户的积分统计
      */
     @GetMapping("/stats")
-    public ResponseEntity<ScoreService.UserScoreStats> getUserScoreStats() {
+    public ResponseEntity<ScoreService.UserScoreStats> getUserScoreStats(@CurrentUser User currentUser) {
         try {
-            // For now, use a default user (since security is disabled)
-            // In production, this would come from authentication
-            User currentUser = userRepository.findById(2L) // Assuming annotator user
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
+            if (currentUser == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
 
             ScoreService.UserScoreStats stats = scoreService.getUserScoreStats(currentUser);
             return ResponseEntity.ok(stats);
@@ -57,17 +60,17 @@ public class ScoreController {
      * 获取当前用户的积分历史
      */
     @GetMapping("/history")
-    public ResponseEntity<Page<ScoreHistory>> getUserScoreHistory(
+    public ResponseEntity<Page<Map<String, Object>>> getUserScoreHistory(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @CurrentUser User currentUser) {
         try {
-            // For now, use a default user (since security is disabled)
-            // In production, this would come from authentication
-            User currentUser = userRepository.findById(2L) // Assuming annotator user
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
+            if (currentUser == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
 
             Page<ScoreHistory> history = scoreService.getUserScoreHistory(currentUser, page, size);
-            return ResponseEntity.ok(history);
+            return ResponseEntity.ok(history.map(this::convertScoreHistoryToMap));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -95,4 +98,21 @@ public class ScoreController {
         }
     }
 
+
+    // Related entities are lazy proxies; only their ids are exposed
+    private Map<String, Object> convertScoreHistoryToMap(ScoreHistory history) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", history.getId());
+        map.put("userId", history.getUser().getId());
+        map.put("scoreChange", history.getScoreChange());
+        map.put("previousScore", history.getPreviousScore());
+        map.put("newScore", history.getNewScore());
+        map.put("scoreType", history.getScoreType());
+        map.put("description", history.getDescription());
+        map.put("taskId", history.getTask() != null ? history.getTask().getId() : null);
+        map.put("annotationId", history.getAnnotation() != null ? history.getAnnotation().getId() : null);
+        map.put("qualityCheckId", history.getQualityCheck() != null ? history.getQualityCheck().getId() : null);
+        map.put("createdAt", history.getCreatedAt());
+        return map;
+    }
 }
@@ -2,8 +2,12 @@ package com.annotationplatform.controller;
 
 import com.annotationplatform.entity.*;
 import com.annotationplatform.repository.*;
+import com.annotationplatform.service.BatchDocumentService;
 import com.annotationplatform.service.TaskAssignmentService;
+import com.annotationplatform.service.TaskPurgeService;
+import com.annotationplatform.service.UserDetailsImpl;
 import com.annotationplatform.service.WorkflowService;
+import com.annotationplatform.utils.CurrentUser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -17,14 +21,20 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -59,13 +69,27 @@ public class TaskController {
     @Autowired
     private TaskAssignmentService taskAssignmentService;
 
+    @Autowired
+    private TaskPurgeService taskPurgeService;
+
     @Autowired
     private WorkflowService workflowService;
 
     @Autowired
     private AnnotationRepository annotationRepository;
 
+    @Autowired
+    private BatchDocumentRepository batchDocumentRepository;
+
+    @Autowired
+    private BatchDocumentService batchDocumentService;
+
     private final ObjectMapper objectMapper;
+
+    private static final int MAX_WORKFLOW_STATUS_BATCH = 500;
+
+    private static final int MAX_BULK_ASSIGNMENT_PAIRS = 5000;
+
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(TaskController.class);
     
     public TaskController() {
@@ -141,7 +165,7 @@ public class TaskController {
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> createTask(@RequestBody Map<String, Object> request,
-                                       Authentication authentication) {
+                                       @CurrentUser User user) {
         try {
             String title = (String) request.get("title");
             String description = (String) request.get("description");
@@ -162,12 +186,9 @@ public class TaskController {
             }
 
             // Get current user
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             // Validate document exists and is processed
             Optional<Document> documentOpt = documentRepository.findById(documentId);
@@ -260,7 +281,7 @@ public class TaskController {
     @PostMapping("/batch")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> createBatchTasks(@RequestBody Map<String, Object> request,
-                                            Authentication authentication) {
+                                            @CurrentUser User user) {
         try {
             String batchName = (String) request.get("batchName");
             
@@ -294,12 +315,9 @@ public class TaskController {
             }
 
             // Get current user
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             // Generate batch ID
             String batchId = "BATCH_" + System.currentTimeMillis() + "_" + user.getId();
@@ -336,10 +354,9 @@ public class TaskController {
 
             List<String> errors = new ArrayList<>();
             int skipCount = 0;
-            List<Map<String, Object>> allDocuments = new ArrayList<>();
-            Document firstDocument = null;
+            List<Document> allDocuments = new ArrayList<>();
 
-            // Collect all document information
+            // Collect all documents of the batch
             for (Long documentId : documentIds) {
                 try {
                     // Validate document exists
@@ -357,36 +374,7 @@ public class TaskController {
                         continue;
                     }
 
-                    // Save first document for the parent task
-                    if (firstDocument == null) {
-                        firstDocument = document;
-                    }
-
-                    // Build document index for this document
-                    Map<String, Object> documentIndex = new HashMap<>();
-                    documentIndex.put("id", document.getId());
-                    documentIndex.put("filename", document.getFilename());
-                    documentIndex.put("originalFilename", document.getOriginalFilename());
-                    documentIndex.put("filePath", document.getFilePath());
-                    documentIndex.put("fileSize", document.getFileSize());
-                    documentIndex.put("mimeType", document.getMimeType());
-                    documentIndex.put("checksum", document.getChecksum());
-                    documentIndex.put("folderPath", document.getFolderPath());
-                    if (document.getFolder() != null) {
-                        documentIndex.put("folderId", document.getFolder().getId());
-                    }
-                    documentIndex.put("status", document.getStatus() != null ? document.getStatus().name() : null);
-                    documentIndex.put("priority", document.getPriority() != null ? document.getPriority().name() : "NORMAL");
-                    if (document.getCategory() != null) {
-                        documentIndex.put("categoryId", document.getCategory().getId());
-                    }
-                    if (document.getDocumentType() != null) {
-                        documentIndex.put("documentTypeId", document.getDocumentType().getId());
-                    }
-                    documentIndex.put("createdAt", document.getCreatedAt());
-                    documentIndex.put("savedAt", LocalDateTime.now());
-                    
-                    allDocuments.add(documentIndex);
+                    allDocuments.add(document);
                 } catch (Exception e) {
                     e.printStackTrace();
                     String errorMsg = e.getMessage();
@@ -401,28 +389,28 @@ public class TaskController {
                 }
             }
 
-            // Create a single parent task with all documents information
+            // Create a single parent task; member documents are stored in batch_documents
             Task parentTask = null;
-            if (firstDocument != null && !allDocuments.isEmpty()) {
+            if (!allDocuments.isEmpty()) {
                 try {
                     parentTask = new Task();
                     parentTask.setTitle(batchName.trim());
-                    parentTask.setDocument(firstDocument); // Use first document as placeholder (required field)
+                    parentTask.setDocument(allDocuments.get(0)); // Use first document as placeholder (required field)
                     parentTask.setCategory(category);
                     parentTask.setFormConfig(formConfig);
                     parentTask.setBatchId(batchId);
                     parentTask.setBatchName(batchName.trim());
                     parentTask.setCreatedBy(user);
 
-                    // Save all documents information as JSON array in documentIndex
+                    // Keep only a compact summary in documentIndex
                     Map<String, Object> batchDocumentIndex = new HashMap<>();
-                    batchDocumentIndex.put("documents", allDocuments);
                     batchDocumentIndex.put("totalCount", allDocuments.size());
                     batchDocumentIndex.put("createdAt", LocalDateTime.now());
                     
                     parentTask.setDocumentIndex(objectMapper.writeValueAsString(batchDocumentIndex));
 
                     parentTask = taskRepository.save(parentTask);
+                    batchDocumentService.createBatchDocuments(parentTask, allDocuments);
                 } catch (Exception e) {
                     e.printStackTrace();
                     String errorMsg = e.getMessage();
@@ -480,80 +468,11 @@ public class TaskController {
 
             // Get the parent task (should be only one now)
             Task parentTask = tasks.get(0);
-            String batchName = parentTask.getBatchName();
 
-            // Extract documents from documentIndex
-            List<Map<String, Object>> documentList = new ArrayList<>();
-            if (parentTask.getDocumentIndex() != null && !parentTask.getDocumentIndex().isEmpty()) {
-                try {
-                    Map<String, Object> documentIndexMap = objectMapper.readValue(
-                        parentTask.getDocumentIndex(), 
-                        new TypeReference<Map<String, Object>>() {}
-                    );
-                    
-                    // Check if it's the new format with documents array
-                    @SuppressWarnings("unchecked")
-                    List<Map<String, Object>> documents = (List<Map<String, Object>>) documentIndexMap.get("documents");
-                    if (documents != null) {
-                        // New format: documents array
-                        for (Map<String, Object> doc : documents) {
-                            Map<String, Object> docMap = new HashMap<>();
-                            String folderPath = (String) doc.get("folderPath");
-                            String filename = (String) doc.get("originalFilename");
-                            if (filename == null) {
-                                filename = (String) doc.get("filename");
-                            }
-                            
-                            // Build absolute path
-                            String absolutePath;
-                            if (folderPath != null && !folderPath.isEmpty()) {
-                                absolutePath = folderPath + "/" + filename;
-                            } else {
-                                absolutePath = "/" + filename;
-                            }
-                            
-                            docMap.put("documentId", doc.get("id"));
-                            docMap.put("absolutePath", absolutePath);
-                            docMap.put("filename", filename);
-                            docMap.put("folderPath", folderPath);
-                            docMap.put("fileSize", doc.get("fileSize"));
-                            docMap.put("mimeType", doc.get("mimeType"));
-                            documentList.add(docMap);
-                        }
-                    } else {
-                        // Old format: single document
-                        String folderPath = (String) documentIndexMap.get("folderPath");
-                        String filename = (String) documentIndexMap.get("originalFilename");
-                        if (filename == null) {
-                            filename = (String) documentIndexMap.get("filename");
-                        }
-                        
-                        String absolutePath;
-                        if (folderPath != null && !folderPath.isEmpty()) {
-                            absolutePath = folderPath + "/" + filename;
-                        } else {
-                            absolutePath = "/" + filename;
-                        }
-                        
-                        Map<String, Object> docMap = new HashMap<>();
-                        docMap.put("documentId", documentIndexMap.get("id"));
-                        docMap.put("absolutePath", absolutePath);
-                        docMap.put("filename", filename);
-                        docMap.put("folderPath", folderPath);
-                        docMap.put("fileSize", documentIndexMap.get("fileSize"));
-                        docMap.put("mimeType", documentIndexMap.get("mimeType"));
-                        documentList.add(docMap);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    // Fallback to document filename
-                    Map<String, Object> docMap = new HashMap<>();
-                    docMap.put("documentId", parentTask.getDocument().getId());
-                    docMap.put("absolutePath", parentTask.getDocument().getOriginalFilename());
-                    docMap.put("filename", parentTask.getDocument().getOriginalFilename());
-                    documentList.add(docMap);
-                }
-            } else {
+            List<Map<String, Object>> documentList = batchDocumentService.getAllBatchDocuments(parentTask).stream()
+                .map(this::convertBatchDocumentToMap)
+                .collect(Collectors.toList());
+            if (documentList.isEmpty()) {
                 // Fallback to document filename
                 Map<String, Object> docMap = new HashMap<>();
                 docMap.put("documentId", parentTask.getDocument().getId());
@@ -564,10 +483,11 @@ public class TaskController {
 
             Map<String, Object> response = new HashMap<>();
             response.put("batchId", batchId);
-            response.put("batchName", batchName);
+            response.put("batchName", parentTask.getBatchName());
             response.put("taskId", parentTask.getId());
             response.put("documents", documentList);
             response.put("totalCount", documentList.size());
+            response.put("summary", batchDocumentService.getBatchSummary(batchId));
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -577,25 +497,104 @@ public class TaskController {
         }
     }
 
+    @GetMapping("/batch/{batchId}/documents")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
+    public ResponseEntity<?> getBatchDocuments(@PathVariable String batchId,
+                                               @RequestParam(defaultValue = "0") int page,
+                                               @RequestParam(defaultValue = "20") int size) {
+        try {
+            List<Task> tasks = taskRepository.findByBatchId(batchId);
+            if (tasks.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            Task parentTask = tasks.get(0);
+
+            Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "sortOrder"));
+            Page<BatchDocument> documentPage = batchDocumentService.getBatchDocuments(parentTask, pageable);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("batchId", batchId);
+            response.put("batchName", parentTask.getBatchName());
+            response.put("taskId", parentTask.getId());
+            response.put("documents", documentPage.getContent().stream()
+                .map(this::convertBatchDocumentToMap)
+                .collect(Collectors.toList()));
+            response.put("currentPage", documentPage.getNumber());
+            response.put("totalItems", documentPage.getTotalElements());
+            response.put("totalPages", documentPage.getTotalPages());
+            response.put("summary", batchDocumentService.getBatchSummary(batchId));
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "获取批次文档失败: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/batch/{batchId}/documents/{documentId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> updateBatchDocument(@PathVariable String batchId,
+                                                 @PathVariable Long documentId,
+                                                 @RequestBody Map<String, Object> request) {
+        try {
+            List<Task> tasks = taskRepository.findByBatchId(batchId);
+            if (tasks.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            BatchDocument.BatchDocumentStatus status = null;
+            if (request.get("status") != null) {
+                try {
+                    status = BatchDocument.BatchDocumentStatus.valueOf(request.get("status").toString().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().body(Map.of("message", "无效的文档状态"));
+                }
+            }
+
+            User assignee = null;
+            if (request.get("assigneeId") != null) {
+                Optional<User> assigneeOpt = userRepository.findById(Long.valueOf(request.get("assigneeId").toString()));
+                if (assigneeOpt.isEmpty()) {
+                    return ResponseEntity.badRequest().body(Map.of("message", "用户不存在"));
+                }
+                assignee = assigneeOpt.get();
+            }
+
+            Integer progress = request.get("progress") != null ?
+                Integer.valueOf(request.get("progress").toString()) : null;
+
+            Optional<BatchDocument> updated = batchDocumentService.updateBatchDocument(
+                tasks.get(0), documentId, status, assignee, progress);
+            if (updated.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            return ResponseEntity.ok(Map.of(
+                "message", "批次文档更新成功",
+                "document", convertBatchDocumentToMap(updated.get())
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "更新批次文档失败: " + e.getMessage()));
+        }
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deleteTask(@PathVariable Long id) {
         try {
-            Optional<Task> taskOpt = taskRepository.findById(id);
-            if (taskOpt.isEmpty()) {
+            if (!taskRepository.existsById(id)) {
                 return ResponseEntity.notFound().build();
             }
 
-            Task task = taskOpt.get();
-            
-            // Delete related assignments first (cascade delete should handle this, but explicit is safer)
-            List<TaskAssignment> assignments = taskAssignmentRepository.findByTaskId(id);
-            taskAssignmentRepository.deleteAll(assignments);
-
-            // Delete the task
-            taskRepository.delete(task);
+            // Bulk-delete the task together with assignments, annotations, quality checks and history
+            TaskPurgeService.PurgeJob job = taskPurgeService.purge(List.of(id));
+            if (job.getStatus() == TaskPurgeService.PurgeStatus.FAILED) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(Map.of("message", "删除任务失败: " + job.getError()));
+            }
 
-            return ResponseEntity.ok(Map.of("message", "任务删除成功"));
+            return ResponseEntity.ok(Map.of("message", "任务删除成功", "deletedRows", job.getDeletedRows()));
 
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -632,45 +631,37 @@ public class TaskController {
                 return ResponseEntity.badRequest().body(Map.of("message", "任务ID列表不能为空"));
             }
 
-            int successCount = 0;
-            int failCount = 0;
-            List<String> errors = new ArrayList<>();
+            taskIds = new ArrayList<>(new LinkedHashSet<>(taskIds));
 
-            for (Long taskId : taskIds) {
-                try {
-                    Optional<Task> taskOpt = taskRepository.findById(taskId);
-                    if (taskOpt.isEmpty()) {
-                        errors.add("任务 " + taskId + ": 任务不存在");
-                        failCount++;
-                        continue;
-                    }
+            // Large selections are purged in the background; poll GET /tasks/purge/{jobId} for progress
+            if (taskPurgeService.shouldRunAsync(taskIds.size())) {
+                TaskPurgeService.PurgeJob job = taskPurgeService.purgeAsync(taskIds);
+                Map<String, Object> response = new HashMap<>();
+                response.put("message", "批量删除任务已开始");
+                response.put("async", true);
+                response.put("jobId", job.getId());
+                response.put("totalTasks", job.getTotalTasks());
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            }
 
-                    Task task = taskOpt.get();
-                    
-                    // Delete related assignments first
-                    List<TaskAssignment> assignments = taskAssignmentRepository.findByTaskId(taskId);
-                    if (assignments != null && !assignments.isEmpty()) {
-                    taskAssignmentRepository.deleteAll(assignments);
-                    }
+            Set<Long> existingIds = new HashSet<>(taskRepository.findExistingIds(taskIds));
+            List<String> errors = taskIds.stream()
+                .filter(taskId -> !existingIds.contains(taskId))
+                .map(taskId -> "任务 " + taskId + ": 任务不存在")
+                .collect(Collectors.toList());
 
-                    // Delete the task
-                    taskRepository.delete(task);
-                    successCount++;
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    String errorMsg = e.getMessage();
-                    if (errorMsg == null || errorMsg.isEmpty()) {
-                        errorMsg = e.getClass().getSimpleName();
-                    }
-                    errors.add("任务 " + taskId + ": " + errorMsg);
-                    failCount++;
-                }
+            TaskPurgeService.PurgeJob job = taskPurgeService.purge(new ArrayList<>(existingIds));
+            if (job.getStatus() == TaskPurgeService.PurgeStatus.FAILED) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(Map.of("message", "批量删除任务失败: " + job.getError()));
             }
 
             Map<String, Object> response = new HashMap<>();
             response.put("message", "批量删除任务完成");
-            response.put("successCount", successCount);
-            response.put("failCount", failCount);
+            response.put("async", false);
+            response.put("successCount", job.getDeletedTasks());
+            response.put("failCount", taskIds.size() - job.getDeletedTasks());
+            response.put("deletedRows", job.getDeletedRows());
             if (!errors.isEmpty()) {
                 response.put("errors", errors);
             }
@@ -688,6 +679,32 @@ public class TaskController {
         }
     }
 
+    /**
+     * 后台批量删除的进度
+     */
+    @GetMapping("/purge/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getPurgeProgress(@PathVariable String jobId) {
+        Optional<TaskPurgeService.PurgeJob> jobOpt = taskPurgeService.getJob(jobId);
+        if (jobOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        TaskPurgeService.PurgeJob job = jobOpt.get();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", job.getId());
+        response.put("status", job.getStatus());
+        response.put("totalTasks", job.getTotalTasks());
+        response.put("processedTasks", job.getProcessedTasks());
+        response.put("deletedRows", job.getDeletedRows());
+        response.put("startedAt", job.getStartedAt());
+        response.put("finishedAt", job.getFinishedAt());
+        if (job.getError() != null) {
+            response.put("error", job.getError());
+        }
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<?> getTask(@PathVariable Long id) {
         try {
@@ -699,6 +716,22 @@ public class TaskController {
             Task task = taskOpt.get();
             Map<String, Object> taskMap = convertTaskToMap(task);
 
+            if (task.getBatchId() != null && batchDocumentRepository.existsByBatchId(task.getBatchId())) {
+                taskMap.put("batchSummary", batchDocumentService.getBatchSummary(task.getBatchId()));
+            } else if (task.getDocumentIndex() != null && !task.getDocumentIndex().isEmpty()) {
+                // Document index information (preserved even if document is deleted)
+                try {
+                    Map<String, Object> documentIndexMap = objectMapper.readValue(
+                        task.getDocumentIndex(), 
+                        new TypeReference<Map<String, Object>>() {}
+                    );
+                    taskMap.put("documentIndex", documentIndexMap);
+                } catch (Exception e) {
+                    // If parsing fails, just include the raw string
+                    taskMap.put("documentIndex", task.getDocumentIndex());
+                }
+            }
+
             // Add assignments
             List<TaskAssignment> assignments = taskAssignmentRepository.findByTaskId(id);
             taskMap.put("assignments", assignments.stream().map(this::convertAssignmentToMap));
@@ -859,53 +892,11 @@ public class TaskController {
             }
             Task task = taskOpt.get();
 
-            List<TaskAssignment> createdAssignments = new ArrayList<>();
-            List<String> errors = new ArrayList<>();
-
-            for (Long userId : userIds) {
-                try {
-                    // Validate user exists
-                    Optional<User> userOpt = userRepository.findById(userId);
-                    if (userOpt.isEmpty()) {
-                        errors.add("用户ID " + userId + " 不存在");
-                        continue;
-                    }
-                    User user = userOpt.get();
-
-                    // Check if assignment already exists
-                    Optional<TaskAssignment> existing = taskAssignmentRepository.findByTaskIdAndUserIdAndAssignmentType(
-                        taskId, userId, type);
-                    if (existing.isPresent()) {
-                        errors.add("用户 " + user.getUsername() + " 已被分配此类型任务");
-                        continue;
-                    }
-
-                    // Create assignment
-                    TaskAssignment assignment = new TaskAssignment();
-                    assignment.setTask(task);
-                    assignment.setUser(user);
-                    assignment.setAssignmentType(type);
-
-                    TaskAssignment savedAssignment = taskAssignmentRepository.save(assignment);
-                    createdAssignments.add(savedAssignment);
-                } catch (Exception e) {
-                    errors.add("分配给用户ID " + userId + " 失败: " + e.getMessage());
-                }
-            }
-
-            // Update task status if this is the first assignment and status was CREATED
-            if (!createdAssignments.isEmpty() && task.getStatus() == Task.TaskStatus.CREATED) {
-                // For AI annotation, move to AI_PROCESSING
-                if (type == TaskAssignment.AssignmentType.AI_ANNOTATION) {
-                    task.setStatus(Task.TaskStatus.AI_PROCESSING);
-                } else {
-                    task.setStatus(Task.TaskStatus.ASSIGNED);
-                }
-                taskRepository.save(task);
-            } else if (!createdAssignments.isEmpty()) {
-                // Trigger workflow update to ensure correct status
-                workflowService.advanceTaskWorkflow(task);
-            }
+            // Assignments, stage counters and the task status commit together
+            TaskAssignmentService.ManualAssignmentResult result =
+                taskAssignmentService.assignUsers(task, new LinkedHashSet<>(userIds), type);
+            List<TaskAssignment> createdAssignments = result.getCreatedAssignments();
+            List<String> errors = result.getErrors();
 
             Map<String, Object> response = new HashMap<>();
             response.put("message", "任务分配完成");
@@ -927,6 +918,84 @@ public class TaskController {
         }
     }
 
+    /**
+     * 批量分配：taskIds × userIds × assignmentTypes 的每个组合各创建一条分配
+     */
+    @PostMapping("/assignments:bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> bulkAssign(@RequestBody Map<String, Object> request) {
+        try {
+            List<Long> taskIds = parseIdList(request.get("taskIds"));
+            List<Long> userIds = parseIdList(request.get("userIds"));
+            if (taskIds == null || userIds == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "任务ID或用户ID格式错误"));
+            }
+            if (taskIds.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "未选择任务"));
+            }
+            if (userIds.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "未选择用户"));
+            }
+
+            // Accept either assignmentTypes: [...] or a single assignmentType
+            Object typesObj = request.containsKey("assignmentTypes") ? request.get("assignmentTypes") : request.get("assignmentType");
+            List<Object> rawTypes = new ArrayList<>();
+            if (typesObj instanceof List) {
+                rawTypes.addAll((List<?>) typesObj);
+            } else if (typesObj != null) {
+                rawTypes.add(typesObj);
+            }
+            if (rawTypes.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "分配类型不能为空"));
+            }
+            Set<TaskAssignment.AssignmentType> types = new LinkedHashSet<>();
+            for (Object rawType : rawTypes) {
+                try {
+                    types.add(TaskAssignment.AssignmentType.valueOf(String.valueOf(rawType).trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().body(Map.of("message", "无效的分配类型: " + rawType));
+                }
+            }
+
+            long pairCount = (long) taskIds.size() * userIds.size() * types.size();
+            if (pairCount > MAX_BULK_ASSIGNMENT_PAIRS) {
+                return ResponseEntity.badRequest().body(Map.of("message", "单次最多分配 " + MAX_BULK_ASSIGNMENT_PAIRS + " 个组合"));
+            }
+
+            TaskAssignmentService.BulkAssignmentResult result =
+                taskAssignmentService.bulkAssign(taskIds, userIds, new ArrayList<>(types));
+
+            Map<TaskAssignmentService.BulkAssignmentOutcome, Long> outcomeCounts = result.getItems().stream()
+                .collect(Collectors.groupingBy(TaskAssignmentService.BulkAssignmentItem::getOutcome,
+                    () -> new EnumMap<>(TaskAssignmentService.BulkAssignmentOutcome.class), Collectors.counting()));
+
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (TaskAssignmentService.BulkAssignmentItem item : result.getItems()) {
+                Map<String, Object> itemMap = new HashMap<>();
+                itemMap.put("taskId", item.getTaskId());
+                itemMap.put("userId", item.getUserId());
+                itemMap.put("assignmentType", item.getAssignmentType());
+                itemMap.put("outcome", item.getOutcome());
+                if (item.getAssignmentId() != null) {
+                    itemMap.put("assignmentId", item.getAssignmentId());
+                }
+                results.add(itemMap);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "批量分配完成");
+            response.put("successCount", result.getCreatedAssignments().size());
+            response.put("outcomeCounts", outcomeCounts);
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            logger.error("Bulk assignment failed: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "批量分配失败: " + e.getMessage()));
+        }
+    }
+
     @PostMapping("/{taskId}/auto-assign")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> autoAssignTask(@PathVariable Long taskId) {
@@ -966,16 +1035,13 @@ public class TaskController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "assignedAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
-            Authentication authentication) {
+            @CurrentUser UserDetailsImpl principal) {
 
         try {
             // Get current user
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (principal == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
             Sort.Direction direction = Sort.Direction.fromString(sortDir);
             
@@ -983,7 +1049,7 @@ public class TaskController {
             // For other users, only show their own assignments
             List<Map<String, Object>> assignmentMaps = new ArrayList<>();
             
-            if (user.getRole() == User.Role.ADMIN) {
+            if (principal.getRole() == User.Role.ADMIN) {
                 // Admin can see all tasks
                 // Map sortBy field from assignment field to task field
                 String taskSortBy = sortBy;
@@ -1009,7 +1075,7 @@ public class TaskController {
                     
                     // Find assignment for current user, or use the first one if none
                     Optional<TaskAssignment> userAssignment = taskAssignments.stream()
-                        .filter(a -> a.getUser().getId().equals(user.getId()))
+                        .filter(a -> a.getUser().getId().equals(principal.getId()))
                         .findFirst();
                     
                     TaskAssignment assignment = userAssignment.orElse(
@@ -1066,7 +1132,7 @@ public class TaskController {
             } else {
                 // Non-admin users: only show their own assignments
                 Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
-                Page<TaskAssignment> assignmentPage = taskAssignmentRepository.findByUserId(user.getId(), pageable);
+                Page<TaskAssignment> assignmentPage = taskAssignmentRepository.findByUserId(principal.getId(), pageable);
 
                 Map<String, Object> response = new HashMap<>();
                 response.put("assignments", assignmentPage.getContent().stream().map(assignment -> {
@@ -1130,8 +1196,45 @@ public class TaskController {
         }
     }
 
+    /**
+     * 批量获取工作流状态（任务看板使用，替代逐个调用 /{id}/workflow-status）
+     */
+    @PostMapping("/workflow-status:batch")
+    public ResponseEntity<?> getWorkflowStatusBatch(@RequestBody Map<String, Object> request) {
+        try {
+            List<Long> taskIds = parseIdList(request.get("taskIds"));
+            if (taskIds == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "任务ID格式错误"));
+            }
+            if (taskIds.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "任务ID列表不能为空"));
+            }
+            if (taskIds.size() > MAX_WORKFLOW_STATUS_BATCH) {
+                return ResponseEntity.badRequest().body(Map.of("message", "单次最多查询 " + MAX_WORKFLOW_STATUS_BATCH + " 个任务"));
+            }
+
+            Map<Long, WorkflowService.WorkflowStatus> statuses = workflowService.getWorkflowStatuses(taskIds);
+
+            Map<Long, Object> workflowStatuses = new LinkedHashMap<>();
+            statuses.forEach((taskId, status) -> workflowStatuses.put(taskId, convertWorkflowStatusToMap(status)));
+            List<Long> notFound = taskIds.stream()
+                .filter(taskId -> !statuses.containsKey(taskId))
+                .collect(Collectors.toList());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("workflowStatuses", workflowStatuses);
+            response.put("notFound", notFound);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "获取工作流状态失败: " + e.getMessage()));
+        }
+    }
+
     @GetMapping("/user-performance")
     @PreAuthorize("hasRole('ADMIN')")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getUserPerformanceStatistics() {
         try {
             List<User> users = userRepository.findAll();
@@ -1165,6 +1268,7 @@ public class TaskController {
 
     @GetMapping("/statistics")
     @PreAuthorize("hasRole('ADMIN')")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getTaskStatistics() {
         try {
             Map<String, Object> stats = new HashMap<>();
@@ -1253,6 +1357,7 @@ public class TaskController {
         map.put("title", task.getTitle());
         map.put("description", task.getDescription());
         map.put("status", task.getStatus());
+        map.put("taskType", task.getTaskType());
         map.put("priority", task.getPriority());
         map.put("deadline", task.getDeadline());
         map.put("createdAt", task.getCreatedAt());
@@ -1288,19 +1393,7 @@ public class TaskController {
         map.put("batchName", task.getBatchName());
         map.put("submittedAt", task.getSubmittedAt());
 
-        // Document index information (preserved even if document is deleted)
-        if (task.getDocumentIndex() != null && !task.getDocumentIndex().isEmpty()) {
-            try {
-                Map<String, Object> documentIndexMap = objectMapper.readValue(
-                    task.getDocumentIndex(), 
-                    new TypeReference<Map<String, Object>>() {}
-                );
-                map.put("documentIndex", documentIndexMap);
-            } catch (Exception e) {
-                // If parsing fails, just include the raw string
-                map.put("documentIndex", task.getDocumentIndex());
-            }
-        }
+        // documentIndex is not parsed here; batch documents are served by /tasks/batch/{batchId}/documents
 
         map.put("createdBy", Map.of(
             "id", task.getCreatedBy().getId(),
@@ -1348,6 +1441,7 @@ public class TaskController {
         map.put("status", assignment.getStatus());
         map.put("assignedAt", assignment.getAssignedAt());
         map.put("completedAt", assignment.getCompletedAt());
+        map.put("leaseExpiresAt", assignment.getLeaseExpiresAt());
         map.put("notes", assignment.getNotes());
 
         map.put("user", Map.of(
@@ -1359,6 +1453,42 @@ public class TaskController {
         return map;
     }
 
+    private Map<String, Object> convertBatchDocumentToMap(BatchDocument batchDocument) {
+        String filename = batchDocument.getOriginalFilename() != null ?
+            batchDocument.getOriginalFilename() : batchDocument.getFilename();
+        String folderPath = batchDocument.getFolderPath();
+
+        // Build absolute path
+        String absolutePath;
+        if (folderPath != null && !folderPath.isEmpty()) {
+            absolutePath = folderPath + "/" + filename;
+        } else {
+            absolutePath = "/" + filename;
+        }
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("documentId", batchDocument.getDocumentId());
+        map.put("absolutePath", absolutePath);
+        map.put("filename", filename);
+        map.put("folderPath", folderPath);
+        map.put("fileSize", batchDocument.getFileSize());
+        map.put("mimeType", batchDocument.getMimeType());
+        map.put("status", batchDocument.getStatus());
+        map.put("progress", batchDocument.getProgress());
+        map.put("updatedAt", batchDocument.getUpdatedAt());
+
+        if (batchDocument.getAssignee() != null) {
+            map.put("assignee", Map.of(
+                "id", batchDocument.getAssignee().getId(),
+                "username", batchDocument.getAssignee().getUsername()
+            ));
+        } else {
+            map.put("assignee", null);
+        }
+
+        return map;
+    }
+
     private Map<String, Object> convertWorkflowStatusToMap(WorkflowService.WorkflowStatus status) {
         Map<String, Object> map = new HashMap<>();
         map.put("taskId", status.getTaskId());
@@ -1378,29 +1508,58 @@ public class TaskController {
         return map;
     }
 
+    /**
+     * 批量查询文档的审核资格（是否已存在审核任务）
+     */
+    @PostMapping("/review/eligibility")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('REVIEWER') or hasRole('EXPERT')")
+    public ResponseEntity<?> getReviewEligibility(@RequestBody Map<String, Object> request) {
+        try {
+            List<Long> documentIds = parseIdList(request.get("documentIds"));
+            if (documentIds == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "文档ID格式错误"));
+            }
+            if (documentIds.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "请至少选择一个文档"));
+            }
+
+            Map<Long, Document> documents = documentRepository.findAllById(documentIds).stream()
+                .collect(Collectors.toMap(Document::getId, document -> document));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("eligibility", buildReviewEligibility(documentIds, documents));
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            logger.error("Failed to check review eligibility: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "查询审核资格失败: " + e.getMessage()));
+        }
+    }
+
     /**
      * 批量创建审核任务（从质量审核页面）
      */
     @PostMapping("/review/batch")
     @PreAuthorize("hasRole('ADMIN') or hasRole('REVIEWER') or hasRole('EXPERT')")
     public ResponseEntity<?> createReviewTasks(@RequestBody Map<String, Object> request,
-                                               Authentication authentication) {
+                                               @CurrentUser User user) {
         try {
-            String username = authentication.getName();
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            if (userOpt.isEmpty()) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
             }
-            User user = userOpt.get();
 
-            @SuppressWarnings("unchecked")
-            List<Long> documentIds = (List<Long>) request.get("documentIds");
+            List<Long> documentIds = parseIdList(request.get("documentIds"));
             String taskTitle = (String) request.get("taskTitle");
             String description = (String) request.get("description");
             Long formConfigId = request.get("formConfigId") != null ? 
                 Long.valueOf(request.get("formConfigId").toString()) : null;
 
-            if (documentIds == null || documentIds.isEmpty()) {
+            if (documentIds == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "文档ID格式错误"));
+            }
+
+            if (documentIds.isEmpty()) {
                 return ResponseEntity.badRequest().body(Map.of("message", "请至少选择一个文档"));
             }
 
@@ -1408,51 +1567,39 @@ public class TaskController {
                 return ResponseEntity.badRequest().body(Map.of("message", "任务标题不能为空"));
             }
 
-            List<Task> createdTasks = new ArrayList<>();
+            // 表单配置对所有文档相同，只查询一次
+            FormConfig formConfig = null;
+            if (formConfigId != null) {
+                formConfig = formConfigRepository.findById(formConfigId).orElse(null);
+            }
+            // 如果未指定表单配置，任务创建时可以后续指定
+            // 注意：FormConfig和DocumentType是多对多关系，需要通过中间表查询，这里暂时跳过
+
+            // 文档与审核资格各一次查询，不再逐个文档扫描全部任务
+            Map<Long, Document> documents = documentRepository.findAllById(documentIds).stream()
+                .collect(Collectors.toMap(Document::getId, document -> document));
+            Map<Long, Map<String, Object>> eligibility = buildReviewEligibility(documentIds, documents);
+
+            ObjectMapper objectMapper = new ObjectMapper();
+            objectMapper.registerModule(new JavaTimeModule());
+            objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+            List<Task> tasksToCreate = new ArrayList<>();
             List<String> errors = new ArrayList<>();
 
             for (Long documentId : documentIds) {
                 try {
-                    Optional<Document> documentOpt = documentRepository.findById(documentId);
-                    if (documentOpt.isEmpty()) {
+                    Document document = documents.get(documentId);
+                    if (document == null) {
                         errors.add("文档 " + documentId + " 不存在");
                         continue;
                     }
-                    Document document = documentOpt.get();
 
-                    // 检查是否已存在进行中的审核任务
-                    List<Task> existingTasks = taskRepository.findAll().stream()
-                        .filter(task -> task.getDocument() != null && task.getDocument().getId().equals(documentId))
-                        .collect(Collectors.toList());
-                    boolean hasReviewTask = existingTasks.stream()
-                        .anyMatch(task -> {
-                            List<TaskAssignment> assignments = taskAssignmentRepository.findByTaskId(task.getId());
-                            return assignments.stream()
-                                .anyMatch(assignment -> assignment.getAssignmentType() == TaskAssignment.AssignmentType.REVIEW ||
-                                                       assignment.getAssignmentType() == TaskAssignment.AssignmentType.EXPERT_REVIEW);
-                        });
-
-                    if (hasReviewTask) {
+                    if (!Boolean.TRUE.equals(eligibility.get(documentId).get("eligible"))) {
                         errors.add("文档 " + document.getOriginalFilename() + " 已存在审核任务");
                         continue;
                     }
 
-                    // 获取文档的表单配置（如果未指定，使用文档的默认配置）
-                    FormConfig formConfig = null;
-                    if (formConfigId != null) {
-                        Optional<FormConfig> formConfigOpt = formConfigRepository.findById(formConfigId);
-                        if (formConfigOpt.isPresent()) {
-                            formConfig = formConfigOpt.get();
-                        }
-                    }
-                    // 如果未指定表单配置，尝试从文档类型获取
-                    // 注意：这里简化处理，实际可能需要通过中间表查询
-                    if (formConfig == null && document.getDocumentType() != null) {
-                        // 可以尝试查找该文档类型关联的表单配置
-                        // 由于FormConfig和DocumentType是多对多关系，需要通过中间表查询
-                        // 这里暂时跳过，使用null（任务创建时可以后续指定）
-                    }
-
                     // 创建审核任务
                     Task task = new Task();
                     task.setTitle(taskTitle.trim() + " - " + document.getOriginalFilename());
@@ -1462,6 +1609,7 @@ public class TaskController {
                     task.setFormConfig(formConfig);
                     task.setCreatedBy(user);
                     task.setStatus(Task.TaskStatus.CREATED);
+                    task.setTaskType(Task.TaskType.REVIEW);
 
                     // 保存文档索引信息
                     Map<String, Object> documentIndex = new HashMap<>();
@@ -1469,14 +1617,9 @@ public class TaskController {
                     documentIndex.put("filename", document.getFilename());
                     documentIndex.put("originalFilename", document.getOriginalFilename());
                     documentIndex.put("filePath", document.getFilePath());
-
-                    ObjectMapper objectMapper = new ObjectMapper();
-                    objectMapper.registerModule(new JavaTimeModule());
-                    objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
                     task.setDocumentIndex(objectMapper.writeValueAsString(documentIndex));
 
-                    task = taskRepository.save(task);
-                    createdTasks.add(task);
+                    tasksToCreate.add(task);
 
                 } catch (Exception e) {
                     logger.error("Failed to create review task for document {}: {}", documentId, e.getMessage(), e);
@@ -1484,10 +1627,13 @@ public class TaskController {
                 }
             }
 
+            List<Task> createdTasks = taskRepository.saveAll(tasksToCreate);
+
             Map<String, Object> response = new HashMap<>();
             response.put("message", "成功创建 " + createdTasks.size() + " 个审核任务");
             response.put("createdCount", createdTasks.size());
             response.put("errors", errors);
+            response.put("eligibility", eligibility);
             response.put("tasks", createdTasks.stream()
                 .map(this::convertTaskToMap)
                 .collect(Collectors.toList()));
@@ -1500,4 +1646,49 @@ public class TaskController {
                     .body(Map.of("message", "创建审核任务失败: " + e.getMessage()));
         }
     }
+
+    /**
+     * 计算每个文档的审核资格：已存在 REVIEW/EXPERT_REVIEW 分配的文档不可再创建审核任务
+     */
+    private Map<Long, Map<String, Object>> buildReviewEligibility(List<Long> documentIds, Map<Long, Document> documents) {
+        Set<Long> reviewedDocumentIds = new HashSet<>(taskRepository.findDocumentIdsWithAssignmentTypes(
+            documentIds, List.of(TaskAssignment.AssignmentType.REVIEW, TaskAssignment.AssignmentType.EXPERT_REVIEW)));
+
+        Map<Long, Map<String, Object>> eligibility = new LinkedHashMap<>();
+        for (Long documentId : documentIds) {
+            Map<String, Object> entry = new HashMap<>();
+            if (!documents.containsKey(documentId)) {
+                entry.put("eligible", false);
+                entry.put("reason", "文档不存在");
+            } else if (reviewedDocumentIds.contains(documentId)) {
+                entry.put("eligible", false);
+                entry.put("reason", "已存在审核任务");
+            } else {
+                entry.put("eligible", true);
+            }
+            eligibility.put(documentId, entry);
+        }
+        return eligibility;
+    }
+
+    // Handle both List<Integer> and List<Long> from frontend; returns null on malformed input
+    private List<Long> parseIdList(Object idsObj) {
+        if (idsObj == null) {
+            return new ArrayList<>();
+        }
+        if (!(idsObj instanceof List)) {
+            return null;
+        }
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Object id : (List<?>) idsObj) {
+            if (id instanceof Number) {
+                ids.add(((Number) id).longValue());
+            } else if (id instanceof String && ((String) id).matches("\\d+")) {
+                ids.add(Long.valueOf((String) id));
+            } else {
+                return null;
+            }
+        }
+        return new ArrayList<>(ids);
+    }
 }
@@ -2,6 +2,7 @@ package com.annotationplatform.controller;
 
 import com.annotationplatform.entity.User;
 import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.utils.JwtPrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -22,6 +23,9 @@ public class UserController {
     @Autowired
     private PasswordEncoder encoder;
 
+    @Autowired
+    private JwtPrincipalCache jwtPrincipalCache;
+
     @GetMapping
     public ResponseEntity<?> getUsers() {
         try {
@@ -77,6 +81,7 @@ public class UserController {
             }
 
             User user = userOpt.get();
+            String previousUsername = user.getUsername();
             
             // 检查用户名是否被其他用户使用
             if (userDetails.getUsername() != null && !userDetails.getUsername().equals(user.getUsername())) {
@@ -115,6 +120,9 @@ public class UserController {
             }
 
             User updatedUser = userRepository.save(user);
+            // Role/status/username changes must not be served from cached token principals
+            jwtPrincipalCache.invalidateUser(previousUsername);
+            jwtPrincipalCache.invalidateUser(updatedUser.getUsername());
             return ResponseEntity.ok(updatedUser);
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "更新用户失败: " + e.getMessage()));
@@ -130,6 +138,7 @@ public class UserController {
             }
 
             userRepository.deleteById(id);
+            jwtPrincipalCache.invalidateUser(userOpt.get().getUsername());
             return ResponseEntity.ok(Map.of("message", "用户删除成功"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "删除用户失败: " + e.getMessage()));
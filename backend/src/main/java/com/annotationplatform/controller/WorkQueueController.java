@@ -0,0 +1,195 @@
+package com.annotationplatform.controller;
+
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.service.AssignmentScheduler;
+import com.annotationplatform.service.UserDetailsImpl;
+import com.annotationplatform.service.WorkQueueService;
+import com.annotationplatform.utils.CurrentUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/work")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class WorkQueueController {
+
+    @Autowired
+    private WorkQueueService workQueueService;
+
+    @Autowired
+    private AssignmentScheduler assignmentScheduler;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(WorkQueueController.class);
+
+    /**
+     * 领取下一个待处理任务
+     */
+    @PostMapping("/next")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
+    public ResponseEntity<?> claimNext(@RequestParam(defaultValue = "ANNOTATION") String type,
+                                       @CurrentUser UserDetailsImpl principal, @CurrentUser User user) {
+        try {
+            if (principal == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "用户未找到"));
+            }
+
+            TaskAssignment.AssignmentType assignmentType;
+            try {
+                assignmentType = TaskAssignment.AssignmentType.valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("message", "无效的分配类型"));
+            }
+            if (!workQueueService.isClaimable(assignmentType)) {
+                return ResponseEntity.badRequest().body(Map.of("message", "该类型任务不支持领取"));
+            }
+            if (!workQueueService.canClaim(principal.getRole(), assignmentType)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "无权限领取该类型任务"));
+            }
+
+            Optional<TaskAssignment> claimed = workQueueService.claimNext(user, assignmentType);
+            if (claimed.isEmpty()) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("message", "暂无可领取的任务");
+                response.put("claimed", false);
+                return ResponseEntity.ok(response);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "领取成功");
+            response.put("claimed", true);
+            response.put("leaseMinutes", workQueueService.getLeaseMinutes());
+            response.put("assignment", convertAssignmentToMap(claimed.get()));
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            logger.error("Failed to claim next task: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "领取任务失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 续期领取租约
+     */
+    @PostMapping("/{assignmentId}/renew")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
+    public ResponseEntity<?> renewLease(@PathVariable Long assignmentId, @CurrentUser UserDetailsImpl principal) {
+        try {
+            Optional<TaskAssignment> assignmentOpt = findOwnAssignment(assignmentId, principal);
+            if (assignmentOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            TaskAssignment assignment = workQueueService.renewLease(assignmentOpt.get());
+            return ResponseEntity.ok(Map.of(
+                "message", "租约已续期",
+                "assignment", convertAssignmentToMap(assignment)
+            ));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "续期失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 放弃已领取但尚未开始的任务
+     */
+    @PostMapping("/{assignmentId}/release")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('ANNOTATOR') or hasRole('REVIEWER') or hasRole('EXPERT')")
+    public ResponseEntity<?> release(@PathVariable Long assignmentId, @CurrentUser UserDetailsImpl principal) {
+        try {
+            Optional<TaskAssignment> assignmentOpt = findOwnAssignment(assignmentId, principal);
+            if (assignmentOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            workQueueService.release(assignmentOpt.get());
+            return ResponseEntity.ok(Map.of("message", "已放弃该任务"));
+
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "放弃任务失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 预览自动分配调度器中紧迫度最高的任务
+     */
+    @GetMapping("/schedule/preview")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> previewSchedule(@RequestParam(defaultValue = "20") int limit) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("enabled", assignmentScheduler.isEnabled());
+            response.put("tasks", assignmentScheduler.preview(Math.max(1, Math.min(limit, 200))));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Failed to preview assignment schedule: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "获取调度队列失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 立即执行一轮自动分配
+     */
+    @PostMapping("/schedule/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> runSchedule() {
+        try {
+            AssignmentScheduler.RunResult result = assignmentScheduler.runOnce();
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "自动分配完成");
+            response.put("tasksConsidered", result.getTasksConsidered());
+            response.put("tasksAssigned", result.getTasksAssigned());
+            response.put("assignmentsCreated", result.getAssignmentsCreated());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Failed to run assignment scheduler: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "自动分配失败: " + e.getMessage()));
+        }
+    }
+
+    private Optional<TaskAssignment> findOwnAssignment(Long assignmentId, UserDetailsImpl principal) {
+        // Compare ids so the assignee is not loaded
+        return taskAssignmentRepository.findById(assignmentId)
+            .filter(assignment -> principal != null && assignment.getUser().getId().equals(principal.getId()));
+    }
+
+    private Map<String, Object> convertAssignmentToMap(TaskAssignment assignment) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", assignment.getId());
+        map.put("assignmentType", assignment.getAssignmentType());
+        map.put("status", assignment.getStatus());
+        map.put("assignedAt", assignment.getAssignedAt());
+        map.put("leaseExpiresAt", assignment.getLeaseExpiresAt());
+
+        Task task = assignment.getTask();
+        Map<String, Object> taskMap = new HashMap<>();
+        taskMap.put("id", task.getId());
+        taskMap.put("title", task.getTitle());
+        taskMap.put("status", task.getStatus());
+        taskMap.put("priority", task.getPriority());
+        taskMap.put("deadline", task.getDeadline());
+        if (task.getDocument() != null) {
+            taskMap.put("documentId", task.getDocument().getId());
+            taskMap.put("documentName", task.getDocument().getOriginalFilename());
+        }
+        map.put("task", taskMap);
+
+        return map;
+    }
+}
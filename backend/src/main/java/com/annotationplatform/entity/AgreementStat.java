@@ -0,0 +1,186 @@
+package com.annotationplatform.entity;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 标注一致性的充分统计量（每个表单、字段、标注员对、日期一行）
+ * 质量检查创建时增量累加，一致性指标（精确一致率、Cohen/Fleiss kappa）由这些计数直接算出，不再回读历史标注。
+ * annotatorAId 总是小于 annotatorBId；marginalsA/marginalsB 为两人各取值出现次数（仅选择类字段），
+ * fieldName 为 {@link #ALL_FIELDS} 的行记录整份标注是否完全一致。
+ */
+@Entity
+@Table(name = "agreement_stats", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"form_config_id", "stat_date", "field_name", "annotator_a_id", "annotator_b_id"})
+}, indexes = {
+    @Index(name = "idx_agreement_stats_date", columnList = "stat_date")
+})
+public class AgreementStat {
+
+    // 整份标注完全一致的统计行
+    public static final String ALL_FIELDS = "*";
+
+    // 没有关联表单配置的任务
+    public static final long NO_FORM = 0L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "form_config_id", nullable = false)
+    private Long formConfigId;
+
+    @NotNull
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @NotNull
+    @Column(name = "field_name", length = 100, nullable = false)
+    private String fieldName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "field_type", length = 20)
+    private FormField.FieldType fieldType;
+
+    @NotNull
+    @Column(name = "annotator_a_id", nullable = false)
+    private Long annotatorAId;
+
+    @NotNull
+    @Column(name = "annotator_b_id", nullable = false)
+    private Long annotatorBId;
+
+    @Column(name = "comparisons", nullable = false)
+    private Long comparisons = 0L;
+
+    @Column(name = "agreements", nullable = false)
+    private Long agreements = 0L;
+
+    @Column(name = "marginals_a", columnDefinition = "TEXT")
+    private String marginalsA;
+
+    @Column(name = "marginals_b", columnDefinition = "TEXT")
+    private String marginalsB;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public AgreementStat() {}
+
+    public AgreementStat(Long formConfigId, LocalDate statDate, String fieldName, FormField.FieldType fieldType,
+                         Long annotatorAId, Long annotatorBId) {
+        this.formConfigId = formConfigId;
+        this.statDate = statDate;
+        this.fieldName = fieldName;
+        this.fieldType = fieldType;
+        this.annotatorAId = annotatorAId;
+        this.annotatorBId = annotatorBId;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getFormConfigId() {
+        return formConfigId;
+    }
+
+    public void setFormConfigId(Long formConfigId) {
+        this.formConfigId = formConfigId;
+    }
+
+    public LocalDate getStatDate() {
+        return statDate;
+    }
+
+    public void setStatDate(LocalDate statDate) {
+        this.statDate = statDate;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public void setFieldName(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    public FormField.FieldType getFieldType() {
+        return fieldType;
+    }
+
+    public void setFieldType(FormField.FieldType fieldType) {
+        this.fieldType = fieldType;
+    }
+
+    public Long getAnnotatorAId() {
+        return annotatorAId;
+    }
+
+    public void setAnnotatorAId(Long annotatorAId) {
+        this.annotatorAId = annotatorAId;
+    }
+
+    public Long getAnnotatorBId() {
+        return annotatorBId;
+    }
+
+    public void setAnnotatorBId(Long annotatorBId) {
+        this.annotatorBId = annotatorBId;
+    }
+
+    public Long getComparisons() {
+        return comparisons;
+    }
+
+    public void setComparisons(Long comparisons) {
+        this.comparisons = comparisons;
+    }
+
+    public Long getAgreements() {
+        return agreements;
+    }
+
+    public void setAgreements(Long agreements) {
+        this.agreements = agreements;
+    }
+
+    public String getMarginalsA() {
+        return marginalsA;
+    }
+
+    public void setMarginalsA(String marginalsA) {
+        this.marginalsA = marginalsA;
+    }
+
+    public String getMarginalsB() {
+        return marginalsB;
+    }
+
+    public void setMarginalsB(String marginalsB) {
+        this.marginalsB = marginalsB;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
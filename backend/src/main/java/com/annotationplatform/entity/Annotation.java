@@ -10,7 +10,9 @@ import java.time.LocalDateTime;
 public class Annotation {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "annotations_id")
+    @TableGenerator(name = "annotations_id", table = "id_generators", pkColumnName = "gen_name",
+                    valueColumnName = "gen_value", pkColumnValue = "annotations", allocationSize = 50)
     private Long id;
 
     @NotNull
@@ -0,0 +1,228 @@
+package com.annotationplatform.entity;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * 批次任务中的单个文档（替代 Task.documentIndex 中的 JSON 文档列表）
+ * 文档信息以快照形式保存，即使原文档被删除也能保留
+ */
+@Entity
+@Table(name = "batch_documents", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"batch_id", "document_id"})
+}, indexes = {
+    @Index(name = "idx_batch_documents_batch_sort", columnList = "batch_id, sort_order"),
+    @Index(name = "idx_batch_documents_batch_status", columnList = "batch_id, status"),
+    @Index(name = "idx_batch_documents_task_id", columnList = "task_id"),
+    @Index(name = "idx_batch_documents_document_id", columnList = "document_id")
+})
+public class BatchDocument {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "batch_documents_id")
+    @TableGenerator(name = "batch_documents_id", table = "id_generators", pkColumnName = "gen_name",
+                    valueColumnName = "gen_value", pkColumnValue = "batch_documents", allocationSize = 50)
+    private Long id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "task_id", nullable = false)
+    private Task task;
+
+    @NotBlank
+    @Column(name = "batch_id", length = 100, nullable = false)
+    private String batchId;
+
+    // Plain column instead of a foreign key so deleting the document keeps the snapshot
+    @NotNull
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "filename")
+    private String filename;
+
+    @Column(name = "original_filename")
+    private String originalFilename;
+
+    @Column(name = "folder_path")
+    private String folderPath;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    @Column(name = "sort_order")
+    private Integer sortOrder = 0;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20)
+    private BatchDocumentStatus status = BatchDocumentStatus.PENDING;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "assignee_id")
+    private User assignee;
+
+    @Column(name = "progress")
+    private Integer progress = 0;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum BatchDocumentStatus {
+        PENDING, IN_PROGRESS, COMPLETED, FAILED
+    }
+
+    // Constructors
+    public BatchDocument() {}
+
+    public BatchDocument(Task task, Document document, int sortOrder) {
+        this.task = task;
+        this.batchId = task.getBatchId();
+        this.documentId = document.getId();
+        this.filename = document.getFilename();
+        this.originalFilename = document.getOriginalFilename();
+        this.folderPath = document.getFolderPath();
+        this.fileSize = document.getFileSize();
+        this.mimeType = document.getMimeType();
+        this.sortOrder = sortOrder;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public void setTask(Task task) {
+        this.task = task;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    public void setOriginalFilename(String originalFilename) {
+        this.originalFilename = originalFilename;
+    }
+
+    public String getFolderPath() {
+        return folderPath;
+    }
+
+    public void setFolderPath(String folderPath) {
+        this.folderPath = folderPath;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public Integer getSortOrder() {
+        return sortOrder;
+    }
+
+    public void setSortOrder(Integer sortOrder) {
+        this.sortOrder = sortOrder;
+    }
+
+    public BatchDocumentStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BatchDocumentStatus status) {
+        this.status = status;
+    }
+
+    public User getAssignee() {
+        return assignee;
+    }
+
+    public void setAssignee(User assignee) {
+        this.assignee = assignee;
+    }
+
+    public Integer getProgress() {
+        return progress;
+    }
+
+    public void setProgress(Integer progress) {
+        this.progress = progress;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,79 @@
+package com.annotationplatform.entity;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * 批次文档的提交记录（每个文档、每个标注员一行）
+ * 批次父任务的一个分配覆盖全部文档，文档进度按这里的提交人数计算
+ */
+@Entity
+@Table(name = "batch_document_submissions", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"batch_document_id", "user_id"})
+})
+public class BatchDocumentSubmission {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "batch_document_id", nullable = false)
+    private BatchDocument batchDocument;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "submitted_at")
+    private LocalDateTime submittedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        submittedAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public BatchDocumentSubmission() {}
+
+    public BatchDocumentSubmission(BatchDocument batchDocument, User user) {
+        this.batchDocument = batchDocument;
+        this.user = user;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public BatchDocument getBatchDocument() {
+        return batchDocument;
+    }
+
+    public void setBatchDocument(BatchDocument batchDocument) {
+        this.batchDocument = batchDocument;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(LocalDateTime submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+}
@@ -10,7 +10,9 @@ import java.time.LocalDateTime;
 public class Document {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "documents_id")
+    @TableGenerator(name = "documents_id", table = "id_generators", pkColumnName = "gen_name",
+                    valueColumnName = "gen_value", pkColumnValue = "documents", allocationSize = 50)
     private Long id;
 
     @NotBlank
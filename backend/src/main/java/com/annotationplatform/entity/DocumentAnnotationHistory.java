@@ -14,7 +14,9 @@ import java.time.LocalDateTime;
 public class DocumentAnnotationHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "document_annotation_history_id")
+    @TableGenerator(name = "document_annotation_history_id", table = "id_generators", pkColumnName = "gen_name",
+                    valueColumnName = "gen_value", pkColumnValue = "document_annotation_history", allocationSize = 50)
     private Long id;
 
     @NotNull
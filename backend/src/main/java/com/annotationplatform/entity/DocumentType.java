@@ -1,6 +1,11 @@
 package com.annotationplatform.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
@@ -8,9 +13,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "entity.documentType")
 @Table(name = "document_types")
 public class DocumentType {
 
+    // 可配置的标注人数范围：共识至少需要两份标注
+    public static final int MIN_REQUIRED_ANNOTATORS = 2;
+    public static final int MAX_REQUIRED_ANNOTATORS = 7;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -26,6 +37,12 @@ public class DocumentType {
     @Column(name = "is_active")
     private Boolean isActive = true;
 
+    // 每个任务需要的标注人数（多人标注共识），为空时使用默认的双人标注
+    @Min(MIN_REQUIRED_ANNOTATORS)
+    @Max(MAX_REQUIRED_ANNOTATORS)
+    @Column(name = "required_annotators")
+    private Integer requiredAnnotators;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by")
     private User createdBy;
@@ -42,6 +59,7 @@ public class DocumentType {
         joinColumns = @JoinColumn(name = "document_type_id"),
         inverseJoinColumns = @JoinColumn(name = "form_config_id")
     )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "entity.documentType.formConfigs")
     private List<FormConfig> formConfigs = new ArrayList<>();
 
     @PrePersist
@@ -97,6 +115,14 @@ public class DocumentType {
         this.isActive = isActive;
     }
 
+    public Integer getRequiredAnnotators() {
+        return requiredAnnotators;
+    }
+
+    public void setRequiredAnnotators(Integer requiredAnnotators) {
+        this.requiredAnnotators = requiredAnnotators;
+    }
+
     public User getCreatedBy() {
         return createdBy;
     }
@@ -1,5 +1,8 @@
 package com.annotationplatform.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -8,6 +11,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "entity.formConfig")
 @Table(name = "form_configs")
 public class FormConfig {
 
@@ -45,6 +50,7 @@ public class FormConfig {
 
     @OneToMany(mappedBy = "formConfig", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("sortOrder ASC")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "entity.formConfig.fields")
     private List<FormField> fields = new ArrayList<>();
 
     @PrePersist
@@ -0,0 +1,214 @@
+package com.annotationplatform.entity;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * 事务性发件箱事件
+ * 与触发它的业务数据在同一事务内写入，提交后由后台处理器领取执行；失败按指数退避重试，
+ * 超过最大次数后标记为 FAILED 等待人工重试。completedSteps 记录已完成的处理步骤，重试时跳过。
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+    @Index(name = "idx_outbox_events_status_next", columnList = "status, next_attempt_at"),
+    @Index(name = "idx_outbox_events_task", columnList = "task_id")
+})
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", length = 40, nullable = false)
+    private EventType eventType;
+
+    // 事件关联的业务记录（如标注 ID）
+    @Column(name = "aggregate_id")
+    private Long aggregateId;
+
+    // 所属任务，任务清理时一并删除
+    @Column(name = "task_id")
+    private Long taskId;
+
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "completed_steps", length = 255)
+    private String completedSteps;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // 处理中事件的租约到期时间，处理器崩溃后到期的事件会被重新领取
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+
+    // Constructors
+    public OutboxEvent() {}
+
+    public OutboxEvent(EventType eventType, Long aggregateId, Long taskId, String payload) {
+        this.eventType = eventType;
+        this.aggregateId = aggregateId;
+        this.taskId = taskId;
+        this.payload = payload;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public EventType getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(EventType eventType) {
+        this.eventType = eventType;
+    }
+
+    public Long getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(Long aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public OutboxStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OutboxStatus status) {
+        this.status = status;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getCompletedSteps() {
+        return completedSteps;
+    }
+
+    public void setCompletedSteps(String completedSteps) {
+        this.completedSteps = completedSteps;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public LocalDateTime getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(LocalDateTime lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+
+    public void setProcessedAt(LocalDateTime processedAt) {
+        this.processedAt = processedAt;
+    }
+
+    public boolean isStepCompleted(String step) {
+        if (completedSteps == null || completedSteps.isEmpty()) {
+            return false;
+        }
+        for (String completed : completedSteps.split(",")) {
+            if (completed.equals(step)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void markStepCompleted(String step) {
+        if (!isStepCompleted(step)) {
+            completedSteps = completedSteps == null || completedSteps.isEmpty() ? step : completedSteps + "," + step;
+        }
+    }
+
+    public enum EventType {
+        ANNOTATION_SUBMITTED
+    }
+
+    public enum OutboxStatus {
+        PENDING, PROCESSING, COMPLETED, FAILED
+    }
+}
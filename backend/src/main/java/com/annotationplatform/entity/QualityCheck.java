@@ -41,8 +41,15 @@ public class QualityCheck {
     @Column(name = "comparison_result")
     private ComparisonResult comparisonResult;
 
-    @Column(name = "conflict_fields", columnDefinition = "JSONB")
-    private String conflictFields; // JSON string
+    @Column(name = "conflict_fields", columnDefinition = "TEXT")
+    private String conflictFields; // JSON array of conflicting fields
+
+    // 参与共识的标注人数（多人标注时大于 2）
+    @Column(name = "annotator_count")
+    private Integer annotatorCount;
+
+    @Column(name = "consensus_data", columnDefinition = "TEXT")
+    private String consensusData; // JSON: weights, accepted values, disputed votes
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "resolved_by")
@@ -157,6 +164,22 @@ public class QualityCheck {
         this.conflictFields = conflictFields;
     }
 
+    public Integer getAnnotatorCount() {
+        return annotatorCount;
+    }
+
+    public void setAnnotatorCount(Integer annotatorCount) {
+        this.annotatorCount = annotatorCount;
+    }
+
+    public String getConsensusData() {
+        return consensusData;
+    }
+
+    public void setConsensusData(String consensusData) {
+        this.consensusData = consensusData;
+    }
+
     public User getResolvedBy() {
         return resolvedBy;
     }
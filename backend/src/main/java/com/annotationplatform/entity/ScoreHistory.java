@@ -8,7 +8,9 @@ import java.time.LocalDateTime;
 public class ScoreHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "score_history_id")
+    @TableGenerator(name = "score_history_id", table = "id_generators", pkColumnName = "gen_name",
+                    valueColumnName = "gen_value", pkColumnValue = "score_history", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
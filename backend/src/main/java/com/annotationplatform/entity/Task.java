@@ -6,11 +6,16 @@ import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "tasks")
+@Table(name = "tasks", indexes = {
+    @Index(name = "idx_tasks_document_status", columnList = "document_id, status"),
+    @Index(name = "idx_tasks_updated_at", columnList = "updated_at")
+})
 public class Task {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tasks_id")
+    @TableGenerator(name = "tasks_id", table = "id_generators", pkColumnName = "gen_name",
+                    valueColumnName = "gen_value", pkColumnValue = "tasks", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -37,6 +42,11 @@ public class Task {
     @Column(name = "status", length = 20)
     private TaskStatus status = TaskStatus.CREATED;
 
+    // 审核任务（/tasks/review/batch 创建）不进入标注队列
+    @Enumerated(EnumType.STRING)
+    @Column(name = "task_type", length = 20, nullable = false)
+    private TaskType taskType = TaskType.ANNOTATION;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "priority", length = 10)
     private Priority priority = Priority.NORMAL;
@@ -83,6 +93,10 @@ public class Task {
         AI_PROCESSING, AI_COMPLETED, ANNOTATING, ANNOTATED, INSPECTING, INSPECTED, EXPERT_REVIEWING, EXPERT_REVIEWED
     }
 
+    public enum TaskType {
+        ANNOTATION, REVIEW
+    }
+
     public enum Priority {
         LOW, NORMAL, HIGH, URGENT
     }
@@ -157,6 +171,14 @@ public class Task {
         this.status = status;
     }
 
+    public TaskType getTaskType() {
+        return taskType;
+    }
+
+    public void setTaskType(TaskType taskType) {
+        this.taskType = taskType;
+    }
+
     public Priority getPriority() {
         return priority;
     }
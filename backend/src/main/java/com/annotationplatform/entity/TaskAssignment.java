@@ -8,11 +8,16 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "task_assignments", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"task_id", "user_id", "assignment_type"})
+}, indexes = {
+    @Index(name = "idx_task_assignments_task_type", columnList = "task_id, assignment_type"),
+    @Index(name = "idx_task_assignments_lease", columnList = "status, lease_expires_at")
 })
 public class TaskAssignment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "task_assignments_id")
+    @TableGenerator(name = "task_assignments_id", table = "id_generators", pkColumnName = "gen_name",
+                    valueColumnName = "gen_value", pkColumnValue = "task_assignments", allocationSize = 50)
     private Long id;
 
     @NotNull
@@ -43,6 +48,10 @@ public class TaskAssignment {
     @Column(name = "notes", columnDefinition = "TEXT")
     private String notes;
 
+    // Set only for assignments claimed from the work queue; released when it expires unstarted
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
     @PrePersist
     protected void onCreate() {
         assignedAt = LocalDateTime.now();
@@ -129,4 +138,12 @@ public class TaskAssignment {
     public void setNotes(String notes) {
         this.notes = notes;
     }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
 }
@@ -0,0 +1,102 @@
+package com.annotationplatform.entity;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * 任务各阶段的分配计数器（每个任务、每种分配类型一行）
+ * 在任务分配创建、状态变化、删除时原子更新，工作流推进与状态查询不再扫描分配记录
+ */
+@Entity
+@Table(name = "task_stage_counters", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"task_id", "assignment_type"})
+})
+public class TaskStageCounter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "task_id", nullable = false)
+    private Task task;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "assignment_type", length = 20, nullable = false)
+    private TaskAssignment.AssignmentType assignmentType;
+
+    @Column(name = "assigned_count", nullable = false)
+    private Integer assignedCount = 0;
+
+    @Column(name = "completed_count", nullable = false)
+    private Integer completedCount = 0;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public TaskStageCounter() {}
+
+    public TaskStageCounter(Task task, TaskAssignment.AssignmentType assignmentType) {
+        this.task = task;
+        this.assignmentType = assignmentType;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public void setTask(Task task) {
+        this.task = task;
+    }
+
+    public TaskAssignment.AssignmentType getAssignmentType() {
+        return assignmentType;
+    }
+
+    public void setAssignmentType(TaskAssignment.AssignmentType assignmentType) {
+        this.assignmentType = assignmentType;
+    }
+
+    public Integer getAssignedCount() {
+        return assignedCount;
+    }
+
+    public void setAssignedCount(Integer assignedCount) {
+        this.assignedCount = assignedCount;
+    }
+
+    public Integer getCompletedCount() {
+        return completedCount;
+    }
+
+    public void setCompletedCount(Integer completedCount) {
+        this.completedCount = completedCount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,41 @@
+package com.annotationplatform.repository;
+
+import com.annotationplatform.entity.AgreementStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AgreementStatRepository extends JpaRepository<AgreementStat, Long> {
+
+    // 一次质量检查涉及的全部统计行（同一表单、同一天、这些标注员两两之间），加行锁后累加
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AgreementStat s WHERE s.formConfigId = :formConfigId AND s.statDate = :statDate " +
+           "AND s.annotatorAId IN :annotatorIds AND s.annotatorBId IN :annotatorIds")
+    List<AgreementStat> findForUpdate(@Param("formConfigId") Long formConfigId,
+                                      @Param("statDate") LocalDate statDate,
+                                      @Param("annotatorIds") Collection<Long> annotatorIds);
+
+    @Query("SELECT s FROM AgreementStat s " +
+           "WHERE s.statDate >= :fromDate AND s.statDate <= :toDate " +
+           "AND (:formConfigId IS NULL OR s.formConfigId = :formConfigId) " +
+           "AND (:fieldName IS NULL OR s.fieldName = :fieldName) " +
+           "AND (:annotatorId IS NULL OR s.annotatorAId = :annotatorId OR s.annotatorBId = :annotatorId)")
+    List<AgreementStat> findWithFilters(@Param("fromDate") LocalDate fromDate,
+                                        @Param("toDate") LocalDate toDate,
+                                        @Param("formConfigId") Long formConfigId,
+                                        @Param("fieldName") String fieldName,
+                                        @Param("annotatorId") Long annotatorId);
+
+    @Modifying
+    @Query("DELETE FROM AgreementStat s")
+    int deleteAllStats();
+}
@@ -4,10 +4,12 @@ import com.annotationplatform.entity.Annotation;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,8 +27,22 @@ public interface AnnotationRepository extends JpaRepository<Annotation, Long> {
 
     Page<Annotation> findByTaskAssignmentId(Long taskAssignmentId, Pageable pageable);
 
+    boolean existsByTaskAssignmentId(Long taskAssignmentId);
+
     @Query("SELECT a FROM Annotation a WHERE a.task.id = :taskId AND a.taskAssignment.id = :taskAssignmentId")
     Optional<Annotation> findByTaskIdAndTaskAssignmentId(@Param("taskId") Long taskId, @Param("taskAssignmentId") Long taskAssignmentId);
 
     List<Annotation> findByStatus(Annotation.AnnotationStatus status);
+
+    // 标注员历史准确率：按用户统计已审核（通过/驳回）的标注数
+    @Query("SELECT ta.user.id, a.status, COUNT(a) FROM Annotation a JOIN a.taskAssignment ta " +
+           "WHERE ta.user.id IN :userIds AND a.status IN :statuses GROUP BY ta.user.id, a.status")
+    List<Object[]> countByUserIdsGroupByStatus(@Param("userIds") Collection<Long> userIds,
+                                               @Param("statuses") Collection<Annotation.AnnotationStatus> statuses);
+
+    // 任务清理：删除任务及其分配下的标注
+    @Modifying
+    @Query("DELETE FROM Annotation a WHERE a.task.id IN :taskIds " +
+           "OR a.taskAssignment.id IN (SELECT ta.id FROM TaskAssignment ta WHERE ta.task.id IN :taskIds)")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
 }
@@ -0,0 +1,48 @@
+package com.annotationplatform.repository;
+
+import com.annotationplatform.entity.BatchDocument;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BatchDocumentRepository extends JpaRepository<BatchDocument, Long> {
+
+    @Query("SELECT bd FROM BatchDocument bd WHERE bd.batchId = :batchId")
+    Page<BatchDocument> findByBatchId(@Param("batchId") String batchId, Pageable pageable);
+
+    @Query("SELECT bd FROM BatchDocument bd WHERE bd.batchId = :batchId ORDER BY bd.sortOrder ASC")
+    List<BatchDocument> findByBatchIdOrdered(@Param("batchId") String batchId);
+
+    @Query("SELECT bd FROM BatchDocument bd WHERE bd.task.id = :taskId AND bd.documentId = :documentId")
+    Optional<BatchDocument> findByTaskIdAndDocumentId(@Param("taskId") Long taskId, @Param("documentId") Long documentId);
+
+    // 记录标注进度前锁住文档行，同一文档的提交串行计数
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT bd FROM BatchDocument bd WHERE bd.task.id = :taskId AND bd.documentId = :documentId")
+    Optional<BatchDocument> findForUpdate(@Param("taskId") Long taskId, @Param("documentId") Long documentId);
+
+    @Query("SELECT bd FROM BatchDocument bd WHERE bd.batchId = :batchId AND bd.documentId = :documentId")
+    Optional<BatchDocument> findByBatchIdAndDocumentId(@Param("batchId") String batchId, @Param("documentId") Long documentId);
+
+    boolean existsByBatchId(String batchId);
+
+    // 批次聚合统计：每个状态的文档数与进度总和，走 (batch_id, status) 索引
+    @Query("SELECT bd.status, COUNT(bd), COALESCE(SUM(bd.progress), 0) FROM BatchDocument bd " +
+           "WHERE bd.batchId = :batchId GROUP BY bd.status")
+    List<Object[]> aggregateByBatchId(@Param("batchId") String batchId);
+
+    @Modifying
+    @Query("DELETE FROM BatchDocument bd WHERE bd.task.id IN :taskIds")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
+}
@@ -0,0 +1,26 @@
+package com.annotationplatform.repository;
+
+import com.annotationplatform.entity.BatchDocumentSubmission;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BatchDocumentSubmissionRepository extends JpaRepository<BatchDocumentSubmission, Long> {
+
+    // 文档的提交人数，以及其中该用户的提交数（0 或 1）
+    @Query("SELECT COUNT(s), COALESCE(SUM(CASE WHEN s.user.id = :userId THEN 1 ELSE 0 END), 0) " +
+           "FROM BatchDocumentSubmission s WHERE s.batchDocument.id = :batchDocumentId")
+    List<Object[]> countSubmitters(@Param("batchDocumentId") Long batchDocumentId, @Param("userId") Long userId);
+
+    // 任务清理：先于批次文档删除
+    @Modifying
+    @Query("DELETE FROM BatchDocumentSubmission s WHERE s.batchDocument.id IN " +
+           "(SELECT bd.id FROM BatchDocument bd WHERE bd.task.id IN :taskIds)")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
+}
@@ -3,23 +3,34 @@ package com.annotationplatform.repository;
 import com.annotationplatform.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Category> findByParentIsNullOrderBySortOrderAsc();
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Category> findByParentIdOrderBySortOrderAsc(Long parentId);
 
     @Query("SELECT c FROM Category c WHERE c.parent IS NULL ORDER BY c.sortOrder ASC")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Category> findRootCategories();
 
     @Query("SELECT c FROM Category c WHERE c.level = :level ORDER BY c.sortOrder ASC")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Category> findByLevel(@Param("level") Integer level);
 
     boolean existsByNameAndParent(String name, Category parent);
+
+    // 分类树快照：一次查询取出全部分类的展示列 (id, 父分类ID, name, description, level, sortOrder, createdAt)
+    @Query("SELECT c.id, p.id, c.name, c.description, c.level, c.sortOrder, c.createdAt " +
+           "FROM Category c LEFT JOIN c.parent p ORDER BY c.sortOrder ASC, c.id ASC")
+    List<Object[]> findTreeRows();
 }
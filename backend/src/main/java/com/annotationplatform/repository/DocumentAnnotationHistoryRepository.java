@@ -4,10 +4,12 @@ import com.annotationplatform.entity.DocumentAnnotationHistory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -29,6 +31,10 @@ public interface DocumentAnnotationHistoryRepository extends JpaRepository<Docum
 
     @Query("SELECT h FROM DocumentAnnotationHistory h WHERE h.document.id = :documentId AND h.fieldName = :fieldName ORDER BY h.createdAt DESC")
     List<DocumentAnnotationHistory> findByDocumentIdAndFieldName(@Param("documentId") Long documentId, @Param("fieldName") String fieldName);
-}
-
 
+    // 任务清理：删除任务及其标注的修改历史
+    @Modifying
+    @Query("DELETE FROM DocumentAnnotationHistory h WHERE h.task.id IN :taskIds " +
+           "OR h.annotation.id IN (SELECT a.id FROM Annotation a WHERE a.task.id IN :taskIds)")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
+}
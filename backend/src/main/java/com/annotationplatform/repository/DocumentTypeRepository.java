@@ -2,15 +2,20 @@ package com.annotationplatform.repository;
 
 import com.annotationplatform.entity.DocumentType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DocumentTypeRepository extends JpaRepository<DocumentType, Long> {
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<DocumentType> findByName(String name);
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<DocumentType> findByIsActiveTrueOrderByCreatedAtDesc();
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<DocumentType> findAllByOrderByCreatedAtDesc();
     boolean existsByName(String name);
 }
@@ -3,21 +3,27 @@ package com.annotationplatform.repository;
 import com.annotationplatform.entity.FormConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 @Repository
 public interface FormConfigRepository extends JpaRepository<FormConfig, Long> {
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<FormConfig> findByCategoryIdOrderByCreatedAtDesc(Long categoryId);
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<FormConfig> findByIsActiveTrueOrderByCreatedAtDesc();
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<FormConfig> findByCategoryIdAndIsActiveTrueOrderByCreatedAtDesc(Long categoryId);
 
     @Query("SELECT fc FROM FormConfig fc WHERE fc.isActive = true ORDER BY fc.updatedAt DESC")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<FormConfig> findActiveFormConfigs();
 
     @Query("SELECT COUNT(fc) FROM FormConfig fc WHERE fc.name = :name AND ((:categoryId IS NULL AND fc.category IS NULL) OR (:categoryId IS NOT NULL AND fc.category.id = :categoryId))")
@@ -28,9 +34,11 @@ public interface FormConfigRepository extends JpaRepository<FormConfig, Long> {
     }
     
     @Query("SELECT fc FROM FormConfig fc WHERE fc.category IS NULL AND fc.isActive = true ORDER BY fc.createdAt DESC")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<FormConfig> findIndependentFormConfigs();
     
     @Query("SELECT fc FROM FormConfig fc WHERE fc.category IS NULL ORDER BY fc.createdAt DESC")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<FormConfig> findAllIndependentFormConfigs();
     
     @Query("SELECT COUNT(fc) FROM FormConfig fc WHERE fc.name = :name AND fc.category IS NULL")
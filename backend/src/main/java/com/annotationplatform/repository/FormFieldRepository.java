@@ -3,17 +3,21 @@ package com.annotationplatform.repository;
 import com.annotationplatform.entity.FormField;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 @Repository
 public interface FormFieldRepository extends JpaRepository<FormField, Long> {
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<FormField> findByFormConfigIdOrderBySortOrderAsc(Long formConfigId);
 
     @Query("SELECT ff FROM FormField ff WHERE ff.formConfig.id = :formConfigId ORDER BY ff.sortOrder ASC")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<FormField> findByFormConfigIdOrdered(@Param("formConfigId") Long formConfigId);
 
     boolean existsByFormConfigIdAndFieldName(Long formConfigId, String fieldName);
@@ -0,0 +1,48 @@
+package com.annotationplatform.repository;
+
+import com.annotationplatform.entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // 到期待处理的事件，以及租约已过期（处理器中断）的处理中事件
+    @Query("SELECT e.id FROM OutboxEvent e " +
+           "WHERE (e.status = 'PENDING' AND e.nextAttemptAt <= :now) " +
+           "OR (e.status = 'PROCESSING' AND e.lockedUntil < :now) " +
+           "ORDER BY e.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // 条件更新领取事件：只有一个处理器能把同一事件从待处理改为处理中
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = 'PROCESSING', e.lockedUntil = :lockedUntil, " +
+           "e.attempts = e.attempts + 1 " +
+           "WHERE e.id = :id AND ((e.status = 'PENDING' AND e.nextAttemptAt <= :now) " +
+           "OR (e.status = 'PROCESSING' AND e.lockedUntil < :now))")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Query("SELECT e.status, COUNT(e), MIN(e.createdAt) FROM OutboxEvent e GROUP BY e.status")
+    List<Object[]> countByStatus();
+
+    @Query("SELECT e FROM OutboxEvent e WHERE e.status = :status ORDER BY e.id DESC")
+    List<OutboxEvent> findByStatus(@Param("status") OutboxEvent.OutboxStatus status, Pageable pageable);
+
+    // 任务清理：删除任务的发件箱事件
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.taskId IN :taskIds")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
+
+    // 清理已完成的历史事件
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = 'COMPLETED' AND e.processedAt < :before")
+    int deleteCompletedBefore(@Param("before") LocalDateTime before);
+}
@@ -4,10 +4,12 @@ import com.annotationplatform.entity.QualityCheck;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -23,6 +25,9 @@ public interface QualityCheckRepository extends JpaRepository<QualityCheck, Long
     @Query("SELECT qc FROM QualityCheck qc WHERE qc.resolvedBy.id = :userId")
     List<QualityCheck> findByResolver(@Param("userId") Long userId);
 
+    @Query("SELECT COUNT(qc) FROM QualityCheck qc WHERE qc.task.id = :taskId")
+    Long countByTaskId(@Param("taskId") Long taskId);
+
     @Query("SELECT COUNT(qc) FROM QualityCheck qc WHERE qc.status = :status")
     Long countByStatus(@Param("status") QualityCheck.QualityCheckStatus status);
 
@@ -42,4 +47,11 @@ public interface QualityCheckRepository extends JpaRepository<QualityCheck, Long
     Page<QualityCheck> findWithFilters(@Param("taskId") Long taskId,
                                       @Param("status") QualityCheck.QualityCheckStatus status,
                                       Pageable pageable);
+
+    // 任务清理：删除任务及其标注的质检记录
+    @Modifying
+    @Query("DELETE FROM QualityCheck qc WHERE qc.task.id IN :taskIds " +
+           "OR qc.annotationA.id IN (SELECT a.id FROM Annotation a WHERE a.task.id IN :taskIds) " +
+           "OR qc.annotationB.id IN (SELECT a.id FROM Annotation a WHERE a.task.id IN :taskIds)")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
 }
@@ -5,11 +5,13 @@ import com.annotationplatform.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -37,9 +39,11 @@ public interface ScoreHistoryRepository extends JpaRepository<ScoreHistory, Long
 
     // 查找用户指定类型的积分记录
     List<ScoreHistory> findByUserAndScoreTypeOrderByCreatedAtDesc(User user, ScoreHistory.ScoreType scoreType);
-}
-
-
-
-
 
+    // 任务清理：删除任务及其标注、质检关联的评分记录
+    @Modifying
+    @Query("DELETE FROM ScoreHistory sh WHERE sh.task.id IN :taskIds " +
+           "OR sh.annotation.id IN (SELECT a.id FROM Annotation a WHERE a.task.id IN :taskIds) " +
+           "OR sh.qualityCheck.id IN (SELECT qc.id FROM QualityCheck qc WHERE qc.task.id IN :taskIds)")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
+}
@@ -4,10 +4,15 @@ import com.annotationplatform.entity.TaskAssignment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,4 +37,50 @@ public interface TaskAssignmentRepository extends JpaRepository<TaskAssignment,
 
     @Query("SELECT COUNT(ta) FROM TaskAssignment ta WHERE ta.user.id = :userId AND ta.assignmentType = :assignmentType AND ta.status = :status")
     Long countByUserIdAndAssignmentTypeAndStatus(@Param("userId") Long userId, @Param("assignmentType") TaskAssignment.AssignmentType assignmentType, @Param("status") TaskAssignment.AssignmentStatus status);
+
+    // 按分配类型汇总任务的分配数与完成数（用于建立/校准阶段计数器）
+    @Query("SELECT ta.assignmentType, COUNT(ta), SUM(CASE WHEN ta.status = :completedStatus THEN 1 ELSE 0 END) " +
+           "FROM TaskAssignment ta WHERE ta.task.id = :taskId GROUP BY ta.assignmentType")
+    List<Object[]> countByTaskIdGroupByAssignmentType(@Param("taskId") Long taskId,
+                                                      @Param("completedStatus") TaskAssignment.AssignmentStatus completedStatus);
+
+    // 看板批量工作流状态：一次分组统计多个任务的分配情况
+    @Query("SELECT ta.task.id, ta.assignmentType, ta.status, COUNT(ta) FROM TaskAssignment ta " +
+           "WHERE ta.task.id IN :taskIds GROUP BY ta.task.id, ta.assignmentType, ta.status")
+    List<Object[]> countByTaskIdsGroupByTypeAndStatus(@Param("taskIds") Collection<Long> taskIds);
+
+    // 工作量校准：按用户与分配类型统计未完成的分配数
+    @Query("SELECT ta.user.id, ta.assignmentType, COUNT(ta) FROM TaskAssignment ta " +
+           "WHERE ta.status IN :statuses GROUP BY ta.user.id, ta.assignmentType")
+    List<Object[]> countByStatusInGroupByUserAndType(@Param("statuses") Collection<TaskAssignment.AssignmentStatus> statuses);
+
+    // 分配调度器：批量获取任务某阶段已分配的用户
+    @Query("SELECT ta.task.id, ta.user.id FROM TaskAssignment ta " +
+           "WHERE ta.task.id IN :taskIds AND ta.assignmentType = :assignmentType")
+    List<Object[]> findUserIdsByTaskIdsAndAssignmentType(@Param("taskIds") Collection<Long> taskIds,
+                                                         @Param("assignmentType") TaskAssignment.AssignmentType assignmentType);
+
+    // 批量分配校验：一次查询返回矩阵内已存在的 (任务, 用户, 类型) 组合
+    @Query("SELECT ta.task.id, ta.user.id, ta.assignmentType FROM TaskAssignment ta " +
+           "WHERE ta.task.id IN :taskIds AND ta.user.id IN :userIds AND ta.assignmentType IN :assignmentTypes")
+    List<Object[]> findExistingAssignmentKeys(@Param("taskIds") Collection<Long> taskIds,
+                                              @Param("userIds") Collection<Long> userIds,
+                                              @Param("assignmentTypes") Collection<TaskAssignment.AssignmentType> assignmentTypes);
+
+    // 租约已过期且尚未开始标注的领取记录
+    @Query("SELECT ta FROM TaskAssignment ta WHERE ta.status = :status AND ta.leaseExpiresAt < :now " +
+           "AND NOT EXISTS (SELECT a.id FROM Annotation a WHERE a.taskAssignment = ta)")
+    List<TaskAssignment> findExpiredLeases(@Param("status") TaskAssignment.AssignmentStatus status,
+                                           @Param("now") LocalDateTime now,
+                                           Pageable pageable);
+
+    // 释放领取前锁住分配行，核对期间标注不能写入
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ta FROM TaskAssignment ta WHERE ta.id = :id")
+    Optional<TaskAssignment> findForUpdate(@Param("id") Long id);
+
+    // 任务清理：批量删除任务的分配
+    @Modifying
+    @Query("DELETE FROM TaskAssignment ta WHERE ta.task.id IN :taskIds")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
 }
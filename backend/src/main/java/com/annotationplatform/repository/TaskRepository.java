@@ -2,14 +2,17 @@ package com.annotationplatform.repository;
 
 import com.annotationplatform.entity.Annotation;
 import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -66,4 +69,37 @@ public interface TaskRepository extends JpaRepository<Task, Long> {
     Long countByStatusAndCreatedAtAfter(@Param("status") Task.TaskStatus status, @Param("startDate") LocalDateTime startDate);
 
     List<Task> findByBatchId(String batchId);
+
+    // 审核资格：一次查询返回所有已存在审核类分配的文档ID（走 tasks.document_id 与 (task_id, assignment_type) 索引）
+    @Query("SELECT DISTINCT t.document.id FROM Task t WHERE t.document.id IN :documentIds AND EXISTS (" +
+           "SELECT ta.id FROM TaskAssignment ta WHERE ta.task = t AND ta.assignmentType IN :assignmentTypes)")
+    List<Long> findDocumentIdsWithAssignmentTypes(@Param("documentIds") Collection<Long> documentIds,
+                                                  @Param("assignmentTypes") Collection<TaskAssignment.AssignmentType> assignmentTypes);
+
+    // 分配调度器快照：只取计算紧迫度需要的列 (id, status, 任务优先级, 文档优先级, deadline, createdAt, 文档类型要求的标注人数)
+    // 与标注队列一致，只包括单文档的标注任务（不含审核任务与批次父任务）
+    @Query("SELECT t.id, t.status, t.priority, d.priority, t.deadline, t.createdAt, dt.requiredAnnotators " +
+           "FROM Task t LEFT JOIN t.document d LEFT JOIN d.documentType dt " +
+           "WHERE t.status IN :statuses " +
+           "AND t.taskType = 'ANNOTATION' AND NOT EXISTS (SELECT bd.id FROM BatchDocument bd WHERE bd.task = t)")
+    List<Object[]> findSchedulingSnapshotsByStatusIn(@Param("statuses") Collection<Task.TaskStatus> statuses);
+
+    @Query("SELECT t.id, t.status, t.priority, d.priority, t.deadline, t.createdAt, dt.requiredAnnotators " +
+           "FROM Task t LEFT JOIN t.document d LEFT JOIN d.documentType dt " +
+           "WHERE t.updatedAt >= :since " +
+           "AND t.taskType = 'ANNOTATION' AND NOT EXISTS (SELECT bd.id FROM BatchDocument bd WHERE bd.task = t)")
+    List<Object[]> findSchedulingSnapshotsUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT t.id, t.status, t.priority, d.priority, t.deadline, t.createdAt, dt.requiredAnnotators " +
+           "FROM Task t LEFT JOIN t.document d LEFT JOIN d.documentType dt " +
+           "WHERE t.id IN :taskIds " +
+           "AND t.taskType = 'ANNOTATION' AND NOT EXISTS (SELECT bd.id FROM BatchDocument bd WHERE bd.task = t)")
+    List<Object[]> findSchedulingSnapshotsByIds(@Param("taskIds") Collection<Long> taskIds);
+
+    @Query("SELECT t.id FROM Task t WHERE t.id IN :taskIds")
+    List<Long> findExistingIds(@Param("taskIds") Collection<Long> taskIds);
+
+    @Modifying
+    @Query("DELETE FROM Task t WHERE t.id IN :taskIds")
+    int deleteByIdIn(@Param("taskIds") Collection<Long> taskIds);
 }
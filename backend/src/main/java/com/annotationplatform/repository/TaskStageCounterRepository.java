@@ -0,0 +1,38 @@
+package com.annotationplatform.repository;
+
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.TaskStageCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TaskStageCounterRepository extends JpaRepository<TaskStageCounter, Long> {
+
+    @Query("SELECT c FROM TaskStageCounter c WHERE c.task.id = :taskId")
+    List<TaskStageCounter> findByTaskId(@Param("taskId") Long taskId);
+
+    @Query("SELECT c FROM TaskStageCounter c WHERE c.task.id IN :taskIds")
+    List<TaskStageCounter> findByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
+
+    @Query("SELECT c FROM TaskStageCounter c WHERE c.task.id = :taskId AND c.assignmentType = :assignmentType")
+    Optional<TaskStageCounter> findByTaskIdAndAssignmentType(@Param("taskId") Long taskId,
+                                                             @Param("assignmentType") TaskAssignment.AssignmentType assignmentType);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM TaskStageCounter c WHERE c.task.id = :taskId AND c.assignmentType = :assignmentType")
+    Optional<TaskStageCounter> findForUpdate(@Param("taskId") Long taskId,
+                                             @Param("assignmentType") TaskAssignment.AssignmentType assignmentType);
+
+    @Modifying
+    @Query("DELETE FROM TaskStageCounter c WHERE c.task.id IN :taskIds")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
+}
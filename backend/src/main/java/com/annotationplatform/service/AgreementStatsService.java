@@ -0,0 +1,508 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.AgreementStat;
+import com.annotationplatform.entity.Annotation;
+import com.annotationplatform.entity.FormField;
+import com.annotationplatform.entity.QualityCheck;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.repository.AgreementStatRepository;
+import com.annotationplatform.repository.AnnotationRepository;
+import com.annotationplatform.repository.FormFieldRepository;
+import com.annotationplatform.repository.QualityCheckRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 标注一致性统计
+ *
+ * 每次创建质量检查时，把参与标注的每一对标注员在每个字段上的比较结果累加到 agreement_stats
+ * （表单 × 字段 × 标注员对 × 日期一行）。一致性指标只读取这些计数行计算，与历史标注数量无关。
+ * 选择类字段额外记录两人各取值的出现次数，用于计算 Cohen kappa 与 Fleiss kappa（按标注员对汇总）。
+ */
+@Service
+public class AgreementStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgreementStatsService.class);
+
+    // 记录取值分布、可以计算 kappa 的字段类型（取值集合有限）
+    private static final Set<FormField.FieldType> CATEGORICAL_TYPES =
+        Set.of(FormField.FieldType.SELECT, FormField.FieldType.BOOLEAN);
+
+    // 未填写在取值分布中的类别
+    private static final String EMPTY_CATEGORY = "";
+
+    private static final int REBUILD_PAGE_SIZE = 200;
+
+    private static final TypeReference<Map<String, Long>> MARGINALS_TYPE = new TypeReference<>() {};
+
+    private static final String INSERT_ROW_SQL =
+        "INSERT INTO agreement_stats (form_config_id, stat_date, field_name, field_type, annotator_a_id, annotator_b_id, " +
+        "comparisons, agreements, marginals_a, marginals_b, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private AgreementStatRepository agreementStatRepository;
+
+    @Autowired
+    private QualityCheckRepository qualityCheckRepository;
+
+    @Autowired
+    private AnnotationRepository annotationRepository;
+
+    @Autowired
+    private FormFieldRepository formFieldRepository;
+
+    @Autowired
+    private AnnotationDiffService annotationDiffService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 累加一次质量检查的比较结果（与质量检查在同一事务内，失败时整个事务回滚并由调用方重试）
+     */
+    @Transactional
+    public void record(Task task, List<Annotation> annotations, LocalDate statDate) {
+        Long formConfigId = task.getFormConfig() != null ? task.getFormConfig().getId() : AgreementStat.NO_FORM;
+        List<FormField> fields = task.getFormConfig() != null
+            ? formFieldRepository.findByFormConfigIdOrdered(formConfigId)
+            : List.of();
+        Map<String, FormField.FieldType> types = new LinkedHashMap<>();
+        for (FormField field : fields) {
+            types.put(field.getFieldName(), field.getFieldType());
+        }
+
+        // 每份标注按字段归一化一次
+        List<Long> annotatorIds = new ArrayList<>();
+        List<Map<String, Object>> normalized = new ArrayList<>();
+        Set<String> fieldNames = new LinkedHashSet<>(types.keySet());
+        for (Annotation annotation : annotations) {
+            Long userId = annotation.getTaskAssignment().getUser().getId();
+            if (annotatorIds.contains(userId)) {
+                continue;
+            }
+            JsonNode tree = annotationDiffService.parse(annotation.getAnnotationData());
+            Map<String, Object> values = new HashMap<>();
+            if (tree != null && tree.isObject()) {
+                tree.fieldNames().forEachRemaining(fieldNames::add);
+                tree.fields().forEachRemaining(entry ->
+                    values.put(entry.getKey(), annotationDiffService.normalize(entry.getValue(), types.get(entry.getKey()))));
+            }
+            annotatorIds.add(userId);
+            normalized.add(values);
+        }
+        if (annotatorIds.size() < 2) {
+            return;
+        }
+
+        Map<String, AgreementStat> rows = new HashMap<>();
+        for (AgreementStat stat : agreementStatRepository.findForUpdate(formConfigId, statDate, annotatorIds)) {
+            rows.put(rowKey(stat.getFieldName(), stat.getAnnotatorAId(), stat.getAnnotatorBId()), stat);
+        }
+
+        Map<AgreementStat, Map<String, Long>[]> marginals = new LinkedHashMap<>();
+        for (int i = 0; i < annotatorIds.size(); i++) {
+            for (int j = i + 1; j < annotatorIds.size(); j++) {
+                // 标注员对按 id 排序，保证同一对只有一行
+                boolean swap = annotatorIds.get(i) > annotatorIds.get(j);
+                Long aId = swap ? annotatorIds.get(j) : annotatorIds.get(i);
+                Long bId = swap ? annotatorIds.get(i) : annotatorIds.get(j);
+                Map<String, Object> valuesA = normalized.get(swap ? j : i);
+                Map<String, Object> valuesB = normalized.get(swap ? i : j);
+
+                boolean allMatch = true;
+                int compared = 0;
+                for (String fieldName : fieldNames) {
+                    Object valueA = valuesA.get(fieldName);
+                    Object valueB = valuesB.get(fieldName);
+                    if (valueA == null && valueB == null) {
+                        continue;
+                    }
+                    compared++;
+                    boolean match = Objects.equals(valueA, valueB);
+                    allMatch &= match;
+
+                    FormField.FieldType type = types.get(fieldName);
+                    AgreementStat stat = row(rows, formConfigId, statDate, fieldName, type, aId, bId);
+                    increment(stat, match);
+                    if (type != null && CATEGORICAL_TYPES.contains(type)) {
+                        Map<String, Long>[] counts = marginals.computeIfAbsent(stat, this::readMarginals);
+                        counts[0].merge(category(valueA), 1L, Long::sum);
+                        counts[1].merge(category(valueB), 1L, Long::sum);
+                    }
+                }
+                if (compared > 0) {
+                    increment(row(rows, formConfigId, statDate, AgreementStat.ALL_FIELDS, null, aId, bId), allMatch);
+                }
+            }
+        }
+
+        marginals.forEach((stat, counts) -> {
+            stat.setMarginalsA(writeMarginals(counts[0]));
+            stat.setMarginalsB(writeMarginals(counts[1]));
+        });
+
+        // 已有的行在加锁后累加，提交时写回；当天新出现的行直接插入，
+        // 被并发事务抢先插入时改为加锁读取后合并本次的计数（按行键顺序插入，减少相互等待）
+        List<AgreementStat> insertedConcurrently = new ArrayList<>();
+        for (AgreementStat stat : new TreeMap<>(rows).values()) {
+            if (stat.getId() == null && !insertRow(stat)) {
+                insertedConcurrently.add(stat);
+            }
+        }
+        if (!insertedConcurrently.isEmpty()) {
+            Map<String, AgreementStat> locked = new HashMap<>();
+            for (AgreementStat stat : agreementStatRepository.findForUpdate(formConfigId, statDate, annotatorIds)) {
+                locked.put(rowKey(stat.getFieldName(), stat.getAnnotatorAId(), stat.getAnnotatorBId()), stat);
+            }
+            for (AgreementStat stat : insertedConcurrently) {
+                AgreementStat existing = locked.get(rowKey(stat.getFieldName(), stat.getAnnotatorAId(), stat.getAnnotatorBId()));
+                if (existing == null) {
+                    throw new IllegalStateException("Agreement stat row missing after duplicate insert: " + stat.getFieldName());
+                }
+                merge(existing, stat);
+            }
+        }
+    }
+
+    /**
+     * 插入统计行，已存在（含并发事务刚插入）时返回 false
+     * 用 JDBC 在当前事务内执行：唯一约束冲突只使这一条语句失败，不会把整个事务标记为回滚
+     */
+    private boolean insertRow(AgreementStat stat) {
+        try {
+            jdbcTemplate.update(INSERT_ROW_SQL, stat.getFormConfigId(), stat.getStatDate(), stat.getFieldName(),
+                stat.getFieldType() != null ? stat.getFieldType().name() : null, stat.getAnnotatorAId(),
+                stat.getAnnotatorBId(), stat.getComparisons(), stat.getAgreements(), stat.getMarginalsA(),
+                stat.getMarginalsB(), LocalDateTime.now());
+            return true;
+        } catch (DuplicateKeyException e) {
+            logger.debug("Agreement stat {} {} {} was created concurrently",
+                stat.getFieldName(), stat.getAnnotatorAId(), stat.getAnnotatorBId());
+            return false;
+        }
+    }
+
+    private void merge(AgreementStat target, AgreementStat increment) {
+        target.setComparisons(target.getComparisons() + increment.getComparisons());
+        target.setAgreements(target.getAgreements() + increment.getAgreements());
+        if (increment.getMarginalsA() != null || increment.getMarginalsB() != null) {
+            Map<String, Long>[] counts = readMarginals(target);
+            Map<String, Long>[] added = readMarginals(increment);
+            added[0].forEach((category, count) -> counts[0].merge(category, count, Long::sum));
+            added[1].forEach((category, count) -> counts[1].merge(category, count, Long::sum));
+            target.setMarginalsA(writeMarginals(counts[0]));
+            target.setMarginalsB(writeMarginals(counts[1]));
+        }
+    }
+
+    /**
+     * 按历史质量检查重建统计（首次上线或统计口径调整后使用），每页一个事务
+     */
+    public int rebuild() {
+        transactionTemplate.executeWithoutResult(status -> agreementStatRepository.deleteAllStats());
+
+        int processed = 0;
+        int page = 0;
+        while (true) {
+            int current = page;
+            Integer count = transactionTemplate.execute(status -> {
+                Page<QualityCheck> checks = qualityCheckRepository.findAll(
+                    PageRequest.of(current, REBUILD_PAGE_SIZE, Sort.by("id")));
+                for (QualityCheck qualityCheck : checks.getContent()) {
+                    List<Annotation> annotations = annotationsOf(qualityCheck);
+                    LocalDate statDate = qualityCheck.getCreatedAt() != null
+                        ? qualityCheck.getCreatedAt().toLocalDate() : LocalDate.now();
+                    record(qualityCheck.getTask(), annotations, statDate);
+                }
+                return checks.getNumberOfElements();
+            });
+            if (count == null || count == 0) {
+                break;
+            }
+            processed += count;
+            page++;
+        }
+        logger.info("Agreement statistics rebuilt from {} quality checks", processed);
+        return processed;
+    }
+
+    /**
+     * 按维度汇总一致性指标
+     */
+    @Transactional(readOnly = true)
+    public AgreementReport getReport(LocalDate fromDate, LocalDate toDate, Long formConfigId, String fieldName,
+                                     Long annotatorId, GroupBy groupBy) {
+        List<AgreementStat> stats = agreementStatRepository.findWithFilters(fromDate, toDate, formConfigId, fieldName, annotatorId);
+
+        Map<String, AgreementGroup> groups = new TreeMap<>();
+        AgreementGroup overall = new AgreementGroup(Map.of());
+        for (AgreementStat stat : stats) {
+            Map<String, Long>[] counts = readMarginals(stat);
+            overall.add(stat, counts[0], counts[1]);
+
+            if (groupBy == GroupBy.ANNOTATOR) {
+                // 每行同时计入两位标注员，以该标注员自己的取值分布作为 A 侧
+                if (annotatorId == null || annotatorId.equals(stat.getAnnotatorAId())) {
+                    group(groups, Map.of("annotatorId", stat.getAnnotatorAId())).add(stat, counts[0], counts[1]);
+                }
+                if (annotatorId == null || annotatorId.equals(stat.getAnnotatorBId())) {
+                    group(groups, Map.of("annotatorId", stat.getAnnotatorBId())).add(stat, counts[1], counts[0]);
+                }
+            } else {
+                group(groups, groupKey(stat, groupBy)).add(stat, counts[0], counts[1]);
+            }
+        }
+        return new AgreementReport(fromDate, toDate, groupBy, new ArrayList<>(groups.values()), overall);
+    }
+
+    private Map<String, Object> groupKey(AgreementStat stat, GroupBy groupBy) {
+        Map<String, Object> key = new LinkedHashMap<>();
+        switch (groupBy) {
+            case FIELD:
+                key.put("formConfigId", stat.getFormConfigId());
+                key.put("fieldName", stat.getFieldName());
+                return key;
+            case PAIR:
+                key.put("annotatorAId", stat.getAnnotatorAId());
+                key.put("annotatorBId", stat.getAnnotatorBId());
+                return key;
+            case DAY:
+                return Map.of("date", stat.getStatDate());
+            case FORM:
+            default:
+                return Map.of("formConfigId", stat.getFormConfigId());
+        }
+    }
+
+    private AgreementGroup group(Map<String, AgreementGroup> groups, Map<String, Object> key) {
+        return groups.computeIfAbsent(sortKey(key), k -> new AgreementGroup(key));
+    }
+
+    // 数值维度按数值排序
+    private String sortKey(Map<String, Object> key) {
+        StringBuilder builder = new StringBuilder();
+        new TreeMap<>(key).forEach((name, value) -> builder.append(value instanceof Long
+            ? String.format("%020d", (Long) value) : String.valueOf(value)).append('|'));
+        return builder.toString();
+    }
+
+    private List<Annotation> annotationsOf(QualityCheck qualityCheck) {
+        JsonNode consensus = qualityCheck.getConsensusData() != null
+            ? annotationDiffService.parse(qualityCheck.getConsensusData()) : null;
+        if (consensus != null && consensus.path("annotationIds").size() > 0) {
+            List<Long> ids = new ArrayList<>();
+            consensus.path("annotationIds").forEach(node -> ids.add(node.asLong()));
+            return annotationRepository.findAllById(ids);
+        }
+        List<Annotation> annotations = new ArrayList<>();
+        if (qualityCheck.getAnnotationA() != null) {
+            annotations.add(qualityCheck.getAnnotationA());
+        }
+        if (qualityCheck.getAnnotationB() != null) {
+            annotations.add(qualityCheck.getAnnotationB());
+        }
+        return annotations;
+    }
+
+    private AgreementStat row(Map<String, AgreementStat> rows, Long formConfigId, LocalDate statDate,
+                              String fieldName, FormField.FieldType type, Long aId, Long bId) {
+        return rows.computeIfAbsent(rowKey(fieldName, aId, bId),
+            key -> new AgreementStat(formConfigId, statDate, fieldName, type, aId, bId));
+    }
+
+    private String rowKey(String fieldName, Long aId, Long bId) {
+        return fieldName + '|' + aId + '|' + bId;
+    }
+
+    private void increment(AgreementStat stat, boolean match) {
+        stat.setComparisons(stat.getComparisons() + 1);
+        if (match) {
+            stat.setAgreements(stat.getAgreements() + 1);
+        }
+    }
+
+    private String category(Object normalized) {
+        return normalized != null ? normalized.toString() : EMPTY_CATEGORY;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long>[] readMarginals(AgreementStat stat) {
+        return new Map[] { readMarginals(stat.getMarginalsA()), readMarginals(stat.getMarginalsB()) };
+    }
+
+    private Map<String, Long> readMarginals(String json) {
+        if (json == null || json.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, MARGINALS_TYPE);
+        } catch (Exception e) {
+            return new HashMap<>();
+        }
+    }
+
+    private String writeMarginals(Map<String, Long> counts) {
+        try {
+            return objectMapper.writeValueAsString(new TreeMap<>(counts));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public enum GroupBy {
+        FORM, FIELD, PAIR, ANNOTATOR, DAY
+    }
+
+    /**
+     * 一个维度取值下的汇总计数
+     * 字段行汇总为字段级一致率与 kappa，整份标注行（ALL_FIELDS）汇总为整份精确一致率
+     */
+    public static class AgreementGroup {
+        private final Map<String, Object> key;
+        private long comparisons;
+        private long agreements;
+        private long documentComparisons;
+        private long documentAgreements;
+        // 选择类字段的比较次数、一致次数与取值分布（kappa 只在这些字段上计算）
+        private long categoricalComparisons;
+        private long categoricalAgreements;
+        private final Map<String, Long> marginalsA = new HashMap<>();
+        private final Map<String, Long> marginalsB = new HashMap<>();
+
+        AgreementGroup(Map<String, Object> key) {
+            this.key = key;
+        }
+
+        void add(AgreementStat stat, Map<String, Long> countsA, Map<String, Long> countsB) {
+            if (AgreementStat.ALL_FIELDS.equals(stat.getFieldName())) {
+                documentComparisons += stat.getComparisons();
+                documentAgreements += stat.getAgreements();
+                return;
+            }
+            comparisons += stat.getComparisons();
+            agreements += stat.getAgreements();
+            if (stat.getFieldType() != null && CATEGORICAL_TYPES.contains(stat.getFieldType())) {
+                categoricalComparisons += stat.getComparisons();
+                categoricalAgreements += stat.getAgreements();
+                countsA.forEach((category, count) -> marginalsA.merge(category, count, Long::sum));
+                countsB.forEach((category, count) -> marginalsB.merge(category, count, Long::sum));
+            }
+        }
+
+        public Map<String, Object> getKey() { return key; }
+
+        public long getComparisons() { return comparisons; }
+
+        public long getAgreements() { return agreements; }
+
+        public Double getExactMatchRate() { return rate(agreements, comparisons); }
+
+        public long getDocumentComparisons() { return documentComparisons; }
+
+        public Double getDocumentExactMatchRate() { return rate(documentAgreements, documentComparisons); }
+
+        /**
+         * Cohen kappa：期望一致率 = Σ pA(k) · pB(k)
+         */
+        public Double getCohenKappa() {
+            if (categoricalComparisons == 0) {
+                return null;
+            }
+            double n = categoricalComparisons;
+            double expected = 0;
+            for (Map.Entry<String, Long> entry : marginalsA.entrySet()) {
+                expected += (entry.getValue() / n) * (marginalsB.getOrDefault(entry.getKey(), 0L) / n);
+            }
+            return kappa(categoricalAgreements / n, expected);
+        }
+
+        /**
+         * Fleiss kappa（按标注员对汇总）：期望一致率 = Σ p(k)²，p(k) 为全部标注中取值 k 的占比
+         */
+        public Double getFleissKappa() {
+            if (categoricalComparisons == 0) {
+                return null;
+            }
+            double total = 2.0 * categoricalComparisons;
+            Set<String> categories = new LinkedHashSet<>(marginalsA.keySet());
+            categories.addAll(marginalsB.keySet());
+            double expected = 0;
+            for (String category : categories) {
+                double p = (marginalsA.getOrDefault(category, 0L) + marginalsB.getOrDefault(category, 0L)) / total;
+                expected += p * p;
+            }
+            return kappa(categoricalAgreements / (double) categoricalComparisons, expected);
+        }
+
+        private static Double rate(long numerator, long denominator) {
+            return denominator > 0 ? Math.round(numerator * 10000.0 / denominator) / 10000.0 : null;
+        }
+
+        // 期望一致率为 1（所有人始终选同一类别）时 kappa 无定义
+        private static Double kappa(double observed, double expected) {
+            if (expected >= 1.0) {
+                return null;
+            }
+            return Math.round((observed - expected) / (1.0 - expected) * 10000.0) / 10000.0;
+        }
+    }
+
+    /**
+     * 一致性报告
+     */
+    public static class AgreementReport {
+        private final LocalDate fromDate;
+        private final LocalDate toDate;
+        private final GroupBy groupBy;
+        private final List<AgreementGroup> groups;
+        private final AgreementGroup overall;
+
+        AgreementReport(LocalDate fromDate, LocalDate toDate, GroupBy groupBy, List<AgreementGroup> groups,
+                        AgreementGroup overall) {
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+            this.groupBy = groupBy;
+            this.groups = groups;
+            this.overall = overall;
+        }
+
+        public LocalDate getFromDate() { return fromDate; }
+
+        public LocalDate getToDate() { return toDate; }
+
+        public GroupBy getGroupBy() { return groupBy; }
+
+        public List<AgreementGroup> getGroups() { return groups; }
+
+        public AgreementGroup getOverall() { return overall; }
+    }
+}
@@ -0,0 +1,393 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.FormField;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 标注结果字段级比对
+ *
+ * 解析两份标注数据后逐字段比较，按表单字段类型归一化后再判断是否一致：
+ * 数字按数值、日期按日历日、文本去除首尾及多余空白（可忽略大小写）、多选按集合比较。
+ * 空字符串、空数组与未填写视为相同。只有真正不一致的字段才记为冲突。
+ */
+@Service
+public class AnnotationDiffService {
+
+    private static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+        DateTimeFormatter.ISO_LOCAL_DATE,
+        DateTimeFormatter.ofPattern("yyyy/M/d"),
+        DateTimeFormatter.ofPattern("yyyy.M.d"),
+        DateTimeFormatter.ofPattern("yyyy-M-d"),
+        DateTimeFormatter.ofPattern("yyyy年M月d日"),
+        DateTimeFormatter.ofPattern("yyyyMMdd"));
+
+    private static final Set<String> TRUE_VALUES = Set.of("true", "1", "yes", "y", "是", "对");
+
+    private static final Set<String> FALSE_VALUES = Set.of("false", "0", "no", "n", "否", "不是", "错");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${quality-check.diff.ignore-text-case:true}")
+    private boolean ignoreTextCase;
+
+    /**
+     * 比较两份标注数据
+     *
+     * @param fields 表单字段定义，可为空；未定义的字段按 JSON 结构比较
+     */
+    public DiffResult diff(String annotationDataA, String annotationDataB, List<FormField> fields) {
+        JsonNode treeA = parse(annotationDataA);
+        JsonNode treeB = parse(annotationDataB);
+        if (treeA == null || treeB == null || !treeA.isObject() || !treeB.isObject()) {
+            // 无法解析为对象：整体按文本比较
+            boolean same = Objects.equals(normalizeText(annotationDataA), normalizeText(annotationDataB));
+            List<FieldConflict> conflicts = new ArrayList<>();
+            if (!same) {
+                conflicts.add(new FieldConflict("*", null, null, textNode(annotationDataA), textNode(annotationDataB)));
+            }
+            return new DiffResult(1, conflicts);
+        }
+
+        Map<String, FormField> fieldsByName = new LinkedHashMap<>();
+        if (fields != null) {
+            for (FormField field : fields) {
+                fieldsByName.put(field.getFieldName(), field);
+            }
+        }
+
+        // 表单字段顺序在前，其余按出现顺序
+        Set<String> fieldNames = new LinkedHashSet<>(fieldsByName.keySet());
+        treeA.fieldNames().forEachRemaining(fieldNames::add);
+        treeB.fieldNames().forEachRemaining(fieldNames::add);
+
+        List<FieldConflict> conflicts = new ArrayList<>();
+        int compared = 0;
+        for (String fieldName : fieldNames) {
+            JsonNode valueA = treeA.get(fieldName);
+            JsonNode valueB = treeB.get(fieldName);
+            FormField field = fieldsByName.get(fieldName);
+            FormField.FieldType type = field != null ? field.getFieldType() : null;
+
+            Object normalizedA = normalize(valueA, type);
+            Object normalizedB = normalize(valueB, type);
+            if (normalizedA == null && normalizedB == null) {
+                continue;
+            }
+            compared++;
+            if (!Objects.equals(normalizedA, normalizedB)) {
+                conflicts.add(new FieldConflict(fieldName, field != null ? field.getLabel() : null, type,
+                    valueA != null ? valueA : NullNode.getInstance(),
+                    valueB != null ? valueB : NullNode.getInstance()));
+            }
+        }
+        return new DiffResult(compared, conflicts);
+    }
+
+    /**
+     * 冲突字段列表序列化为 JSON（保存到 QualityCheck.conflictFields）
+     */
+    public String toJson(List<FieldConflict> conflicts) {
+        ArrayNode array = JsonNodeFactory.instance.arrayNode();
+        for (FieldConflict conflict : conflicts) {
+            ObjectNode node = array.addObject();
+            node.put("fieldName", conflict.fieldName);
+            if (conflict.label != null) {
+                node.put("label", conflict.label);
+            }
+            if (conflict.fieldType != null) {
+                node.put("fieldType", conflict.fieldType.name());
+            }
+            node.set("valueA", conflict.valueA);
+            node.set("valueB", conflict.valueB);
+        }
+        try {
+            return objectMapper.writeValueAsString(array);
+        } catch (Exception e) {
+            return "[]";
+        }
+    }
+
+    /**
+     * 按字段类型归一化；null 表示未填写。归一化结果相等即视为同一取值
+     */
+    public Object normalize(JsonNode value, FormField.FieldType type) {
+        if (value == null || value.isNull() || value.isMissingNode()) {
+            return null;
+        }
+        if (type == null) {
+            return normalizeGeneric(value);
+        }
+        switch (type) {
+            case NUMBER:
+                return normalizeNumber(value);
+            case DATE:
+                return normalizeDate(value);
+            case BOOLEAN:
+                return normalizeBoolean(value);
+            case SELECT:
+                return normalizeOption(value);
+            case MULTI_SELECT:
+                return normalizeMultiSelect(value);
+            case TEXT:
+            default:
+                return normalizeScalarText(value);
+        }
+    }
+
+    private Object normalizeNumber(JsonNode value) {
+        if (value.isNumber()) {
+            return stripZeros(value.decimalValue());
+        }
+        String text = normalizeText(value.asText());
+        if (text == null) {
+            return null;
+        }
+        try {
+            return stripZeros(new BigDecimal(text.replace(",", "").replace("，", "")));
+        } catch (NumberFormatException e) {
+            return text;
+        }
+    }
+
+    private String stripZeros(BigDecimal value) {
+        return value.compareTo(BigDecimal.ZERO) == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+    }
+
+    private Object normalizeDate(JsonNode value) {
+        if (value.isIntegralNumber()) {
+            // 毫秒时间戳
+            return Instant.ofEpochMilli(value.asLong()).atZone(ZoneId.systemDefault()).toLocalDate().toString();
+        }
+        String text = normalizeText(value.asText());
+        if (text == null) {
+            return null;
+        }
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(text, format).toString();
+            } catch (DateTimeParseException ignored) {
+                // 尝试下一种格式
+            }
+        }
+        try {
+            return LocalDateTime.parse(text).toLocalDate().toString();
+        } catch (DateTimeParseException ignored) {
+            // 尝试带时区格式
+        }
+        try {
+            return OffsetDateTime.parse(text).atZoneSameInstant(ZoneId.systemDefault()).toLocalDate().toString();
+        } catch (DateTimeParseException ignored) {
+            return text;
+        }
+    }
+
+    private Object normalizeBoolean(JsonNode value) {
+        if (value.isBoolean()) {
+            return value.booleanValue();
+        }
+        String text = normalizeText(value.asText());
+        if (text == null) {
+            return null;
+        }
+        String folded = text.toLowerCase(Locale.ROOT);
+        if (TRUE_VALUES.contains(folded)) {
+            return Boolean.TRUE;
+        }
+        if (FALSE_VALUES.contains(folded)) {
+            return Boolean.FALSE;
+        }
+        return folded;
+    }
+
+    private Object normalizeOption(JsonNode value) {
+        // 选项可能以 {value, label} 对象提交
+        if (value.isObject() && value.has("value")) {
+            value = value.get("value");
+        }
+        if (value.isArray()) {
+            return normalizeMultiSelect(value);
+        }
+        String text = normalizeText(value.asText());
+        return text != null ? text.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private Object normalizeMultiSelect(JsonNode value) {
+        Set<String> options = new TreeSet<>();
+        if (value.isArray()) {
+            for (JsonNode item : value) {
+                Object option = normalizeOption(item);
+                if (option != null) {
+                    options.add(option.toString());
+                }
+            }
+        } else {
+            // 兼容以逗号分隔的字符串提交
+            String text = normalizeText(value.asText());
+            if (text != null) {
+                for (String part : text.split("[,，;；]")) {
+                    String option = normalizeText(part);
+                    if (option != null) {
+                        options.add(option.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+        }
+        return options.isEmpty() ? null : options;
+    }
+
+    private Object normalizeScalarText(JsonNode value) {
+        if (value.isContainerNode()) {
+            return normalizeGeneric(value);
+        }
+        String text = normalizeText(value.asText());
+        if (text == null) {
+            return null;
+        }
+        return ignoreTextCase ? text.toLowerCase(Locale.ROOT) : text;
+    }
+
+    /**
+     * 未定义类型的字段：对象按键比较（与键顺序无关），数组按顺序比较，标量按文本比较
+     */
+    private Object normalizeGeneric(JsonNode value) {
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        if (value.isObject()) {
+            Map<String, Object> map = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> entries = value.fields();
+            while (entries.hasNext()) {
+                Map.Entry<String, JsonNode> entry = entries.next();
+                Object normalized = normalizeGeneric(entry.getValue());
+                if (normalized != null) {
+                    map.put(entry.getKey(), normalized);
+                }
+            }
+            return map.isEmpty() ? null : map;
+        }
+        if (value.isArray()) {
+            List<Object> list = new ArrayList<>();
+            for (JsonNode item : value) {
+                list.add(normalizeGeneric(item));
+            }
+            return list.isEmpty() ? null : list;
+        }
+        if (value.isNumber()) {
+            return stripZeros(value.decimalValue());
+        }
+        if (value.isBoolean()) {
+            return value.booleanValue();
+        }
+        return normalizeText(value.asText());
+    }
+
+    /**
+     * 文本归一化：全角转半角（NFKC）、去除首尾空白、连续空白合并；空串返回 null
+     */
+    private String normalizeText(String text) {
+        if (text == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).trim().replaceAll("\\s+", " ");
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    /**
+     * 解析标注数据，无法解析时返回 null
+     */
+    public JsonNode parse(String data) {
+        if (data == null || data.isBlank()) {
+            return JsonNodeFactory.instance.objectNode();
+        }
+        try {
+            return objectMapper.readTree(data);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private JsonNode textNode(String text) {
+        return text != null ? JsonNodeFactory.instance.textNode(text) : NullNode.getInstance();
+    }
+
+    /**
+     * 单个冲突字段
+     */
+    public static class FieldConflict {
+        private final String fieldName;
+        private final String label;
+        private final FormField.FieldType fieldType;
+        private final JsonNode valueA;
+        private final JsonNode valueB;
+
+        public FieldConflict(String fieldName, String label, FormField.FieldType fieldType, JsonNode valueA, JsonNode valueB) {
+            this.fieldName = fieldName;
+            this.label = label;
+            this.fieldType = fieldType;
+            this.valueA = valueA;
+            this.valueB = valueB;
+        }
+
+        public String getFieldName() { return fieldName; }
+
+        public String getLabel() { return label; }
+
+        public FormField.FieldType getFieldType() { return fieldType; }
+
+        public JsonNode getValueA() { return valueA; }
+
+        public JsonNode getValueB() { return valueB; }
+    }
+
+    /**
+     * 比对结果：参与比较的字段数（双方都未填写的字段不计）与冲突字段
+     */
+    public static class DiffResult {
+        private final int comparedFields;
+        private final List<FieldConflict> conflicts;
+
+        public DiffResult(int comparedFields, List<FieldConflict> conflicts) {
+            this.comparedFields = comparedFields;
+            this.conflicts = conflicts;
+        }
+
+        public int getComparedFields() { return comparedFields; }
+
+        public List<FieldConflict> getConflicts() { return conflicts; }
+
+        public boolean hasConflicts() { return !conflicts.isEmpty(); }
+
+        /**
+         * 全部一致为 MATCH，全部冲突为 CONFLICT，其余为 PARTIAL_MATCH
+         */
+        public boolean isFullConflict() { return !conflicts.isEmpty() && conflicts.size() >= comparedFields; }
+    }
+}
@@ -0,0 +1,273 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.Annotation;
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.OutboxEvent;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.AnnotationRepository;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.OutboxEventRepository;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 标注提交
+ *
+ * 请求线程只在一个事务内保存标注、更新分配状态与任务批次信息，并写入一条 ANNOTATION_SUBMITTED 发件箱事件；
+ * 存档文件更新、质量检查、工作流推进与积分由 {@link OutboxProcessor} 在后台执行。
+ * 后台处理分两步：存档（文件写入本身幂等）与工作流（质检、推进、积分在同一事务内提交并记录步骤完成），
+ * 重试时跳过已完成的步骤，积分不会重复发放。
+ * 各步骤耗时记录为 annotation.outbox.step（step 标签区分 ARCHIVE / WORKFLOW）。
+ */
+@Service
+public class AnnotationSubmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationSubmissionService.class);
+
+    static final String STEP_ARCHIVE = "ARCHIVE";
+    static final String STEP_WORKFLOW = "WORKFLOW";
+
+    @Autowired
+    private AnnotationRepository annotationRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private TaskStageCounterService taskStageCounterService;
+
+    @Autowired
+    private BatchDocumentService batchDocumentService;
+
+    @Autowired
+    private TaskAssignmentService taskAssignmentService;
+
+    @Autowired
+    private WorkflowService workflowService;
+
+    @Autowired
+    private DocumentArchiveService documentArchiveService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 保存提交的标注并写入发件箱事件（同一事务）
+     * documentId 为空或不存在时使用任务关联的文档
+     */
+    @Transactional
+    public Annotation submit(Task task, TaskAssignment assignment, User user, Object annotationData,
+                             BigDecimal confidenceScore, Long documentId) throws Exception {
+        // 已完成的分配允许重新提交
+        boolean isResubmission = assignment.getStatus() == TaskAssignment.AssignmentStatus.COMPLETED;
+
+        Annotation annotation = annotationRepository.findByTaskIdAndTaskAssignmentId(task.getId(), assignment.getId())
+            .orElse(null);
+        if (annotation != null) {
+            // 更新已有标注（允许重新提交）
+            annotation.setAnnotationData(objectMapper.writeValueAsString(annotationData));
+            annotation.setVersion(annotation.getVersion() + 1);
+            annotation.setConfidenceScore(confidenceScore);
+            annotation.setUpdatedAt(LocalDateTime.now());
+        } else {
+            annotation = new Annotation();
+            annotation.setTask(task);
+            annotation.setTaskAssignment(assignment);
+            annotation.setAnnotationData(objectMapper.writeValueAsString(annotationData));
+            annotation.setConfidenceScore(confidenceScore);
+            annotation.setVersion(1);
+        }
+
+        annotation.setSubmittedAt(LocalDateTime.now());
+        annotation.setStatus(Annotation.AnnotationStatus.SUBMITTED);
+        // 重新提交时清除审核信息
+        if (isResubmission) {
+            annotation.setReviewer(null);
+            annotation.setReviewedAt(null);
+            annotation.setReviewNotes(null);
+        }
+        Annotation savedAnnotation = annotationRepository.save(annotation);
+
+        Document document = resolveDocument(task, documentId);
+        if (document == null) {
+            logger.warn("No document found for task {} (documentId from request: {}), archive will not be updated",
+                task.getId(), documentId);
+        }
+
+        // 更新分配状态
+        TaskAssignment.AssignmentStatus previousStatus = assignment.getStatus();
+        if (isResubmission) {
+            assignment.setStatus(TaskAssignment.AssignmentStatus.IN_PROGRESS);
+            assignment.setCompletedAt(null);
+        } else {
+            assignment.setStatus(TaskAssignment.AssignmentStatus.COMPLETED);
+            assignment.setCompletedAt(LocalDateTime.now());
+        }
+        taskAssignmentRepository.save(assignment);
+        taskStageCounterService.onAssignmentStatusChanged(assignment, previousStatus);
+
+        // 批量任务的单文档进度（按已完成标注数与所需人数计算）
+        if (document != null) {
+            batchDocumentService.recordAnnotationProgress(task, document.getId(), user, true);
+        }
+
+        // 生成提交批次
+        LocalDateTime now = LocalDateTime.now();
+        if (task.getBatchId() == null || task.getBatchId().isEmpty()) {
+            task.setBatchId(String.format("BATCH_%04d%02d%02d_%02d%02d",
+                now.getYear(), now.getMonthValue(), now.getDayOfMonth(), now.getHour(), now.getMinute()));
+            task.setBatchName(String.format("提交批次_%04d-%02d-%02d %02d:%02d",
+                now.getYear(), now.getMonthValue(), now.getDayOfMonth(), now.getHour(), now.getMinute()));
+        }
+        task.setSubmittedAt(now);
+        taskRepository.save(task);
+
+        ObjectNode payload = objectMapper.createObjectNode();
+        if (document != null) {
+            payload.put("documentId", document.getId());
+        }
+        OutboxEvent event = outboxEventRepository.save(new OutboxEvent(OutboxEvent.EventType.ANNOTATION_SUBMITTED,
+            savedAnnotation.getId(), task.getId(), objectMapper.writeValueAsString(payload)));
+        // 事务提交后立即派发，不必等下一次轮询
+        eventPublisher.publishEvent(new OutboxProcessor.OutboxEventCreatedEvent(this, event.getId()));
+
+        return savedAnnotation;
+    }
+
+    /**
+     * 后台处理 ANNOTATION_SUBMITTED 事件，失败时抛出异常由处理器安排重试
+     */
+    public void handle(Long eventId) throws Exception {
+        OutboxEvent event = outboxEventRepository.findById(eventId).orElse(null);
+        if (event == null) {
+            return;
+        }
+
+        if (!event.isStepCompleted(STEP_ARCHIVE)) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            Boolean archived = transactionTemplate.execute(status -> updateArchive(event));
+            stopStep(sample, STEP_ARCHIVE, Boolean.TRUE.equals(archived));
+            if (!Boolean.TRUE.equals(archived)) {
+                throw new Exception("更新标注存档失败");
+            }
+            markStepCompleted(eventId, STEP_ARCHIVE);
+        }
+
+        if (!event.isStepCompleted(STEP_WORKFLOW)) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            boolean success = false;
+            try {
+                runWorkflowStep(event);
+                success = true;
+            } finally {
+                stopStep(sample, STEP_WORKFLOW, success);
+            }
+        }
+    }
+
+    private void runWorkflowStep(OutboxEvent event) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // 锁定任务行：同一任务的多个提交事件串行执行质检判断，避免重复创建质量检查
+            Task task = entityManager.find(Task.class, event.getTaskId(), LockModeType.PESSIMISTIC_WRITE);
+            Annotation annotation = annotationRepository.findById(event.getAggregateId()).orElse(null);
+            if (task != null && annotation != null) {
+                taskAssignmentService.checkForQualityControl(task);
+                workflowService.handleAnnotationSubmission(task, annotation);
+            }
+            // 与业务更新在同一事务内记录步骤完成，重试不会重复发放积分
+            OutboxEvent managed = outboxEventRepository.findById(event.getId()).orElseThrow();
+            managed.markStepCompleted(STEP_WORKFLOW);
+        });
+    }
+
+    private void stopStep(Timer.Sample sample, String step, boolean success) {
+        sample.stop(meterRegistry.timer("annotation.outbox.step", "step", step, "outcome", success ? "success" : "failure"));
+    }
+
+    private Boolean updateArchive(OutboxEvent event) {
+        Annotation annotation = annotationRepository.findById(event.getAggregateId()).orElse(null);
+        if (annotation == null) {
+            // 标注已被删除（任务清理），无需处理
+            return true;
+        }
+        Task task = annotation.getTask();
+        Long documentId = null;
+        try {
+            JsonNode payload = event.getPayload() != null ? objectMapper.readTree(event.getPayload()) : null;
+            if (payload != null && payload.hasNonNull("documentId")) {
+                documentId = payload.get("documentId").asLong();
+            }
+        } catch (Exception e) {
+            logger.warn("Invalid outbox payload for event {}: {}", event.getId(), e.getMessage());
+        }
+        Document document = resolveDocument(task, documentId);
+        if (document == null) {
+            return true;
+        }
+        try {
+            // 以当前保存的标注内容为准（重复提交时写入最新版本）
+            JsonNode annotationData = objectMapper.readTree(annotation.getAnnotationData());
+            return documentArchiveService.updateArchiveForAnnotation(document, task, annotation.getTaskAssignment(),
+                annotation, annotationData);
+        } catch (Exception e) {
+            logger.error("Failed to read annotation {} for archive: {}", annotation.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void markStepCompleted(Long eventId, String step) {
+        transactionTemplate.executeWithoutResult(status -> outboxEventRepository.findById(eventId)
+            .ifPresent(event -> event.markStepCompleted(step)));
+    }
+
+    private Document resolveDocument(Task task, Long documentId) {
+        if (documentId != null) {
+            Document document = documentRepository.findById(documentId).orElse(null);
+            if (document != null) {
+                return document;
+            }
+            logger.warn("Document not found with ID: {}, falling back to task's document", documentId);
+        }
+        return task.getDocument();
+    }
+}
@@ -0,0 +1,464 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 按紧迫度自动分配标注任务的调度器
+ *
+ * 内存中维护待分配标注任务的快照（优先级、截止时间、创建时间、已分配的标注员），
+ * 每轮只增量刷新上一轮之后有变化的任务，再按紧迫度建堆，取最紧迫的一批分配给工作量最少的标注员。
+ * 紧迫度 = 任务与文档优先级 + 截止时间临近程度 + 等待时间（防止低优先级任务长期得不到分配）。
+ */
+@Service
+public class AssignmentScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssignmentScheduler.class);
+
+    // 可以分配标注员的任务状态
+    private static final Set<Task.TaskStatus> SCHEDULABLE_STATUSES = Set.of(
+        Task.TaskStatus.CREATED, Task.TaskStatus.ASSIGNED, Task.TaskStatus.AI_COMPLETED, Task.TaskStatus.ANNOTATING);
+
+    // 增量刷新的时间重叠，覆盖刷新时尚未提交的事务
+    private static final long REFRESH_OVERLAP_SECONDS = 60;
+
+    private static final int ID_CHUNK_SIZE = 500;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskStageCounterService taskStageCounterService;
+
+    @Autowired
+    private WorkloadTracker workloadTracker;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ConsensusService consensusService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${assignment-scheduler.enabled:false}")
+    private boolean enabled;
+
+    @Value("${assignment-scheduler.batch-size:100}")
+    private int batchSize;
+
+    @Value("${assignment-scheduler.max-open-per-user:20}")
+    private int maxOpenPerUser;
+
+    @Value("${assignment-scheduler.full-refresh-every:60}")
+    private int fullRefreshEvery;
+
+    @Value("${assignment-scheduler.priority-weight:10}")
+    private double priorityWeight;
+
+    @Value("${assignment-scheduler.deadline-weight:50}")
+    private double deadlineWeight;
+
+    @Value("${assignment-scheduler.deadline-urgent-hours:24}")
+    private double deadlineUrgentHours;
+
+    @Value("${assignment-scheduler.aging-per-hour:1}")
+    private double agingPerHour;
+
+    @Value("${assignment-scheduler.max-aging:60}")
+    private double maxAging;
+
+    // 待分配任务快照：taskId -> 快照
+    private final Map<Long, TaskSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    // 分配变化过、下一轮需要重新读取的任务
+    private final Set<Long> dirtyTaskIds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean initialized = false;
+
+    private LocalDateTime lastRefreshAt;
+
+    private int runsSinceFullRefresh = 0;
+
+    /**
+     * 定时执行一轮分配（assignment-scheduler.enabled=true 时生效）
+     */
+    @Scheduled(fixedDelayString = "${assignment-scheduler.interval-ms:60000}",
+               initialDelayString = "${assignment-scheduler.interval-ms:60000}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            RunResult result = runOnce();
+            if (result.getAssignmentsCreated() > 0) {
+                logger.info("Assignment scheduler assigned {} annotators to {} tasks",
+                    result.getAssignmentsCreated(), result.getTasksAssigned());
+            }
+        } catch (Exception e) {
+            logger.error("Assignment scheduler run failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 执行一轮分配：刷新快照，按紧迫度取前 batchSize 个任务分配标注员
+     */
+    public synchronized RunResult runOnce() {
+        refreshSnapshots();
+
+        RunResult result = new RunResult();
+        List<User> annotators = userRepository.findByRoleInAndStatus(
+            List.of(User.Role.ANNOTATOR, User.Role.EXPERT), User.Status.ACTIVE);
+        if (annotators.isEmpty() || snapshots.isEmpty()) {
+            return result;
+        }
+
+        PriorityQueue<ScoredTask> heap = buildHeap(LocalDateTime.now());
+        while (!heap.isEmpty() && result.tasksConsidered < batchSize) {
+            ScoredTask next = heap.poll();
+            result.tasksConsidered++;
+
+            // 跳过已分配给该任务的标注员和未完成分配已满的标注员
+            List<User> selected = workloadTracker.selectLeastLoaded(annotators, next.snapshot.getMissingAnnotators(),
+                TaskAssignment.AssignmentType.ANNOTATION, next.snapshot.assigneeIds, maxOpenPerUser);
+            if (selected.isEmpty()) {
+                continue;
+            }
+            try {
+                Integer created = transactionTemplate.execute(status -> assignInTransaction(next.snapshot.taskId, selected));
+                if (created != null && created > 0) {
+                    result.tasksAssigned++;
+                    result.assignmentsCreated += created;
+                }
+            } catch (Exception e) {
+                // 与其他分配途径并发时可能违反唯一约束，下一轮重新读取该任务
+                dirtyTaskIds.add(next.snapshot.taskId);
+                logger.warn("Assignment scheduler failed to assign task {}: {}", next.snapshot.taskId, e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 预览当前紧迫度最高的任务（不分配）
+     */
+    public synchronized List<Map<String, Object>> preview(int limit) {
+        refreshSnapshots();
+
+        LocalDateTime now = LocalDateTime.now();
+        PriorityQueue<ScoredTask> heap = buildHeap(now);
+        List<Map<String, Object>> result = new ArrayList<>();
+        while (!heap.isEmpty() && result.size() < limit) {
+            ScoredTask next = heap.poll();
+            TaskSnapshot snapshot = next.snapshot;
+            Map<String, Object> item = new HashMap<>();
+            item.put("taskId", snapshot.taskId);
+            item.put("status", snapshot.status);
+            item.put("priority", snapshot.priority);
+            item.put("documentPriority", snapshot.documentPriority);
+            item.put("deadline", snapshot.deadline);
+            item.put("createdAt", snapshot.createdAt);
+            item.put("assignedAnnotators", snapshot.assigneeIds.size());
+            item.put("priorityScore", priorityScore(snapshot));
+            item.put("deadlineScore", deadlineScore(snapshot, now));
+            item.put("agingScore", agingScore(snapshot, now));
+            item.put("score", next.score);
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 任务的标注分配变化后，下一轮重新读取该任务
+     */
+    @EventListener
+    public void onStageCounterChanged(TaskStageCounterService.StageCounterChangedEvent event) {
+        if (initialized && event.affects(TaskAssignment.AssignmentType.ANNOTATION)) {
+            dirtyTaskIds.add(event.getTaskId());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 刷新快照：首次及每 fullRefreshEvery 轮全量加载，其余只读取上次刷新后更新过或分配变化过的任务
+     */
+    private void refreshSnapshots() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        if (!initialized || ++runsSinceFullRefresh >= fullRefreshEvery) {
+            dirtyTaskIds.clear();
+            initialized = true;
+            snapshots.clear();
+            applySnapshotRows(taskRepository.findSchedulingSnapshotsByStatusIn(SCHEDULABLE_STATUSES));
+            runsSinceFullRefresh = 0;
+        } else {
+            List<Object[]> rows = new ArrayList<>(taskRepository.findSchedulingSnapshotsUpdatedSince(
+                lastRefreshAt.minusSeconds(REFRESH_OVERLAP_SECONDS)));
+            Set<Long> dirty = new HashSet<>(dirtyTaskIds);
+            dirtyTaskIds.removeAll(dirty);
+            for (Object[] row : rows) {
+                dirty.remove((Long) row[0]);
+            }
+            for (List<Long> chunk : chunk(dirty)) {
+                rows.addAll(taskRepository.findSchedulingSnapshotsByIds(chunk));
+            }
+            // 已删除的任务查询不到，直接移出快照
+            Set<Long> found = rows.stream().map(row -> (Long) row[0]).collect(Collectors.toSet());
+            dirty.stream().filter(taskId -> !found.contains(taskId)).forEach(snapshots::remove);
+            applySnapshotRows(rows);
+        }
+        lastRefreshAt = startedAt;
+    }
+
+    private void applySnapshotRows(List<Object[]> rows) {
+        Map<Long, TaskSnapshot> loaded = new HashMap<>();
+        for (Object[] row : rows) {
+            Long taskId = (Long) row[0];
+            Task.TaskStatus status = (Task.TaskStatus) row[1];
+            if (!SCHEDULABLE_STATUSES.contains(status)) {
+                snapshots.remove(taskId);
+                continue;
+            }
+            loaded.put(taskId, new TaskSnapshot(taskId, status, (Task.Priority) row[2], (Document.Priority) row[3],
+                (LocalDateTime) row[4], (LocalDateTime) row[5], requiredAnnotators((Integer) row[6])));
+        }
+
+        for (List<Long> chunk : chunk(loaded.keySet())) {
+            for (Object[] row : taskAssignmentRepository.findUserIdsByTaskIdsAndAssignmentType(
+                    chunk, TaskAssignment.AssignmentType.ANNOTATION)) {
+                loaded.get((Long) row[0]).assigneeIds.add((Long) row[1]);
+            }
+        }
+
+        loaded.forEach((taskId, snapshot) -> {
+            if (snapshot.getMissingAnnotators() > 0) {
+                snapshots.put(taskId, snapshot);
+            } else {
+                snapshots.remove(taskId);
+            }
+        });
+    }
+
+    private PriorityQueue<ScoredTask> buildHeap(LocalDateTime now) {
+        List<ScoredTask> scored = new ArrayList<>(snapshots.size());
+        for (TaskSnapshot snapshot : snapshots.values()) {
+            scored.add(new ScoredTask(snapshot, score(snapshot, now)));
+        }
+        // 由集合构造时整体建堆 O(n)
+        return new PriorityQueue<>(scored);
+    }
+
+    /**
+     * 在事务内锁定任务行后重新核对已分配的标注员，再创建分配
+     */
+    private Integer assignInTransaction(Long taskId, List<User> selected) {
+        Task task = entityManager.find(Task.class, taskId, LockModeType.PESSIMISTIC_WRITE);
+        if (task == null || !SCHEDULABLE_STATUSES.contains(task.getStatus())) {
+            snapshots.remove(taskId);
+            return 0;
+        }
+
+        Set<Long> assigneeIds = taskAssignmentRepository
+            .findByTaskIdAndAssignmentType(taskId, TaskAssignment.AssignmentType.ANNOTATION).stream()
+            .map(assignment -> assignment.getUser().getId())
+            .collect(Collectors.toSet());
+        int missing = consensusService.getRequiredAnnotators(task) - assigneeIds.size();
+
+        List<TaskAssignment> assignments = new ArrayList<>();
+        for (User user : selected) {
+            if (assignments.size() >= missing) {
+                break;
+            }
+            if (!assigneeIds.contains(user.getId())) {
+                assignments.add(new TaskAssignment(task, user, TaskAssignment.AssignmentType.ANNOTATION));
+            }
+        }
+        if (assignments.isEmpty()) {
+            return 0;
+        }
+
+        List<TaskAssignment> saved = taskAssignmentRepository.saveAll(assignments);
+        if (task.getStatus() == Task.TaskStatus.CREATED) {
+            task.setStatus(Task.TaskStatus.ASSIGNED);
+            taskRepository.save(task);
+        }
+        taskStageCounterService.onAssignmentsCreated(saved);
+
+        TaskSnapshot snapshot = snapshots.get(taskId);
+        if (snapshot != null) {
+            saved.forEach(assignment -> snapshot.assigneeIds.add(assignment.getUser().getId()));
+            if (snapshot.getMissingAnnotators() <= 0) {
+                snapshots.remove(taskId);
+            }
+        }
+        return saved.size();
+    }
+
+    // 文档类型未配置冗余度时按双人标注
+    private int requiredAnnotators(Integer configured) {
+        return configured != null ? configured : ConsensusService.DEFAULT_REQUIRED_ANNOTATORS;
+    }
+
+    private double score(TaskSnapshot snapshot, LocalDateTime now) {
+        return priorityScore(snapshot) + deadlineScore(snapshot, now) + agingScore(snapshot, now);
+    }
+
+    private double priorityScore(TaskSnapshot snapshot) {
+        return (priorityRank(snapshot.priority) + priorityRank(snapshot.documentPriority)) * priorityWeight;
+    }
+
+    /**
+     * 截止时间越近得分越高，已过期按两倍权重计
+     */
+    private double deadlineScore(TaskSnapshot snapshot, LocalDateTime now) {
+        if (snapshot.deadline == null) {
+            return 0;
+        }
+        double hoursLeft = Duration.between(now, snapshot.deadline).toMinutes() / 60.0;
+        if (hoursLeft <= 0) {
+            return deadlineWeight * 2;
+        }
+        return deadlineWeight * deadlineUrgentHours / (deadlineUrgentHours + hoursLeft);
+    }
+
+    /**
+     * 等待越久得分越高，上限 maxAging
+     */
+    private double agingScore(TaskSnapshot snapshot, LocalDateTime now) {
+        if (snapshot.createdAt == null) {
+            return 0;
+        }
+        double hoursWaited = Math.max(0, Duration.between(snapshot.createdAt, now).toMinutes() / 60.0);
+        return Math.min(maxAging, hoursWaited * agingPerHour);
+    }
+
+    // 任务与文档的优先级枚举取值相同
+    private int priorityRank(Enum<?> priority) {
+        if (priority == null) {
+            return 0;
+        }
+        switch (priority.name()) {
+            case "URGENT": return 3;
+            case "HIGH": return 2;
+            case "NORMAL": return 1;
+            default: return 0;
+        }
+    }
+
+    private List<List<Long>> chunk(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> list = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += ID_CHUNK_SIZE) {
+            chunks.add(list.subList(i, Math.min(list.size(), i + ID_CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+
+    /**
+     * 待分配任务的快照
+     */
+    private static class TaskSnapshot {
+        private final Long taskId;
+        private final Task.TaskStatus status;
+        private final Task.Priority priority;
+        private final Document.Priority documentPriority;
+        private final LocalDateTime deadline;
+        private final LocalDateTime createdAt;
+        private final int requiredAnnotators;
+        private final Set<Long> assigneeIds = ConcurrentHashMap.newKeySet();
+
+        TaskSnapshot(Long taskId, Task.TaskStatus status, Task.Priority priority, Document.Priority documentPriority,
+                     LocalDateTime deadline, LocalDateTime createdAt, int requiredAnnotators) {
+            this.taskId = taskId;
+            this.status = status;
+            this.priority = priority;
+            this.documentPriority = documentPriority;
+            this.deadline = deadline;
+            this.createdAt = createdAt;
+            this.requiredAnnotators = requiredAnnotators;
+        }
+
+        int getMissingAnnotators() {
+            return requiredAnnotators - assigneeIds.size();
+        }
+    }
+
+    /**
+     * 堆元素：紧迫度高的在前，相同时先创建的在前
+     */
+    private static class ScoredTask implements Comparable<ScoredTask> {
+        private final TaskSnapshot snapshot;
+        private final double score;
+
+        ScoredTask(TaskSnapshot snapshot, double score) {
+            this.snapshot = snapshot;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredTask other) {
+            int result = Double.compare(other.score, score);
+            if (result != 0) {
+                return result;
+            }
+            return Long.compare(snapshot.taskId, other.snapshot.taskId);
+        }
+    }
+
+    /**
+     * 一轮分配的结果
+     */
+    public static class RunResult {
+        private int tasksConsidered;
+        private int tasksAssigned;
+        private int assignmentsCreated;
+
+        public int getTasksConsidered() { return tasksConsidered; }
+
+        public int getTasksAssigned() { return tasksAssigned; }
+
+        public int getAssignmentsCreated() { return assignmentsCreated; }
+    }
+}
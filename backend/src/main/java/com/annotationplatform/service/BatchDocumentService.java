@@ -0,0 +1,281 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.BatchDocument;
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.BatchDocumentSubmission;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.BatchDocumentRepository;
+import com.annotationplatform.repository.BatchDocumentSubmissionRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class BatchDocumentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchDocumentService.class);
+
+    @Autowired
+    private BatchDocumentRepository batchDocumentRepository;
+
+    @Autowired
+    private BatchDocumentSubmissionRepository batchDocumentSubmissionRepository;
+
+    @Autowired
+    private ConsensusService consensusService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 为批次父任务登记成员文档
+     */
+    @Transactional
+    public List<BatchDocument> createBatchDocuments(Task parentTask, List<Document> documents) {
+        List<BatchDocument> batchDocuments = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            batchDocuments.add(new BatchDocument(parentTask, documents.get(i), i));
+        }
+        return batchDocumentRepository.saveAll(batchDocuments);
+    }
+
+    /**
+     * 分页获取批次文档
+     */
+    @Transactional
+    public Page<BatchDocument> getBatchDocuments(Task parentTask, Pageable pageable) {
+        migrateLegacyDocumentIndex(parentTask);
+        return batchDocumentRepository.findByBatchId(parentTask.getBatchId(), pageable);
+    }
+
+    /**
+     * 获取批次全部文档（按顺序）
+     */
+    @Transactional
+    public List<BatchDocument> getAllBatchDocuments(Task parentTask) {
+        migrateLegacyDocumentIndex(parentTask);
+        return batchDocumentRepository.findByBatchIdOrdered(parentTask.getBatchId());
+    }
+
+    /**
+     * 获取批次聚合统计（单条 GROUP BY 查询）
+     */
+    @Transactional(readOnly = true)
+    public BatchSummary getBatchSummary(String batchId) {
+        BatchSummary summary = new BatchSummary();
+        summary.setBatchId(batchId);
+
+        long progressSum = 0;
+        for (Object[] row : batchDocumentRepository.aggregateByBatchId(batchId)) {
+            BatchDocument.BatchDocumentStatus status = (BatchDocument.BatchDocumentStatus) row[0];
+            long count = ((Number) row[1]).longValue();
+            progressSum += ((Number) row[2]).longValue();
+
+            summary.setTotalCount(summary.getTotalCount() + count);
+            if (status == null) {
+                summary.setPendingCount(summary.getPendingCount() + count);
+                continue;
+            }
+            switch (status) {
+                case PENDING:
+                    summary.setPendingCount(summary.getPendingCount() + count);
+                    break;
+                case IN_PROGRESS:
+                    summary.setInProgressCount(summary.getInProgressCount() + count);
+                    break;
+                case COMPLETED:
+                    summary.setCompletedCount(summary.getCompletedCount() + count);
+                    break;
+                case FAILED:
+                    summary.setFailedCount(summary.getFailedCount() + count);
+                    break;
+            }
+        }
+
+        if (summary.getTotalCount() > 0) {
+            summary.setProgressPercentage((int) Math.min(100, Math.round((double) progressSum / summary.getTotalCount())));
+        }
+        return summary;
+    }
+
+    /**
+     * 更新批次中单个文档的状态、负责人和进度
+     */
+    @Transactional
+    public Optional<BatchDocument> updateBatchDocument(Task task, Long documentId, BatchDocument.BatchDocumentStatus status,
+                                                       User assignee, Integer progress) {
+        if (task.getBatchId() == null || documentId == null) {
+            return Optional.empty();
+        }
+
+        Optional<BatchDocument> batchDocumentOpt = batchDocumentRepository.findByTaskIdAndDocumentId(task.getId(), documentId);
+        batchDocumentOpt.ifPresent(batchDocument -> {
+            if (status != null) {
+                batchDocument.setStatus(status);
+            }
+            if (assignee != null) {
+                batchDocument.setAssignee(assignee);
+            }
+            if (progress != null) {
+                batchDocument.setProgress(Math.max(0, Math.min(100, progress)));
+            } else if (status == BatchDocument.BatchDocumentStatus.COMPLETED) {
+                batchDocument.setProgress(100);
+            }
+            batchDocumentRepository.save(batchDocument);
+        });
+        return batchDocumentOpt;
+    }
+
+    /**
+     * 标注员暂存或提交文档后更新其批次进度
+     * 批次父任务的一个分配覆盖全部文档，因此按文档记录提交过的标注员：
+     * 进度 = 该文档的提交人数 / 所需标注人数，全部标注员提交后才标记为 COMPLETED；
+     * 暂存只把未开始的文档标记为 IN_PROGRESS，不改变进度。
+     * 负责人只在尚未指定时记录为首个标注员，不覆盖管理员指定的负责人
+     */
+    @Transactional
+    public Optional<BatchDocument> recordAnnotationProgress(Task task, Long documentId, User annotator, boolean submitted) {
+        if (task.getBatchId() == null || documentId == null) {
+            return Optional.empty();
+        }
+
+        Optional<BatchDocument> batchDocumentOpt = batchDocumentRepository.findForUpdate(task.getId(), documentId);
+        batchDocumentOpt.ifPresent(batchDocument -> {
+            if (submitted) {
+                Object[] counts = batchDocumentSubmissionRepository.countSubmitters(batchDocument.getId(),
+                    annotator != null ? annotator.getId() : null).get(0);
+                long submitters = ((Number) counts[0]).longValue();
+                if (annotator != null && ((Number) counts[1]).longValue() == 0) {
+                    batchDocumentSubmissionRepository.save(new BatchDocumentSubmission(batchDocument, annotator));
+                    submitters++;
+                }
+                int required = consensusService.getRequiredAnnotators(task);
+                if (submitters >= required) {
+                    batchDocument.setStatus(BatchDocument.BatchDocumentStatus.COMPLETED);
+                    batchDocument.setProgress(100);
+                } else {
+                    batchDocument.setStatus(BatchDocument.BatchDocumentStatus.IN_PROGRESS);
+                    batchDocument.setProgress((int) (submitters * 100 / required));
+                }
+            } else if (batchDocument.getStatus() == null
+                    || batchDocument.getStatus() == BatchDocument.BatchDocumentStatus.PENDING) {
+                batchDocument.setStatus(BatchDocument.BatchDocumentStatus.IN_PROGRESS);
+            }
+            if (batchDocument.getAssignee() == null && annotator != null) {
+                batchDocument.setAssignee(annotator);
+            }
+            batchDocumentRepository.save(batchDocument);
+        });
+        return batchDocumentOpt;
+    }
+
+    /**
+     * 删除任务关联的批次文档
+     */
+    @Transactional
+    public int deleteByTaskIds(Collection<Long> taskIds) {
+        if (taskIds == null || taskIds.isEmpty()) {
+            return 0;
+        }
+        batchDocumentSubmissionRepository.deleteByTaskIdIn(taskIds);
+        return batchDocumentRepository.deleteByTaskIdIn(taskIds);
+    }
+
+    /**
+     * 旧批次的文档列表保存在 documentIndex JSON 中，首次访问时迁移到 batch_documents 表
+     */
+    private void migrateLegacyDocumentIndex(Task parentTask) {
+        String batchId = parentTask.getBatchId();
+        if (batchId == null || batchDocumentRepository.existsByBatchId(batchId)) {
+            return;
+        }
+        String documentIndex = parentTask.getDocumentIndex();
+        if (documentIndex == null || documentIndex.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<String, Object> documentIndexMap = objectMapper.readValue(
+                documentIndex, new TypeReference<Map<String, Object>>() {});
+
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> documents = (List<Map<String, Object>>) documentIndexMap.get("documents");
+            if (documents == null) {
+                // Old format: single document
+                documents = List.of(documentIndexMap);
+            }
+
+            List<BatchDocument> batchDocuments = new ArrayList<>();
+            for (Map<String, Object> doc : documents) {
+                if (!(doc.get("id") instanceof Number)) {
+                    continue;
+                }
+                BatchDocument batchDocument = new BatchDocument();
+                batchDocument.setTask(parentTask);
+                batchDocument.setBatchId(batchId);
+                batchDocument.setDocumentId(((Number) doc.get("id")).longValue());
+                batchDocument.setFilename((String) doc.get("filename"));
+                batchDocument.setOriginalFilename((String) doc.get("originalFilename"));
+                batchDocument.setFolderPath((String) doc.get("folderPath"));
+                if (doc.get("fileSize") instanceof Number) {
+                    batchDocument.setFileSize(((Number) doc.get("fileSize")).longValue());
+                }
+                batchDocument.setMimeType((String) doc.get("mimeType"));
+                batchDocument.setSortOrder(batchDocuments.size());
+                batchDocuments.add(batchDocument);
+            }
+
+            batchDocumentRepository.saveAll(batchDocuments);
+            logger.info("Migrated {} documents of batch {} from documentIndex", batchDocuments.size(), batchId);
+        } catch (Exception e) {
+            logger.warn("Failed to migrate documentIndex of batch {}: {}", batchId, e.getMessage());
+        }
+    }
+
+    /**
+     * 批次聚合统计信息类
+     */
+    public static class BatchSummary {
+        private String batchId;
+        private long totalCount;
+        private long pendingCount;
+        private long inProgressCount;
+        private long completedCount;
+        private long failedCount;
+        private int progressPercentage;
+
+        // Getters and Setters
+        public String getBatchId() { return batchId; }
+        public void setBatchId(String batchId) { this.batchId = batchId; }
+
+        public long getTotalCount() { return totalCount; }
+        public void setTotalCount(long totalCount) { this.totalCount = totalCount; }
+
+        public long getPendingCount() { return pendingCount; }
+        public void setPendingCount(long pendingCount) { this.pendingCount = pendingCount; }
+
+        public long getInProgressCount() { return inProgressCount; }
+        public void setInProgressCount(long inProgressCount) { this.inProgressCount = inProgressCount; }
+
+        public long getCompletedCount() { return completedCount; }
+        public void setCompletedCount(long completedCount) { this.completedCount = completedCount; }
+
+        public long getFailedCount() { return failedCount; }
+        public void setFailedCount(long failedCount) { this.failedCount = failedCount; }
+
+        public int getProgressPercentage() { return progressPercentage; }
+        public void setProgressPercentage(int progressPercentage) { this.progressPercentage = progressPercentage; }
+    }
+}
@@ -0,0 +1,125 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.repository.CategoryRepository;
+import com.annotationplatform.utils.ChecksumUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分类树快照
+ * 一次查询取出全部分类，按父分类ID在内存中组装成树，结果作为不可变快照缓存在 categories 缓存中（以版本号为键）。
+ * 分类创建、修改、删除成功后调用 {@link #invalidate()} 递增版本号，下一次读取重新构建。
+ * ETag 取自快照内容的哈希，重启或多实例下内容相同的树得到相同的 ETag。
+ */
+@Service
+public class CategoryTreeService {
+
+    private static final String CACHE_NAME = "categories";
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 当前版本的分类树（未命中时构建）
+     * 不使用只读事务（始终读主库）：副本若有延迟，写操作之后会把旧树缓存到新版本下
+     */
+    public CategoryTreeSnapshot getTree() throws Exception {
+        long current = version.get();
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        CategoryTreeSnapshot snapshot = cache.get(current, CategoryTreeSnapshot.class);
+        if (snapshot == null) {
+            snapshot = build(current);
+            cache.put(current, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 分类变更后调用：旧版本快照全部丢弃
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        cacheManager.getCache(CACHE_NAME).clear();
+    }
+
+    private CategoryTreeSnapshot build(long snapshotVersion) throws Exception {
+        List<Object[]> rows = categoryRepository.findTreeRows();
+
+        // 行已按 sortOrder 排序，子节点按出现顺序挂到父节点下
+        Map<Long, List<Map<String, Object>>> children = new HashMap<>();
+        List<Map<String, Object>> roots = new ArrayList<>();
+        for (Object[] row : rows) {
+            Long id = (Long) row[0];
+            Long parentId = (Long) row[1];
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put("id", id);
+            node.put("name", row[2]);
+            node.put("description", row[3]);
+            node.put("level", row[4]);
+            node.put("sortOrder", row[5]);
+            node.put("createdAt", row[6]);
+            if (parentId != null) {
+                node.put("parentId", parentId);
+                children.computeIfAbsent(parentId, key -> new ArrayList<>()).add(node);
+            } else {
+                roots.add(node);
+            }
+        }
+
+        List<Map<String, Object>> tree = freeze(roots, children);
+        String eTag = "\"" + ChecksumUtils.sha256Hex(objectMapper.writeValueAsBytes(tree)).substring(0, 32) + "\"";
+        return new CategoryTreeSnapshot(snapshotVersion, eTag, tree);
+    }
+
+    // 从根向下生成只读节点（children 始终存在，叶子节点为空列表）
+    private static List<Map<String, Object>> freeze(List<Map<String, Object>> level,
+                                                    Map<Long, List<Map<String, Object>>> children) {
+        List<Map<String, Object>> frozen = new ArrayList<>(level.size());
+        for (Map<String, Object> node : level) {
+            List<Map<String, Object>> nodeChildren = children.get((Long) node.get("id"));
+            node.put("children", nodeChildren != null ? freeze(nodeChildren, children) : List.of());
+            frozen.add(Collections.unmodifiableMap(node));
+        }
+        return Collections.unmodifiableList(frozen);
+    }
+
+    /**
+     * 不可变的分类树快照
+     */
+    public static class CategoryTreeSnapshot {
+        private final long version;
+        private final String eTag;
+        private final List<Map<String, Object>> categories;
+
+        public CategoryTreeSnapshot(long version, String eTag, List<Map<String, Object>> categories) {
+            this.version = version;
+            this.eTag = eTag;
+            this.categories = categories;
+        }
+
+        public long getVersion() { return version; }
+
+        public String getETag() { return eTag; }
+
+        public List<Map<String, Object>> getCategories() { return categories; }
+    }
+}
@@ -0,0 +1,464 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.Annotation;
+import com.annotationplatform.entity.DocumentType;
+import com.annotationplatform.entity.FormField;
+import com.annotationplatform.entity.QualityCheck;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.AnnotationRepository;
+import com.annotationplatform.repository.FormFieldRepository;
+import com.annotationplatform.utils.FlightEvents;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 多人标注共识
+ *
+ * 对同一任务的 K 份标注逐字段投票：取值按字段类型归一化后分组，
+ * 每票权重来自标注员的历史准确率（审核通过/驳回记录，拉普拉斯平滑后取对数几率）。
+ * 至少两人一致且加权票数占比超过阈值的字段自动采纳，其余字段交由审查员逐字段裁决。
+ */
+@Service
+public class ConsensusService {
+
+    // 未指定文档类型冗余度时的标注人数（双人标注）
+    public static final int DEFAULT_REQUIRED_ANNOTATORS = 2;
+
+    // 未填写作为一个独立取值参与投票
+    private static final String EMPTY_VALUE = "\u0000empty";
+
+    private static final List<Annotation.AnnotationStatus> REVIEWED_STATUSES =
+        List.of(Annotation.AnnotationStatus.APPROVED, Annotation.AnnotationStatus.REJECTED);
+
+    @Autowired
+    private AnnotationRepository annotationRepository;
+
+    @Autowired
+    private FormFieldRepository formFieldRepository;
+
+    @Autowired
+    private AnnotationDiffService annotationDiffService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${consensus.weighted:true}")
+    private boolean weighted;
+
+    @Value("${consensus.min-agreement:0.5}")
+    private double minAgreement;
+
+    @Value("${consensus.min-weight:0.1}")
+    private double minWeight;
+
+    @Value("${consensus.max-weight:3.0}")
+    private double maxWeight;
+
+    /**
+     * 任务需要的标注人数：由文档类型配置，默认双人标注
+     */
+    public int getRequiredAnnotators(Task task) {
+        if (task.getDocument() != null) {
+            DocumentType documentType = task.getDocument().getDocumentType();
+            if (documentType != null && documentType.getRequiredAnnotators() != null) {
+                return documentType.getRequiredAnnotators();
+            }
+        }
+        return DEFAULT_REQUIRED_ANNOTATORS;
+    }
+
+    /**
+     * 标注员投票权重（一次 GROUP BY 查询）
+     * 准确率 = (通过数 + 1) / (已审核数 + 2)，权重 = ln(准确率 / (1 - 准确率))，限制在 [minWeight, maxWeight]；
+     * 没有审核记录的标注员准确率为 0.5，取最小权重。不加权时每票权重为 1
+     */
+    public Map<Long, Double> getAnnotatorWeights(Collection<Long> userIds) {
+        Map<Long, Double> weights = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return weights;
+        }
+        if (!weighted) {
+            userIds.forEach(userId -> weights.put(userId, 1.0));
+            return weights;
+        }
+
+        Map<Long, long[]> counts = new HashMap<>();
+        for (Object[] row : annotationRepository.countByUserIdsGroupByStatus(userIds, REVIEWED_STATUSES)) {
+            long[] count = counts.computeIfAbsent((Long) row[0], id -> new long[2]);
+            if (row[1] == Annotation.AnnotationStatus.APPROVED) {
+                count[0] += ((Number) row[2]).longValue();
+            } else {
+                count[1] += ((Number) row[2]).longValue();
+            }
+        }
+        for (Long userId : userIds) {
+            long[] count = counts.getOrDefault(userId, new long[2]);
+            double accuracy = (count[0] + 1.0) / (count[0] + count[1] + 2.0);
+            double logOdds = Math.log(accuracy / (1.0 - accuracy));
+            weights.put(userId, Math.max(minWeight, Math.min(maxWeight, logOdds)));
+        }
+        return weights;
+    }
+
+    /**
+     * 计算 K 份标注的逐字段共识
+     */
+    public ConsensusResult computeConsensus(Task task, List<Annotation> annotations) {
+        FlightEvents.QualityDiffEvent flightEvent = new FlightEvents.QualityDiffEvent();
+        flightEvent.begin();
+        List<FormField> fields = task.getFormConfig() != null
+            ? formFieldRepository.findByFormConfigIdOrdered(task.getFormConfig().getId())
+            : List.of();
+        Map<String, FormField> fieldsByName = new LinkedHashMap<>();
+        for (FormField field : fields) {
+            fieldsByName.put(field.getFieldName(), field);
+        }
+
+        List<Long> userIds = annotations.stream()
+            .map(annotation -> annotation.getTaskAssignment().getUser().getId())
+            .distinct()
+            .collect(Collectors.toList());
+        Map<Long, Double> weights = getAnnotatorWeights(userIds);
+
+        // 解析失败的标注按空对象处理，其所有字段视为未填写
+        List<JsonNode> trees = new ArrayList<>();
+        Set<String> fieldNames = new LinkedHashSet<>(fieldsByName.keySet());
+        for (Annotation annotation : annotations) {
+            JsonNode tree = annotationDiffService.parse(annotation.getAnnotationData());
+            if (tree == null || !tree.isObject()) {
+                tree = JsonNodeFactory.instance.objectNode();
+            }
+            trees.add(tree);
+            tree.fieldNames().forEachRemaining(fieldNames::add);
+        }
+
+        ConsensusResult result = new ConsensusResult(annotations, weights);
+        for (String fieldName : fieldNames) {
+            FormField field = fieldsByName.get(fieldName);
+            FormField.FieldType type = field != null ? field.getFieldType() : null;
+
+            Map<Object, VoteGroup> groups = new LinkedHashMap<>();
+            List<Vote> votes = new ArrayList<>();
+            double totalWeight = 0;
+            for (int i = 0; i < annotations.size(); i++) {
+                Annotation annotation = annotations.get(i);
+                Long userId = annotation.getTaskAssignment().getUser().getId();
+                JsonNode value = trees.get(i).get(fieldName);
+                Object normalized = annotationDiffService.normalize(value, type);
+                double weight = weights.getOrDefault(userId, minWeight);
+
+                Vote vote = new Vote(annotation.getId(), userId, value != null ? value : NullNode.getInstance(), weight);
+                votes.add(vote);
+                groups.computeIfAbsent(normalized != null ? normalized : EMPTY_VALUE, key -> new VoteGroup()).add(vote);
+                totalWeight += weight;
+            }
+
+            // 所有人都未填写的字段不参与比较
+            if (groups.size() == 1 && groups.containsKey(EMPTY_VALUE)) {
+                continue;
+            }
+            result.comparedFields++;
+
+            Object winnerKey = null;
+            VoteGroup winner = null;
+            boolean tie = false;
+            for (Map.Entry<Object, VoteGroup> entry : groups.entrySet()) {
+                VoteGroup group = entry.getValue();
+                if (winner == null || group.weight > winner.weight) {
+                    winnerKey = entry.getKey();
+                    winner = group;
+                    tie = false;
+                } else if (group.weight == winner.weight) {
+                    tie = true;
+                }
+            }
+
+            double share = totalWeight > 0 ? winner.weight / totalWeight : 0;
+            boolean agreed = !tie && winner.votes.size() >= 2 && share > minAgreement;
+            if (agreed) {
+                result.agreement.put(fieldName, share);
+                // 多数人一致未填写时采纳为空
+                if (!EMPTY_VALUE.equals(winnerKey)) {
+                    result.acceptedValues.set(fieldName, winner.representative().value);
+                }
+            } else {
+                result.disputed.add(new DisputedField(fieldName, field != null ? field.getLabel() : null, type, votes));
+            }
+        }
+
+        if (flightEvent.shouldCommit()) {
+            flightEvent.taskId = task.getId() != null ? task.getId() : 0;
+            flightEvent.annotations = annotations.size();
+            flightEvent.comparedFields = result.comparedFields;
+            flightEvent.disputedFields = result.disputed.size();
+            flightEvent.commit();
+        }
+        return result;
+    }
+
+    /**
+     * 审查员逐字段裁决争议字段后，合并出最终结果，并按最终结果标记每份标注通过或驳回
+     * （全部字段与最终结果一致的标注通过，其余驳回），审核结果同时作为后续投票权重的依据
+     */
+    public ObjectNode resolveDisputedFields(QualityCheck qualityCheck, Map<String, Object> fieldValues,
+                                            User reviewer, String notes) throws Exception {
+        JsonNode consensus = qualityCheck.getConsensusData() != null
+            ? annotationDiffService.parse(qualityCheck.getConsensusData()) : null;
+        if (consensus == null || !consensus.isObject()) {
+            throw new Exception("该质量检查没有共识数据，请选择要采纳的标注结果");
+        }
+
+        Task task = qualityCheck.getTask();
+        Map<String, FormField.FieldType> types = new HashMap<>();
+        if (task.getFormConfig() != null) {
+            for (FormField field : formFieldRepository.findByFormConfigIdOrdered(task.getFormConfig().getId())) {
+                types.put(field.getFieldName(), field.getFieldType());
+            }
+        }
+
+        ObjectNode finalValues = consensus.path("accepted").isObject()
+            ? ((ObjectNode) consensus.get("accepted")).deepCopy()
+            : JsonNodeFactory.instance.objectNode();
+        for (JsonNode disputed : consensus.path("disputed")) {
+            String fieldName = disputed.path("fieldName").asText();
+            if (!fieldValues.containsKey(fieldName)) {
+                throw new Exception("请裁决争议字段: " + fieldName);
+            }
+            JsonNode value = objectMapper.valueToTree(fieldValues.get(fieldName));
+            if (annotationDiffService.normalize(value, types.get(fieldName)) == null) {
+                finalValues.remove(fieldName);
+            } else {
+                finalValues.set(fieldName, value);
+            }
+        }
+
+        List<Long> annotationIds = new ArrayList<>();
+        consensus.path("annotationIds").forEach(node -> annotationIds.add(node.asLong()));
+        List<Annotation> annotations = annotationRepository.findAllById(annotationIds);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Annotation annotation : annotations) {
+            JsonNode tree = annotationDiffService.parse(annotation.getAnnotationData());
+            boolean matches = tree != null && tree.isObject() && matchesFinal(tree, finalValues, types);
+            annotation.setStatus(matches ? Annotation.AnnotationStatus.APPROVED : Annotation.AnnotationStatus.REJECTED);
+            annotation.setReviewedAt(now);
+            annotation.setReviewer(reviewer);
+            annotation.setReviewNotes(matches ? notes : "与裁决结果不一致: " + (notes != null ? notes : ""));
+        }
+        annotationRepository.saveAll(annotations);
+
+        ((ObjectNode) consensus).set("resolved", finalValues);
+        qualityCheck.setConsensusData(objectMapper.writeValueAsString(consensus));
+        return finalValues;
+    }
+
+    /**
+     * 共识数据 JSON（保存到 QualityCheck.consensusData）
+     */
+    public String toJson(ConsensusResult result) {
+        ObjectNode root = JsonNodeFactory.instance.objectNode();
+        root.put("annotatorCount", result.annotations.size());
+        ArrayNode annotationIds = root.putArray("annotationIds");
+        result.annotations.forEach(annotation -> annotationIds.add(annotation.getId()));
+        ObjectNode weightsNode = root.putObject("weights");
+        result.weights.forEach((userId, weight) -> weightsNode.put(userId.toString(), round(weight)));
+        root.set("accepted", result.acceptedValues);
+        ObjectNode agreementNode = root.putObject("agreement");
+        result.agreement.forEach((field, share) -> agreementNode.put(field, round(share)));
+        root.set("disputed", disputedToJson(result.disputed, false));
+        return write(root);
+    }
+
+    /**
+     * 争议字段 JSON（保存到 QualityCheck.conflictFields）
+     * 保留 valueA/valueB（前两份标注的取值）以兼容双人标注的展示，votes 为全部投票
+     */
+    public String conflictsToJson(ConsensusResult result) {
+        return write(disputedToJson(result.disputed, true));
+    }
+
+    private ArrayNode disputedToJson(List<DisputedField> disputed, boolean includePairValues) {
+        ArrayNode array = JsonNodeFactory.instance.arrayNode();
+        for (DisputedField field : disputed) {
+            ObjectNode node = array.addObject();
+            node.put("fieldName", field.fieldName);
+            if (field.label != null) {
+                node.put("label", field.label);
+            }
+            if (field.fieldType != null) {
+                node.put("fieldType", field.fieldType.name());
+            }
+            if (includePairValues && field.votes.size() >= 2) {
+                node.set("valueA", field.votes.get(0).value);
+                node.set("valueB", field.votes.get(1).value);
+            }
+            ArrayNode votesNode = node.putArray("votes");
+            for (Vote vote : field.votes) {
+                ObjectNode voteNode = votesNode.addObject();
+                voteNode.put("annotationId", vote.annotationId);
+                voteNode.put("userId", vote.userId);
+                voteNode.put("weight", round(vote.weight));
+                voteNode.set("value", vote.value);
+            }
+        }
+        return array;
+    }
+
+    private boolean matchesFinal(JsonNode tree, ObjectNode finalValues, Map<String, FormField.FieldType> types) {
+        Set<String> fieldNames = new LinkedHashSet<>();
+        tree.fieldNames().forEachRemaining(fieldNames::add);
+        finalValues.fieldNames().forEachRemaining(fieldNames::add);
+        for (String fieldName : fieldNames) {
+            FormField.FieldType type = types.get(fieldName);
+            if (!Objects.equals(annotationDiffService.normalize(tree.get(fieldName), type),
+                                annotationDiffService.normalize(finalValues.get(fieldName), type))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private String write(JsonNode node) {
+        try {
+            return objectMapper.writeValueAsString(node);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 单张投票
+     */
+    public static class Vote {
+        private final Long annotationId;
+        private final Long userId;
+        private final JsonNode value;
+        private final double weight;
+
+        Vote(Long annotationId, Long userId, JsonNode value, double weight) {
+            this.annotationId = annotationId;
+            this.userId = userId;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        public Long getAnnotationId() { return annotationId; }
+
+        public Long getUserId() { return userId; }
+
+        public JsonNode getValue() { return value; }
+
+        public double getWeight() { return weight; }
+    }
+
+    /**
+     * 归一化后取值相同的一组投票
+     */
+    private static class VoteGroup {
+        private final List<Vote> votes = new ArrayList<>();
+        private double weight;
+
+        void add(Vote vote) {
+            votes.add(vote);
+            weight += vote.weight;
+        }
+
+        // 权重最高的投票的原始取值作为采纳值
+        Vote representative() {
+            Vote best = votes.get(0);
+            for (Vote vote : votes) {
+                if (vote.weight > best.weight) {
+                    best = vote;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * 未达成共识的字段
+     */
+    public static class DisputedField {
+        private final String fieldName;
+        private final String label;
+        private final FormField.FieldType fieldType;
+        private final List<Vote> votes;
+
+        DisputedField(String fieldName, String label, FormField.FieldType fieldType, List<Vote> votes) {
+            this.fieldName = fieldName;
+            this.label = label;
+            this.fieldType = fieldType;
+            this.votes = votes;
+        }
+
+        public String getFieldName() { return fieldName; }
+
+        public String getLabel() { return label; }
+
+        public FormField.FieldType getFieldType() { return fieldType; }
+
+        public List<Vote> getVotes() { return votes; }
+    }
+
+    /**
+     * 共识结果：自动采纳的字段取值及其加权占比、争议字段
+     */
+    public static class ConsensusResult {
+        private final List<Annotation> annotations;
+        private final Map<Long, Double> weights;
+        private final ObjectNode acceptedValues = JsonNodeFactory.instance.objectNode();
+        private final Map<String, Double> agreement = new LinkedHashMap<>();
+        private final List<DisputedField> disputed = new ArrayList<>();
+        private int comparedFields;
+
+        ConsensusResult(List<Annotation> annotations, Map<Long, Double> weights) {
+            this.annotations = annotations;
+            this.weights = weights;
+        }
+
+        public ObjectNode getAcceptedValues() { return acceptedValues; }
+
+        public Map<String, Double> getAgreement() { return agreement; }
+
+        public List<DisputedField> getDisputed() { return disputed; }
+
+        public int getComparedFields() { return comparedFields; }
+
+        public boolean hasDisputes() { return !disputed.isEmpty(); }
+
+        /**
+         * 全部一致为 MATCH，全部争议为 CONFLICT，其余为 PARTIAL_MATCH
+         */
+        public QualityCheck.ComparisonResult getComparisonResult() {
+            if (disputed.isEmpty()) {
+                return QualityCheck.ComparisonResult.MATCH;
+            }
+            return disputed.size() >= comparedFields
+                ? QualityCheck.ComparisonResult.CONFLICT
+                : QualityCheck.ComparisonResult.PARTIAL_MATCH;
+        }
+    }
+}
@@ -0,0 +1,674 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.Annotation;
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.utils.FlightEvents;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档标注存档（uploads/documents/{documentId}_archive.json）的读写
+ * 从 AnnotationController 中抽出，供标注提交的后台处理与审核接口共用
+ */
+@Service
+public class DocumentArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentArchiveService.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 将 AssignmentType 映射为 role_type 字符串
+     */
+    private String mapAssignmentTypeToRoleType(TaskAssignment.AssignmentType assignmentType) {
+        switch (assignmentType) {
+            case ANNOTATION:
+                return "ordinary_annotator";
+            case AI_ANNOTATION:
+                return "ai_annotator";
+            case REVIEW:
+                return "reviewer";
+            case EXPERT_REVIEW:
+                return "expert";
+            case INSPECTION:
+                return "reviewer"; // INSPECTION 也映射为 reviewer
+            default:
+                return "ordinary_annotator";
+        }
+    }
+
+    /**
+     * 更新审核存档（在审核标注时调用）
+     */
+    public void updateArchiveForReview(Document document, Task task, TaskAssignment assignment, 
+                                       Annotation annotation, String reviewNotes) {
+        try {
+            JsonNode annotationDataJson = objectMapper.readTree(annotation.getAnnotationData());
+            
+            updateArchiveWithLock(document.getId(), archive -> {
+                // Initialize annotation_records if not exists
+                JsonNode annotationRecordsNode = archive.path("annotation_records");
+                ObjectNode annotationRecords;
+                if (annotationRecordsNode.isMissingNode() || !(annotationRecordsNode instanceof ObjectNode)) {
+                    annotationRecords = archive.putObject("annotation_records");
+                } else {
+                    annotationRecords = (ObjectNode) annotationRecordsNode;
+                }
+
+                // Get role type
+                TaskAssignment.AssignmentType assignmentType = assignment.getAssignmentType();
+                String roleType = mapAssignmentTypeToRoleType(assignmentType);
+                
+                String taskName = task.getTitle();
+                String taskIdStr = "TASK-" + task.getId().toString();
+                String operationTime = LocalDateTime.now().toString();
+
+                // For each field in annotation data
+                Iterator<String> fieldNames = annotationDataJson.fieldNames();
+                while (fieldNames.hasNext()) {
+                    String fieldName = fieldNames.next();
+                    JsonNode valueNode = annotationDataJson.path(fieldName);
+
+                    // Get or create field array
+                    JsonNode fieldNode = annotationRecords.path(fieldName);
+                    ArrayNode fieldArray;
+                    if (fieldNode instanceof ArrayNode) {
+                        fieldArray = (ArrayNode) fieldNode;
+                    } else {
+                        fieldArray = annotationRecords.putArray(fieldName);
+                    }
+
+                    // Create review record entry
+                    ObjectNode entry = JsonNodeFactory.instance.objectNode();
+                    entry.put("task_id", taskIdStr);
+                    entry.put("task_name", taskName);
+                    entry.put("role_type", roleType);
+                    entry.put("operation_time", operationTime);
+                    
+                    // Set annotation_content (same as last entry or from annotation data)
+                    if (valueNode.isTextual()) {
+                        entry.put("annotation_content", valueNode.asText());
+                    } else if (valueNode.isNumber()) {
+                        if (valueNode.isDouble() || valueNode.isFloat()) {
+                            entry.put("annotation_content", valueNode.asDouble());
+                        } else {
+                            entry.put("annotation_content", valueNode.asLong());
+                        }
+                    } else if (valueNode.isBoolean()) {
+                        entry.put("annotation_content", valueNode.asBoolean());
+                    } else if (valueNode.isArray() || valueNode.isObject()) {
+                        entry.set("annotation_content", valueNode);
+                    } else {
+                        entry.put("annotation_content", valueNode.asText(""));
+                    }
+
+                    // Add review_comment or expert_note
+                    if (roleType.equals("reviewer") && reviewNotes != null && !reviewNotes.trim().isEmpty()) {
+                        entry.put("review_comment", reviewNotes);
+                    } else if (roleType.equals("expert") && reviewNotes != null && !reviewNotes.trim().isEmpty()) {
+                        entry.put("expert_note", reviewNotes);
+                    }
+
+                    fieldArray.add(entry);
+                }
+
+                // Update last_modified_time
+                archive.put("last_modified_time", LocalDateTime.now().toString());
+                
+                return archive;
+            });
+        } catch (Exception e) {
+            logger.error("Failed to update archive for review: {}", e.getMessage(), e);
+            e.printStackTrace();
+            // Don't fail review
+        }
+    }
+
+    /**
+     * 更新标注存档（在提交标注时调用），返回是否写入成功
+     */
+    public boolean updateArchiveForAnnotation(Document document, Task task, TaskAssignment assignment,
+                                              Annotation annotation, Object annotationData) {
+        try {
+            logger.info("=== updateArchiveForAnnotation START ===");
+            logger.info("Document ID: {}, Task ID: {}, Annotation ID: {}", 
+                       document.getId(), task.getId(), annotation.getId());
+            
+            JsonNode dataJson = objectMapper.valueToTree(annotationData);
+            // Log annotation data keys (collect to list first to avoid consuming iterator)
+            List<String> fieldNamesList = new ArrayList<>();
+            dataJson.fieldNames().forEachRemaining(fieldNamesList::add);
+            logger.info("Annotation data keys: {}, size: {}", fieldNamesList, dataJson.size());
+            
+            boolean success = updateArchiveWithLock(document.getId(), archive -> {
+                // Initialize file_info if not exists
+                JsonNode fileInfoNode = archive.path("file_info");
+                ObjectNode fileInfo;
+                if (fileInfoNode.isMissingNode() || !(fileInfoNode instanceof ObjectNode)) {
+                    fileInfo = archive.putObject("file_info");
+                    fileInfo.put("file_id", "doc-" + document.getId().toString());
+                    fileInfo.put("file_name", document.getOriginalFilename());
+                    fileInfo.put("storage_path", document.getFilePath());
+                    fileInfo.put("upload_time", document.getCreatedAt() != null ? 
+                        document.getCreatedAt().toString() : LocalDateTime.now().toString());
+                    fileInfo.put("file_size_bytes", document.getFileSize());
+                    if (task.getFormConfig() != null) {
+                        fileInfo.put("template_id", "template_" + task.getFormConfig().getId().toString());
+                    }
+                }
+
+                // Initialize annotation_records if not exists
+                JsonNode annotationRecordsNode = archive.path("annotation_records");
+                ObjectNode annotationRecords;
+                if (annotationRecordsNode.isMissingNode() || !(annotationRecordsNode instanceof ObjectNode)) {
+                    annotationRecords = archive.putObject("annotation_records");
+                } else {
+                    annotationRecords = (ObjectNode) annotationRecordsNode;
+                }
+
+                // Get role type
+                String roleType = mapAssignmentTypeToRoleType(assignment.getAssignmentType());
+                
+                // Get task name
+                String taskName = task.getTitle();
+                String taskIdStr = "TASK-" + task.getId().toString();
+                
+                // Get operation time
+                String operationTime = annotation.getSubmittedAt() != null ? 
+                    annotation.getSubmittedAt().toString() : LocalDateTime.now().toString();
+
+                // For each field in annotation data
+                Iterator<String> fieldNames = dataJson.fieldNames();
+                int fieldCount = 0;
+                while (fieldNames.hasNext()) {
+                    String fieldName = fieldNames.next();
+                    fieldCount++;
+                    JsonNode valueNode = dataJson.path(fieldName);
+                    logger.debug("  Processing field: {} (type: {})", fieldName, valueNode.getNodeType());
+
+                    // Get or create field array
+                    JsonNode fieldNode = annotationRecords.path(fieldName);
+                    ArrayNode fieldArray;
+                    if (fieldNode instanceof ArrayNode) {
+                        fieldArray = (ArrayNode) fieldNode;
+                    } else {
+                        fieldArray = annotationRecords.putArray(fieldName);
+                    }
+
+                    // Check if there's an existing record with the same task_id and role_type
+                    boolean foundExisting = false;
+                    for (int i = 0; i < fieldArray.size(); i++) {
+                        JsonNode existingEntry = fieldArray.get(i);
+                        if (existingEntry != null && 
+                            taskIdStr.equals(existingEntry.path("task_id").asText()) &&
+                            roleType.equals(existingEntry.path("role_type").asText())) {
+                            // Update existing entry instead of adding a new one
+                            ObjectNode existingObj = (ObjectNode) existingEntry;
+                            existingObj.put("task_name", taskName);
+                            existingObj.put("operation_time", operationTime);
+                            
+                            // Update user information
+                            if (assignment.getUser() != null) {
+                                existingObj.put("user_id", assignment.getUser().getId());
+                                existingObj.put("username", assignment.getUser().getUsername());
+                            }
+                            
+                            // Update annotation_content based on value type
+                            existingObj.remove("annotation_content");
+                            if (valueNode.isTextual()) {
+                                existingObj.put("annotation_content", valueNode.asText());
+                            } else if (valueNode.isNumber()) {
+                                if (valueNode.isDouble() || valueNode.isFloat()) {
+                                    existingObj.put("annotation_content", valueNode.asDouble());
+                                } else {
+                                    existingObj.put("annotation_content", valueNode.asLong());
+                                }
+                            } else if (valueNode.isBoolean()) {
+                                existingObj.put("annotation_content", valueNode.asBoolean());
+                            } else if (valueNode.isArray() || valueNode.isObject()) {
+                                existingObj.set("annotation_content", valueNode);
+                            } else {
+                                existingObj.put("annotation_content", valueNode.asText(""));
+                            }
+
+                            // Update review_comment if reviewer
+                            if (roleType.equals("reviewer")) {
+                                if (annotation.getReviewNotes() != null) {
+                                    existingObj.put("review_comment", annotation.getReviewNotes());
+                                } else {
+                                    existingObj.remove("review_comment");
+                                }
+                            }
+
+                            // Update expert_note if expert
+                            if (roleType.equals("expert")) {
+                                if (annotation.getReviewNotes() != null) {
+                                    existingObj.put("expert_note", annotation.getReviewNotes());
+                                } else {
+                                    existingObj.remove("expert_note");
+                                }
+                            }
+
+                            // Add adjustment_reason if ordinary_annotator modified AI result
+                            if (roleType.equals("ordinary_annotator") && i > 0) {
+                                JsonNode prevEntry = fieldArray.get(i - 1);
+                                if (prevEntry != null && "ai_annotator".equals(prevEntry.path("role_type").asText())) {
+                                    JsonNode prevContent = prevEntry.path("annotation_content");
+                                    if (!prevContent.equals(valueNode)) {
+                                        existingObj.put("adjustment_reason", "修正AI提取结果");
+                                    } else {
+                                        existingObj.remove("adjustment_reason");
+                                    }
+                                }
+                            }
+                            
+                            foundExisting = true;
+                            logger.debug("Updated existing annotation record for task={}, role={}, field={}", 
+                                       taskIdStr, roleType, fieldName);
+                            break;
+                        }
+                    }
+
+                    // If no existing record found, create a new one
+                    if (!foundExisting) {
+                        ObjectNode entry = JsonNodeFactory.instance.objectNode();
+                        entry.put("task_id", taskIdStr);
+                        entry.put("task_name", taskName);
+                        entry.put("role_type", roleType);
+                        entry.put("operation_time", operationTime);
+                        
+                        // Add user information
+                        if (assignment.getUser() != null) {
+                            entry.put("user_id", assignment.getUser().getId());
+                            entry.put("username", assignment.getUser().getUsername());
+                        }
+                        
+                        // Set annotation_content based on value type
+                        if (valueNode.isTextual()) {
+                            entry.put("annotation_content", valueNode.asText());
+                        } else if (valueNode.isNumber()) {
+                            if (valueNode.isDouble() || valueNode.isFloat()) {
+                                entry.put("annotation_content", valueNode.asDouble());
+                            } else {
+                                entry.put("annotation_content", valueNode.asLong());
+                            }
+                        } else if (valueNode.isBoolean()) {
+                            entry.put("annotation_content", valueNode.asBoolean());
+                        } else if (valueNode.isArray() || valueNode.isObject()) {
+                            entry.set("annotation_content", valueNode);
+                        } else {
+                            entry.put("annotation_content", valueNode.asText(""));
+                        }
+
+                        // Add review_comment if reviewer
+                        if (roleType.equals("reviewer") && annotation.getReviewNotes() != null) {
+                            entry.put("review_comment", annotation.getReviewNotes());
+                        }
+
+                        // Add expert_note if expert
+                        if (roleType.equals("expert") && annotation.getReviewNotes() != null) {
+                            entry.put("expert_note", annotation.getReviewNotes());
+                        }
+
+                        // Add adjustment_reason if ordinary_annotator modified AI result
+                        if (roleType.equals("ordinary_annotator") && fieldArray.size() > 0) {
+                            JsonNode lastEntry = fieldArray.get(fieldArray.size() - 1);
+                            if (lastEntry != null && "ai_annotator".equals(lastEntry.path("role_type").asText())) {
+                                JsonNode lastContent = lastEntry.path("annotation_content");
+                                if (!lastContent.equals(valueNode)) {
+                                    entry.put("adjustment_reason", "修正AI提取结果");
+                                }
+                            }
+                        }
+
+                        fieldArray.add(entry);
+                        logger.debug("Added new annotation record for task={}, role={}, field={}", 
+                                   taskIdStr, roleType, fieldName);
+                    }
+                    logger.debug("  Processed field: {} (array size: {})", fieldName, fieldArray.size());
+                }
+                logger.info("Total fields processed: {} (one record per task+role+field)", fieldCount);
+
+                // Update template_info
+                if (task.getFormConfig() != null) {
+                    JsonNode templateInfoNode = archive.path("template_info");
+                    ObjectNode templateInfo;
+                    if (templateInfoNode.isMissingNode() || !(templateInfoNode instanceof ObjectNode)) {
+                        templateInfo = archive.putObject("template_info");
+                    } else {
+                        templateInfo = (ObjectNode) templateInfoNode;
+                    }
+                    templateInfo.put("template_id", "template_" + task.getFormConfig().getId().toString());
+                    templateInfo.put("template_name", task.getFormConfig().getName());
+                    
+                    // Get field names from form config
+                    ArrayNode fieldsDefined = templateInfo.putArray("fields_defined");
+                    if (task.getFormConfig().getFields() != null) {
+                        task.getFormConfig().getFields().forEach(field -> {
+                            fieldsDefined.add(field.getFieldName());
+                        });
+                    }
+                    
+                    // Version (could be based on form config update time or version field if exists)
+                    templateInfo.put("version", "v" + (task.getFormConfig().getUpdatedAt() != null ? 
+                        task.getFormConfig().getUpdatedAt().toString().substring(0, 10) : "1.0"));
+                }
+
+                // Update latest_annotation_version and last_modified_time
+                Integer version = annotation.getVersion();
+                if (version == null) {
+                    version = 1; // Default to 1 if version is null
+                }
+                archive.put("latest_annotation_version", "v" + version.toString());
+                archive.put("last_modified_time", LocalDateTime.now().toString());
+                
+                return archive;
+            });
+            
+            if (success) {
+                logger.info("=== updateArchiveForAnnotation SUCCESS ===");
+            } else {
+                logger.error("=== updateArchiveForAnnotation FAILED: updateArchiveWithLock returned false ===");
+            }
+            return success;
+        } catch (Exception e) {
+            logger.error("=== updateArchiveForAnnotation EXCEPTION ===", e);
+            logger.error("Failed to update archive for annotation: {}", e.getMessage(), e);
+            // Don't fail submission, but log the error
+            return false;
+        }
+    }
+
+    /**
+     * 统计存档中的冲突字段数：同一字段有 2 条以上记录且标注内容不完全相同
+     */
+    public int countConflicts(JsonNode archive) {
+        JsonNode annotationRecords = archive.path("annotation_records");
+        if (!annotationRecords.isObject()) {
+            return 0;
+        }
+
+        int conflictCount = 0;
+        Iterator<Map.Entry<String, JsonNode>> fields = annotationRecords.fields();
+        while (fields.hasNext()) {
+            JsonNode entries = fields.next().getValue();
+            if (!entries.isArray() || entries.size() < 2) {
+                continue;
+            }
+
+            Set<String> uniqueValues = new HashSet<>();
+            for (JsonNode entry : entries) {
+                JsonNode annotationContent = entry.path("annotation_content");
+                uniqueValues.add(annotationContent.isTextual() ? annotationContent.asText() : annotationContent.toString());
+                if (uniqueValues.size() > 1) {
+                    conflictCount++;
+                    break;
+                }
+            }
+        }
+        return conflictCount;
+    }
+
+    /**
+     * 使用文件锁安全地更新文档存档（处理并发写入）
+     * @param documentId 文档ID
+     * @param updateFunction 更新函数，接收当前存档并返回更新后的存档
+     * @return 是否更新成功
+     */
+    private boolean updateArchiveWithLock(Long documentId, java.util.function.Function<ObjectNode, ObjectNode> updateFunction) {
+        // Use the same path format as DocumentController for consistency
+        Path archivePath = Paths.get("./uploads/documents", documentId + "_archive.json");
+        File archiveFile = archivePath.toFile();
+        
+        logger.info("=== updateArchiveWithLock START ===");
+        logger.info("Document ID: {}, Archive path: {}, exists: {}, size: {}", 
+                   documentId, archivePath.toAbsolutePath(), archiveFile.exists(), archiveFile.length());
+        
+        // 确保目录存在
+        try {
+            if (archiveFile.getParentFile() != null && !archiveFile.getParentFile().exists()) {
+                boolean created = archiveFile.getParentFile().mkdirs();
+                logger.info("Created directory: {}", created);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to create archive directory: {}", e.getMessage(), e);
+            return false;
+        }
+
+        FileLock lock = null;
+        FileChannel channel = null;
+        RandomAccessFile raf = null;
+        FlightEvents.ArchiveUpdateEvent flightEvent = new FlightEvents.ArchiveUpdateEvent();
+        flightEvent.begin();
+        flightEvent.documentId = documentId;
+        
+        try {
+            // 使用 RandomAccessFile 和 FileChannel 来获取文件锁
+            raf = new RandomAccessFile(archiveFile, "rw");
+            channel = raf.getChannel();
+            
+            // 尝试获取独占锁，最多等待5秒
+            long lockStart = System.nanoTime();
+            int maxRetries = 50;
+            int retryCount = 0;
+            while (retryCount < maxRetries) {
+                try {
+                    lock = channel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    // 同一进程内另一线程持有该文件的锁（并发处理同一文档的提交），与其他进程持锁一样等待重试
+                    lock = null;
+                }
+                if (lock != null) {
+                    break;
+                }
+                // 等待100ms后重试
+                Thread.sleep(100);
+                retryCount++;
+            }
+            
+            recordStage("lock.wait", lockStart, lock != null);
+            flightEvent.lockWait = System.nanoTime() - lockStart;
+            if (lock == null) {
+                logger.error("Failed to acquire file lock after {} retries", maxRetries);
+                return false;
+            }
+            
+            // 读取现有存档
+            long parseStart = System.nanoTime();
+            ObjectNode archive = JsonNodeFactory.instance.objectNode();
+            if (archiveFile.exists() && archiveFile.length() > 0) {
+                try {
+                    // Need to read from RandomAccessFile since we have a lock on it
+                    raf.seek(0);
+                    byte[] bytes = new byte[(int) raf.length()];
+                    raf.readFully(bytes);
+                    String content = new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+                    if (!content.trim().isEmpty()) {
+                        JsonNode temp = objectMapper.readTree(content);
+                        if (temp != null && !temp.isMissingNode() && temp instanceof ObjectNode) {
+                            archive = (ObjectNode) temp;
+                            logger.info("Loaded existing archive with {} fields", archive.size());
+                        } else {
+                            logger.warn("Archive file contains invalid JSON, creating new archive");
+                            archive = JsonNodeFactory.instance.objectNode();
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.error("Failed to parse existing archive, creating new one: {}", e.getMessage(), e);
+                    // Continue with empty archive
+                    archive = JsonNodeFactory.instance.objectNode();
+                }
+            } else {
+                logger.info("Creating new archive file (file doesn't exist or is empty)");
+            }
+            recordStage("parse", parseStart, true);
+            
+            // 应用更新函数
+            archive = updateFunction.apply(archive);
+            logger.info("Archive after update has {} fields", archive.size());
+            
+            // 先释放锁再关闭文件（关闭通道后锁已失效，release 会抛 ClosedChannelException），然后再写入文件
+            if (lock != null) {
+                try {
+                    lock.release();
+                } catch (Exception e) {
+                    logger.error("Failed to release lock: {}", e.getMessage(), e);
+                }
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (Exception e) {
+                    logger.error("Failed to close channel: {}", e.getMessage(), e);
+                }
+            }
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (Exception e) {
+                    logger.error("Failed to close RandomAccessFile: {}", e.getMessage(), e);
+                }
+            }
+            // Set to null to prevent releasing again in finally block
+            lock = null;
+            channel = null;
+            raf = null;
+            
+            // 写回文件（使用临时文件确保原子性）
+            long writeStart = System.nanoTime();
+            Path tempPath = Paths.get(archivePath.toString() + ".tmp");
+            File tempFile = tempPath.toFile();
+            
+            logger.info("Writing to temp file: {}", tempPath.toAbsolutePath());
+            // Ensure parent directory exists
+            if (tempFile.getParentFile() != null && !tempFile.getParentFile().exists()) {
+                tempFile.getParentFile().mkdirs();
+            }
+            // Convert to JSON string first, then write with UTF-8 encoding to ensure Unicode support
+            String jsonString = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(archive);
+            byte[] jsonBytes = jsonString.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            flightEvent.bytes = jsonBytes.length;
+            Files.write(tempPath, jsonBytes);
+            logger.info("Temp file written, size: {}", tempFile.length());
+            
+            // 验证临时文件是否成功写入
+            if (!tempFile.exists() || tempFile.length() == 0) {
+                logger.error("Temp file was not created or is empty!");
+                if (tempFile.exists()) {
+                    tempFile.delete();
+                }
+                return false;
+            }
+            
+            // 原子性地替换原文件
+            if (archiveFile.exists()) {
+                boolean deleted = archiveFile.delete();
+                logger.info("Deleted old archive file: {}", deleted);
+                if (!deleted) {
+                    logger.error("Failed to delete old archive file!");
+                    // Try to delete temp file
+                    if (tempFile.exists()) {
+                        tempFile.delete();
+                    }
+                    return false;
+                }
+            }
+            
+            // Move temp file to archive file
+            try {
+                Files.move(tempPath, archivePath, java.nio.file.StandardCopyOption.ATOMIC_MOVE, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                logger.info("Moved temp file to archive file");
+            } catch (Exception e) {
+                logger.error("Failed to move temp file: {}", e.getMessage(), e);
+                // Clean up temp file
+                if (tempFile.exists()) {
+                    tempFile.delete();
+                }
+                return false;
+            }
+            
+            recordStage("write", writeStart, true);
+            
+            // 验证文件是否成功写入
+            File finalFile = archivePath.toFile();
+            if (finalFile.exists() && finalFile.length() > 0) {
+                logger.info("=== updateArchiveWithLock SUCCESS === Final file size: {}", finalFile.length());
+                flightEvent.success = true;
+                return true;
+            } else {
+                logger.error("=== updateArchiveWithLock FAILED: File not created or empty ===");
+                return false;
+            }
+            
+        } catch (Exception e) {
+            logger.error("Failed to update archive with lock: {}", e.getMessage(), e);
+            return false;
+        } finally {
+            flightEvent.commit();
+            // 释放锁和资源
+            if (lock != null) {
+                try {
+                    lock.release();
+                } catch (Exception e) {
+                    logger.error("Failed to release lock: {}", e.getMessage(), e);
+                }
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (Exception e) {
+                    logger.error("Failed to close channel: {}", e.getMessage(), e);
+                }
+            }
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (Exception e) {
+                    logger.error("Failed to close RandomAccessFile: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录存档更新各阶段耗时（annotation.archive.lock.wait / parse / write）
+     */
+    private void recordStage(String stage, long startNanos, boolean success) {
+        Timer.builder("annotation.archive." + stage)
+            .description("Archive update stage duration")
+            .tag("outcome", success ? "success" : "failure")
+            .register(meterRegistry)
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
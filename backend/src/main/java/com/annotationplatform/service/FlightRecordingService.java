@@ -0,0 +1,233 @@
+package com.annotationplatform.service;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 按需开启的 JDK Flight Recorder 记录
+ *
+ * 同一时间只保留一个记录。记录受最长时长、保留时间窗口与磁盘占用上限约束，超过时长自动停止；
+ * 导出的 .jfr 文件写入 jfr.recording.dir，只保留最近 max-files 个。
+ * 默认使用 JDK 的 default 配置（开销通常低于 1%），profile 配置采样更密、开销更高，只用于短时间排查。
+ */
+@Service
+public class FlightRecordingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingService.class);
+
+    private static final Set<String> SETTINGS = Set.of("default", "profile");
+    private static final String RECORDING_NAME = "annotation-platform";
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    @Value("${jfr.recording.dir:./recordings}")
+    private String recordingDir;
+
+    @Value("${jfr.recording.max-duration-minutes:60}")
+    private long maxDurationMinutes;
+
+    @Value("${jfr.recording.max-age-minutes:30}")
+    private long maxAgeMinutes;
+
+    @Value("${jfr.recording.max-size-mb:256}")
+    private long maxSizeMb;
+
+    @Value("${jfr.recording.max-files:10}")
+    private int maxFiles;
+
+    private Recording recording;
+    private String settings;
+
+    /**
+     * 开始记录
+     * @param settingsName default 或 profile，为空时使用 default
+     * @param durationMinutes 记录时长（分钟），为空或超过上限时使用上限
+     */
+    public synchronized RecordingStatus start(String settingsName, Integer durationMinutes) throws Exception {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new Exception("已有正在进行的记录，请先停止");
+        }
+        String name = settingsName == null || settingsName.isBlank() ? "default" : settingsName;
+        if (!SETTINGS.contains(name)) {
+            throw new Exception("不支持的记录配置: " + name + "（可选 default、profile）");
+        }
+        long minutes = durationMinutes == null || durationMinutes <= 0
+            ? maxDurationMinutes : Math.min(durationMinutes, maxDurationMinutes);
+
+        closeRecording();
+        Recording newRecording = new Recording(Configuration.getConfiguration(name));
+        newRecording.setName(RECORDING_NAME);
+        newRecording.setToDisk(true);
+        newRecording.setDuration(Duration.ofMinutes(minutes));
+        newRecording.setMaxAge(Duration.ofMinutes(maxAgeMinutes));
+        newRecording.setMaxSize(maxSizeMb * 1024 * 1024);
+        newRecording.start();
+        recording = newRecording;
+        settings = name;
+        logger.info("Started flight recording ({} settings, {} min)", name, minutes);
+        return getStatus();
+    }
+
+    /**
+     * 导出当前记录的快照，记录继续进行
+     */
+    public synchronized Path dump() throws Exception {
+        if (recording == null) {
+            throw new Exception("当前没有记录");
+        }
+        return dumpToFile(recording);
+    }
+
+    /**
+     * 停止记录并导出
+     */
+    public synchronized Path stop() throws Exception {
+        if (recording == null) {
+            throw new Exception("当前没有记录");
+        }
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            }
+            return dumpToFile(recording);
+        } finally {
+            closeRecording();
+        }
+    }
+
+    public synchronized RecordingStatus getStatus() {
+        RecordingStatus status = new RecordingStatus();
+        if (recording != null) {
+            status.state = recording.getState().name();
+            status.settings = settings;
+            status.startTime = recording.getStartTime();
+            status.duration = recording.getDuration();
+            status.maxAge = recording.getMaxAge();
+            status.maxSizeBytes = recording.getMaxSize();
+            status.sizeBytes = recording.getSize();
+        }
+        status.files = listFiles();
+        return status;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        closeRecording();
+    }
+
+    private Path dumpToFile(Recording source) throws IOException {
+        Path dir = Paths.get(recordingDir);
+        Files.createDirectories(dir);
+        Path file = dir.resolve(RECORDING_NAME + "-" + LocalDateTime.now().format(FILE_TIME_FORMAT) + ".jfr");
+        source.dump(file);
+        logger.info("Dumped flight recording to {}", file.toAbsolutePath());
+        deleteOldFiles(dir);
+        return file.toAbsolutePath();
+    }
+
+    private void deleteOldFiles(Path dir) throws IOException {
+        List<Path> files = listRecordingFiles(dir);
+        for (int i = 0; i < files.size() - Math.max(1, maxFiles); i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    private List<RecordingFile> listFiles() {
+        Path dir = Paths.get(recordingDir);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try {
+            List<RecordingFile> result = new ArrayList<>();
+            for (Path file : listRecordingFiles(dir)) {
+                result.add(new RecordingFile(file.toAbsolutePath().toString(), Files.size(file)));
+            }
+            return result;
+        } catch (IOException e) {
+            logger.warn("Failed to list flight recordings: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    // 按文件名（即导出时间）升序
+    private List<Path> listRecordingFiles(Path dir) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream
+                .filter(path -> path.getFileName().toString().endsWith(".jfr"))
+                .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                .collect(Collectors.toList());
+        }
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+            settings = null;
+        }
+    }
+
+    /**
+     * 当前记录状态与已导出的文件
+     */
+    public static class RecordingStatus {
+        private String state = "NONE";
+        private String settings;
+        private Instant startTime;
+        private Duration duration;
+        private Duration maxAge;
+        private long maxSizeBytes;
+        private long sizeBytes;
+        private List<RecordingFile> files;
+
+        public String getState() { return state; }
+
+        public String getSettings() { return settings; }
+
+        public Instant getStartTime() { return startTime; }
+
+        public Long getDurationSeconds() { return duration != null ? duration.getSeconds() : null; }
+
+        public Long getMaxAgeSeconds() { return maxAge != null ? maxAge.getSeconds() : null; }
+
+        public long getMaxSizeBytes() { return maxSizeBytes; }
+
+        public long getSizeBytes() { return sizeBytes; }
+
+        public List<RecordingFile> getFiles() { return files; }
+    }
+
+    public static class RecordingFile {
+        private final String path;
+        private final long sizeBytes;
+
+        public RecordingFile(String path, long sizeBytes) {
+            this.path = path;
+            this.sizeBytes = sizeBytes;
+        }
+
+        public String getPath() { return path; }
+
+        public long getSizeBytes() { return sizeBytes; }
+    }
+}
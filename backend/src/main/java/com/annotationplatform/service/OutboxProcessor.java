@@ -0,0 +1,327 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.OutboxEvent;
+import com.annotationplatform.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发件箱处理器
+ *
+ * 事件写入的事务提交后立即派发到工作线程池；定时轮询兜底领取到期的重试事件和租约过期的事件。
+ * 领取通过条件 UPDATE 完成（PENDING → PROCESSING 并设置租约），多实例部署时同一事件只会被一个实例处理。
+ * 失败按指数退避重试，超过最大次数标记为 FAILED。
+ * 写入到处理完成的延迟记录为 annotation.outbox.lag，失败尝试计入 annotation.outbox.failures。
+ */
+@Service
+public class OutboxProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxProcessor.class);
+
+    // 滑动平均处理延迟的平滑系数
+    private static final double LAG_SMOOTHING = 0.2;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private AnnotationSubmissionService annotationSubmissionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.workers:4}")
+    private int workers;
+
+    @Value("${outbox.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry-base-ms:2000}")
+    private long retryBaseMs;
+
+    @Value("${outbox.retry-max-ms:600000}")
+    private long retryMaxMs;
+
+    @Value("${outbox.retention-hours:72}")
+    private long retentionHours;
+
+    private ExecutorService executor;
+
+    // 本实例已派发、尚未处理完的事件
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+    private volatile long lastLagMs;
+    private volatile double averageLagMs;
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+                Thread thread = new Thread(runnable, "outbox-worker-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * 事件所在事务提交后立即派发
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOutboxEventCreated(OutboxEventCreatedEvent event) {
+        if (enabled) {
+            dispatch(event.getEventId());
+        }
+    }
+
+    /**
+     * 轮询到期事件（重试、租约过期、提交后未能立即派发的事件）
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        // 工作线程都忙时不再领取，积压留在数据库中
+        int capacity = workers * 2 - inFlight.size();
+        if (capacity <= 0) {
+            return;
+        }
+        try {
+            List<Long> dueIds = outboxEventRepository.findDueIds(LocalDateTime.now(), PageRequest.of(0, capacity));
+            dueIds.forEach(this::dispatch);
+        } catch (Exception e) {
+            logger.error("Outbox poll failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 清理保留期之外的已完成事件
+     */
+    @Scheduled(fixedDelayString = "${outbox.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        try {
+            Integer deleted = transactionTemplate.execute(status ->
+                outboxEventRepository.deleteCompletedBefore(LocalDateTime.now().minusHours(retentionHours)));
+            if (deleted != null && deleted > 0) {
+                logger.info("Deleted {} completed outbox events", deleted);
+            }
+        } catch (Exception e) {
+            logger.error("Outbox cleanup failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 重新排队 FAILED 事件
+     */
+    public boolean retry(Long eventId) {
+        Boolean requeued = transactionTemplate.execute(status -> outboxEventRepository.findById(eventId)
+            .filter(event -> event.getStatus() == OutboxEvent.OutboxStatus.FAILED)
+            .map(event -> {
+                event.setStatus(OutboxEvent.OutboxStatus.PENDING);
+                event.setAttempts(0);
+                event.setNextAttemptAt(LocalDateTime.now());
+                event.setLockedUntil(null);
+                return true;
+            })
+            .orElse(false));
+        if (Boolean.TRUE.equals(requeued)) {
+            dispatch(eventId);
+        }
+        return Boolean.TRUE.equals(requeued);
+    }
+
+    public List<OutboxEvent> getFailedEvents(int limit) {
+        return outboxEventRepository.findByStatus(OutboxEvent.OutboxStatus.FAILED, PageRequest.of(0, limit));
+    }
+
+    /**
+     * 积压与延迟：各状态数量、最早未处理事件的等待时间、最近与平均处理延迟（写入到处理完成）
+     */
+    public OutboxStats getStats() {
+        OutboxStats stats = new OutboxStats();
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : outboxEventRepository.countByStatus()) {
+            OutboxEvent.OutboxStatus status = (OutboxEvent.OutboxStatus) row[0];
+            stats.counts.put(status, ((Number) row[1]).longValue());
+            if ((status == OutboxEvent.OutboxStatus.PENDING || status == OutboxEvent.OutboxStatus.PROCESSING)
+                    && row[2] != null) {
+                long ageMs = Duration.between((LocalDateTime) row[2], now).toMillis();
+                stats.oldestUnprocessedAgeMs = Math.max(stats.oldestUnprocessedAgeMs, ageMs);
+            }
+        }
+        stats.inFlight = inFlight.size();
+        stats.processedCount = processedCount.get();
+        stats.failedAttemptCount = failedAttemptCount.get();
+        stats.lastLagMs = lastLagMs;
+        stats.averageLagMs = Math.round(averageLagMs);
+        return stats;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void dispatch(Long eventId) {
+        if (!inFlight.add(eventId)) {
+            return;
+        }
+        try {
+            executor().submit(() -> {
+                try {
+                    process(eventId);
+                } finally {
+                    inFlight.remove(eventId);
+                }
+            });
+        } catch (Exception e) {
+            // 线程池已关闭，留给下次启动后的轮询
+            inFlight.remove(eventId);
+        }
+    }
+
+    private void process(Long eventId) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status ->
+            outboxEventRepository.claim(eventId, now, now.plusSeconds(leaseSeconds)));
+        if (claimed == null || claimed == 0) {
+            // 已被其他实例领取、已完成或尚未到重试时间
+            return;
+        }
+
+        try {
+            OutboxEvent event = outboxEventRepository.findById(eventId).orElse(null);
+            if (event == null) {
+                return;
+            }
+            switch (event.getEventType()) {
+                case ANNOTATION_SUBMITTED:
+                    annotationSubmissionService.handle(eventId);
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported outbox event type: " + event.getEventType());
+            }
+            complete(eventId);
+        } catch (Exception e) {
+            fail(eventId, e);
+        }
+    }
+
+    private void complete(Long eventId) {
+        LocalDateTime createdAt = transactionTemplate.execute(status -> outboxEventRepository.findById(eventId)
+            .map(event -> {
+                event.setStatus(OutboxEvent.OutboxStatus.COMPLETED);
+                event.setProcessedAt(LocalDateTime.now());
+                event.setLockedUntil(null);
+                event.setLastError(null);
+                return event.getCreatedAt();
+            })
+            .orElse(null));
+        processedCount.incrementAndGet();
+        if (createdAt != null) {
+            long lag = Duration.between(createdAt, LocalDateTime.now()).toMillis();
+            lastLagMs = lag;
+            meterRegistry.timer("annotation.outbox.lag").record(lag, TimeUnit.MILLISECONDS);
+            averageLagMs = averageLagMs == 0 ? lag : averageLagMs + LAG_SMOOTHING * (lag - averageLagMs);
+        }
+    }
+
+    private void fail(Long eventId, Exception error) {
+        failedAttemptCount.incrementAndGet();
+        meterRegistry.counter("annotation.outbox.failures").increment();
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        transactionTemplate.executeWithoutResult(status -> outboxEventRepository.findById(eventId).ifPresent(event -> {
+            event.setLastError(message);
+            event.setLockedUntil(null);
+            if (event.getAttempts() >= maxAttempts) {
+                event.setStatus(OutboxEvent.OutboxStatus.FAILED);
+                logger.error("Outbox event {} failed permanently after {} attempts: {}", eventId, event.getAttempts(), message, error);
+            } else {
+                long delay = Math.min(retryMaxMs, retryBaseMs << Math.min(20, event.getAttempts() - 1));
+                event.setStatus(OutboxEvent.OutboxStatus.PENDING);
+                event.setNextAttemptAt(LocalDateTime.now().plusNanos(delay * 1_000_000));
+                logger.warn("Outbox event {} attempt {} failed, retrying in {} ms: {}", eventId, event.getAttempts(), delay, message);
+            }
+        }));
+    }
+
+    /**
+     * 发件箱事件已写入（所在事务提交后派发）
+     */
+    public static class OutboxEventCreatedEvent extends ApplicationEvent {
+        private final Long eventId;
+
+        public OutboxEventCreatedEvent(Object source, Long eventId) {
+            super(source);
+            this.eventId = eventId;
+        }
+
+        public Long getEventId() { return eventId; }
+    }
+
+    /**
+     * 发件箱积压与延迟统计
+     */
+    public static class OutboxStats {
+        private final Map<OutboxEvent.OutboxStatus, Long> counts = new EnumMap<>(OutboxEvent.OutboxStatus.class);
+        private long oldestUnprocessedAgeMs;
+        private int inFlight;
+        private long processedCount;
+        private long failedAttemptCount;
+        private long lastLagMs;
+        private long averageLagMs;
+
+        public Map<OutboxEvent.OutboxStatus, Long> getCounts() { return counts; }
+
+        public long getOldestUnprocessedAgeMs() { return oldestUnprocessedAgeMs; }
+
+        public int getInFlight() { return inFlight; }
+
+        public long getProcessedCount() { return processedCount; }
+
+        public long getFailedAttemptCount() { return failedAttemptCount; }
+
+        public long getLastLagMs() { return lastLagMs; }
+
+        public long getAverageLagMs() { return averageLagMs; }
+    }
+}
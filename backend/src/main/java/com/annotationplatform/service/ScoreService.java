@@ -103,6 +103,7 @@ public class ScoreService {
      * 获取积分排行榜
      */
     @Cacheable(value = "scoreRankings", key = "#limit")
+    @Transactional(readOnly = true)
     public List<UserScoreRanking> getScoreRanking(int limit) {
         // 使用优化的查询方法
         List<User> users = userRepository.findAllActiveUsersOrderedByScore(User.Status.ACTIVE);
@@ -125,6 +126,7 @@ public class ScoreService {
      * 获取用户的排名
      */
     @Cacheable(value = "userRanks", key = "#userId")
+    @Transactional(readOnly = true)
     public int getUserRank(Long userId) {
         // 使用优化的查询方法获取排名用户列表
         List<User> rankedUsers = userRepository.findAllActiveUsersOrderedByScore(User.Status.ACTIVE);
@@ -139,6 +141,7 @@ public class ScoreService {
     /**
      * 获取用户积分历史
      */
+    @Transactional(readOnly = true)
     public Page<ScoreHistory> getUserScoreHistory(User user, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
         return scoreHistoryRepository.findByUserOrderByCreatedAtDesc(user, pageable);
@@ -147,6 +150,7 @@ public class ScoreService {
     /**
      * 获取用户积分统计信息
      */
+    @Transactional(readOnly = true)
     public UserScoreStats getUserScoreStats(User user) {
         UserScoreStats stats = new UserScoreStats();
         stats.setCurrentScore(user.getScore());
@@ -2,13 +2,22 @@ package com.annotationplatform.service;
 
 import com.annotationplatform.entity.*;
 import com.annotationplatform.repository.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,6 +35,24 @@ public class TaskAssignmentService {
     @Autowired
     private QualityCheckRepository qualityCheckRepository;
 
+    @Autowired
+    private TaskStageCounterService taskStageCounterService;
+
+    @Autowired
+    private WorkloadTracker workloadTracker;
+
+    @Autowired
+    private ConsensusService consensusService;
+
+    @Autowired
+    private AgreementStatsService agreementStatsService;
+
+    @Autowired
+    private WorkflowService workflowService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * 智能分配标注任务
      * 算法：根据用户当前工作量和角色优先级进行分配
@@ -48,6 +75,7 @@ public class TaskAssignmentService {
         assignment.setAssignmentType(TaskAssignment.AssignmentType.ANNOTATION);
 
         TaskAssignment savedAssignment = taskAssignmentRepository.save(assignment);
+        taskStageCounterService.onAssignmentCreated(savedAssignment);
 
         // 检查是否需要触发质量检查（已有2个标注员完成）
         checkForQualityControl(task);
@@ -76,23 +104,27 @@ public class TaskAssignmentService {
         assignment.setUser(selectedReviewer);
         assignment.setAssignmentType(TaskAssignment.AssignmentType.REVIEW);
 
-        return taskAssignmentRepository.save(assignment);
+        TaskAssignment savedAssignment = taskAssignmentRepository.save(assignment);
+        taskStageCounterService.onAssignmentCreated(savedAssignment);
+
+        return savedAssignment;
     }
 
     /**
      * 自动分配任务给多个标注员
-     * 默认分配给2个标注员进行双人标注
+     * 人数由文档类型的冗余度决定，默认分配给2个标注员进行双人标注
      */
     @Transactional
     public List<TaskAssignment> autoAssignAnnotationTasks(Task task) throws Exception {
         List<User> availableAnnotators = getAvailableAnnotators();
+        int requiredAnnotators = consensusService.getRequiredAnnotators(task);
 
-        if (availableAnnotators.size() < 2) {
-            throw new Exception("需要至少2个可用的标注员进行双人标注");
+        if (availableAnnotators.size() < requiredAnnotators) {
+            throw new Exception("需要至少" + requiredAnnotators + "个可用的标注员进行多人标注");
         }
 
-        // 选择2个工作量最少的标注员
-        List<User> selectedAnnotators = selectLeastLoadedUsers(availableAnnotators, 2, TaskAssignment.AssignmentType.ANNOTATION);
+        // 选择工作量最少的标注员
+        List<User> selectedAnnotators = selectLeastLoadedUsers(availableAnnotators, requiredAnnotators, TaskAssignment.AssignmentType.ANNOTATION);
 
         // 创建任务分配
         List<TaskAssignment> assignments = selectedAnnotators.stream()
@@ -106,6 +138,7 @@ public class TaskAssignmentService {
             .collect(Collectors.toList());
 
         List<TaskAssignment> savedAssignments = taskAssignmentRepository.saveAll(assignments);
+        taskStageCounterService.onAssignmentsCreated(savedAssignments);
 
         // 更新任务状态为已分配
         task.setStatus(Task.TaskStatus.ASSIGNED);
@@ -114,6 +147,121 @@ public class TaskAssignmentService {
         return savedAssignments;
     }
 
+    /**
+     * 管理员手动分配：为选中的用户各创建一条同类型分配
+     * 分配、阶段计数器与任务状态在同一事务内提交；用户不存在或已分配时记入错误信息并跳过
+     */
+    @Transactional
+    public ManualAssignmentResult assignUsers(Task task, Collection<Long> userIds, TaskAssignment.AssignmentType type) {
+        ManualAssignmentResult result = new ManualAssignmentResult();
+        List<TaskAssignment> pendingAssignments = new ArrayList<>();
+        for (Long userId : userIds) {
+            Optional<User> userOpt = userRepository.findById(userId);
+            if (userOpt.isEmpty()) {
+                result.errors.add("用户ID " + userId + " 不存在");
+                continue;
+            }
+            User user = userOpt.get();
+            if (taskAssignmentRepository.findByTaskIdAndUserIdAndAssignmentType(task.getId(), userId, type).isPresent()) {
+                result.errors.add("用户 " + user.getUsername() + " 已被分配此类型任务");
+                continue;
+            }
+            pendingAssignments.add(new TaskAssignment(task, user, type));
+        }
+        if (pendingAssignments.isEmpty()) {
+            return result;
+        }
+
+        // 新分配按 JDBC 批量插入
+        result.createdAssignments.addAll(taskAssignmentRepository.saveAll(pendingAssignments));
+        taskStageCounterService.onAssignmentsCreated(result.createdAssignments);
+
+        // 首次分配时 CREATED 任务进入 AI_PROCESSING 或 ASSIGNED，否则按计数器推进工作流
+        if (task.getStatus() == Task.TaskStatus.CREATED) {
+            task.setStatus(type == TaskAssignment.AssignmentType.AI_ANNOTATION
+                ? Task.TaskStatus.AI_PROCESSING : Task.TaskStatus.ASSIGNED);
+            taskRepository.save(task);
+        } else {
+            workflowService.advanceTaskWorkflow(task);
+        }
+        return result;
+    }
+
+    /**
+     * 批量分配：为任务 × 用户 × 分配类型矩阵中的每个组合创建分配
+     * 任务、用户、已有分配各一次 IN 查询校验，新分配按 JDBC 批量插入，每个任务只推进一次工作流
+     */
+    @Transactional
+    public BulkAssignmentResult bulkAssign(List<Long> taskIds, List<Long> userIds,
+                                           List<TaskAssignment.AssignmentType> assignmentTypes) {
+        Map<Long, Task> tasks = taskRepository.findAllById(taskIds).stream()
+            .collect(Collectors.toMap(Task::getId, task -> task));
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+            .collect(Collectors.toMap(User::getId, user -> user));
+
+        Set<String> existingKeys = new HashSet<>();
+        if (!tasks.isEmpty() && !users.isEmpty()) {
+            for (Object[] row : taskAssignmentRepository.findExistingAssignmentKeys(tasks.keySet(), users.keySet(), assignmentTypes)) {
+                existingKeys.add(assignmentKey((Long) row[0], (Long) row[1], (TaskAssignment.AssignmentType) row[2]));
+            }
+        }
+
+        BulkAssignmentResult result = new BulkAssignmentResult();
+        List<TaskAssignment> pendingAssignments = new ArrayList<>();
+        List<BulkAssignmentItem> pendingItems = new ArrayList<>();
+        for (Long taskId : taskIds) {
+            Task task = tasks.get(taskId);
+            for (Long userId : userIds) {
+                User user = users.get(userId);
+                for (TaskAssignment.AssignmentType type : assignmentTypes) {
+                    BulkAssignmentItem item = new BulkAssignmentItem(taskId, userId, type);
+                    result.items.add(item);
+                    if (task == null) {
+                        item.outcome = BulkAssignmentOutcome.TASK_NOT_FOUND;
+                    } else if (user == null) {
+                        item.outcome = BulkAssignmentOutcome.USER_NOT_FOUND;
+                    } else if (existingKeys.contains(assignmentKey(taskId, userId, type))) {
+                        item.outcome = BulkAssignmentOutcome.ALREADY_ASSIGNED;
+                    } else {
+                        item.outcome = BulkAssignmentOutcome.CREATED;
+                        pendingAssignments.add(new TaskAssignment(task, user, type));
+                        pendingItems.add(item);
+                    }
+                }
+            }
+        }
+        if (pendingAssignments.isEmpty()) {
+            return result;
+        }
+
+        List<TaskAssignment> savedAssignments = taskAssignmentRepository.saveAll(pendingAssignments);
+        for (int i = 0; i < savedAssignments.size(); i++) {
+            pendingItems.get(i).assignmentId = savedAssignments.get(i).getId();
+        }
+        result.createdAssignments.addAll(savedAssignments);
+
+        // 计数器按任务汇总更新，每个任务发布一次阶段变化事件，由工作流服务推进
+        taskStageCounterService.onAssignmentsCreated(savedAssignments);
+
+        // 与单任务分配一致：首次分配时 CREATED 任务进入 AI_PROCESSING 或 ASSIGNED（在计数器推进之后，不再连续推进）
+        Map<Task, Boolean> hasAiAssignment = new LinkedHashMap<>();
+        for (TaskAssignment assignment : savedAssignments) {
+            hasAiAssignment.merge(assignment.getTask(),
+                assignment.getAssignmentType() == TaskAssignment.AssignmentType.AI_ANNOTATION, Boolean::logicalOr);
+        }
+        hasAiAssignment.forEach((task, ai) -> {
+            if (task.getStatus() == Task.TaskStatus.CREATED) {
+                task.setStatus(ai ? Task.TaskStatus.AI_PROCESSING : Task.TaskStatus.ASSIGNED);
+                taskRepository.save(task);
+            }
+        });
+        return result;
+    }
+
+    private String assignmentKey(Long taskId, Long userId, TaskAssignment.AssignmentType type) {
+        return taskId + ":" + userId + ":" + type;
+    }
+
     /**
      * 获取可用的标注员列表
      */
@@ -132,31 +280,15 @@ public class TaskAssignmentService {
      * 选择工作量最少的用户
      */
     private User selectLeastLoadedUser(List<User> users, TaskAssignment.AssignmentType assignmentType) {
-        return users.stream()
-            .min((u1, u2) -> {
-                long count1 = taskAssignmentRepository.countByUserIdAndAssignmentTypeAndStatus(
-                    u1.getId(), assignmentType, TaskAssignment.AssignmentStatus.ASSIGNED);
-                long count2 = taskAssignmentRepository.countByUserIdAndAssignmentTypeAndStatus(
-                    u2.getId(), assignmentType, TaskAssignment.AssignmentStatus.ASSIGNED);
-                return Long.compare(count1, count2);
-            })
-            .orElse(users.get(0));
+        User selected = workloadTracker.selectLeastLoaded(users, assignmentType);
+        return selected != null ? selected : users.get(0);
     }
 
     /**
      * 选择指定数量的工作量最少的用户
      */
     private List<User> selectLeastLoadedUsers(List<User> users, int count, TaskAssignment.AssignmentType assignmentType) {
-        return users.stream()
-            .sorted((u1, u2) -> {
-                long count1 = taskAssignmentRepository.countByUserIdAndAssignmentTypeAndStatus(
-                    u1.getId(), assignmentType, TaskAssignment.AssignmentStatus.ASSIGNED);
-                long count2 = taskAssignmentRepository.countByUserIdAndAssignmentTypeAndStatus(
-                    u2.getId(), assignmentType, TaskAssignment.AssignmentStatus.ASSIGNED);
-                return Long.compare(count1, count2);
-            })
-            .limit(count)
-            .collect(Collectors.toList());
+        return workloadTracker.selectLeastLoaded(users, count, assignmentType);
     }
 
     /**
@@ -178,19 +310,24 @@ public class TaskAssignmentService {
 
     /**
      * 检查是否需要触发质量控制
+     * 耗时记录为 annotation.qc.trigger，result 区分 triggered / skipped / error；
+     * 失败时抛出异常，调用方的事务整体回滚（发件箱工作流步骤会重试）
      */
     public void checkForQualityControl(Task task) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "skipped";
         try {
             // 获取所有标注类型的任务分配
             List<TaskAssignment> annotationAssignments = taskAssignmentRepository
                 .findByTaskIdAndAssignmentType(task.getId(), TaskAssignment.AssignmentType.ANNOTATION);
 
-            // 检查是否有至少2个标注员完成了标注
+            // 检查是否所需的标注员都已完成标注（双人标注为2人，高难度文档类型可配置更多）
+            int requiredAnnotators = consensusService.getRequiredAnnotators(task);
             long completedCount = annotationAssignments.stream()
                 .filter(assignment -> assignment.getStatus() == TaskAssignment.AssignmentStatus.COMPLETED)
                 .count();
 
-            if (completedCount >= 2) {
+            if (completedCount >= requiredAnnotators && qualityCheckRepository.countByTaskId(task.getId()) == 0) {
                 // 获取对应的标注记录
                 List<Annotation> annotations = annotationAssignments.stream()
                     .filter(assignment -> assignment.getStatus() == TaskAssignment.AssignmentStatus.COMPLETED)
@@ -202,59 +339,108 @@ public class TaskAssignmentService {
                     .filter(annotation -> annotation != null)
                     .collect(Collectors.toList());
 
-                if (annotations.size() >= 2) {
+                if (annotations.size() >= requiredAnnotators) {
                     // 触发质量检查
                     triggerQualityCheck(task, annotationAssignments, annotations);
+                    result = "triggered";
                 }
             }
+        } catch (RuntimeException e) {
+            // 质检与工作流推进在同一事务内，失败时整体回滚，由发件箱重试
+            result = "error";
+            throw e;
         } catch (Exception e) {
-            // 记录错误但不影响主流程
-            System.err.println("Quality control check failed: " + e.getMessage());
+            result = "error";
+            throw new IllegalStateException("质量检查失败: " + e.getMessage(), e);
+        } finally {
+            sample.stop(meterRegistry.timer("annotation.qc.trigger", "result", result));
         }
     }
 
     /**
      * 触发质量检查
      */
-    private void triggerQualityCheck(Task task, List<TaskAssignment> assignments, List<Annotation> annotations) {
-        try {
-            User annotatorA = assignments.get(0).getUser();
-            User annotatorB = assignments.get(1).getUser();
-            Annotation annotationA = annotations.get(0);
-            Annotation annotationB = annotations.get(1);
-
-            // 创建质量检查记录
-            QualityCheck qualityCheck = new QualityCheck();
-            qualityCheck.setTask(task);
-            qualityCheck.setAnnotatorA(annotatorA);
-            qualityCheck.setAnnotatorB(annotatorB);
-            qualityCheck.setAnnotationA(annotationA);
-            qualityCheck.setAnnotationB(annotationB);
-
-            // 简单的冲突检测（可以后续优化为更复杂的算法）
-            boolean hasConflict = detectConflicts(annotationA, annotationB);
-            if (hasConflict) {
-                qualityCheck.setComparisonResult(QualityCheck.ComparisonResult.CONFLICT);
-
-                // 分配给审查员
-                assignReviewTask(task);
-            } else {
-                qualityCheck.setComparisonResult(QualityCheck.ComparisonResult.MATCH);
-            }
+    private void triggerQualityCheck(Task task, List<TaskAssignment> assignments, List<Annotation> annotations) throws Exception {
+        Annotation annotationA = annotations.get(0);
+        Annotation annotationB = annotations.get(1);
+        User annotatorA = annotationA.getTaskAssignment().getUser();
+        User annotatorB = annotationB.getTaskAssignment().getUser();
+
+        // 创建质量检查记录
+        QualityCheck qualityCheck = new QualityCheck();
+        qualityCheck.setTask(task);
+        qualityCheck.setAnnotatorA(annotatorA);
+        qualityCheck.setAnnotatorB(annotatorB);
+        qualityCheck.setAnnotationA(annotationA);
+        qualityCheck.setAnnotationB(annotationB);
+
+        qualityCheck.setAnnotatorCount(annotations.size());
+
+        // 逐字段多数投票：一致的字段自动采纳，只有争议字段交给审查员
+        ConsensusService.ConsensusResult consensus = consensusService.computeConsensus(task, annotations);
+        qualityCheck.setConflictFields(consensusService.conflictsToJson(consensus));
+        qualityCheck.setConsensusData(consensusService.toJson(consensus));
+        qualityCheck.setComparisonResult(consensus.getComparisonResult());
+        if (consensus.hasDisputes()) {
+            // 分配给审查员
+            assignReviewTask(task);
+        }
 
-            qualityCheckRepository.save(qualityCheck);
+        qualityCheckRepository.save(qualityCheck);
 
-        } catch (Exception e) {
-            System.err.println("Failed to trigger quality check: " + e.getMessage());
-        }
+        // 增量累加一致性统计
+        agreementStatsService.record(task, annotations, LocalDate.now());
     }
 
     /**
-     * 简单的冲突检测算法
-     * 可以根据实际需求实现更复杂的比较逻辑
+     * 手动分配结果：新建的分配与被跳过用户的错误信息
      */
-    private boolean detectConflicts(Annotation annotationA, Annotation annotationB) {
-        // 简单的字符串比较，如果标注数据完全相同则无冲突
-        return !annotationA.getAnnotationData().equals(annotationB.getAnnotationData());
+    public static class ManualAssignmentResult {
+        private final List<TaskAssignment> createdAssignments = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        public List<TaskAssignment> getCreatedAssignments() { return createdAssignments; }
+
+        public List<String> getErrors() { return errors; }
+    }
+
+    /**
+     * 批量分配中单个 (任务, 用户, 类型) 组合的处理结果
+     */
+    public enum BulkAssignmentOutcome {
+        CREATED, ALREADY_ASSIGNED, TASK_NOT_FOUND, USER_NOT_FOUND
+    }
+
+    public static class BulkAssignmentItem {
+        private final Long taskId;
+        private final Long userId;
+        private final TaskAssignment.AssignmentType assignmentType;
+        private BulkAssignmentOutcome outcome;
+        private Long assignmentId;
+
+        BulkAssignmentItem(Long taskId, Long userId, TaskAssignment.AssignmentType assignmentType) {
+            this.taskId = taskId;
+            this.userId = userId;
+            this.assignmentType = assignmentType;
+        }
+
+        public Long getTaskId() { return taskId; }
+
+        public Long getUserId() { return userId; }
+
+        public TaskAssignment.AssignmentType getAssignmentType() { return assignmentType; }
+
+        public BulkAssignmentOutcome getOutcome() { return outcome; }
+
+        public Long getAssignmentId() { return assignmentId; }
+    }
+
+    public static class BulkAssignmentResult {
+        private final List<BulkAssignmentItem> items = new ArrayList<>();
+        private final List<TaskAssignment> createdAssignments = new ArrayList<>();
+
+        public List<BulkAssignmentItem> getItems() { return items; }
+
+        public List<TaskAssignment> getCreatedAssignments() { return createdAssignments; }
     }
 }
@@ -0,0 +1,224 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.repository.AnnotationRepository;
+import com.annotationplatform.repository.BatchDocumentRepository;
+import com.annotationplatform.repository.BatchDocumentSubmissionRepository;
+import com.annotationplatform.repository.DocumentAnnotationHistoryRepository;
+import com.annotationplatform.repository.OutboxEventRepository;
+import com.annotationplatform.repository.QualityCheckRepository;
+import com.annotationplatform.repository.ScoreHistoryRepository;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.TaskStageCounterRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 任务清理服务：批量删除任务及其全部关联数据
+ *
+ * 按外键依赖顺序对每一批任务执行 DELETE ... WHERE task_id IN (...)，
+ * 不再逐个加载实体删除；每批一个事务。大批量清理在后台线程执行，可查询进度。
+ */
+@Service
+public class TaskPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskPurgeService.class);
+
+    // 已结束的清理任务保留时间（供查询进度）
+    private static final long FINISHED_JOB_RETENTION_HOURS = 1;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private AnnotationRepository annotationRepository;
+
+    @Autowired
+    private QualityCheckRepository qualityCheckRepository;
+
+    @Autowired
+    private ScoreHistoryRepository scoreHistoryRepository;
+
+    @Autowired
+    private DocumentAnnotationHistoryRepository documentAnnotationHistoryRepository;
+
+    @Autowired
+    private BatchDocumentRepository batchDocumentRepository;
+
+    @Autowired
+    private BatchDocumentSubmissionRepository batchDocumentSubmissionRepository;
+
+    @Autowired
+    private TaskStageCounterRepository taskStageCounterRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private WorkloadTracker workloadTracker;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${task-purge.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${task-purge.async-threshold:200}")
+    private int asyncThreshold;
+
+    // 清理串行执行，避免多个大批量删除互相争用锁
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, PurgeJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 同步清理（适合少量任务）
+     */
+    public PurgeJob purge(List<Long> taskIds) {
+        PurgeJob job = new PurgeJob(taskIds.size());
+        execute(job, taskIds);
+        return job;
+    }
+
+    /**
+     * 后台清理，返回可查询进度的清理任务
+     */
+    public PurgeJob purgeAsync(List<Long> taskIds) {
+        evictFinishedJobs();
+        PurgeJob job = new PurgeJob(taskIds.size());
+        jobs.put(job.id, job);
+        List<Long> ids = new ArrayList<>(taskIds);
+        executor.submit(() -> execute(job, ids));
+        return job;
+    }
+
+    /**
+     * 任务数量超过阈值时应在后台清理
+     */
+    public boolean shouldRunAsync(int taskCount) {
+        return taskCount > asyncThreshold;
+    }
+
+    public Optional<PurgeJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void execute(PurgeJob job, List<Long> taskIds) {
+        job.status = PurgeStatus.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        try {
+            for (int start = 0; start < taskIds.size(); start += chunkSize) {
+                List<Long> chunk = taskIds.subList(start, Math.min(taskIds.size(), start + chunkSize));
+                Map<String, Integer> deleted = transactionTemplate.execute(status -> deleteChunk(chunk));
+                job.addDeleted(deleted);
+                job.processedTasks.addAndGet(chunk.size());
+            }
+            job.status = PurgeStatus.COMPLETED;
+        } catch (Exception e) {
+            job.status = PurgeStatus.FAILED;
+            job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            logger.error("Task purge {} failed after {} tasks: {}", job.id, job.processedTasks.get(), job.error, e);
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            // 批量删除绕过了分配变化事件，按数据库重新校准工作量
+            workloadTracker.reconcile();
+        }
+    }
+
+    /**
+     * 删除一批任务：先删引用标注、质检的记录，再删标注、分配及其他任务子表，最后删任务
+     */
+    private Map<String, Integer> deleteChunk(Collection<Long> taskIds) {
+        Map<String, Integer> deleted = new LinkedHashMap<>();
+        deleted.put("scoreHistory", scoreHistoryRepository.deleteByTaskIdIn(taskIds));
+        deleted.put("annotationHistory", documentAnnotationHistoryRepository.deleteByTaskIdIn(taskIds));
+        deleted.put("qualityChecks", qualityCheckRepository.deleteByTaskIdIn(taskIds));
+        deleted.put("annotations", annotationRepository.deleteByTaskIdIn(taskIds));
+        deleted.put("batchDocumentSubmissions", batchDocumentSubmissionRepository.deleteByTaskIdIn(taskIds));
+        deleted.put("batchDocuments", batchDocumentRepository.deleteByTaskIdIn(taskIds));
+        deleted.put("stageCounters", taskStageCounterRepository.deleteByTaskIdIn(taskIds));
+        deleted.put("outboxEvents", outboxEventRepository.deleteByTaskIdIn(taskIds));
+        deleted.put("assignments", taskAssignmentRepository.deleteByTaskIdIn(taskIds));
+        deleted.put("tasks", taskRepository.deleteByIdIn(taskIds));
+        return deleted;
+    }
+
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(FINISHED_JOB_RETENTION_HOURS);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    public enum PurgeStatus {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * 清理任务及其进度
+     */
+    public static class PurgeJob {
+        private final String id = UUID.randomUUID().toString();
+        private final int totalTasks;
+        private final AtomicInteger processedTasks = new AtomicInteger();
+        private final Map<String, Integer> deletedRows = new LinkedHashMap<>();
+        private volatile PurgeStatus status = PurgeStatus.PENDING;
+        private volatile String error;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        PurgeJob(int totalTasks) {
+            this.totalTasks = totalTasks;
+        }
+
+        private synchronized void addDeleted(Map<String, Integer> rows) {
+            rows.forEach((table, count) -> deletedRows.merge(table, count, Integer::sum));
+        }
+
+        public String getId() { return id; }
+
+        public int getTotalTasks() { return totalTasks; }
+
+        public int getProcessedTasks() { return processedTasks.get(); }
+
+        public synchronized Map<String, Integer> getDeletedRows() { return new LinkedHashMap<>(deletedRows); }
+
+        public int getDeletedTasks() { return getDeletedRows().getOrDefault("tasks", 0); }
+
+        public PurgeStatus getStatus() { return status; }
+
+        public String getError() { return error; }
+
+        public LocalDateTime getStartedAt() { return startedAt; }
+
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+    }
+}
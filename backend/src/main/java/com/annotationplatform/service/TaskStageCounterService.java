@@ -0,0 +1,281 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.TaskStageCounter;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskStageCounterRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@Service
+public class TaskStageCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskStageCounterService.class);
+
+    private static final String INSERT_COUNTER_SQL =
+        "INSERT INTO task_stage_counters (task_id, assignment_type, assigned_count, completed_count, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private TaskStageCounterRepository taskStageCounterRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 记录新建的任务分配
+     */
+    @Transactional
+    public void onAssignmentCreated(TaskAssignment assignment) {
+        publishAssignmentChanged(assignment, null);
+        applyDelta(assignment.getTask(), assignment.getAssignmentType(), 1, isCompleted(assignment.getStatus()) ? 1 : 0);
+    }
+
+    /**
+     * 记录批量新建的任务分配（同一任务同一类型只更新一次计数器，每个任务只发布一次阶段变化事件）
+     */
+    @Transactional
+    public void onAssignmentsCreated(Collection<TaskAssignment> assignments) {
+        Map<Task, Map<TaskAssignment.AssignmentType, int[]>> deltas = new LinkedHashMap<>();
+        for (TaskAssignment assignment : assignments) {
+            publishAssignmentChanged(assignment, null);
+            int[] delta = deltas.computeIfAbsent(assignment.getTask(), task -> new EnumMap<>(TaskAssignment.AssignmentType.class))
+                .computeIfAbsent(assignment.getAssignmentType(), type -> new int[2]);
+            delta[0]++;
+            if (isCompleted(assignment.getStatus())) {
+                delta[1]++;
+            }
+        }
+        deltas.forEach((task, byType) -> {
+            byType.forEach((type, delta) -> updateCounter(task, type, delta[0], delta[1]));
+            eventPublisher.publishEvent(new StageCounterChangedEvent(this, task.getId(), byType.keySet()));
+        });
+    }
+
+    /**
+     * 记录任务分配的状态变化（只有进入或离开 COMPLETED 才影响计数器）
+     * 状态变化来自标注提交，工作流由发件箱的 WORKFLOW 步骤在提交事务之外推进，这里的阶段变化事件不推进工作流
+     */
+    @Transactional
+    public void onAssignmentStatusChanged(TaskAssignment assignment, TaskAssignment.AssignmentStatus previousStatus) {
+        publishAssignmentChanged(assignment, previousStatus);
+        int completedDelta = (isCompleted(assignment.getStatus()) ? 1 : 0) - (isCompleted(previousStatus) ? 1 : 0);
+        if (completedDelta != 0) {
+            updateCounter(assignment.getTask(), assignment.getAssignmentType(), 0, completedDelta);
+            eventPublisher.publishEvent(new StageCounterChangedEvent(this, assignment.getTask().getId(),
+                Set.of(assignment.getAssignmentType()), false));
+        }
+    }
+
+    /**
+     * 记录被删除的任务分配（例如领取租约过期释放）
+     */
+    @Transactional
+    public void onAssignmentDeleted(TaskAssignment assignment) {
+        Long userId = assignment.getUser() != null ? assignment.getUser().getId() : null;
+        eventPublisher.publishEvent(new AssignmentChangedEvent(this, assignment.getId(), userId,
+            assignment.getAssignmentType(), assignment.getStatus(), null));
+        applyDelta(assignment.getTask(), assignment.getAssignmentType(), -1, isCompleted(assignment.getStatus()) ? -1 : 0);
+    }
+
+    /**
+     * 获取任务各阶段计数器（只读）
+     * 已有任务的计数器由 V6 迁移补齐；仍没有计数器行时按分配记录（单条 GROUP BY 查询）计算，不写入，
+     * 计数器行在下一次分配变化时由 updateCounter 插入
+     */
+    @Transactional(readOnly = true)
+    public Map<TaskAssignment.AssignmentType, TaskStageCounter> getCounters(Task task) {
+        List<TaskStageCounter> counters = taskStageCounterRepository.findByTaskId(task.getId());
+        Map<TaskAssignment.AssignmentType, TaskStageCounter> result = new EnumMap<>(TaskAssignment.AssignmentType.class);
+        if (!counters.isEmpty()) {
+            for (TaskStageCounter counter : counters) {
+                result.put(counter.getAssignmentType(), counter);
+            }
+            return result;
+        }
+
+        for (Object[] row : taskAssignmentRepository.countByTaskIdGroupByAssignmentType(
+                task.getId(), TaskAssignment.AssignmentStatus.COMPLETED)) {
+            // 仅用于内存计算的计数器，不会持久化
+            TaskAssignment.AssignmentType type = (TaskAssignment.AssignmentType) row[0];
+            TaskStageCounter counter = new TaskStageCounter(null, type);
+            counter.setAssignedCount(((Number) row[1]).intValue());
+            counter.setCompletedCount(row[2] != null ? ((Number) row[2]).intValue() : 0);
+            result.put(type, counter);
+        }
+        return result;
+    }
+
+    /**
+     * 删除任务的阶段计数器
+     */
+    @Transactional
+    public int deleteByTaskIds(Collection<Long> taskIds) {
+        if (taskIds == null || taskIds.isEmpty()) {
+            return 0;
+        }
+        return taskStageCounterRepository.deleteByTaskIdIn(taskIds);
+    }
+
+    /**
+     * 更新计数器并发布阶段变化事件
+     */
+    private void applyDelta(Task task, TaskAssignment.AssignmentType type, int assignedDelta, int completedDelta) {
+        updateCounter(task, type, assignedDelta, completedDelta);
+        eventPublisher.publishEvent(new StageCounterChangedEvent(this, task.getId(), Set.of(type)));
+    }
+
+    /**
+     * 更新计数器（插入或加锁）：计数器行先加行锁再读取，并发提交不会丢失更新。
+     * 行不存在时按分配记录插入，已包含本次变化；并发事务抢先插入了同一行时唯一约束冲突，改为锁定该行累加增量
+     */
+    private void updateCounter(Task task, TaskAssignment.AssignmentType type, int assignedDelta, int completedDelta) {
+        Optional<TaskStageCounter> counterOpt = taskStageCounterRepository.findByTaskIdAndAssignmentType(task.getId(), type);
+        TaskStageCounter counter;
+        if (counterOpt.isPresent()) {
+            counter = counterOpt.get();
+            entityManager.refresh(counter, LockModeType.PESSIMISTIC_WRITE);
+        } else {
+            int[] counts = countAssignments(task.getId(), type);
+            if (insertCounter(task.getId(), type, counts[0], counts[1])) {
+                return;
+            }
+            // 加锁读取总是读到已提交的最新行
+            counter = taskStageCounterRepository.findForUpdate(task.getId(), type)
+                .orElseThrow(() -> new IllegalStateException("Stage counter missing for task " + task.getId() + " " + type));
+        }
+        counter.setAssignedCount(Math.max(0, counter.getAssignedCount() + assignedDelta));
+        counter.setCompletedCount(Math.max(0, Math.min(counter.getAssignedCount(), counter.getCompletedCount() + completedDelta)));
+    }
+
+    /**
+     * 当前事务可见的分配数与完成数（包括本事务尚未提交的分配）
+     */
+    private int[] countAssignments(Long taskId, TaskAssignment.AssignmentType type) {
+        for (Object[] row : taskAssignmentRepository.countByTaskIdGroupByAssignmentType(
+                taskId, TaskAssignment.AssignmentStatus.COMPLETED)) {
+            if (row[0] == type) {
+                return new int[]{((Number) row[1]).intValue(), row[2] != null ? ((Number) row[2]).intValue() : 0};
+            }
+        }
+        return new int[2];
+    }
+
+    /**
+     * 插入计数器行，已存在（含并发事务刚插入）时返回 false
+     * 用 JDBC 在当前事务内执行：唯一约束冲突只使这一条语句失败，不会把整个事务标记为回滚
+     */
+    private boolean insertCounter(Long taskId, TaskAssignment.AssignmentType type, int assigned, int completed) {
+        try {
+            jdbcTemplate.update(INSERT_COUNTER_SQL, taskId, type.name(), assigned, completed, LocalDateTime.now());
+            return true;
+        } catch (DuplicateKeyException e) {
+            logger.debug("Stage counter for task {} {} was created concurrently", taskId, type);
+            return false;
+        }
+    }
+
+    private void publishAssignmentChanged(TaskAssignment assignment, TaskAssignment.AssignmentStatus previousStatus) {
+        Long userId = assignment.getUser() != null ? assignment.getUser().getId() : null;
+        eventPublisher.publishEvent(new AssignmentChangedEvent(this, assignment.getId(), userId,
+            assignment.getAssignmentType(), previousStatus, assignment.getStatus()));
+    }
+
+    private boolean isCompleted(TaskAssignment.AssignmentStatus status) {
+        return status == TaskAssignment.AssignmentStatus.COMPLETED;
+    }
+
+    /**
+     * 阶段计数器变化事件（在同一事务内同步处理），携带本次变化的所有阶段
+     * advanceWorkflow 为 false 时由调用方另行推进工作流（标注提交）
+     */
+    public static class StageCounterChangedEvent extends ApplicationEvent {
+        private final Long taskId;
+        private final Set<TaskAssignment.AssignmentType> assignmentTypes;
+        private final boolean advanceWorkflow;
+
+        public StageCounterChangedEvent(Object source, Long taskId, Set<TaskAssignment.AssignmentType> assignmentTypes) {
+            this(source, taskId, assignmentTypes, true);
+        }
+
+        public StageCounterChangedEvent(Object source, Long taskId, Set<TaskAssignment.AssignmentType> assignmentTypes,
+                                        boolean advanceWorkflow) {
+            super(source);
+            this.taskId = taskId;
+            this.assignmentTypes = Set.copyOf(assignmentTypes);
+            this.advanceWorkflow = advanceWorkflow;
+        }
+
+        public Long getTaskId() { return taskId; }
+
+        public Set<TaskAssignment.AssignmentType> getAssignmentTypes() { return assignmentTypes; }
+
+        public boolean isAdvanceWorkflow() { return advanceWorkflow; }
+
+        public boolean affects(TaskAssignment.AssignmentType assignmentType) {
+            return assignmentTypes.contains(assignmentType);
+        }
+    }
+
+    /**
+     * 任务分配创建（previousStatus 为 null）、删除（status 为 null）或状态变化事件
+     */
+    public static class AssignmentChangedEvent extends ApplicationEvent {
+        private final Long assignmentId;
+        private final Long userId;
+        private final TaskAssignment.AssignmentType assignmentType;
+        private final TaskAssignment.AssignmentStatus previousStatus;
+        private final TaskAssignment.AssignmentStatus status;
+
+        public AssignmentChangedEvent(Object source, Long assignmentId, Long userId,
+                                      TaskAssignment.AssignmentType assignmentType,
+                                      TaskAssignment.AssignmentStatus previousStatus,
+                                      TaskAssignment.AssignmentStatus status) {
+            super(source);
+            this.assignmentId = assignmentId;
+            this.userId = userId;
+            this.assignmentType = assignmentType;
+            this.previousStatus = previousStatus;
+            this.status = status;
+        }
+
+        public Long getAssignmentId() { return assignmentId; }
+
+        public Long getUserId() { return userId; }
+
+        public TaskAssignment.AssignmentType getAssignmentType() { return assignmentType; }
+
+        public TaskAssignment.AssignmentStatus getPreviousStatus() { return previousStatus; }
+
+        public TaskAssignment.AssignmentStatus getStatus() { return status; }
+    }
+}
@@ -0,0 +1,336 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.AnnotationRepository;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 拉取式工作队列：标注员主动领取优先级最高的可用任务
+ *
+ * 领取分两步：先不加锁地按排序取前若干个候选任务，再按主键逐个加锁并跳过已被其他事务锁定的行
+ * （FOR UPDATE SKIP LOCKED），锁住后重新核对任务仍可领取。加锁语句只按主键定位一行，
+ * 不会因为排序扫描锁住全部候选；并发领取互不等待，也不会重复分配。领取事务使用读已提交隔离级别，
+ * 锁住任务行后读到的是此前所有领取提交后的结果。H2 不支持 SKIP LOCKED，且只在单个 JVM 内嵌运行，
+ * 因此改为进程内串行领取。领取记录带有租约，到期仍未开始标注的自动释放。
+ */
+@Service
+public class WorkQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkQueueService.class);
+
+    // 每种可领取的分配类型：可领取的任务状态与每个任务需要的人数
+    private static final Map<TaskAssignment.AssignmentType, QueueRule> QUEUE_RULES = new EnumMap<>(TaskAssignment.AssignmentType.class);
+
+    static {
+        QUEUE_RULES.put(TaskAssignment.AssignmentType.ANNOTATION, new QueueRule(2,
+            Set.of(User.Role.ANNOTATOR, User.Role.EXPERT, User.Role.ADMIN),
+            List.of(Task.TaskStatus.CREATED, Task.TaskStatus.ASSIGNED, Task.TaskStatus.AI_COMPLETED, Task.TaskStatus.ANNOTATING)));
+        QUEUE_RULES.put(TaskAssignment.AssignmentType.REVIEW, new QueueRule(1,
+            Set.of(User.Role.REVIEWER, User.Role.EXPERT, User.Role.ADMIN),
+            List.of(Task.TaskStatus.ANNOTATED)));
+        QUEUE_RULES.put(TaskAssignment.AssignmentType.INSPECTION, new QueueRule(1,
+            Set.of(User.Role.REVIEWER, User.Role.EXPERT, User.Role.ADMIN),
+            List.of(Task.TaskStatus.ANNOTATED, Task.TaskStatus.INSPECTING)));
+        QUEUE_RULES.put(TaskAssignment.AssignmentType.EXPERT_REVIEW, new QueueRule(1,
+            Set.of(User.Role.EXPERT, User.Role.ADMIN),
+            List.of(Task.TaskStatus.INSPECTED, Task.TaskStatus.EXPERT_REVIEWING)));
+    }
+
+    // 每次领取不加锁读取的候选任务数，并发领取时前面的候选被锁住后依次尝试后面的
+    private static final int CANDIDATE_LIMIT = 10;
+
+    // 可领取的任务：状态符合、当前用户未领取过、该阶段人数未满（标注阶段人数可由文档类型配置）
+    // 标注队列只发放单文档的标注任务：审核任务和批次父任务（有 batch_documents 成员，由管理员分配）不进入
+    // （batch_id 不能用来区分，提交时普通任务也会写入提交批次号）
+    private static final String CLAIMABLE_FROM =
+        "FROM tasks t LEFT JOIN documents d ON d.id = t.document_id " +
+        "LEFT JOIN document_types dt ON dt.id = d.document_type_id " +
+        "WHERE t.status IN (:statuses) " +
+        "AND (:assignmentType <> 'ANNOTATION' OR (t.task_type = 'ANNOTATION' " +
+        "AND NOT EXISTS (SELECT 1 FROM batch_documents bd WHERE bd.task_id = t.id))) " +
+        "AND NOT EXISTS (SELECT 1 FROM task_assignments mine WHERE mine.task_id = t.id " +
+        "AND mine.user_id = :userId AND mine.assignment_type = :assignmentType) " +
+        "AND (SELECT COUNT(*) FROM task_assignments ta WHERE ta.task_id = t.id " +
+        "AND ta.assignment_type = :assignmentType) < CASE WHEN :assignmentType = 'ANNOTATION' " +
+        "THEN COALESCE(dt.required_annotators, :requiredAssignees) " +
+        "ELSE :requiredAssignees END ";
+
+    // 候选任务按截止时间紧迫度、优先级、截止时间、创建时间排序
+    private static final String CANDIDATE_SQL = "SELECT t.id " + CLAIMABLE_FROM +
+        "ORDER BY CASE WHEN t.deadline IS NOT NULL AND t.deadline < :urgentBefore THEN 0 ELSE 1 END, " +
+        "(CASE t.priority WHEN 'URGENT' THEN 3 WHEN 'HIGH' THEN 2 WHEN 'NORMAL' THEN 1 ELSE 0 END + " +
+        "CASE d.priority WHEN 'URGENT' THEN 3 WHEN 'HIGH' THEN 2 WHEN 'NORMAL' THEN 1 ELSE 0 END) DESC, " +
+        "CASE WHEN t.deadline IS NULL THEN 1 ELSE 0 END, t.deadline, t.created_at, t.id";
+
+    // 锁住任务行后重新核对
+    private static final String STILL_CLAIMABLE_SQL = "SELECT COUNT(*) " + CLAIMABLE_FROM + "AND t.id = :taskId";
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private AnnotationRepository annotationRepository;
+
+    @Autowired
+    private TaskStageCounterService taskStageCounterService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${work-queue.lease-minutes:30}")
+    private long leaseMinutes;
+
+    @Value("${work-queue.deadline-urgent-hours:24}")
+    private long deadlineUrgentHours;
+
+    private final ReentrantLock embeddedClaimLock = new ReentrantLock();
+
+    private boolean skipLockedSupported;
+
+    // 领取与释放：读已提交，锁住行之后的查询能看到其他事务刚提交的领取和标注
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+        try (Connection connection = jdbcTemplate.getDataSource().getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String product = metaData.getDatabaseProductName();
+            // MySQL 8+, MariaDB 10.6+ (reported as MySQL by the driver) and PostgreSQL support SKIP LOCKED; H2 2.1 does not
+            int major = metaData.getDatabaseMajorVersion();
+            if ("MySQL".equalsIgnoreCase(product) && metaData.getDatabaseProductVersion().contains("MariaDB")) {
+                skipLockedSupported = major > 10 || (major == 10 && metaData.getDatabaseMinorVersion() >= 6);
+            } else {
+                skipLockedSupported = ("MySQL".equalsIgnoreCase(product) && major >= 8)
+                    || "PostgreSQL".equalsIgnoreCase(product);
+            }
+            logger.info("Work queue claims on {} use {}", product,
+                skipLockedSupported ? "FOR UPDATE SKIP LOCKED" : "in-process serialization");
+        } catch (Exception e) {
+            skipLockedSupported = false;
+            logger.warn("Could not detect database for work queue, falling back to serialized claims: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 是否支持该分配类型的领取
+     */
+    public boolean isClaimable(TaskAssignment.AssignmentType type) {
+        return QUEUE_RULES.containsKey(type);
+    }
+
+    /**
+     * 用户角色是否允许领取该类型的任务
+     */
+    public boolean canClaim(User.Role role, TaskAssignment.AssignmentType type) {
+        QueueRule rule = QUEUE_RULES.get(type);
+        return rule != null && rule.roles.contains(role);
+    }
+
+    /**
+     * 领取下一个任务，没有可领取任务时返回空
+     */
+    public Optional<TaskAssignment> claimNext(User user, TaskAssignment.AssignmentType type) throws Exception {
+        QueueRule rule = QUEUE_RULES.get(type);
+        if (rule == null) {
+            throw new Exception("该类型任务不支持领取");
+        }
+
+        if (skipLockedSupported) {
+            return transactionTemplate.execute(status -> claimInTransaction(user, type, rule));
+        }
+
+        embeddedClaimLock.lock();
+        try {
+            return transactionTemplate.execute(status -> claimInTransaction(user, type, rule));
+        } finally {
+            embeddedClaimLock.unlock();
+        }
+    }
+
+    /**
+     * 续期租约
+     */
+    public TaskAssignment renewLease(TaskAssignment assignment) throws Exception {
+        if (assignment.getLeaseExpiresAt() == null) {
+            throw new Exception("该任务不是从工作队列领取的");
+        }
+        if (assignment.getStatus() == TaskAssignment.AssignmentStatus.COMPLETED
+                || assignment.getStatus() == TaskAssignment.AssignmentStatus.REJECTED) {
+            throw new Exception("任务已结束，无需续期");
+        }
+        assignment.setLeaseExpiresAt(LocalDateTime.now().plusMinutes(leaseMinutes));
+        return taskAssignmentRepository.save(assignment);
+    }
+
+    /**
+     * 主动放弃领取的任务（仅限尚未开始标注）
+     */
+    public void release(TaskAssignment assignment) throws Exception {
+        if (assignment.getLeaseExpiresAt() == null) {
+            throw new Exception("该任务不是从工作队列领取的");
+        }
+        if (assignment.getStatus() != TaskAssignment.AssignmentStatus.ASSIGNED) {
+            throw new Exception("任务已开始，不能放弃");
+        }
+        Boolean released = transactionTemplate.execute(status -> releaseIfNotStarted(assignment.getId(), null));
+        if (!Boolean.TRUE.equals(released)) {
+            throw new Exception("任务已开始，不能放弃");
+        }
+    }
+
+    /**
+     * 定期释放租约过期且未开始的领取
+     */
+    @Scheduled(fixedDelayString = "${work-queue.release-interval-ms:60000}")
+    public void releaseExpiredLeases() {
+        List<TaskAssignment> expired = taskAssignmentRepository.findExpiredLeases(
+            TaskAssignment.AssignmentStatus.ASSIGNED, LocalDateTime.now(), PageRequest.of(0, 500));
+
+        int released = 0;
+        for (TaskAssignment assignment : expired) {
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> releaseIfNotStarted(assignment.getId(), now)))) {
+                    released++;
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to release expired claim {}: {}", assignment.getId(), e.getMessage());
+            }
+        }
+        if (released > 0) {
+            logger.info("Released {} expired work queue claims", released);
+        }
+    }
+
+    /**
+     * 锁住分配行后重新核对仍未开始（状态、租约、没有标注），再删除；expiredBefore 为空时不检查租约
+     */
+    private boolean releaseIfNotStarted(Long assignmentId, LocalDateTime expiredBefore) {
+        TaskAssignment assignment = taskAssignmentRepository.findForUpdate(assignmentId).orElse(null);
+        if (assignment == null
+                || assignment.getStatus() != TaskAssignment.AssignmentStatus.ASSIGNED
+                || assignment.getLeaseExpiresAt() == null
+                || (expiredBefore != null && !assignment.getLeaseExpiresAt().isBefore(expiredBefore))
+                || annotationRepository.existsByTaskAssignmentId(assignmentId)) {
+            return false;
+        }
+        taskAssignmentRepository.delete(assignment);
+        taskStageCounterService.onAssignmentDeleted(assignment);
+        return true;
+    }
+
+    private Optional<TaskAssignment> claimInTransaction(User user, TaskAssignment.AssignmentType type, QueueRule rule) {
+        List<String> statuses = rule.statuses.stream().map(Enum::name).collect(Collectors.toList());
+
+        @SuppressWarnings("unchecked")
+        List<Number> candidateIds = entityManager.createNativeQuery(CANDIDATE_SQL)
+            .setParameter("statuses", statuses)
+            .setParameter("userId", user.getId())
+            .setParameter("assignmentType", type.name())
+            .setParameter("requiredAssignees", rule.requiredAssignees)
+            .setParameter("urgentBefore", LocalDateTime.now().plusHours(deadlineUrgentHours))
+            .setMaxResults(CANDIDATE_LIMIT)
+            .getResultList();
+
+        String lockSql = skipLockedSupported
+            ? "SELECT id FROM tasks WHERE id = :taskId FOR UPDATE SKIP LOCKED"
+            : "SELECT id FROM tasks WHERE id = :taskId FOR UPDATE";
+        for (Number candidateId : candidateIds) {
+            long taskId = candidateId.longValue();
+            // 已被其他领取锁住的任务直接跳过
+            if (entityManager.createNativeQuery(lockSql).setParameter("taskId", taskId).getResultList().isEmpty()) {
+                continue;
+            }
+            Number stillClaimable = (Number) entityManager.createNativeQuery(STILL_CLAIMABLE_SQL)
+                .setParameter("statuses", statuses)
+                .setParameter("userId", user.getId())
+                .setParameter("assignmentType", type.name())
+                .setParameter("requiredAssignees", rule.requiredAssignees)
+                .setParameter("taskId", taskId)
+                .getSingleResult();
+            if (stillClaimable.longValue() == 0) {
+                continue;
+            }
+            Task task = taskRepository.findById(taskId).orElse(null);
+            if (task != null) {
+                return Optional.of(assign(task, user, type));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private TaskAssignment assign(Task task, User user, TaskAssignment.AssignmentType type) {
+
+        TaskAssignment assignment = new TaskAssignment(task, user, type);
+        assignment.setLeaseExpiresAt(LocalDateTime.now().plusMinutes(leaseMinutes));
+        TaskAssignment savedAssignment = taskAssignmentRepository.save(assignment);
+
+        // 与管理员手动分配一致：第一次分配标注时任务进入 ASSIGNED
+        if (type == TaskAssignment.AssignmentType.ANNOTATION && task.getStatus() == Task.TaskStatus.CREATED) {
+            task.setStatus(Task.TaskStatus.ASSIGNED);
+            taskRepository.save(task);
+        }
+        taskStageCounterService.onAssignmentCreated(savedAssignment);
+
+        return savedAssignment;
+    }
+
+    public long getLeaseMinutes() {
+        return leaseMinutes;
+    }
+
+    /**
+     * 领取规则
+     */
+    private static class QueueRule {
+        private final int requiredAssignees;
+        private final Set<User.Role> roles;
+        private final List<Task.TaskStatus> statuses;
+
+        QueueRule(int requiredAssignees, Set<User.Role> roles, List<Task.TaskStatus> statuses) {
+            this.requiredAssignees = requiredAssignees;
+            this.roles = roles;
+            this.statuses = statuses;
+        }
+    }
+}
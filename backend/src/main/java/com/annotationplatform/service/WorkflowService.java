@@ -2,12 +2,18 @@ package com.annotationplatform.service;
 
 import com.annotationplatform.entity.*;
 import com.annotationplatform.repository.*;
+import com.annotationplatform.utils.FlightEvents;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Service
 public class WorkflowService {
@@ -21,71 +27,102 @@ public class WorkflowService {
     @Autowired
     private ScoreService scoreService;
 
+    @Autowired
+    private TaskStageCounterService taskStageCounterService;
+
+    @Autowired
+    private ConsensusService consensusService;
+
     /**
      * 推进任务工作流状态
-     * 根据当前任务状态和相关操作自动推进到下一个状态
+     * 根据当前任务状态和阶段计数器推进到下一个状态（每次推进一步）
      */
     @Transactional
     public void advanceTaskWorkflow(Task task) {
+        FlightEvents.WorkflowAdvanceEvent flightEvent = new FlightEvents.WorkflowAdvanceEvent();
+        flightEvent.begin();
+        Map<TaskAssignment.AssignmentType, TaskStageCounter> counters = taskStageCounterService.getCounters(task);
+
         Task.TaskStatus currentStatus = task.getStatus();
-        Task.TaskStatus newStatus = determineNextStatus(task);
+        Task.TaskStatus status = currentStatus;
+        Task.TaskStatus newStatus = determineNextStatus(task, currentStatus, counters);
 
         if (newStatus != null && !newStatus.equals(currentStatus)) {
+            status = newStatus;
             task.setStatus(newStatus);
             task.setUpdatedAt(LocalDateTime.now());
             taskRepository.save(task);
         }
+
+        if (flightEvent.shouldCommit()) {
+            flightEvent.taskId = task.getId();
+            flightEvent.fromStatus = currentStatus.name();
+            flightEvent.toStatus = status.name();
+            flightEvent.commit();
+        }
     }
 
     /**
-     * 根据任务当前状态和条件确定下一个状态
+     * 阶段计数器变化时推进对应任务的工作流
+     * 标注提交引起的变化不在这里处理：提交事务只写发件箱事件，推进由 WORKFLOW 步骤（handleAnnotationSubmission）完成
      */
-    private Task.TaskStatus determineNextStatus(Task task) {
-        switch (task.getStatus()) {
+    @EventListener
+    public void onStageCounterChanged(TaskStageCounterService.StageCounterChangedEvent event) {
+        if (event.isAdvanceWorkflow()) {
+            taskRepository.findById(event.getTaskId()).ifPresent(this::advanceTaskWorkflow);
+        }
+    }
+
+    /**
+     * 根据任务当前状态和阶段计数器确定下一个状态
+     */
+    private Task.TaskStatus determineNextStatus(Task task, Task.TaskStatus currentStatus,
+                                                Map<TaskAssignment.AssignmentType, TaskStageCounter> counters) {
+        switch (currentStatus) {
             case CREATED:
-                if (hasAssignments(task, TaskAssignment.AssignmentType.AI_ANNOTATION)) {
+                if (hasAssignments(counters, TaskAssignment.AssignmentType.AI_ANNOTATION)) {
                     return Task.TaskStatus.AI_PROCESSING;
                 }
                 break;
 
             case AI_PROCESSING:
-                if (areAllAssignmentsCompleted(task, TaskAssignment.AssignmentType.AI_ANNOTATION)) {
+                if (areAllAssignmentsCompleted(counters, TaskAssignment.AssignmentType.AI_ANNOTATION)) {
                     return Task.TaskStatus.AI_COMPLETED;
                 }
                 break;
 
             case AI_COMPLETED:
-                if (hasAssignments(task, TaskAssignment.AssignmentType.ANNOTATION)) {
+                if (hasAssignments(counters, TaskAssignment.AssignmentType.ANNOTATION)) {
                     return Task.TaskStatus.ANNOTATING;
                 }
                 break;
 
             case ANNOTATING:
-                if (areAllAssignmentsCompleted(task, TaskAssignment.AssignmentType.ANNOTATION)) {
+                if (isAnnotationCompleted(task, counters)) {
                     return Task.TaskStatus.ANNOTATED;
                 }
                 break;
 
             case ANNOTATED:
-                if (hasAssignments(task, TaskAssignment.AssignmentType.INSPECTION)) {
+                if (hasAssignments(counters, TaskAssignment.AssignmentType.INSPECTION)) {
                     return Task.TaskStatus.INSPECTING;
                 }
                 break;
 
             case INSPECTING:
-                if (areAllAssignmentsCompleted(task, TaskAssignment.AssignmentType.INSPECTION)) {
+                if (areAllAssignmentsCompleted(counters, TaskAssignment.AssignmentType.INSPECTION)) {
                     return Task.TaskStatus.INSPECTED;
                 }
                 break;
 
             case INSPECTED:
-                if (hasAssignments(task, TaskAssignment.AssignmentType.EXPERT_REVIEW)) {
+                if (hasAssignments(counters, TaskAssignment.AssignmentType.EXPERT_REVIEW)) {
                     return Task.TaskStatus.EXPERT_REVIEWING;
                 }
                 break;
 
             case EXPERT_REVIEWING:
-                if (areAllAssignmentsCompleted(task, TaskAssignment.AssignmentType.EXPERT_REVIEW)) {
+                if (areAllAssignmentsCompleted(counters, TaskAssignment.AssignmentType.EXPERT_REVIEW)) {
                     return Task.TaskStatus.EXPERT_REVIEWED;
                 }
                 break;
@@ -97,12 +134,12 @@ public class WorkflowService {
                 
             // Compatibility with old statuses
             case ASSIGNED:
-                 if (hasAssignments(task, TaskAssignment.AssignmentType.ANNOTATION)) {
+                 if (hasAssignments(counters, TaskAssignment.AssignmentType.ANNOTATION)) {
                      return Task.TaskStatus.ANNOTATING;
                  }
                  break;
             case IN_PROGRESS:
-                 if (areAllAssignmentsCompleted(task, TaskAssignment.AssignmentType.ANNOTATION)) {
+                 if (isAnnotationCompleted(task, counters)) {
                      return Task.TaskStatus.ANNOTATED;
                  }
                  break;
@@ -113,15 +150,34 @@ public class WorkflowService {
         return null; // 无需状态变更
     }
 
-    private boolean hasAssignments(Task task, TaskAssignment.AssignmentType type) {
-        List<TaskAssignment> assignments = taskAssignmentRepository.findByTaskIdAndAssignmentType(task.getId(), type);
-        return !assignments.isEmpty();
+    private boolean hasAssignments(Map<TaskAssignment.AssignmentType, TaskStageCounter> counters,
+                                   TaskAssignment.AssignmentType type) {
+        return assignedCount(counters, type) > 0;
+    }
+
+    private boolean areAllAssignmentsCompleted(Map<TaskAssignment.AssignmentType, TaskStageCounter> counters,
+                                               TaskAssignment.AssignmentType type) {
+        int assigned = assignedCount(counters, type);
+        return assigned > 0 && completedCount(counters, type) >= assigned;
+    }
+
+    /**
+     * 标注阶段完成：所需人数（由文档类型配置）都已提交，且已分配的标注都已完成
+     * 通过领取队列逐个加入的标注员在第一人提交时只有一条分配，不能据此进入 ANNOTATED
+     */
+    private boolean isAnnotationCompleted(Task task, Map<TaskAssignment.AssignmentType, TaskStageCounter> counters) {
+        return areAllAssignmentsCompleted(counters, TaskAssignment.AssignmentType.ANNOTATION)
+            && completedCount(counters, TaskAssignment.AssignmentType.ANNOTATION) >= consensusService.getRequiredAnnotators(task);
+    }
+
+    private int assignedCount(Map<TaskAssignment.AssignmentType, TaskStageCounter> counters, TaskAssignment.AssignmentType type) {
+        TaskStageCounter counter = counters.get(type);
+        return counter != null ? counter.getAssignedCount() : 0;
     }
 
-    private boolean areAllAssignmentsCompleted(Task task, TaskAssignment.AssignmentType type) {
-        List<TaskAssignment> assignments = taskAssignmentRepository.findByTaskIdAndAssignmentType(task.getId(), type);
-        if (assignments.isEmpty()) return false;
-        return assignments.stream().allMatch(assignment -> assignment.getStatus() == TaskAssignment.AssignmentStatus.COMPLETED);
+    private int completedCount(Map<TaskAssignment.AssignmentType, TaskStageCounter> counters, TaskAssignment.AssignmentType type) {
+        TaskStageCounter counter = counters.get(type);
+        return counter != null ? counter.getCompletedCount() : 0;
     }
 
     /**
@@ -173,31 +229,69 @@ public class WorkflowService {
     /**
      * 获取任务的当前工作流状态信息
      */
+    @Transactional(readOnly = true)
     public WorkflowStatus getWorkflowStatus(Task task) {
+        return buildWorkflowStatus(task, taskStageCounterService.getCounters(task));
+    }
+
+    /**
+     * 批量获取多个任务的工作流状态
+     * 任务一次查询，分配情况一次 GROUP BY task_id, assignment_type, status 查询，进度在内存中计算
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, WorkflowStatus> getWorkflowStatuses(Collection<Long> taskIds) {
+        Map<Long, WorkflowStatus> result = new LinkedHashMap<>();
+        if (taskIds == null || taskIds.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, Map<TaskAssignment.AssignmentType, TaskStageCounter>> countersByTask = new HashMap<>();
+        for (Object[] row : taskAssignmentRepository.countByTaskIdsGroupByTypeAndStatus(taskIds)) {
+            Long taskId = (Long) row[0];
+            TaskAssignment.AssignmentType type = (TaskAssignment.AssignmentType) row[1];
+            TaskAssignment.AssignmentStatus assignmentStatus = (TaskAssignment.AssignmentStatus) row[2];
+            int count = ((Number) row[3]).intValue();
+
+            // 仅用于内存计算的计数器，不会持久化
+            TaskStageCounter counter = countersByTask
+                .computeIfAbsent(taskId, id -> new EnumMap<>(TaskAssignment.AssignmentType.class))
+                .computeIfAbsent(type, t -> new TaskStageCounter(null, t));
+            counter.setAssignedCount(counter.getAssignedCount() + count);
+            if (assignmentStatus == TaskAssignment.AssignmentStatus.COMPLETED) {
+                counter.setCompletedCount(counter.getCompletedCount() + count);
+            }
+        }
+
+        Map<Long, Task> tasks = new HashMap<>();
+        for (Task task : taskRepository.findAllById(taskIds)) {
+            tasks.put(task.getId(), task);
+        }
+        for (Long taskId : taskIds) {
+            Task task = tasks.get(taskId);
+            if (task != null) {
+                result.put(taskId, buildWorkflowStatus(task, countersByTask.getOrDefault(taskId, Map.of())));
+            }
+        }
+        return result;
+    }
+
+    private WorkflowStatus buildWorkflowStatus(Task task, Map<TaskAssignment.AssignmentType, TaskStageCounter> counters) {
         WorkflowStatus status = new WorkflowStatus();
         status.setTaskId(task.getId());
         status.setCurrentStatus(task.getStatus());
 
-        // 统计各阶段任务分配情况
-        List<TaskAssignment> aiAssignments = taskAssignmentRepository
-            .findByTaskIdAndAssignmentType(task.getId(), TaskAssignment.AssignmentType.AI_ANNOTATION);
-        status.setAiAssignments(aiAssignments.size());
-        status.setAiCompleted(countCompleted(aiAssignments));
+        // 各阶段任务分配情况直接取自计数器
+        status.setAiAssignments(assignedCount(counters, TaskAssignment.AssignmentType.AI_ANNOTATION));
+        status.setAiCompleted(completedCount(counters, TaskAssignment.AssignmentType.AI_ANNOTATION));
 
-        List<TaskAssignment> annotationAssignments = taskAssignmentRepository
-            .findByTaskIdAndAssignmentType(task.getId(), TaskAssignment.AssignmentType.ANNOTATION);
-        status.setAnnotationAssignments(annotationAssignments.size());
-        status.setAnnotationCompleted(countCompleted(annotationAssignments));
+        status.setAnnotationAssignments(assignedCount(counters, TaskAssignment.AssignmentType.ANNOTATION));
+        status.setAnnotationCompleted(completedCount(counters, TaskAssignment.AssignmentType.ANNOTATION));
 
-        List<TaskAssignment> inspectionAssignments = taskAssignmentRepository
-            .findByTaskIdAndAssignmentType(task.getId(), TaskAssignment.AssignmentType.INSPECTION);
-        status.setInspectionAssignments(inspectionAssignments.size());
-        status.setInspectionCompleted(countCompleted(inspectionAssignments));
+        status.setInspectionAssignments(assignedCount(counters, TaskAssignment.AssignmentType.INSPECTION));
+        status.setInspectionCompleted(completedCount(counters, TaskAssignment.AssignmentType.INSPECTION));
 
-        List<TaskAssignment> expertAssignments = taskAssignmentRepository
-            .findByTaskIdAndAssignmentType(task.getId(), TaskAssignment.AssignmentType.EXPERT_REVIEW);
-        status.setExpertAssignments(expertAssignments.size());
-        status.setExpertCompleted(countCompleted(expertAssignments));
+        status.setExpertAssignments(assignedCount(counters, TaskAssignment.AssignmentType.EXPERT_REVIEW));
+        status.setExpertCompleted(completedCount(counters, TaskAssignment.AssignmentType.EXPERT_REVIEW));
 
         // 计算进度百分比 (simplified)
         status.setProgressPercentage(calculateProgress(status));
@@ -205,12 +299,6 @@ public class WorkflowService {
         return status;
     }
 
-    private int countCompleted(List<TaskAssignment> assignments) {
-        return (int) assignments.stream()
-            .filter(a -> a.getStatus() == TaskAssignment.AssignmentStatus.COMPLETED)
-            .count();
-    }
-
     /**
      * 计算任务进度百分比
      */
@@ -0,0 +1,291 @@
+package com.annotationplatform.service;
+
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 用户工作量跟踪器
+ * 按分配类型在内存中维护每个用户未完成的分配数；每组候选用户（如全部启用的标注员）有一份按工作量排序的索引，
+ * 选择工作量最少的用户只需从索引头部读取。变化在事务提交后应用，定期从数据库校准
+ */
+@Service
+public class WorkloadTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadTracker.class);
+
+    // 未完成（占用工作量）的分配状态
+    private static final List<TaskAssignment.AssignmentStatus> OPEN_STATUSES =
+        List.of(TaskAssignment.AssignmentStatus.ASSIGNED, TaskAssignment.AssignmentStatus.IN_PROGRESS);
+
+    // 每个分配类型保留的候选用户组索引数（最近使用）
+    private static final int MAX_POOLS = 16;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    private volatile Map<TaskAssignment.AssignmentType, TypeWorkload> workloads = emptyWorkloads();
+
+    private volatile boolean loaded = false;
+
+    // 应用增量与替换 workloads 时持有
+    private final Object deltaLock = new Object();
+
+    // 校准查询进行期间到达的增量，替换前重放到新的 workloads 上（受 deltaLock 保护）
+    private List<WorkloadDelta> pendingDeltas;
+
+    /**
+     * 选择工作量最少的用户
+     */
+    public User selectLeastLoaded(List<User> users, TaskAssignment.AssignmentType assignmentType) {
+        List<User> selected = selectLeastLoaded(users, 1, assignmentType);
+        return selected.isEmpty() ? null : selected.get(0);
+    }
+
+    /**
+     * 选择指定数量的工作量最少的用户（工作量相同时按用户ID排序）
+     */
+    public List<User> selectLeastLoaded(List<User> users, int count, TaskAssignment.AssignmentType assignmentType) {
+        return selectLeastLoaded(users, count, assignmentType, Set.of(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 从候选用户中选择指定数量的工作量最少的用户，跳过 excludedUserIds 以及工作量已达到 maxLoad 的用户
+     * 同一组候选用户共用一份有序索引，只读取头部若干项（加上被排除的用户）
+     */
+    public List<User> selectLeastLoaded(List<User> users, int count, TaskAssignment.AssignmentType assignmentType,
+                                        Set<Long> excludedUserIds, int maxLoad) {
+        ensureLoaded();
+        Map<Long, User> candidates = new HashMap<>();
+        for (User user : users) {
+            candidates.put(user.getId(), user);
+        }
+
+        List<User> selected = new ArrayList<>();
+        for (WorkloadEntry entry : workloads.get(assignmentType).pool(candidates.keySet())) {
+            if (selected.size() >= count || entry.load >= maxLoad) {
+                break;
+            }
+            if (excludedUserIds.contains(entry.userId)) {
+                continue;
+            }
+            // 并发更新时同一用户可能短暂出现两次
+            User user = candidates.remove(entry.userId);
+            if (user != null) {
+                selected.add(user);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 获取用户当前未完成的分配数
+     */
+    public int getOpenAssignments(Long userId, TaskAssignment.AssignmentType assignmentType) {
+        ensureLoaded();
+        return workloads.get(assignmentType).loads.getOrDefault(userId, 0);
+    }
+
+    /**
+     * 任务分配创建或状态变化的事务提交后更新工作量，回滚的事务不影响工作量
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAssignmentChanged(TaskStageCounterService.AssignmentChangedEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        int delta = (isOpen(event.getStatus()) ? 1 : 0) - (isOpen(event.getPreviousStatus()) ? 1 : 0);
+        if (delta == 0) {
+            return;
+        }
+        synchronized (deltaLock) {
+            if (loaded) {
+                workloads.get(event.getAssignmentType()).adjust(event.getUserId(), delta);
+            }
+            if (pendingDeltas != null) {
+                pendingDeltas.add(new WorkloadDelta(event.getAssignmentType(), event.getUserId(), delta));
+            }
+        }
+    }
+
+    /**
+     * 从数据库校准工作量（单条 GROUP BY 查询）
+     * 查询期间提交的增量会重放到校准结果上，与替换一起在 deltaLock 内完成，不会丢失
+     */
+    @Scheduled(fixedDelayString = "${workload.reconcile-interval-ms:300000}",
+               initialDelayString = "${workload.reconcile-interval-ms:300000}")
+    public synchronized void reconcile() {
+        synchronized (deltaLock) {
+            pendingDeltas = new ArrayList<>();
+        }
+        List<Object[]> rows;
+        try {
+            rows = taskAssignmentRepository.countByStatusInGroupByUserAndType(OPEN_STATUSES);
+        } catch (RuntimeException e) {
+            synchronized (deltaLock) {
+                pendingDeltas = null;
+            }
+            throw e;
+        }
+
+        synchronized (deltaLock) {
+            Map<TaskAssignment.AssignmentType, TypeWorkload> rebuilt = emptyWorkloads();
+            for (Object[] row : rows) {
+                Long userId = (Long) row[0];
+                TaskAssignment.AssignmentType type = (TaskAssignment.AssignmentType) row[1];
+                rebuilt.get(type).loads.put(userId, ((Number) row[2]).intValue());
+            }
+            for (WorkloadDelta delta : pendingDeltas) {
+                rebuilt.get(delta.assignmentType).adjust(delta.userId, delta.delta);
+            }
+            pendingDeltas = null;
+
+            // 保留已跟踪但当前没有未完成分配的用户，并按新的工作量重建候选用户组索引
+            workloads.forEach((type, workload) -> rebuilt.get(type).inherit(workload));
+
+            workloads = rebuilt;
+            loaded = true;
+        }
+        logger.debug("Workload tracker reconciled");
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reconcile();
+                }
+            }
+        }
+    }
+
+    private boolean isOpen(TaskAssignment.AssignmentStatus status) {
+        return status != null && OPEN_STATUSES.contains(status);
+    }
+
+    private static Map<TaskAssignment.AssignmentType, TypeWorkload> emptyWorkloads() {
+        Map<TaskAssignment.AssignmentType, TypeWorkload> map = new EnumMap<>(TaskAssignment.AssignmentType.class);
+        for (TaskAssignment.AssignmentType type : TaskAssignment.AssignmentType.values()) {
+            map.put(type, new TypeWorkload());
+        }
+        return map;
+    }
+
+    /**
+     * 单个分配类型的工作量：用户 -> 工作量，以及每组候选用户按 (工作量, 用户ID) 排序的索引
+     */
+    private static class TypeWorkload {
+        private final Map<Long, Integer> loads = new ConcurrentHashMap<>();
+        private final Map<Set<Long>, ConcurrentSkipListSet<WorkloadEntry>> pools =
+            new LinkedHashMap<Set<Long>, ConcurrentSkipListSet<WorkloadEntry>>(MAX_POOLS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Set<Long>, ConcurrentSkipListSet<WorkloadEntry>> eldest) {
+                    return size() > MAX_POOLS;
+                }
+            };
+
+        /**
+         * 获取候选用户组的有序索引，首次使用时建立
+         */
+        synchronized ConcurrentSkipListSet<WorkloadEntry> pool(Set<Long> userIds) {
+            ConcurrentSkipListSet<WorkloadEntry> pool = pools.get(userIds);
+            if (pool == null) {
+                Set<Long> key = Set.copyOf(userIds);
+                pool = new ConcurrentSkipListSet<>();
+                for (Long userId : key) {
+                    pool.add(new WorkloadEntry(loads.computeIfAbsent(userId, id -> 0), userId));
+                }
+                pools.put(key, pool);
+            }
+            return pool;
+        }
+
+        synchronized void set(Long userId, int load) {
+            Integer previous = loads.put(userId, load);
+            for (Map.Entry<Set<Long>, ConcurrentSkipListSet<WorkloadEntry>> pool : pools.entrySet()) {
+                if (pool.getKey().contains(userId)) {
+                    // 先加入新位置再移除旧位置，并发读取不会漏掉该用户
+                    pool.getValue().add(new WorkloadEntry(load, userId));
+                    if (previous != null && previous != load) {
+                        pool.getValue().remove(new WorkloadEntry(previous, userId));
+                    }
+                }
+            }
+        }
+
+        synchronized void adjust(Long userId, int delta) {
+            set(userId, Math.max(0, loads.getOrDefault(userId, 0) + delta));
+        }
+
+        /**
+         * 沿用旧实例跟踪的用户与候选用户组
+         */
+        synchronized void inherit(TypeWorkload previous) {
+            List<Set<Long>> keys;
+            synchronized (previous) {
+                for (Long userId : previous.loads.keySet()) {
+                    loads.putIfAbsent(userId, 0);
+                }
+                keys = new ArrayList<>(previous.pools.keySet());
+            }
+            for (Set<Long> key : keys) {
+                pool(key);
+            }
+        }
+    }
+
+    private static class WorkloadDelta {
+        private final TaskAssignment.AssignmentType assignmentType;
+        private final Long userId;
+        private final int delta;
+
+        WorkloadDelta(TaskAssignment.AssignmentType assignmentType, Long userId, int delta) {
+            this.assignmentType = assignmentType;
+            this.userId = userId;
+            this.delta = delta;
+        }
+    }
+    private static class WorkloadEntry implements Comparable<WorkloadEntry> {
+        private final int load;
+        private final long userId;
+
+        WorkloadEntry(int load, long userId) {
+            this.load = load;
+            this.userId = userId;
+        }
+
+        @Override
+        public int compareTo(WorkloadEntry other) {
+            int result = Integer.compare(load, other.load);
+            return result != 0 ? result : Long.compare(userId, other.userId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof WorkloadEntry)) return false;
+            WorkloadEntry other = (WorkloadEntry) o;
+            return load == other.load && userId == other.userId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * load + Long.hashCode(userId);
+        }
+    }
+}
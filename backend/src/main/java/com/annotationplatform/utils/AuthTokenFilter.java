@@ -4,6 +4,7 @@ import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +26,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private JwtPrincipalCache principalCache;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
@@ -33,18 +37,15 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         try {
             // Skip JWT validation for auth and test endpoints
             String requestURI = request.getRequestURI();
-            System.out.println("Request URI: " + requestURI); // Debug logging
             if (requestURI.equals("/") || requestURI.startsWith("/api/auth/") || requestURI.startsWith("/api/test/")) {
                 filterChain.doFilter(request, response);
                 return;
             }
 
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
+            UserDetails userDetails = jwt != null ? resolvePrincipal(jwt) : null;
+            // Disabled users keep a cached principal until invalidated but are never authenticated
+            if (userDetails != null && userDetails.isEnabled()) {
                 UsernamePasswordAuthenticationToken authentication =
                     new UsernamePasswordAuthenticationToken(userDetails,
                                                             null,
@@ -60,6 +61,27 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Cached principal for an already verified token; otherwise verify once, load the user and cache it
+     * until the token expires
+     */
+    private UserDetails resolvePrincipal(String jwt) {
+        UserDetails userDetails = principalCache.get(jwt);
+        if (userDetails != null) {
+            return userDetails;
+        }
+
+        Claims claims = jwtUtils.parseVerifiedClaims(jwt);
+        if (claims == null) {
+            return null;
+        }
+        userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        if (claims.getExpiration() != null) {
+            principalCache.put(jwt, userDetails, claims.getExpiration().getTime());
+        }
+        return userDetails;
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
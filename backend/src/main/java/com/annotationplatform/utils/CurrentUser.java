@@ -0,0 +1,22 @@
+package com.annotationplatform.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the authenticated user into a controller method parameter.
+ *
+ * A {@link com.annotationplatform.service.UserDetailsImpl} parameter receives the principal resolved at token
+ * verification (id, username, role, status) without touching the database. A
+ * {@link com.annotationplatform.entity.User} parameter receives an uninitialized entity reference for that id,
+ * suitable for associations and service calls; reading anything but the id loads the row. The parameter is
+ * {@code null} when the request is not authenticated with a JWT principal.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
@@ -0,0 +1,46 @@
+package com.annotationplatform.utils;
+
+import com.annotationplatform.entity.User;
+import com.annotationplatform.service.UserDetailsImpl;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Resolves {@link CurrentUser} parameters from the principal set by {@link AuthTokenFilter}
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+            && (parameter.getParameterType() == UserDetailsImpl.class || parameter.getParameterType() == User.class);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
+            return null;
+        }
+        UserDetailsImpl principal = (UserDetailsImpl) authentication.getPrincipal();
+        if (parameter.getParameterType() == UserDetailsImpl.class) {
+            return principal;
+        }
+        // Request-scoped persistence context (open-in-view): the reference joins later transactions without a SELECT
+        return entityManager.getReference(User.class, principal.getId());
+    }
+}
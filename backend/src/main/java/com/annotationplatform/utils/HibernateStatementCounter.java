@@ -0,0 +1,43 @@
+package com.annotationplatform.utils;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * 统计当前线程执行的 SQL 语句数（由 hibernate.session_factory.statement_inspector 配置，Hibernate 自行实例化）
+ * 只在 {@link #start()} 与 {@link #stop()} 之间计数，请求线程以外（如发件箱工作线程）的语句不计入。
+ */
+public class HibernateStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.total++;
+            if (sql.regionMatches(true, 0, "select", 0, 6)) {
+                counts.selects++;
+            }
+        }
+        return sql;
+    }
+
+    public static void start() {
+        CURRENT.set(new Counts());
+    }
+
+    public static Counts stop() {
+        Counts counts = CURRENT.get();
+        CURRENT.remove();
+        return counts != null ? counts : new Counts();
+    }
+
+    public static class Counts {
+        private int total;
+        private int selects;
+
+        public int getTotal() { return total; }
+
+        public int getSelects() { return selects; }
+    }
+}
@@ -0,0 +1,147 @@
+package com.annotationplatform.utils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已验证令牌 → 用户主体的缓存
+ * 命中时请求不再解析令牌、不再查询用户表。条目在令牌过期时（最长 max-ttl）失效，
+ * 用户角色、状态等变更时按用户名清除。容量有上限，超出时先清理过期条目，再淘汰最早写入的一部分。
+ * 命中/未命中计数以 cache.gets{cache="jwtPrincipals"} 导出，与 Spring 缓存的指标同名。
+ */
+@Component
+public class JwtPrincipalCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "jwtPrincipals";
+
+    // 与 actuator 为 Spring 缓存注册的标签保持一致（Prometheus 要求同名指标的标签键相同）
+    private static final Iterable<Tag> CACHE_TAGS = Tags.of("cache", CACHE_NAME, "cache.manager", "jwtPrincipalCache",
+        "name", CACHE_NAME);
+
+    @Value("${jwt.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    // 多实例部署时其他实例上的用户变更无法通知到本实例，用最长存活时间兜底
+    @Value("${jwt.principal-cache.max-ttl-ms:300000}")
+    private long maxTtlMs;
+
+    private final Map<String, CachedPrincipal> cache = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public UserDetails get(String token) {
+        CachedPrincipal cached = cache.get(token);
+        if (cached == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (cached.expiresAt <= System.currentTimeMillis()) {
+            cache.remove(token, cached);
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return cached.principal;
+    }
+
+    public void put(String token, UserDetails principal, long tokenExpiresAt) {
+        long now = System.currentTimeMillis();
+        long expiresAt = Math.min(tokenExpiresAt, now + maxTtlMs);
+        if (expiresAt <= now) {
+            return;
+        }
+        if (cache.size() >= maxSize) {
+            evict(now);
+        }
+        cache.put(token, new CachedPrincipal(principal, expiresAt, now));
+    }
+
+    /**
+     * 清除该用户的全部缓存主体（角色、状态、用户名等变更或删除用户后调用）
+     */
+    public void invalidateUser(String username) {
+        if (username != null) {
+            cache.values().removeIf(cached -> username.equals(cached.principal.getUsername()));
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hitCount, AtomicLong::get)
+            .tags(CACHE_TAGS).tag("result", "hit")
+            .description("the number of times cache lookup methods have returned a cached value.")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", missCount, AtomicLong::get)
+            .tags(CACHE_TAGS).tag("result", "miss")
+            .description("the number of times cache lookup methods have returned an uncached (newly loaded) value, or null")
+            .register(registry);
+        FunctionCounter.builder("cache.evictions", evictionCount, AtomicLong::get)
+            .tags(CACHE_TAGS)
+            .description("cache evictions")
+            .register(registry);
+        Gauge.builder("cache.size", cache, Map::size)
+            .tags(CACHE_TAGS)
+            .description("The number of entries in this cache.")
+            .register(registry);
+    }
+
+    private synchronized void evict(long now) {
+        if (cache.size() < maxSize) {
+            return;
+        }
+        int before = cache.size();
+        cache.values().removeIf(cached -> cached.expiresAt <= now);
+        if (cache.size() < maxSize) {
+            evictionCount.addAndGet(Math.max(0, before - cache.size()));
+            return;
+        }
+        // 仍然满：淘汰写入时间最早的约 10%
+        long cutoff = cache.values().stream()
+            .mapToLong(cached -> cached.cachedAt)
+            .sorted()
+            .skip(Math.max(1, maxSize / 10) - 1)
+            .findFirst()
+            .orElse(now);
+        Iterator<CachedPrincipal> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().cachedAt <= cutoff) {
+                iterator.remove();
+            }
+        }
+        evictionCount.addAndGet(Math.max(0, before - cache.size()));
+    }
+
+    private static class CachedPrincipal {
+        private final UserDetails principal;
+        private final long expiresAt;
+        private final long cachedAt;
+
+        CachedPrincipal(UserDetails principal, long expiresAt, long cachedAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.annotationplatform.utils;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 记录每个请求执行的 SQL 语句数（hibernate.statements.per.request，按 method 与 uri 模板区分）
+ * 排在安全过滤器之前，认证过程中加载用户的查询也计入。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestStatementMetricsFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        HibernateStatementCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            HibernateStatementCounter.Counts counts = HibernateStatementCounter.stop();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            DistributionSummary.builder("hibernate.statements.per.request")
+                .description("SQL statements executed while handling one request")
+                .tags("method", request.getMethod(), "uri", uri, "type", "all")
+                .register(meterRegistry)
+                .record(counts.getTotal());
+            DistributionSummary.builder("hibernate.statements.per.request")
+                .description("SQL statements executed while handling one request")
+                .tags("method", request.getMethod(), "uri", uri, "type", "select")
+                .register(meterRegistry)
+                .record(counts.getSelects());
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // 抓取指标本身不计入
+        return request.getRequestURI().startsWith(request.getContextPath() + "/actuator");
+    }
+}
@@ -0,0 +1,77 @@
+-- Indexes for the repository queries that V1 and V2 do not already cover. Portable SQL: runs unchanged on H2 and MySQL.
+-- Each index lists the repository methods it serves. On MySQL, an index whose leading column is a foreign key also
+-- replaces the implicit index InnoDB created for that key, so FK columns are not indexed twice.
+-- Names deliberately differ from the indexes the old data.sql created, so databases that ran it still migrate.
+
+-- documents
+-- DocumentRepository.findByChecksum (duplicate detection on every upload)
+create index idx_documents_checksum on documents (checksum);
+-- DocumentRepository.findByFolder_Id / countByFolder_Id, listed newest first
+create index idx_documents_folder_created on documents (folder_id, created_at);
+-- DocumentRepository.findByCategoryIdAndFolderPath, findDistinctFolderPathsByCategoryId, findByCategoryId, countByCategoryId
+create index idx_documents_category_folder_path on documents (category_id, folder_path);
+-- DocumentRepository.findByStatus, findWithFilters(status), listed newest first
+create index idx_documents_status_created on documents (status, created_at);
+-- DocumentRepository.findAll / findWithFilters without filters: default sort and date range
+create index idx_documents_created on documents (created_at);
+
+-- tasks
+-- TaskRepository.findByBatchId (batch detail and progress)
+create index idx_tasks_batch_id on tasks (batch_id);
+-- TaskRepository.findActiveTasks (status IN ... ORDER BY priority DESC, createdAt DESC), findByStatus, countByStatus,
+-- countByStatusAndCreatedAtAfter
+create index idx_tasks_status_priority_created on tasks (status, priority, created_at);
+-- TaskRepository.findByCreatedById, countByCreatedById, countByCreatedByIdAndStatus
+create index idx_tasks_creator_status on tasks (created_by, status);
+-- TaskRepository.findByCategoryId, findWithFilters(categoryId), listed newest first
+create index idx_tasks_category_created on tasks (category_id, created_at);
+-- TaskRepository.findWithFilters without filters: default sort and date range
+create index idx_tasks_created on tasks (created_at);
+
+-- task_assignments
+-- TaskAssignmentRepository.findByUserId, countByUserIdAndStatus, countByUserIdAndAssignmentTypeAndStatus,
+-- QualityCheckRepository.findByUserReviewTasks (user_id + REVIEW)
+create index idx_task_assignments_user_status_type on task_assignments (user_id, status, assignment_type);
+
+-- annotations
+-- AnnotationRepository.findByTaskIdAndTaskAssignmentId, findByTaskId, findByTaskIdOrderByVersionDesc
+create index idx_annotations_task_assignment on annotations (task_id, task_assignment_id);
+-- AnnotationRepository.findByTaskAssignmentId, countByUserIdsGroupByStatus (joined through task_assignments)
+create index idx_annotations_assignment_status on annotations (task_assignment_id, status);
+
+-- quality_checks
+-- QualityCheckRepository.findByTaskId, countByTaskId, findWithFilters(taskId, status), findByUserReviewTasks join
+create index idx_quality_checks_task_status on quality_checks (task_id, status);
+-- QualityCheckRepository.findByStatus, countByStatus, findWithFilters(status) listed newest first
+create index idx_quality_checks_status_time on quality_checks (status, created_at);
+
+-- score_history
+-- ScoreHistoryRepository.findByUserOrderByCreatedAtDesc, findByUserAndCreatedAtBetween..., sum by user and period
+create index idx_score_history_user_time on score_history (user_id, created_at);
+-- ScoreHistoryRepository.findByScoreTypeOrderByCreatedAtDesc
+create index idx_score_history_type_time on score_history (score_type, created_at);
+
+-- document_annotation_history
+-- DocumentAnnotationHistoryRepository.findByDocumentIdAndFieldName..., findDistinctFieldNamesByDocumentId
+create index idx_history_document_field_time on document_annotation_history (document_id, field_name, created_at);
+-- DocumentAnnotationHistoryRepository.findByDocumentId (paged), findByDocumentIdOrderByCreatedAtDesc
+create index idx_history_document_time on document_annotation_history (document_id, created_at);
+
+-- form_configs / form_fields
+-- FormConfigRepository.findByCategoryIdAndIsActiveTrueOrderByCreatedAtDesc, findByCategoryIdOrderByCreatedAtDesc
+create index idx_form_configs_category_active on form_configs (category_id, is_active, created_at);
+-- FormFieldRepository.findByFormConfigIdOrderBySortOrderAsc, findByFormConfigIdOrdered
+create index idx_form_fields_config_sort on form_fields (form_config_id, sort_order);
+
+-- folders: FolderRepository.findByPathStartingWith stays unindexed. path is varchar(1000), longer than an InnoDB
+-- utf8mb4 index key allows, and the prefix lookup only runs on folder move/rename over a small table.
+
+-- categories
+-- CategoryRepository.findByParentIdOrderBySortOrderAsc, findByParentIsNullOrderBySortOrderAsc
+create index idx_categories_parent_sort on categories (parent_id, sort_order);
+
+-- users
+-- UserRepository.findByRoleInAndStatus, countByRoleAndStatus, findByRolesAndStatusOrderedByCreatedDate
+create index idx_users_status_role on users (status, role);
+-- UserRepository.findAllActiveUsersOrderedByScore (leaderboard)
+create index idx_users_status_score on users (status, score);
@@ -0,0 +1,9 @@
+-- Replica lag probe: the application writes the current time (epoch millis) to the primary every heartbeat
+-- interval and reads it back from the replica; the difference is the replication lag (see ReplicaLagMonitor).
+create table replication_heartbeat (
+    id integer not null,
+    beat_at bigint not null,
+    primary key (id)
+);
+
+insert into replication_heartbeat (id, beat_at) values (1, 0);
@@ -0,0 +1,9 @@
+-- Stage counters for assignments that existed before task_stage_counters (V2): one row per task and assignment type
+-- that has assignments but no counter yet, so reading a task's workflow status never has to create them.
+-- Counters already created by the application since V2 are kept.
+insert into task_stage_counters (task_id, assignment_type, assigned_count, completed_count, updated_at)
+select ta.task_id, ta.assignment_type, count(*), sum(case when ta.status = 'COMPLETED' then 1 else 0 end), current_timestamp
+from task_assignments ta
+where not exists (select 1 from task_stage_counters c
+                  where c.task_id = ta.task_id and c.assignment_type = ta.assignment_type)
+group by ta.task_id, ta.assignment_type;
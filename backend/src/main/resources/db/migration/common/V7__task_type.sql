@@ -0,0 +1,3 @@
+-- Task type: review tasks created from the quality review page (/tasks/review/batch) are kept out of the annotation
+-- work queue and the assignment scheduler. Existing tasks are recorded as annotation tasks.
+alter table tasks add column task_type varchar(20) default 'ANNOTATION' not null;
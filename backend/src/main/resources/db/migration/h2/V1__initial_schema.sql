@@ -0,0 +1,231 @@
+-- Schema of the application before migrations were introduced (H2): what ddl-auto=update created from the
+-- entities of that release, constraint names included. Existing databases are baselined at this version
+-- (spring.flyway.baseline-on-migrate) and continue with V2.
+-- quality_checks is missing on purpose: its JSONB column type was rejected by both databases, so update never
+-- created it (nor the score_history foreign key to it). V2 adds it.
+
+create table annotations (
+    id bigint generated by default as identity,
+    annotation_data VARCHAR(5000) not null,
+    confidence_score numeric(3,2),
+    created_at timestamp,
+    review_notes VARCHAR(1000),
+    reviewed_at timestamp,
+    status varchar(20),
+    submitted_at timestamp,
+    updated_at timestamp,
+    version integer,
+    reviewer_id bigint,
+    task_id bigint not null,
+    task_assignment_id bigint not null,
+    primary key (id)
+);
+
+create table categories (
+    id bigint generated by default as identity,
+    created_at timestamp,
+    description varchar(1000),
+    level integer,
+    name varchar(100),
+    sort_order integer,
+    updated_at timestamp,
+    created_by bigint,
+    parent_id bigint,
+    primary key (id)
+);
+
+create table document_annotation_history (
+    id bigint generated by default as identity,
+    action_type varchar(20) not null,
+    created_at timestamp not null,
+    field_label varchar(200),
+    field_name varchar(100) not null,
+    new_value VARCHAR(2000) not null,
+    old_value VARCHAR(2000),
+    version integer not null,
+    annotation_id bigint not null,
+    document_id bigint not null,
+    task_id bigint not null,
+    user_id bigint not null,
+    primary key (id)
+);
+
+create table document_type_form_configs (
+    document_type_id bigint not null,
+    form_config_id bigint not null
+);
+
+create table document_types (
+    id bigint generated by default as identity,
+    created_at timestamp,
+    description varchar(1000),
+    is_active boolean,
+    name varchar(100),
+    updated_at timestamp,
+    created_by bigint,
+    primary key (id)
+);
+
+create table documents (
+    id bigint generated by default as identity,
+    checksum varchar(128),
+    created_at timestamp,
+    file_path varchar(255),
+    file_size bigint not null,
+    filename varchar(255),
+    folder_path varchar(255),
+    mime_type varchar(255),
+    original_filename varchar(255),
+    priority varchar(10),
+    processed_at timestamp,
+    status varchar(20),
+    updated_at timestamp,
+    category_id bigint,
+    document_type_id bigint,
+    folder_id bigint,
+    uploaded_by bigint,
+    primary key (id)
+);
+
+create table folders (
+    id bigint generated by default as identity,
+    created_at timestamp,
+    depth integer not null,
+    name varchar(255) not null,
+    path varchar(1000) not null,
+    updated_at timestamp,
+    created_by bigint,
+    parent_id bigint,
+    primary key (id)
+);
+
+create table form_configs (
+    id bigint generated by default as identity,
+    created_at timestamp,
+    description varchar(1000),
+    is_active boolean,
+    name varchar(100),
+    prompt_template TEXT,
+    updated_at timestamp,
+    category_id bigint,
+    created_by bigint not null,
+    primary key (id)
+);
+
+create table form_fields (
+    id bigint generated by default as identity,
+    created_at timestamp,
+    field_name varchar(100),
+    field_type varchar(50) not null,
+    label varchar(200),
+    options varchar(2000),
+    placeholder TEXT,
+    required boolean,
+    sort_order integer,
+    updated_at timestamp,
+    validation_rules varchar(1000),
+    form_config_id bigint not null,
+    primary key (id)
+);
+
+create table score_history (
+    id bigint generated by default as identity,
+    created_at timestamp not null,
+    description varchar(500),
+    new_score integer not null,
+    previous_score integer not null,
+    score_change integer not null,
+    score_type varchar(50) not null,
+    annotation_id bigint,
+    quality_check_id bigint,
+    task_id bigint,
+    user_id bigint not null,
+    primary key (id)
+);
+
+create table task_assignments (
+    id bigint generated by default as identity,
+    assigned_at timestamp,
+    assignment_type varchar(20) not null,
+    completed_at timestamp,
+    notes TEXT,
+    status varchar(20),
+    task_id bigint not null,
+    user_id bigint not null,
+    primary key (id)
+);
+
+create table tasks (
+    id bigint generated by default as identity,
+    batch_id varchar(100),
+    batch_name varchar(200),
+    created_at timestamp,
+    deadline timestamp,
+    description TEXT,
+    document_index TEXT,
+    priority varchar(10),
+    status varchar(20),
+    submitted_at timestamp,
+    title varchar(200),
+    updated_at timestamp,
+    category_id bigint,
+    created_by bigint not null,
+    document_id bigint not null,
+    form_config_id bigint,
+    primary key (id)
+);
+
+create table users (
+    id bigint generated by default as identity,
+    created_at timestamp,
+    email varchar(100),
+    password varchar(120),
+    role varchar(20),
+    score integer,
+    status varchar(20),
+    updated_at timestamp,
+    username varchar(50),
+    primary key (id)
+);
+
+create index idx_document_id on document_annotation_history (document_id);
+create index idx_task_id on document_annotation_history (task_id);
+create index idx_user_id on document_annotation_history (user_id);
+create index idx_field_name on document_annotation_history (field_name);
+
+alter table document_types add constraint UK_d3uw3lxi20y7tj8cm9p1ggtcy unique (name);
+alter table folders add constraint UK6jgp23dyvmfdx9ifio559pmqp unique (parent_id, name);
+alter table task_assignments add constraint UKfbd974hl3g7cbnby06d761ew5 unique (task_id, user_id, assignment_type);
+alter table users add constraint UK_6dotkott2kjsp8vw4d0m25fb7 unique (email);
+alter table users add constraint UK_r43af9ap4edm43mmtq01oddj6 unique (username);
+
+alter table annotations add constraint FK2c384tk4kvay1cl1w9wauqhwd foreign key (reviewer_id) references users (id);
+alter table annotations add constraint FKarmybrr63uhjj2aofe9btw9ac foreign key (task_assignment_id) references task_assignments (id);
+alter table annotations add constraint FKh5m0hiw93y2ehgsa6m58mjva4 foreign key (task_id) references tasks (id);
+alter table categories add constraint FK5yfru0au6kpyqs4tonky5vfne foreign key (created_by) references users (id);
+alter table categories add constraint FKsaok720gsu4u2wrgbk10b5n8d foreign key (parent_id) references categories (id);
+alter table document_annotation_history add constraint FKj6k1prkvakvspd54sjge2wwjb foreign key (annotation_id) references annotations (id);
+alter table document_annotation_history add constraint FKpxg9ilu4h26antkxywvx3qg4a foreign key (document_id) references documents (id);
+alter table document_annotation_history add constraint FKo2eh99aoqi9vtdco1rfhawup3 foreign key (task_id) references tasks (id);
+alter table document_annotation_history add constraint FKfx97073l3xeenwvaurhp3npx4 foreign key (user_id) references users (id);
+alter table document_type_form_configs add constraint FKsn9pw2o05scq7p7vcfcbqnts9 foreign key (document_type_id) references document_types (id);
+alter table document_type_form_configs add constraint FKk83xb8x1ns44f8c874l1ls82v foreign key (form_config_id) references form_configs (id);
+alter table document_types add constraint FK7s2c2p4wyfd2rgscj5v5o99ve foreign key (created_by) references users (id);
+alter table documents add constraint FK70g21yw6d0n958n3khscvgbls foreign key (category_id) references categories (id);
+alter table documents add constraint FKis1i6nxslho3kvxr9nsg8x05l foreign key (document_type_id) references document_types (id);
+alter table documents add constraint FK9nqrsj4vj0hi1k55nlwv33cr0 foreign key (folder_id) references folders (id);
+alter table documents add constraint FK1ugacya4ssi0ilf8a9tjycgs6 foreign key (uploaded_by) references users (id);
+alter table folders add constraint FKdrw3lfljsyubvrm3bnxhbf8t8 foreign key (created_by) references users (id);
+alter table folders add constraint FKqcp836dgme9195j0wy9v3b6o3 foreign key (parent_id) references folders (id);
+alter table form_configs add constraint FK1bgf1v8x7lgw4y8on741ao4go foreign key (category_id) references categories (id);
+alter table form_configs add constraint FKm4s686hl1b27r7bqy5xnir0n6 foreign key (created_by) references users (id);
+alter table form_fields add constraint FKaxvohdpae1rttn9qbycknd0ho foreign key (form_config_id) references form_configs (id);
+alter table score_history add constraint FK68k538li7vci9ftlcsjf40t1t foreign key (annotation_id) references annotations (id);
+alter table score_history add constraint FKjn9xymmxmjk8mg5kh5xd5coma foreign key (task_id) references tasks (id);
+alter table score_history add constraint FKhd7knvy68f2ns4d0umdsuv43l foreign key (user_id) references users (id);
+alter table task_assignments add constraint FKk36vhf9tt6t3woselwnkis6v6 foreign key (task_id) references tasks (id);
+alter table task_assignments add constraint FKovnod7lqp56uups16si7jh6uu foreign key (user_id) references users (id);
+alter table tasks add constraint FK19nbrmutuqhlidppwns1wmfro foreign key (category_id) references categories (id);
+alter table tasks add constraint FK9dgm9t7wn4w3gh57h63g712lo foreign key (created_by) references users (id);
+alter table tasks add constraint FKlvors54psqfvsd5v7r71wvx5c foreign key (document_id) references documents (id);
+alter table tasks add constraint FKt09ey8jh2jdawsnnjrrwtxjsv foreign key (form_config_id) references form_configs (id);
@@ -0,0 +1,14 @@
+-- Annotators who submitted each batch document (H2). A batch parent task carries one assignment per annotator
+-- for all of its documents, so per-document progress counts these rows rather than the task's completed assignments.
+-- Existing batches start without submissions; their documents keep the status they have until submitted again.
+create table batch_document_submissions (
+    id bigint generated by default as identity,
+    submitted_at timestamp,
+    batch_document_id bigint not null,
+    user_id bigint not null,
+    primary key (id)
+);
+
+alter table batch_document_submissions add constraint uk_batch_document_submissions_document_user unique (batch_document_id, user_id);
+alter table batch_document_submissions add constraint fk_batch_document_submissions_batch_document_id foreign key (batch_document_id) references batch_documents (id);
+alter table batch_document_submissions add constraint fk_batch_document_submissions_user_id foreign key (user_id) references users (id);
@@ -0,0 +1,145 @@
+-- Entity changes made since V1 that databases created by ddl-auto=update never received (MySQL 8). Fresh databases
+-- get them right after V1, databases baselined at V1 get exactly this delta. Only adds tables, columns, indexes and
+-- constraints: existing rows are kept, and the identity ids of the V1 tables stay in place (the pooled ids below
+-- always insert explicit values).
+
+-- Document types that need more than two annotators (ConsensusService.getRequiredAnnotators, null = default)
+alter table document_types add column required_annotators integer;
+
+-- Work queue leases: set on assignments claimed from the queue, released when they expire unstarted
+alter table task_assignments add column lease_expires_at datetime(6);
+create index idx_task_assignments_lease on task_assignments (status, lease_expires_at);
+-- TaskAssignmentRepository.findByTaskIdAndAssignmentType (review eligibility, stage counter rebuild)
+create index idx_task_assignments_task_type on task_assignments (task_id, assignment_type);
+
+-- TaskRepository.findByDocumentIdAndStatus; findSchedulingSnapshotsUpdatedSince (assignment scheduler refresh)
+create index idx_tasks_document_status on tasks (document_id, status);
+create index idx_tasks_updated_at on tasks (updated_at);
+
+-- Batch membership, one row per document (replaces the tasks.document_index JSON, which is migrated lazily on read)
+create table batch_documents (
+    id bigint not null,
+    batch_id varchar(100) not null,
+    created_at datetime(6),
+    document_id bigint not null,
+    file_size bigint,
+    filename varchar(255),
+    folder_path varchar(255),
+    mime_type varchar(255),
+    original_filename varchar(255),
+    progress integer,
+    sort_order integer,
+    status varchar(20),
+    updated_at datetime(6),
+    assignee_id bigint,
+    task_id bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_batch_documents_batch_sort on batch_documents (batch_id, sort_order);
+create index idx_batch_documents_batch_status on batch_documents (batch_id, status);
+create index idx_batch_documents_task_id on batch_documents (task_id);
+create index idx_batch_documents_document_id on batch_documents (document_id);
+alter table batch_documents add constraint uk_batch_documents_batch_id_document_id unique (batch_id, document_id);
+alter table batch_documents add constraint fk_batch_documents_assignee_id foreign key (assignee_id) references users (id);
+alter table batch_documents add constraint fk_batch_documents_task_id foreign key (task_id) references tasks (id);
+
+-- Pooled table ids (allocationSize 50) for the entities that are inserted in JDBC batches. Each counter starts one
+-- allocation above the highest existing id, so the first block handed out never collides with old rows.
+create table id_generators (
+    gen_name varchar(255) not null,
+    gen_value bigint,
+    primary key (gen_name)
+) engine=InnoDB;
+
+insert into id_generators (gen_name, gen_value) select 'annotations', coalesce(max(id), 0) + 50 from annotations;
+insert into id_generators (gen_name, gen_value) select 'batch_documents', coalesce(max(id), 0) + 50 from batch_documents;
+insert into id_generators (gen_name, gen_value) select 'document_annotation_history', coalesce(max(id), 0) + 50 from document_annotation_history;
+insert into id_generators (gen_name, gen_value) select 'documents', coalesce(max(id), 0) + 50 from documents;
+insert into id_generators (gen_name, gen_value) select 'score_history', coalesce(max(id), 0) + 50 from score_history;
+insert into id_generators (gen_name, gen_value) select 'task_assignments', coalesce(max(id), 0) + 50 from task_assignments;
+insert into id_generators (gen_name, gen_value) select 'tasks', coalesce(max(id), 0) + 50 from tasks;
+
+-- Quality checks. V1 has no such table (see there), so it is created here with the consensus columns
+create table quality_checks (
+    id bigint not null auto_increment,
+    annotator_count integer,
+    comparison_result varchar(255),
+    conflict_fields TEXT,
+    consensus_data TEXT,
+    created_at datetime(6),
+    resolution_notes TEXT,
+    resolved_at datetime(6),
+    status varchar(255),
+    updated_at datetime(6),
+    annotation_a_id bigint,
+    annotation_b_id bigint,
+    annotator_a_id bigint not null,
+    annotator_b_id bigint not null,
+    resolved_by bigint,
+    task_id bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+alter table quality_checks add constraint fk_quality_checks_annotation_a_id foreign key (annotation_a_id) references annotations (id);
+alter table quality_checks add constraint fk_quality_checks_annotation_b_id foreign key (annotation_b_id) references annotations (id);
+alter table quality_checks add constraint fk_quality_checks_annotator_a_id foreign key (annotator_a_id) references users (id);
+alter table quality_checks add constraint fk_quality_checks_annotator_b_id foreign key (annotator_b_id) references users (id);
+alter table quality_checks add constraint fk_quality_checks_resolved_by foreign key (resolved_by) references users (id);
+alter table quality_checks add constraint fk_quality_checks_task_id foreign key (task_id) references tasks (id);
+alter table score_history add constraint fk_score_history_quality_check_id foreign key (quality_check_id) references quality_checks (id);
+
+-- Daily inter-annotator agreement per form field and annotator pair
+create table agreement_stats (
+    id bigint not null auto_increment,
+    agreements bigint not null,
+    annotator_a_id bigint not null,
+    annotator_b_id bigint not null,
+    comparisons bigint not null,
+    field_name varchar(100) not null,
+    field_type varchar(20),
+    form_config_id bigint not null,
+    marginals_a TEXT,
+    marginals_b TEXT,
+    stat_date date not null,
+    updated_at datetime(6),
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_agreement_stats_date on agreement_stats (stat_date);
+alter table agreement_stats add constraint uk_agreement_stats unique (form_config_id, stat_date, field_name, annotator_a_id, annotator_b_id);
+
+-- Assigned/completed counts per task and stage (rebuilt from the assignments when missing)
+create table task_stage_counters (
+    id bigint not null auto_increment,
+    assigned_count integer not null,
+    assignment_type varchar(20) not null,
+    completed_count integer not null,
+    updated_at datetime(6),
+    task_id bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+alter table task_stage_counters add constraint uk_task_stage_counters_task_id_assignment_type unique (task_id, assignment_type);
+alter table task_stage_counters add constraint fk_task_stage_counters_task_id foreign key (task_id) references tasks (id);
+
+-- Transactional outbox for the steps that run after an annotation is submitted
+create table outbox_events (
+    id bigint not null auto_increment,
+    aggregate_id bigint,
+    attempts integer not null,
+    completed_steps varchar(255),
+    created_at datetime(6) not null,
+    event_type varchar(40) not null,
+    last_error TEXT,
+    locked_until datetime(6),
+    next_attempt_at datetime(6) not null,
+    payload TEXT,
+    processed_at datetime(6),
+    status varchar(20) not null,
+    task_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_outbox_events_status_next on outbox_events (status, next_attempt_at);
+create index idx_outbox_events_task on outbox_events (task_id);
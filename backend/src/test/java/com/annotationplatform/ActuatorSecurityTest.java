@@ -0,0 +1,53 @@
+package com.annotationplatform;
+
+import com.annotationplatform.utils.JwtUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Actuator endpoints: health stays public, metrics and the Prometheus scrape require an admin token.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+// Tests disable metric exporters by default, which would remove the Prometheus endpoint
+@AutoConfigureMetrics
+@ActiveProfiles("test")
+public class ActuatorSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Test
+    public void testHealthIsPublic() throws Exception {
+        assertEquals(200, status(get("/api/actuator/health"), null));
+    }
+
+    @Test
+    public void testMetricsRequireAdmin() throws Exception {
+        for (String path : new String[]{"/api/actuator/metrics", "/api/actuator/prometheus"}) {
+            assertEquals(401, status(get(path), null), path);
+            assertEquals(403, status(get(path), "annotator1"), path);
+            assertEquals(200, status(get(path), "admin"), path);
+        }
+    }
+
+    private int status(MockHttpServletRequestBuilder request, String username) throws Exception {
+        request.contextPath("/api");
+        if (username != null) {
+            request.header("Authorization", "Bearer " + jwtUtils.generateTokenFromUsername(username));
+        }
+        return mockMvc.perform(request).andReturn().getResponse().getStatus();
+    }
+}
@@ -0,0 +1,103 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.AgreementStat;
+import com.annotationplatform.entity.Annotation;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.AgreementStatRepository;
+import com.annotationplatform.service.AgreementStatsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Agreement statistics: quality checks recorded concurrently on a new day create each row once and lose no counts.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AgreementStatsServiceTest {
+
+    private static final int QUALITY_CHECKS = 8;
+
+    @Autowired
+    private AgreementStatsService agreementStatsService;
+
+    @Autowired
+    private AgreementStatRepository agreementStatRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void testConcurrentRecordsOnNewDay() throws Exception {
+        // Annotator IDs no other test uses, so every row starts missing
+        long annotatorA = ThreadLocalRandom.current().nextLong(1_000_000, 1_000_000_000);
+        long annotatorB = annotatorA + 1;
+        LocalDate today = LocalDate.now();
+
+        ExecutorService executor = Executors.newFixedThreadPool(QUALITY_CHECKS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < QUALITY_CHECKS; i++) {
+                String city = i % 2 == 0 ? "Beijing" : "Shanghai";
+                results.add(executor.submit(() -> {
+                    start.await();
+                    transactionTemplate.executeWithoutResult(tx -> agreementStatsService.record(new Task(), List.of(
+                        annotation(annotatorA, "{\"name\": \"Acme\", \"city\": \"Beijing\"}"),
+                        annotation(annotatorB, "{\"name\": \"Acme\", \"city\": \"" + city + "\"}")), today));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, AgreementStat> rows = agreementStatRepository
+            .findWithFilters(today, today, AgreementStat.NO_FORM, null, annotatorA).stream()
+            .collect(Collectors.toMap(AgreementStat::getFieldName, stat -> stat));
+        assertEquals(3, rows.size(), rows.keySet().toString());
+        assertCounts(rows.get("name"), QUALITY_CHECKS, QUALITY_CHECKS);
+        assertCounts(rows.get("city"), QUALITY_CHECKS, QUALITY_CHECKS / 2);
+        assertCounts(rows.get(AgreementStat.ALL_FIELDS), QUALITY_CHECKS, QUALITY_CHECKS / 2);
+    }
+
+    private void assertCounts(AgreementStat stat, long comparisons, long agreements) {
+        assertEquals(comparisons, stat.getComparisons(), stat.getFieldName() + " comparisons");
+        assertEquals(agreements, stat.getAgreements(), stat.getFieldName() + " agreements");
+    }
+
+    private static Annotation annotation(long userId, String data) {
+        User user = new User();
+        user.setId(userId);
+        TaskAssignment assignment = new TaskAssignment();
+        assignment.setUser(user);
+        Annotation annotation = new Annotation();
+        annotation.setTaskAssignment(assignment);
+        annotation.setAnnotationData(data);
+        return annotation;
+    }
+}
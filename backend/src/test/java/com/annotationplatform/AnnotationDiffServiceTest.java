@@ -0,0 +1,73 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.FormField;
+import com.annotationplatform.service.AnnotationDiffService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnnotationDiffServiceTest {
+
+    private AnnotationDiffService diffService;
+
+    private List<FormField> fields;
+
+    @BeforeEach
+    public void setUp() {
+        diffService = new AnnotationDiffService();
+        ReflectionTestUtils.setField(diffService, "ignoreTextCase", true);
+        fields = List.of(
+            field("name", FormField.FieldType.TEXT),
+            field("amount", FormField.FieldType.NUMBER),
+            field("signedAt", FormField.FieldType.DATE),
+            field("tags", FormField.FieldType.MULTI_SELECT),
+            field("approved", FormField.FieldType.BOOLEAN));
+    }
+
+    @Test
+    public void testEquivalentValuesDoNotConflict() {
+        String a = "{\"name\": \" Acme  Corp \", \"amount\": 1200, \"signedAt\": \"2024-03-01\", " +
+                   "\"tags\": [\"b\", \"a\"], \"approved\": true}";
+        String b = "{\"approved\": \"是\", \"tags\": [\"A\", \"B\"], \"signedAt\": \"2024年3月1日\", " +
+                   "\"amount\": \"1,200.00\", \"name\": \"acme corp\"}";
+
+        AnnotationDiffService.DiffResult result = diffService.diff(a, b, fields);
+
+        assertFalse(result.hasConflicts());
+        assertEquals(5, result.getComparedFields());
+    }
+
+    @Test
+    public void testOnlyConflictingFieldsAreReported() {
+        String a = "{\"name\": \"Acme\", \"amount\": 100, \"tags\": [\"a\", \"b\"], \"remark\": \"\"}";
+        String b = "{\"name\": \"Acme\", \"amount\": 101, \"tags\": [\"a\"]}";
+
+        AnnotationDiffService.DiffResult result = diffService.diff(a, b, fields);
+
+        assertEquals(2, result.getConflicts().size());
+        assertEquals("amount", result.getConflicts().get(0).getFieldName());
+        assertEquals("tags", result.getConflicts().get(1).getFieldName());
+        assertFalse(result.isFullConflict());
+        assertTrue(diffService.toJson(result.getConflicts()).contains("\"fieldName\":\"amount\""));
+    }
+
+    @Test
+    public void testUndefinedFieldsCompareStructurally() {
+        String a = "{\"extra\": {\"x\": 1, \"y\": \"z\"}}";
+        String b = "{\"extra\": {\"y\": \"z\", \"x\": 1.0}}";
+
+        assertFalse(diffService.diff(a, b, List.of()).hasConflicts());
+    }
+
+    private FormField field(String name, FormField.FieldType type) {
+        FormField field = new FormField();
+        field.setFieldName(name);
+        field.setFieldType(type);
+        field.setLabel(name);
+        return field;
+    }
+}
@@ -0,0 +1,209 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.AssignmentScheduler;
+import com.annotationplatform.service.TaskAssignmentService;
+import com.annotationplatform.service.TaskStageCounterService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Urgency-based assignment scheduler: tasks are staffed in order of priority, deadline and waiting time, assignments
+ * that change between runs are picked up from the dirty set, and a manual assignment committed while the scheduler
+ * works on the same task is neither repeated nor topped up beyond the required annotators. Each test starts the
+ * application on an empty database of its own, so the scheduler only sees the tasks it creates.
+ */
+public class AssignmentSchedulerTest {
+
+    // Annotators per task without a document type override
+    private static final int REQUIRED_ANNOTATORS = 2;
+
+    @Test
+    public void testTasksAssignedInUrgencyOrder() throws Exception {
+        try (ConfigurableApplicationContext context = start(
+                "--spring.datasource.url=jdbc:h2:mem:scheduler-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")) {
+            String prefix = "order-" + UUID.randomUUID().toString().substring(0, 8);
+            Task plain = createTask(context, prefix + " plain", Task.Priority.NORMAL, null);
+            Task dueSoon = createTask(context, prefix + " due soon", Task.Priority.NORMAL, LocalDateTime.now().plusHours(2));
+            Task waiting = createTask(context, prefix + " waiting", Task.Priority.NORMAL, null);
+            Task urgent = createTask(context, prefix + " urgent", Task.Priority.URGENT, null);
+            // Waiting four days reaches the aging cap (60), ahead of a deadline two hours out (~46) and of URGENT (+20)
+            setCreatedAt(context, waiting, LocalDateTime.now().minusHours(96));
+            List<Long> expectedOrder = List.of(waiting.getId(), dueSoon.getId(), urgent.getId(), plain.getId());
+
+            AssignmentScheduler scheduler = context.getBean(AssignmentScheduler.class);
+            List<Long> previewOrder = scheduler.preview(10).stream()
+                .map(item -> (Long) item.get("taskId"))
+                .collect(Collectors.toList());
+            assertEquals(expectedOrder, previewOrder);
+
+            AssignmentScheduler.RunResult result = scheduler.runOnce();
+            assertEquals(4, result.getTasksAssigned());
+            assertEquals(4 * REQUIRED_ANNOTATORS, result.getAssignmentsCreated());
+
+            // Each task is staffed in a transaction of its own, in heap order, so assignment ids follow the urgency
+            TaskAssignmentRepository taskAssignmentRepository = context.getBean(TaskAssignmentRepository.class);
+            List<Long> assignedOrder = new ArrayList<>(expectedOrder);
+            Map<Long, Long> firstAssignmentId = expectedOrder.stream().collect(Collectors.toMap(taskId -> taskId,
+                taskId -> assertStaffed(taskAssignmentRepository, taskId, REQUIRED_ANNOTATORS).stream()
+                    .mapToLong(TaskAssignment::getId).min().orElseThrow()));
+            assignedOrder.sort(Comparator.comparing(firstAssignmentId::get));
+            assertEquals(expectedOrder, assignedOrder);
+            assertTrue(scheduler.preview(10).isEmpty(), "Fully staffed tasks leave the snapshot");
+        }
+    }
+
+    @Test
+    public void testReleasedAssignmentPickedUpFromDirtySet() throws Exception {
+        try (ConfigurableApplicationContext context = start(
+                "--spring.datasource.url=jdbc:h2:mem:scheduler-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")) {
+            String prefix = "dirty-" + UUID.randomUUID().toString().substring(0, 8);
+            Task task = createTask(context, prefix, Task.Priority.NORMAL, null);
+            AssignmentScheduler scheduler = context.getBean(AssignmentScheduler.class);
+            assertEquals(REQUIRED_ANNOTATORS, scheduler.runOnce().getAssignmentsCreated());
+
+            // Releasing a claim does not touch the task row: only the dirty set brings the task back
+            TaskAssignmentRepository taskAssignmentRepository = context.getBean(TaskAssignmentRepository.class);
+            setUpdatedAt(context, task, LocalDateTime.now().minusHours(1));
+            context.getBean(TransactionTemplate.class).executeWithoutResult(tx -> {
+                TaskAssignment released = taskAssignmentRepository
+                    .findByTaskIdAndAssignmentType(task.getId(), TaskAssignment.AssignmentType.ANNOTATION).get(0);
+                taskAssignmentRepository.delete(released);
+                context.getBean(TaskStageCounterService.class).onAssignmentDeleted(released);
+            });
+
+            assertEquals(1, scheduler.runOnce().getAssignmentsCreated());
+            assertStaffed(taskAssignmentRepository, task.getId(), REQUIRED_ANNOTATORS);
+            assertEquals(0, scheduler.runOnce().getAssignmentsCreated());
+        }
+    }
+
+    @Test
+    public void testConcurrentManualAssignmentNotDuplicatedOnH2() throws Exception {
+        try (ConfigurableApplicationContext context = start(
+                "--spring.datasource.url=jdbc:h2:mem:scheduler-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")) {
+            assertConcurrentManualAssignment(context);
+        }
+    }
+
+    @Test
+    public void testConcurrentManualAssignmentNotDuplicatedOnMySql() throws Exception {
+        try (MySqlTestDatabase database = MySqlTestDatabase.create();
+             ConfigurableApplicationContext context = start(database.springProperties().stream()
+                 .map(property -> "--" + property).toArray(String[]::new))) {
+            assertConcurrentManualAssignment(context);
+        }
+    }
+
+    // An admin assigns an annotator while the scheduler, whose snapshot cannot see that assignment yet, staffs the task
+    private static void assertConcurrentManualAssignment(ApplicationContext context) throws Exception {
+        String prefix = "manual-" + UUID.randomUUID().toString().substring(0, 8);
+        Task task = createTask(context, prefix, Task.Priority.NORMAL, null);
+        AssignmentScheduler scheduler = context.getBean(AssignmentScheduler.class);
+        // Loads the snapshot, so that the manual assignment below only reaches the scheduler through the dirty set
+        assertEquals(1, scheduler.preview(10).size());
+
+        User manual = context.getBean(UserRepository.class).findByUsername("annotator1").orElseThrow();
+        CountDownLatch assigned = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> admin = executor.submit(() -> context.getBean(TransactionTemplate.class).executeWithoutResult(tx -> {
+                // Manual assignment holds the task row until it commits, like the scheduler's own transaction
+                context.getBean(JdbcTemplate.class).queryForList("select id from tasks where id = ? for update",
+                    task.getId());
+                Task managed = context.getBean(TaskRepository.class).findById(task.getId()).orElseThrow();
+                context.getBean(TaskAssignmentService.class).assignUsers(managed, List.of(manual.getId()),
+                    TaskAssignment.AssignmentType.ANNOTATION);
+                assigned.countDown();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(assigned.await(30, TimeUnit.SECONDS));
+            AssignmentScheduler.RunResult result = scheduler.runOnce();
+            admin.get(30, TimeUnit.SECONDS);
+            assertEquals(REQUIRED_ANNOTATORS - 1, result.getAssignmentsCreated());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<TaskAssignment> assignments = assertStaffed(context.getBean(TaskAssignmentRepository.class), task.getId(),
+            REQUIRED_ANNOTATORS);
+        assertTrue(assignments.stream().anyMatch(assignment -> assignment.getUser().getId().equals(manual.getId())));
+    }
+
+    // Exactly the expected number of annotation assignments, each to a different user
+    private static List<TaskAssignment> assertStaffed(TaskAssignmentRepository taskAssignmentRepository, Long taskId,
+                                                      int expected) {
+        List<TaskAssignment> assignments = taskAssignmentRepository.findByTaskIdAndAssignmentType(taskId,
+            TaskAssignment.AssignmentType.ANNOTATION);
+        Set<Long> assignees = new HashSet<>();
+        for (TaskAssignment assignment : assignments) {
+            assertTrue(assignees.add(assignment.getUser().getId()),
+                "Task " + taskId + " assigned twice to user " + assignment.getUser().getId());
+        }
+        assertEquals(expected, assignments.size(), "Annotators on task " + taskId);
+        return assignments;
+    }
+
+    // Command line arguments, because they take precedence over application-test.properties
+    private static ConfigurableApplicationContext start(String... arguments) {
+        return new SpringApplicationBuilder(AnnotationPlatformApplication.class)
+            .profiles("test")
+            .properties("server.port=0", "spring.devtools.restart.enabled=false")
+            .run(arguments);
+    }
+
+    private static Task createTask(ApplicationContext context, String title, Task.Priority priority,
+                                   LocalDateTime deadline) {
+        User admin = context.getBean(UserRepository.class).findByUsername("admin").orElseThrow();
+        String filename = UUID.randomUUID() + ".pdf";
+        Document document = context.getBean(DocumentRepository.class).save(new Document(filename, filename,
+            "./test-uploads/" + filename, 100L, "application/pdf", null, null, admin));
+        Task task = new Task(title, null, document, null, null, admin);
+        task.setPriority(priority);
+        task.setDeadline(deadline);
+        return context.getBean(TaskRepository.class).save(task);
+    }
+
+    private static void setCreatedAt(ApplicationContext context, Task task, LocalDateTime createdAt) {
+        context.getBean(JdbcTemplate.class).update("update tasks set created_at = ? where id = ?",
+            Timestamp.valueOf(createdAt), task.getId());
+    }
+
+    private static void setUpdatedAt(ApplicationContext context, Task task, LocalDateTime updatedAt) {
+        context.getBean(JdbcTemplate.class).update("update tasks set updated_at = ? where id = ?",
+            Timestamp.valueOf(updatedAt), task.getId());
+    }
+}
@@ -0,0 +1,178 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Batch document progress: a batch parent task has one assignment per annotator for all of its documents, so each
+ * document's status and progress follow the annotators who submitted that document, and drafts never complete it.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class BatchDocumentProgressTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Test
+    public void testProgressIsTrackedPerDocument() throws Exception {
+        Document first = createDocument();
+        Document second = createDocument();
+        Document third = createDocument();
+        JsonNode batch = call(post("/api/tasks/batch").content(json(Map.of(
+            "batchName", "progress " + UUID.randomUUID(),
+            "documentIds", List.of(first.getId(), second.getId(), third.getId())))), "admin");
+        String batchId = batch.path("batchId").asText();
+        long taskId = batch.path("task").path("id").asLong();
+        assertTrue(taskId > 0, batch.toString());
+
+        Map<Long, Long> assignments = assign(taskId, user("annotator1"), user("annotator2"));
+        long assignment1 = assignments.get(user("annotator1").getId());
+        long assignment2 = assignments.get(user("annotator2").getId());
+
+        submit(taskId, assignment1, first, "annotator1");
+        assertDocument(batchId, first, "IN_PROGRESS", 50);
+        assertDocument(batchId, second, "PENDING", 0);
+
+        // Once the first document is submitted the assignment is complete, yet a draft on the second stays unfinished
+        draft(taskId, assignment1, second, "annotator1");
+        assertDocument(batchId, second, "IN_PROGRESS", 0);
+        assertDocument(batchId, first, "IN_PROGRESS", 50);
+
+        submit(taskId, assignment2, first, "annotator2");
+        assertDocument(batchId, first, "COMPLETED", 100);
+        assertDocument(batchId, second, "IN_PROGRESS", 0);
+        assertDocument(batchId, third, "PENDING", 0);
+
+        // Submitting the second document counts although both assignments are already completed
+        submit(taskId, assignment1, second, "annotator1");
+        assertDocument(batchId, second, "IN_PROGRESS", 50);
+        draft(taskId, assignment2, second, "annotator2");
+        assertDocument(batchId, second, "IN_PROGRESS", 50);
+
+        // A resubmission by the same annotator is not a second submitter
+        submit(taskId, assignment1, second, "annotator1");
+        assertDocument(batchId, second, "IN_PROGRESS", 50);
+
+        submit(taskId, assignment2, second, "annotator2");
+        assertDocument(batchId, second, "COMPLETED", 100);
+
+        // A later draft does not reopen a completed document
+        draft(taskId, assignment1, first, "annotator1");
+        assertDocument(batchId, first, "COMPLETED", 100);
+        assertDocument(batchId, third, "PENDING", 0);
+
+        JsonNode summary = call(get("/api/tasks/batch/" + batchId + "/documents"), "admin").path("summary");
+        assertEquals(2, summary.path("completedCount").asInt(), summary.toString());
+        assertEquals(1, summary.path("pendingCount").asInt(), summary.toString());
+        assertEquals(67, summary.path("progressPercentage").asInt(), summary.toString());
+    }
+
+    private Document createDocument() {
+        String filename = UUID.randomUUID() + ".pdf";
+        return documentRepository.save(new Document(filename, filename, "./test-uploads/" + filename, 100L,
+            "application/pdf", null, null, user("admin")));
+    }
+
+    // Admin assignment, returns assignment ID by user ID
+    private Map<Long, Long> assign(long taskId, User... users) throws Exception {
+        List<Long> userIds = new ArrayList<>();
+        for (User user : users) {
+            userIds.add(user.getId());
+        }
+        JsonNode response = call(post("/api/tasks/" + taskId + "/assign")
+            .content(json(Map.of("userIds", userIds, "assignmentType", "ANNOTATION"))), "admin");
+        Map<Long, Long> assignments = new HashMap<>();
+        for (JsonNode assignment : response.path("assignments")) {
+            assignments.put(assignment.path("user").path("id").asLong(), assignment.path("id").asLong());
+        }
+        assertEquals(users.length, assignments.size(), response.toString());
+        return assignments;
+    }
+
+    private void submit(long taskId, long assignmentId, Document document, String username) throws Exception {
+        JsonNode response = call(post("/api/annotations").content(json(annotation(taskId, assignmentId, document))),
+            username);
+        assertTrue(response.has("annotation"), response.toString());
+    }
+
+    private void draft(long taskId, long assignmentId, Document document, String username) throws Exception {
+        JsonNode response = call(post("/api/annotations/draft").content(json(annotation(taskId, assignmentId, document))),
+            username);
+        assertTrue(response.has("annotation"), response.toString());
+    }
+
+    private Map<String, Object> annotation(long taskId, long assignmentId, Document document) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("taskId", taskId);
+        request.put("taskAssignmentId", assignmentId);
+        request.put("documentId", document.getId());
+        request.put("annotationData", Map.of("title", document.getFilename()));
+        return request;
+    }
+
+    private void assertDocument(String batchId, Document document, String status, int progress) throws Exception {
+        JsonNode documents = call(get("/api/tasks/batch/" + batchId + "/documents"), "admin").path("documents");
+        for (JsonNode entry : documents) {
+            if (entry.path("documentId").asLong() == document.getId()) {
+                assertEquals(status, entry.path("status").asText(), "status of document " + document.getId());
+                assertEquals(progress, entry.path("progress").asInt(), "progress of document " + document.getId());
+                return;
+            }
+        }
+        fail("Document " + document.getId() + " missing from batch " + batchId + ": " + documents);
+    }
+
+    private User user(String username) {
+        return userRepository.findByUsername(username).orElseThrow();
+    }
+
+    private JsonNode call(MockHttpServletRequestBuilder request, String username) throws Exception {
+        String body = mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + jwtUtils.generateTokenFromUsername(username))
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+}
@@ -0,0 +1,231 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.TaskStageCounter;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.TaskStageCounterRepository;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.WorkloadTracker;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Bulk assignment (POST /tasks/assignments:bulk): every task x user x type combination gets an outcome, existing
+ * assignments, unknown tasks and unknown users are reported instead of inserted, and the created assignments, their
+ * stage counters and the annotators' workload are committed together or not at all.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class BulkAssignmentTest {
+
+    private static final long UNKNOWN_ID = 987654321L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private TaskStageCounterRepository taskStageCounterRepository;
+
+    @Autowired
+    private WorkloadTracker workloadTracker;
+
+    @Test
+    public void testExistingAndUnknownCombinationsAreReported() throws Exception {
+        Task first = createTask();
+        Task second = createTask();
+        User annotator1 = user("annotator1");
+        User annotator2 = user("annotator2");
+        JsonNode single = call(post("/api/tasks/" + first.getId() + "/assign").content(json(Map.of(
+            "userIds", List.of(annotator1.getId()), "assignmentType", "ANNOTATION"))), "admin");
+        assertEquals(1, single.path("assignments").size(), single.toString());
+        int open1 = openAnnotations(annotator1);
+        int open2 = openAnnotations(annotator2);
+
+        // Repeated ids count once
+        Map<String, Object> request = Map.of(
+            "taskIds", List.of(first.getId(), second.getId(), second.getId(), UNKNOWN_ID),
+            "userIds", List.of(annotator1.getId(), annotator2.getId(), UNKNOWN_ID),
+            "assignmentType", "ANNOTATION");
+        JsonNode response = call(post("/api/tasks/assignments:bulk").content(json(request)), "admin");
+        assertEquals(3, response.path("successCount").asInt(), response.toString());
+        JsonNode outcomes = response.path("outcomeCounts");
+        assertEquals(3, outcomes.path("CREATED").asInt(), outcomes.toString());
+        assertEquals(1, outcomes.path("ALREADY_ASSIGNED").asInt(), outcomes.toString());
+        assertEquals(2, outcomes.path("USER_NOT_FOUND").asInt(), outcomes.toString());
+        assertEquals(3, outcomes.path("TASK_NOT_FOUND").asInt(), outcomes.toString());
+        assertEquals(9, response.path("results").size());
+        for (JsonNode item : response.path("results")) {
+            assertEquals("CREATED".equals(item.path("outcome").asText()), item.has("assignmentId"), item.toString());
+        }
+
+        assertAssignees(first, annotator1, annotator2);
+        assertAssignees(second, annotator1, annotator2);
+        assertCounter(first, 2);
+        assertCounter(second, 2);
+        assertEquals(Task.TaskStatus.ASSIGNED, status(second));
+        assertEquals(open1 + 1, openAnnotations(annotator1));
+        assertEquals(open2 + 2, openAnnotations(annotator2));
+
+        // The same request again finds everything assigned
+        JsonNode repeated = call(post("/api/tasks/assignments:bulk").content(json(request)), "admin");
+        assertEquals(0, repeated.path("successCount").asInt(), repeated.toString());
+        assertEquals(4, repeated.path("outcomeCounts").path("ALREADY_ASSIGNED").asInt(), repeated.toString());
+        assertCounter(first, 2);
+        assertCounter(second, 2);
+        assertEquals(open1 + 1, openAnnotations(annotator1));
+        assertEquals(open2 + 2, openAnnotations(annotator2));
+    }
+
+    @Test
+    public void testConflictingInsertRollsBackTheWholeRequest() throws Exception {
+        Task first = createTask();
+        Task second = createTask();
+        User annotator3 = user("annotator3");
+        int open = openAnnotations(annotator3);
+
+        // Another transaction inserts one of the combinations after the request's check against existing assignments
+        CountDownLatch inserted = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        JsonNode response;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            Future<?> commit = executor.submit(() -> {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "insert into task_assignments (id, assignment_type, status, task_id, user_id) " +
+                        "values (?, 'ANNOTATION', 'ASSIGNED', ?, ?)")) {
+                    insert.setLong(1, UNKNOWN_ID + second.getId());
+                    insert.setLong(2, second.getId());
+                    insert.setLong(3, annotator3.getId());
+                    insert.executeUpdate();
+                    inserted.countDown();
+                    Thread.sleep(1000);
+                    connection.commit();
+                }
+                return null;
+            });
+            assertTrue(inserted.await(30, TimeUnit.SECONDS));
+            response = call(post("/api/tasks/assignments:bulk").content(json(Map.of(
+                "taskIds", List.of(first.getId(), second.getId()),
+                "userIds", List.of(annotator3.getId()),
+                "assignmentType", "ANNOTATION"))), "admin");
+            commit.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The unique key rejects the batch, and nothing of it stays behind: not even the first task's assignment
+        assertFalse(response.has("successCount"), response.toString());
+        assertTrue(taskAssignmentRepository.findByTaskIdAndAssignmentType(first.getId(),
+            TaskAssignment.AssignmentType.ANNOTATION).isEmpty());
+        assertTrue(taskStageCounterRepository.findByTaskId(first.getId()).isEmpty());
+        assertEquals(Task.TaskStatus.CREATED, status(first));
+        assertEquals(open, openAnnotations(annotator3));
+    }
+
+    private Task createTask() {
+        String filename = UUID.randomUUID() + ".pdf";
+        Document document = documentRepository.save(new Document(filename, filename, "./test-uploads/" + filename, 100L,
+            "application/pdf", null, null, user("admin")));
+        return taskRepository.save(new Task("bulk " + filename, null, document, null, null, user("admin")));
+    }
+
+    private void assertAssignees(Task task, User... users) {
+        List<Long> expected = new ArrayList<>();
+        for (User user : users) {
+            expected.add(user.getId());
+        }
+        List<Long> assignees = new ArrayList<>();
+        for (TaskAssignment assignment : taskAssignmentRepository.findByTaskIdAndAssignmentType(task.getId(),
+                TaskAssignment.AssignmentType.ANNOTATION)) {
+            assignees.add(assignment.getUser().getId());
+        }
+        assignees.sort(null);
+        expected.sort(null);
+        assertEquals(expected, assignees, "Annotators on task " + task.getId());
+    }
+
+    private void assertCounter(Task task, int assigned) {
+        Optional<TaskStageCounter> counter = taskStageCounterRepository.findByTaskIdAndAssignmentType(task.getId(),
+            TaskAssignment.AssignmentType.ANNOTATION);
+        assertTrue(counter.isPresent(), "Stage counter of task " + task.getId());
+        assertEquals(assigned, counter.get().getAssignedCount());
+        assertEquals(0, counter.get().getCompletedCount());
+    }
+
+    private int openAnnotations(User user) {
+        return workloadTracker.getOpenAssignments(user.getId(), TaskAssignment.AssignmentType.ANNOTATION);
+    }
+
+    private Task.TaskStatus status(Task task) {
+        return taskRepository.findById(task.getId()).orElseThrow().getStatus();
+    }
+
+    private User user(String username) {
+        return userRepository.findByUsername(username).orElseThrow();
+    }
+
+    private JsonNode call(MockHttpServletRequestBuilder request, String username) throws Exception {
+        String body = mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + jwtUtils.generateTokenFromUsername(username))
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+}
@@ -0,0 +1,135 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.*;
+import com.annotationplatform.repository.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures rows/sec of the bulk insert paths (document ingest, batch task creation,
+ * task assignment and score history) and checks that inserts are sent as JDBC batches.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "spring.sql.init.mode=never",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "logging.level.com.annotationplatform=INFO"
+})
+public class BulkInsertBenchmarkTest {
+
+    private static final int ROWS = 1000;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private ScoreHistoryRepository scoreHistoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testBulkInsertThroughput() {
+        User annotator = userRepository.findByUsername("annotator1").orElseThrow();
+        User reviewer = userRepository.findByUsername("reviewer1").orElseThrow();
+
+        List<Document> documents = measure("documents", () -> {
+            List<Document> batch = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                batch.add(new Document("bench_" + i + ".pdf", "bench_" + i + ".pdf", "./uploads/bench_" + i + ".pdf",
+                    1024L, "application/pdf", "checksum-" + i, null, annotator));
+            }
+            return documentRepository.saveAll(batch);
+        });
+
+        List<Task> tasks = measure("tasks", () -> {
+            List<Task> batch = new ArrayList<>();
+            for (Document document : documents) {
+                Task task = new Task();
+                task.setTitle("Benchmark " + document.getFilename());
+                task.setDocument(document);
+                task.setCreatedBy(annotator);
+                batch.add(task);
+            }
+            return taskRepository.saveAll(batch);
+        });
+
+        List<TaskAssignment> assignments = measure("task_assignments", () -> {
+            List<TaskAssignment> batch = new ArrayList<>();
+            for (Task task : tasks) {
+                batch.add(newAssignment(task, annotator, TaskAssignment.AssignmentType.ANNOTATION));
+                batch.add(newAssignment(task, reviewer, TaskAssignment.AssignmentType.REVIEW));
+            }
+            return taskAssignmentRepository.saveAll(batch);
+        });
+
+        List<ScoreHistory> histories = measure("score_history", () -> {
+            List<ScoreHistory> batch = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                ScoreHistory history = new ScoreHistory(annotator, 10, i * 10, (i + 1) * 10,
+                    ScoreHistory.ScoreType.TASK_COMPLETION, "benchmark");
+                history.setTask(tasks.get(i));
+                batch.add(history);
+            }
+            return scoreHistoryRepository.saveAll(batch);
+        });
+
+        assertEquals(ROWS, documents.size());
+        assertEquals(ROWS, tasks.size());
+        assertEquals(ROWS * 2, assignments.size());
+        assertEquals(ROWS, histories.size());
+    }
+
+    private TaskAssignment newAssignment(Task task, User user, TaskAssignment.AssignmentType type) {
+        TaskAssignment assignment = new TaskAssignment();
+        assignment.setTask(task);
+        assignment.setUser(user);
+        assignment.setAssignmentType(type);
+        return assignment;
+    }
+
+    private <T> List<T> measure(String name, Supplier<List<T>> insert) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        long start = System.nanoTime();
+        List<T> saved = transactionTemplate.execute(status -> insert.get());
+        long elapsedNanos = System.nanoTime() - start;
+
+        long statements = statistics.getPrepareStatementCount();
+        double rowsPerSecond = saved.size() / (elapsedNanos / 1_000_000_000.0);
+        System.out.printf("Bulk insert %-16s rows=%d statements=%d time=%dms rows/sec=%.0f%n",
+            name, saved.size(), statements, elapsedNanos / 1_000_000, rowsPerSecond);
+
+        // IDENTITY keys would need one INSERT per row; pooled IDs let Hibernate batch them
+        assertTrue(statements < saved.size() / 10,
+            name + " inserts were not batched: " + statements + " statements for " + saved.size() + " rows");
+        return saved;
+    }
+}
@@ -0,0 +1,163 @@
+package com.annotationplatform;
+
+import com.annotationplatform.service.CategoryTreeService;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Category tree: built from one flat query, served from a versioned snapshot until a category changes,
+ * and revalidated by clients through the ETag.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(SqlStatementCounter.Config.class)
+public class CategoryTreeTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private CategoryTreeService categoryTreeService;
+
+    private String token;
+
+    @BeforeEach
+    public void setUp() {
+        token = jwtUtils.generateTokenFromUsername("admin");
+    }
+
+    @Test
+    public void testTreeBuiltWithOneQueryAndCached() throws Exception {
+        long root = createCategory(null);
+        long child = createCategory(root);
+        createCategory(child);
+        createCategory(root);
+
+        categoryTreeService.invalidate();
+        SqlStatementCounter.reset();
+        categoryTreeService.getTree();
+        SqlStatementCounter.assertSelectCount(1);
+
+        SqlStatementCounter.reset();
+        categoryTreeService.getTree();
+        SqlStatementCounter.assertSelectCount(0);
+    }
+
+    @Test
+    public void testTreeShape() throws Exception {
+        long root = createCategory(null);
+        long first = createCategory(root);
+        long grandchild = createCategory(first);
+        long second = createCategory(root);
+
+        JsonNode node = findRoot(get("/api/categories"), root);
+        assertFalse(node.has("parentId"));
+        JsonNode children = node.path("children");
+        assertEquals(List.of(first, second), ids(children));
+        assertEquals(root, children.get(0).path("parentId").asLong());
+        assertEquals(List.of(grandchild), ids(children.get(0).path("children")));
+        assertEquals(0, children.get(0).path("children").get(0).path("children").size());
+        assertEquals(0, children.get(1).path("children").size());
+    }
+
+    @Test
+    public void testETagRevalidation() throws Exception {
+        long root = createCategory(null);
+        long child = createCategory(root);
+
+        MockHttpServletResponse first = perform(get("/api/categories"));
+        String eTag = first.getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+        // Revalidate on every use, but the response may be stored (no-store would stop clients sending If-None-Match)
+        assertFalse(first.getHeader(HttpHeaders.CACHE_CONTROL).contains("no-store"), first.getHeader(HttpHeaders.CACHE_CONTROL));
+        long version = categoryTreeService.getTree().getVersion();
+
+        MockHttpServletResponse unchanged = perform(get("/api/categories").header(HttpHeaders.IF_NONE_MATCH, eTag));
+        assertEquals(304, unchanged.getStatus());
+        assertEquals("", unchanged.getContentAsString());
+
+        String name = "renamed-" + UUID.randomUUID();
+        perform(put("/api/categories/" + child).content(json(Map.of("name", name))));
+        assertTrue(categoryTreeService.getTree().getVersion() > version, "Update must bump the version");
+
+        MockHttpServletResponse changed = perform(get("/api/categories").header(HttpHeaders.IF_NONE_MATCH, eTag));
+        assertEquals(200, changed.getStatus());
+        assertNotEquals(eTag, changed.getHeader(HttpHeaders.ETAG));
+        JsonNode node = findRoot(objectMapper.readTree(changed.getContentAsString()), root);
+        assertEquals(name, node.path("children").get(0).path("name").asText());
+
+        perform(delete("/api/categories/" + child));
+        assertEquals(0, findRoot(get("/api/categories"), root).path("children").size());
+    }
+
+    private long createCategory(Long parentId) throws Exception {
+        Map<String, Object> request = new HashMap<>();
+        request.put("name", "category-" + UUID.randomUUID());
+        request.put("parentId", parentId);
+        MockHttpServletResponse response = perform(post("/api/categories").content(json(request)));
+        return objectMapper.readTree(response.getContentAsString()).path("category").path("id").asLong();
+    }
+
+    private JsonNode findRoot(MockHttpServletRequestBuilder request, long id) throws Exception {
+        return findRoot(objectMapper.readTree(perform(request).getContentAsString()), id);
+    }
+
+    private JsonNode findRoot(JsonNode body, long id) {
+        for (JsonNode category : body.path("categories")) {
+            if (category.path("id").asLong() == id) {
+                return category;
+            }
+        }
+        fail("Category " + id + " missing from the tree");
+        return null;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse();
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private static List<Long> ids(JsonNode nodes) {
+        List<Long> ids = new ArrayList<>();
+        nodes.forEach(node -> ids.add(node.path("id").asLong()));
+        return ids;
+    }
+}
@@ -0,0 +1,74 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Annotation;
+import com.annotationplatform.entity.QualityCheck;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.service.AnnotationDiffService;
+import com.annotationplatform.service.ConsensusService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsensusServiceTest {
+
+    private ConsensusService consensusService;
+
+    @BeforeEach
+    public void setUp() {
+        AnnotationDiffService diffService = new AnnotationDiffService();
+        ReflectionTestUtils.setField(diffService, "ignoreTextCase", true);
+        consensusService = new ConsensusService();
+        ReflectionTestUtils.setField(consensusService, "annotationDiffService", diffService);
+        ReflectionTestUtils.setField(consensusService, "weighted", false);
+        ReflectionTestUtils.setField(consensusService, "minAgreement", 0.5);
+        ReflectionTestUtils.setField(consensusService, "minWeight", 0.1);
+    }
+
+    @Test
+    public void testMajorityFieldsAcceptedAndSplitFieldsDisputed() {
+        List<Annotation> annotations = List.of(
+            annotation(1L, "{\"name\": \"Acme\", \"amount\": 100, \"city\": \"Beijing\"}"),
+            annotation(2L, "{\"name\": \"Acme\", \"amount\": 100, \"city\": \"Shanghai\"}"),
+            annotation(3L, "{\"name\": \"Other\", \"amount\": 100.0, \"city\": \"Shenzhen\"}"));
+
+        ConsensusService.ConsensusResult result = consensusService.computeConsensus(new Task(), annotations);
+
+        assertEquals(3, result.getComparedFields());
+        assertEquals("Acme", result.getAcceptedValues().get("name").asText());
+        assertEquals(1.0, result.getAgreement().get("amount"), 1e-9);
+        assertEquals(1, result.getDisputed().size());
+        assertEquals("city", result.getDisputed().get(0).getFieldName());
+        assertEquals(3, result.getDisputed().get(0).getVotes().size());
+        assertEquals(QualityCheck.ComparisonResult.PARTIAL_MATCH, result.getComparisonResult());
+    }
+
+    @Test
+    public void testUnanimousAnnotationsMatch() {
+        List<Annotation> annotations = List.of(
+            annotation(1L, "{\"name\": \"Acme\"}"),
+            annotation(2L, "{\"name\": \"Acme\"}"));
+
+        ConsensusService.ConsensusResult result = consensusService.computeConsensus(new Task(), annotations);
+
+        assertFalse(result.hasDisputes());
+        assertEquals(QualityCheck.ComparisonResult.MATCH, result.getComparisonResult());
+    }
+
+    private Annotation annotation(Long userId, String data) {
+        User user = new User();
+        user.setId(userId);
+        TaskAssignment assignment = new TaskAssignment();
+        assignment.setUser(user);
+        Annotation annotation = new Annotation();
+        annotation.setId(userId * 10);
+        annotation.setTaskAssignment(assignment);
+        annotation.setAnnotationData(data);
+        return annotation;
+    }
+}
@@ -0,0 +1,275 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.BatchDocument;
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.DocumentType;
+import com.annotationplatform.entity.OutboxEvent;
+import com.annotationplatform.entity.QualityCheck;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.BatchDocumentRepository;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.DocumentTypeRepository;
+import com.annotationplatform.repository.OutboxEventRepository;
+import com.annotationplatform.repository.QualityCheckRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.BatchDocumentService;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Tasks annotated by several annotators: nothing is treated as finished until the number of annotators required by
+ * the document type have submitted.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+// Own application context (and database), so queue claims only see the tasks created here
+@TestPropertySource(properties = "work-queue.lease-minutes=31")
+public class MultiAnnotatorWorkflowTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentTypeRepository documentTypeRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private BatchDocumentRepository batchDocumentRepository;
+
+    @Autowired
+    private BatchDocumentService batchDocumentService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private QualityCheckRepository qualityCheckRepository;
+
+    @Test
+    public void testBatchDocumentCompletedOnlyAfterEveryAnnotatorSubmitted() throws Exception {
+        Task task = createTask(null, true);
+        long documentId = task.getDocument().getId();
+        User annotator1 = user("annotator1");
+        User annotator2 = user("annotator2");
+        User annotator3 = user("annotator3");
+        // The admin put annotator3 in charge of the document before anyone annotated it
+        batchDocumentService.updateBatchDocument(task, documentId, null, annotator3, null);
+        Map<Long, Long> assignments = assign(task, annotator1, annotator2);
+
+        submit(task, assignments.get(annotator1.getId()), "annotator1");
+        assertBatchDocument(task, BatchDocument.BatchDocumentStatus.IN_PROGRESS, 50, annotator3);
+
+        submit(task, assignments.get(annotator2.getId()), "annotator2");
+        assertBatchDocument(task, BatchDocument.BatchDocumentStatus.COMPLETED, 100, annotator3);
+    }
+
+    @Test
+    public void testQueueClaimsUntilRequiredAnnotatorsSubmitted() throws Exception {
+        Task task = createTask(null, false);
+
+        long first = claim(task, "annotator1");
+        submit(task, first, "annotator1");
+        awaitOutbox(task);
+        // One of two annotators has submitted: the task must stay claimable
+        assertEquals(Task.TaskStatus.ANNOTATING, status(task));
+        assertEquals(0, qualityCheckRepository.countByTaskId(task.getId()));
+
+        long second = claim(task, "annotator2");
+        submit(task, second, "annotator2");
+        awaitOutbox(task);
+        assertEquals(Task.TaskStatus.ANNOTATED, status(task));
+        assertEquals(1, qualityCheckRepository.countByTaskId(task.getId()));
+    }
+
+    @Test
+    public void testQualityCheckCreatedAfterThirdSubmission() throws Exception {
+        Task task = createTask(3, false);
+        Map<Long, Long> assignments = assign(task, user("annotator1"), user("annotator2"), user("annotator3"));
+
+        for (String username : List.of("annotator1", "annotator2")) {
+            submit(task, assignments.get(user(username).getId()), username);
+            awaitOutbox(task);
+            assertEquals(Task.TaskStatus.ANNOTATING, status(task));
+            assertEquals(0, qualityCheckRepository.countByTaskId(task.getId()), "no quality check after " + username);
+        }
+
+        submit(task, assignments.get(user("annotator3").getId()), "annotator3");
+        awaitOutbox(task);
+        assertEquals(Task.TaskStatus.ANNOTATED, status(task));
+        List<QualityCheck> qualityChecks = qualityCheckRepository.findByTaskId(task.getId());
+        assertEquals(1, qualityChecks.size());
+        assertEquals(3, qualityChecks.get(0).getAnnotatorCount());
+    }
+
+    @Test
+    public void testQueueHonorsConfiguredRequiredAnnotators() throws Exception {
+        Task task = createTask(3, false);
+
+        claim(task, "annotator1");
+        claim(task, "annotator2");
+        // Two claims would fully staff a default task; the document type asks for a third annotator
+        claim(task, "annotator3");
+        JsonNode response = call(post("/api/work/next").param("type", "ANNOTATION"), "expert1");
+        assertFalse(response.path("claimed").asBoolean(), response.toString());
+        assertEquals(Task.TaskStatus.ANNOTATING, status(task));
+    }
+
+    @Test
+    public void testRequiredAnnotatorsBelowMinimumRejected() throws Exception {
+        JsonNode response = call(post("/api/document-types").content(json(Map.of(
+            "name", "type-" + UUID.randomUUID(), "requiredAnnotators", 1))), "admin");
+        assertFalse(response.has("documentType"), response.toString());
+
+        DocumentType documentType = new DocumentType();
+        documentType.setName("type-" + UUID.randomUUID());
+        documentType.setRequiredAnnotators(DocumentType.MIN_REQUIRED_ANNOTATORS - 1);
+        assertThrows(ConstraintViolationException.class, () -> documentTypeRepository.save(documentType));
+    }
+
+    private Task createTask(Integer requiredAnnotators, boolean batch) {
+        DocumentType documentType = null;
+        if (requiredAnnotators != null) {
+            documentType = new DocumentType();
+            documentType.setName("type-" + UUID.randomUUID());
+            documentType.setRequiredAnnotators(requiredAnnotators);
+            documentType = documentTypeRepository.save(documentType);
+        }
+
+        String filename = UUID.randomUUID() + ".pdf";
+        Document document = new Document(filename, filename, "./test-uploads/" + filename, 100L,
+            "application/pdf", null, null, user("admin"));
+        document.setDocumentType(documentType);
+        document = documentRepository.save(document);
+
+        Task task = new Task("multi-annotator " + filename, null, document, null, null, user("admin"));
+        if (batch) {
+            task.setBatchId("BATCH-" + UUID.randomUUID());
+        }
+        task = taskRepository.save(task);
+        if (batch) {
+            batchDocumentService.createBatchDocuments(task, List.of(document));
+        }
+        return task;
+    }
+
+    // Admin assignment, returns assignment ID by user ID
+    private Map<Long, Long> assign(Task task, User... users) throws Exception {
+        List<Long> userIds = new ArrayList<>();
+        for (User user : users) {
+            userIds.add(user.getId());
+        }
+        JsonNode response = call(post("/api/tasks/" + task.getId() + "/assign")
+            .content(json(Map.of("userIds", userIds, "assignmentType", "ANNOTATION"))), "admin");
+        Map<Long, Long> assignments = new HashMap<>();
+        for (JsonNode assignment : response.path("assignments")) {
+            assignments.put(assignment.path("user").path("id").asLong(), assignment.path("id").asLong());
+        }
+        assertEquals(users.length, assignments.size(), response.toString());
+        return assignments;
+    }
+
+    // Pull-queue claim, returns the assignment ID
+    private long claim(Task task, String username) throws Exception {
+        JsonNode response = call(post("/api/work/next").param("type", "ANNOTATION"), username);
+        assertTrue(response.path("claimed").asBoolean(), response.toString());
+        assertEquals(task.getId().longValue(), response.path("assignment").path("task").path("id").asLong());
+        return response.path("assignment").path("id").asLong();
+    }
+
+    private void submit(Task task, Long assignmentId, String username) throws Exception {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("taskId", task.getId());
+        request.put("taskAssignmentId", assignmentId);
+        request.put("documentId", task.getDocument().getId());
+        request.put("annotationData", Map.of("title", "same"));
+        JsonNode response = call(post("/api/annotations").content(json(request)), username);
+        assertTrue(response.has("annotation"), response.toString());
+    }
+
+    private void assertBatchDocument(Task task, BatchDocument.BatchDocumentStatus status, int progress, User assignee) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            BatchDocument batchDocument = batchDocumentRepository
+                .findByTaskIdAndDocumentId(task.getId(), task.getDocument().getId()).orElseThrow();
+            assertEquals(status, batchDocument.getStatus());
+            assertEquals(progress, batchDocument.getProgress());
+            assertEquals(assignee.getId(), batchDocument.getAssignee().getId());
+        });
+    }
+
+    // Quality checks and workflow advancement run in the outbox after the request returns
+    private void awaitOutbox(Task task) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (hasUnprocessedEvents(task) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(hasUnprocessedEvents(task), "outbox events for task " + task.getId() + " not processed");
+    }
+
+    private boolean hasUnprocessedEvents(Task task) {
+        return outboxEventRepository.findAll().stream()
+            .anyMatch(event -> task.getId().equals(event.getTaskId()) && event.getStatus() != OutboxEvent.OutboxStatus.COMPLETED);
+    }
+
+    private Task.TaskStatus status(Task task) {
+        return taskRepository.findById(task.getId()).orElseThrow().getStatus();
+    }
+
+    private User user(String username) {
+        return userRepository.findByUsername(username).orElseThrow();
+    }
+
+    private JsonNode call(MockHttpServletRequestBuilder request, String username) throws Exception {
+        String body = mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + jwtUtils.generateTokenFromUsername(username))
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+}
@@ -0,0 +1,101 @@
+package com.annotationplatform;
+
+import org.junit.jupiter.api.Assumptions;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An empty database of its own on a real MySQL server, for what H2 cannot stand in for (migration scripts, row locks).
+ *
+ * The server is the one given by {@code -Dmysql.url=jdbc:mysql://host:3306} ({@code mysql.username} defaults to root,
+ * {@code mysql.password} to empty); without it a MySQL 8 container is started when Docker is available, and otherwise
+ * the calling test is skipped. {@link #close()} drops the database.
+ */
+public final class MySqlTestDatabase implements AutoCloseable {
+
+    private static final String IMAGE = "mysql:8.0.36";
+
+    private static MySQLContainer<?> container;
+
+    private final String serverUrl;
+    private final String username;
+    private final String password;
+    private final String name;
+
+    private MySqlTestDatabase(String serverUrl, String username, String password) {
+        this.serverUrl = serverUrl;
+        this.username = username;
+        this.password = password;
+        this.name = "test_" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        server().execute("create database " + name + " character set utf8mb4 collate utf8mb4_unicode_ci");
+    }
+
+    public static MySqlTestDatabase create() {
+        String url = System.getProperty("mysql.url");
+        if (url != null && !url.isEmpty()) {
+            return new MySqlTestDatabase(url.replaceAll("/+$", ""), System.getProperty("mysql.username", "root"),
+                System.getProperty("mysql.password", ""));
+        }
+        Assumptions.assumeTrue(DockerClientFactory.instance().isDockerAvailable(),
+            "Needs a MySQL server: -Dmysql.url=jdbc:mysql://host:port, or Docker for a container");
+        MySQLContainer<?> mysql = container();
+        return new MySqlTestDatabase("jdbc:mysql://" + mysql.getHost() + ":" + mysql.getMappedPort(MySQLContainer.MYSQL_PORT),
+            mysql.getUsername(), mysql.getPassword());
+    }
+
+    // One container per test run, stopped when the JVM exits
+    private static synchronized MySQLContainer<?> container() {
+        if (container == null) {
+            container = new MySQLContainer<>(DockerImageName.parse(IMAGE))
+                .withUsername("root")
+                .withCommand("--character-set-server=utf8mb4", "--collation-server=utf8mb4_unicode_ci");
+            container.start();
+        }
+        return container;
+    }
+
+    public String getUrl() {
+        return serverUrl + "/" + name + "?useSSL=false&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
+    }
+
+    // Settings that point an application context at this database
+    public List<String> springProperties() {
+        return List.of(
+            "spring.datasource.url=" + getUrl(),
+            "spring.datasource.username=" + username,
+            "spring.datasource.password=" + password,
+            "spring.datasource.driver-class-name=com.mysql.cj.jdbc.Driver",
+            "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQL8Dialect");
+    }
+
+    public DataSource dataSource() {
+        return new DriverManagerDataSource(getUrl(), username, password);
+    }
+
+    public JdbcTemplate jdbcTemplate() {
+        return new JdbcTemplate(dataSource());
+    }
+
+    public void runScript(String classpathLocation) {
+        new ResourceDatabasePopulator(new ClassPathResource(classpathLocation)).execute(dataSource());
+    }
+
+    @Override
+    public void close() {
+        server().execute("drop database if exists " + name);
+    }
+
+    private JdbcTemplate server() {
+        return new JdbcTemplate(new DriverManagerDataSource(serverUrl + "/?useSSL=false&allowPublicKeyRetrieval=true",
+            username, password));
+    }
+}
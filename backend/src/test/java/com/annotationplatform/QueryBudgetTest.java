@@ -0,0 +1,435 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.*;
+import com.annotationplatform.repository.*;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Query budgets: the maximum number of SQL statements each controller endpoint may execute for one request
+ * against a small fixture (3 batch tasks of 2 documents, annotated by 2 annotators, quality checks created).
+ * Budgets are the measured baselines, so an N+1 regression fails here with the offending SQL in the message.
+ * Every GET endpoint must have a budget; the writes used to build the fixture are budgeted as well.
+ *
+ * After an intentional change (or an optimization) re-measure with -DqueryBudgets.print=true and update the table.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "spring.sql.init.mode=never",
+    "logging.level.com.annotationplatform=INFO"
+})
+@Import(SqlStatementCounter.Config.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class QueryBudgetTest {
+
+    private static final int BATCHES = 3;
+    private static final int DOCUMENTS_PER_BATCH = 2;
+    private static final boolean PRINT = Boolean.getBoolean("queryBudgets.print");
+
+    private static final Map<String, Budget> BUDGETS = new LinkedHashMap<>();
+
+    static {
+        // Reads: one request with the JWT principal already cached; the user is admin unless given
+        read("/", 0);
+        read("/annotations/outbox/stats", 1);
+        read("/annotations/outbox/failed", 1);
+        read("/annotations/task/{taskId}", 4);
+        read("/annotations/{id}", 2);
+        read("/annotations/my-annotations", "annotator1", 13);   // N+1: 3 per assignment
+        read("/annotations/document/{documentId}/history", 0);
+        read("/annotations/document/{documentId}/field/{fieldName}/history", 0);
+        read("/annotations/document/{documentId}/archive", 0);
+        read("/annotations/document/{documentId}/conflicts", 0);
+        read("/categories", 0);                                  // versioned tree snapshot
+        read("/categories/{id}/stats", 3);
+        read("/diagnostics/recordings", 0);
+        read("/document-types", 2);
+        read("/document-types/{id}", 2);
+        read("/document-types/{id}/form-configs", 2);
+        read("/documents", 3);                                   // N+1: grows with the page
+        read("/documents/{id}", 3);
+        read("/documents/folders", 2);
+        read("/documents/{id}/download", 1);
+        read("/documents/{id}/preview", 1);
+        read("/folders", 2);
+        read("/form-configs", 1);
+        read("/form-configs/{id}", 3);
+        read("/form-configs/{id}/fields", 2);
+        read("/quality-checks", 10);                             // N+1: 2 per quality check
+        read("/quality-checks/{id}", 9);
+        read("/quality-checks/my-review-tasks", "reviewer1", 1);
+        read("/quality-checks/statistics", 6);
+        read("/quality-checks/agreement", 1);
+        read("/scores/ranking", 0);
+        read("/scores/stats", "annotator1", 4);
+        read("/scores/history", "annotator1", 1);
+        read("/tasks", 13);                                      // N+1: 2 per task
+        read("/tasks/batch/{batchId}", 5);
+        read("/tasks/batch/{batchId}/documents", 5);
+        read("/tasks/purge/{jobId}", 0);
+        read("/tasks/{id}", 12);
+        read("/tasks/my-tasks", "annotator1", 20);               // N+1: 4 per task
+        read("/tasks/{id}/workflow-status", 2);
+        read("/tasks/user-performance", 14);
+        read("/tasks/statistics", 26);
+        read("/test/all", 0);
+        read("/test/user", 0);
+        read("/test/annotator", "annotator1", 0);
+        read("/test/reviewer", "reviewer1", 0);
+        read("/test/admin", 0);
+        read("/users", 1);
+        read("/users/{id}", 1);
+        read("/work/schedule/preview", 1);
+
+        // Writes made while building the fixture (each call must stay within the budget)
+        write("POST /auth/login", 1, 1);
+        write("POST /categories", 2, 3);
+        write("POST /folders", 2, 3);
+        write("POST /document-types", 1, 2);
+        write("POST /form-configs", 2, 3);
+        write("POST /form-configs/{id}/fields", 2, 3);
+        write("POST /documents/upload", 4, 6);
+        write("POST /tasks/batch", 10, 14);
+        write("POST /tasks/{taskId}/assign", 10, 14);
+        write("POST /annotations/draft", 10, 13);
+        write("POST /annotations", 10, 16);
+        write("POST /quality-checks/{id}/resolve", 10, 14);
+        // Reads with a request body, measured after the fixture is built
+        write("POST /tasks/workflow-status:batch", 2, 2);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    @Qualifier("requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping handlerMapping;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentTypeRepository documentTypeRepository;
+
+    @Autowired
+    private FormConfigRepository formConfigRepository;
+
+    @Autowired
+    private AnnotationRepository annotationRepository;
+
+    @Autowired
+    private QualityCheckRepository qualityCheckRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // {id} by resource path, other path variables by name
+    private final Map<String, String> resourceIds = new HashMap<>();
+    private final Map<String, String> pathVariables = new HashMap<>();
+    // One token per user, as a client would reuse it (the principal cache is keyed by token)
+    private final Map<String, String> tokens = new HashMap<>();
+    private final Map<String, long[]> measured = new TreeMap<>();
+    private final List<Long> documentIds = new ArrayList<>();
+    private final List<String> writeFailures = new ArrayList<>();
+    private final List<String> readFailures = new ArrayList<>();
+
+    @BeforeAll
+    public void createFixture() throws Exception {
+        User annotator1 = userRepository.findByUsername("annotator1").orElseThrow();
+        User annotator2 = userRepository.findByUsername("annotator2").orElseThrow();
+
+        perform("POST /auth/login", post("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"username\":\"admin\",\"password\":\"password\"}"), null);
+
+        performJson("POST /categories", "/api/categories", Map.of("name", "budget-category"));
+        Category category = categoryRepository.findAll().stream()
+            .filter(c -> "budget-category".equals(c.getName())).findFirst().orElseThrow();
+        performJson("POST /folders", "/api/folders", Map.of("name", "budget-folder"));
+        performJson("POST /document-types", "/api/document-types", Map.of("name", "budget-type"));
+        DocumentType documentType = documentTypeRepository.findAll().stream()
+            .filter(t -> "budget-type".equals(t.getName())).findFirst().orElseThrow();
+        performJson("POST /form-configs", "/api/form-configs",
+            Map.of("name", "budget-form", "categoryId", category.getId()));
+        FormConfig formConfig = formConfigRepository.findAll().stream()
+            .filter(f -> "budget-form".equals(f.getName())).findFirst().orElseThrow();
+        for (int i = 0; i < 3; i++) {
+            performJson("POST /form-configs/{id}/fields", "/api/form-configs/" + formConfig.getId() + "/fields",
+                Map.of("fieldName", "field" + i, "fieldType", "text", "label", "Field " + i, "required", false, "sortOrder", i));
+        }
+
+        Long firstTaskId = null;
+        String firstBatchId = null;
+        List<Long> taskIds = new ArrayList<>();
+        for (int b = 0; b < BATCHES; b++) {
+            List<Long> batchDocumentIds = new ArrayList<>();
+            for (int d = 0; d < DOCUMENTS_PER_BATCH; d++) {
+                byte[] content = ("%PDF-1.4\n% query budget fixture " + System.nanoTime() + " " + b + "-" + d + "\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+                MockMultipartFile file = new MockMultipartFile("file", "budget-" + b + "-" + d + ".pdf", "application/pdf", content);
+                JsonNode uploaded = perform("POST /documents/upload",
+                    multipart("/api/documents/upload").file(file).param("categoryId", category.getId().toString()), "admin");
+                long documentId = uploaded.path("document").path("id").asLong();
+                batchDocumentIds.add(documentId);
+                documentIds.add(documentId);
+            }
+
+            JsonNode batch = performJson("POST /tasks/batch", "/api/tasks/batch", Map.of(
+                "batchName", "budget-batch-" + b, "documentIds", batchDocumentIds,
+                "categoryId", category.getId(), "formConfigId", formConfig.getId()));
+            long taskId = batch.path("task").path("id").asLong();
+            taskIds.add(taskId);
+
+            JsonNode assigned = performJson("POST /tasks/{taskId}/assign", "/api/tasks/" + taskId + "/assign", Map.of(
+                "userIds", List.of(annotator1.getId(), annotator2.getId()), "assignmentType", "ANNOTATION"));
+            Map<Long, Long> assignmentByUser = new HashMap<>();
+            for (JsonNode assignment : assigned.path("assignments")) {
+                assignmentByUser.put(assignment.path("user").path("id").asLong(), assignment.path("id").asLong());
+            }
+
+            for (Long documentId : batchDocumentIds) {
+                for (User annotator : List.of(annotator1, annotator2)) {
+                    Map<String, Object> annotation = new LinkedHashMap<>();
+                    annotation.put("taskId", taskId);
+                    annotation.put("taskAssignmentId", assignmentByUser.get(annotator.getId()));
+                    annotation.put("documentId", documentId);
+                    annotation.put("annotationData", Map.of("field0", annotator == annotator1 ? "a" : "b", "field1", "same", "field2", "same"));
+                    String body = objectMapper.writeValueAsString(annotation);
+                    perform("POST /annotations/draft", post("/api/annotations/draft")
+                        .contentType(MediaType.APPLICATION_JSON).content(body), annotator.getUsername());
+                    perform("POST /annotations", post("/api/annotations")
+                        .contentType(MediaType.APPLICATION_JSON).content(body), annotator.getUsername());
+                    // Let the outbox advance the workflow before the next submission (a re-submission reopens the assignment)
+                    awaitOutbox();
+                }
+            }
+            if (firstTaskId == null) {
+                firstTaskId = taskId;
+                firstBatchId = batch.path("batchId").asText();
+            }
+        }
+
+        // Quality checks are created by the submission outbox in the background
+        List<QualityCheck> qualityChecks = qualityCheckRepository.findAll();
+        assertEquals(BATCHES, qualityChecks.size(), "quality checks created for every batch task");
+        perform("POST /quality-checks/{id}/resolve", post("/api/quality-checks/" + qualityChecks.get(0).getId() + "/resolve")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"selectedAnnotation\":\"A\",\"resolutionNotes\":\"budget\"}"), "reviewer1");
+
+        // One task query and one GROUP BY over the assignments, however many tasks are asked for
+        taskIds.add(Long.MAX_VALUE);
+        performJson("POST /tasks/workflow-status:batch", "/api/tasks/workflow-status:batch", Map.of("taskIds", taskIds));
+
+        Annotation annotation = annotationRepository.findAll().get(0);
+        resourceIds.put("/annotations", annotation.getId().toString());
+        resourceIds.put("/categories", category.getId().toString());
+        resourceIds.put("/document-types", documentType.getId().toString());
+        resourceIds.put("/documents", documentIds.get(0).toString());
+        resourceIds.put("/form-configs", formConfig.getId().toString());
+        resourceIds.put("/quality-checks", qualityChecks.get(qualityChecks.size() - 1).getId().toString());
+        resourceIds.put("/tasks", firstTaskId.toString());
+        resourceIds.put("/users", annotator1.getId().toString());
+        pathVariables.put("{taskId}", firstTaskId.toString());
+        pathVariables.put("{documentId}", documentIds.get(0).toString());
+        pathVariables.put("{batchId}", firstBatchId);
+        pathVariables.put("{fieldName}", "field0");
+        pathVariables.put("{jobId}", "unknown");
+    }
+
+    private void awaitOutbox() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (hasUnprocessedOutboxEvents() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(hasUnprocessedOutboxEvents(), "outbox events not processed");
+    }
+
+    private boolean hasUnprocessedOutboxEvents() {
+        return outboxEventRepository.findAll().stream()
+            .anyMatch(event -> event.getStatus() != OutboxEvent.OutboxStatus.COMPLETED);
+    }
+
+    @AfterAll
+    public void removeUploadedFiles() throws Exception {
+        for (Document document : documentRepository.findAllById(documentIds)) {
+            Files.deleteIfExists(Paths.get(document.getFilePath()));
+            Files.deleteIfExists(Paths.get("./uploads/documents", document.getId() + "_archive.json"));
+        }
+    }
+
+    @Test
+    public void testEveryGetEndpointHasABudget() {
+        Set<String> endpoints = new TreeSet<>();
+        for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : handlerMapping.getHandlerMethods().entrySet()) {
+            if (!entry.getValue().getBeanType().getPackageName().startsWith("com.annotationplatform")) {
+                continue;
+            }
+            Set<RequestMethod> methods = entry.getKey().getMethodsCondition().getMethods();
+            if (methods.isEmpty() || methods.contains(RequestMethod.GET)) {
+                endpoints.addAll(entry.getKey().getPatternValues());
+            }
+        }
+        Set<String> missing = new TreeSet<>(endpoints);
+        missing.removeAll(BUDGETS.keySet());
+        assertTrue(missing.isEmpty(), "GET endpoints without a query budget: " + missing);
+
+        Set<String> stale = new TreeSet<>();
+        for (String key : BUDGETS.keySet()) {
+            if (key.startsWith("/") && !endpoints.contains(key)) {
+                stale.add(key);
+            }
+        }
+        assertTrue(stale.isEmpty(), "Query budgets for endpoints that no longer exist: " + stale);
+    }
+
+    @Test
+    public void testReadEndpointsStayWithinBudget() throws Exception {
+        for (Map.Entry<String, Budget> entry : BUDGETS.entrySet()) {
+            if (!entry.getKey().startsWith("/")) {
+                continue;
+            }
+            String uri = "/api" + resolve(entry.getKey());
+            String username = entry.getValue().username;
+            // First call warms the principal cache and lazily initialized state; the second one is measured
+            perform(entry.getKey(), get(uri), username, false);
+            perform(entry.getKey(), get(uri), username, true);
+        }
+        printMeasured();
+        assertTrue(readFailures.isEmpty(), String.join("\n\n", readFailures));
+    }
+
+    @Test
+    public void testFixtureWritesStayedWithinBudget() {
+        printMeasured();
+        assertTrue(writeFailures.isEmpty(), String.join("\n\n", writeFailures));
+    }
+
+    private void printMeasured() {
+        if (PRINT) {
+            measured.forEach((key, counts) ->
+                System.out.println("QUERY BUDGET " + key + " selects=" + counts[0] + " total=" + counts[1] + " status=" + counts[2]));
+        }
+    }
+
+    private String resolve(String pattern) {
+        String uri = pattern;
+        for (Map.Entry<String, String> resource : resourceIds.entrySet()) {
+            if (uri.startsWith(resource.getKey() + "/{id}")) {
+                uri = uri.replace("{id}", resource.getValue());
+            }
+        }
+        for (Map.Entry<String, String> variable : pathVariables.entrySet()) {
+            uri = uri.replace(variable.getKey(), variable.getValue());
+        }
+        return uri;
+    }
+
+    private JsonNode performJson(String key, String uri, Object body) throws Exception {
+        return perform(key, post(uri).contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(body)), "admin");
+    }
+
+    private JsonNode perform(String key, MockHttpServletRequestBuilder request, String username) throws Exception {
+        return perform(key, request, username, true);
+    }
+
+    private JsonNode perform(String key, MockHttpServletRequestBuilder request, String username, boolean measure)
+            throws Exception {
+        if (username != null) {
+            request.header("Authorization", "Bearer " + tokens.computeIfAbsent(username, jwtUtils::generateTokenFromUsername));
+        }
+        request.contextPath("/api");
+
+        SqlStatementCounter.reset();
+        MvcResult result = mockMvc.perform(request).andReturn();
+        long selects = SqlStatementCounter.selectCount();
+        long total = SqlStatementCounter.totalCount();
+        int status = result.getResponse().getStatus();
+
+        if (measure) {
+            List<String> failures = key.startsWith("/") ? readFailures : writeFailures;
+            measured.merge(key, new long[]{selects, total, status},
+                (a, b) -> new long[]{Math.max(a[0], b[0]), Math.max(a[1], b[1]), b[2]});
+            Budget budget = BUDGETS.get(key);
+            if (status >= 500) {
+                failures.add(key + " returned " + status + ": " + result.getResponse().getContentAsString());
+            } else if (budget == null) {
+                failures.add(key + " has no query budget");
+            } else if (selects > budget.selects || total > budget.total) {
+                failures.add(key + " executed " + selects + " SELECT / " + total + " statements (budget "
+                    + budget.selects + " / " + budget.total + "):\n" + SqlStatementCounter.describeStatements());
+            }
+        }
+
+        String body = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        if (status / 100 != 2 || !body.startsWith("{")) {
+            return objectMapper.createObjectNode();
+        }
+        return objectMapper.readTree(body);
+    }
+
+    private static void read(String pattern, long selects) {
+        read(pattern, "admin", selects);
+    }
+
+    // GET endpoints should not write; the total budget only leaves room for the reads
+    private static void read(String pattern, String username, long selects) {
+        BUDGETS.put(pattern, new Budget(username, selects, selects));
+    }
+
+    private static void write(String key, long selects, long total) {
+        BUDGETS.put(key, new Budget(null, selects, total));
+    }
+
+    private static class Budget {
+        private final String username;
+        private final long selects;
+        private final long total;
+
+        Budget(String username, long selects, long total) {
+            this.username = username;
+            this.selects = selects;
+            this.total = total;
+        }
+    }
+}
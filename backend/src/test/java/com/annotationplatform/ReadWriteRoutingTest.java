@@ -0,0 +1,188 @@
+package com.annotationplatform;
+
+import com.annotationplatform.config.ReadWriteRoutingDataSource;
+import com.annotationplatform.config.ReplicaLagMonitor;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Read/write routing against two local H2 databases. The "replica" gets the same migrations but no replication:
+ * the tests copy users and the heartbeat by hand, and one extra user that exists only on the replica shows which
+ * pool served a query.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ReadWriteRoutingTest {
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    private static final String REPLICA_ONLY_USER = "replica_only_user";
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        // The replica needs the schema before the application starts querying it
+        Flyway.configure()
+            .dataSource(REPLICA_URL, "sa", "")
+            .locations("classpath:db/migration/common", "classpath:db/migration/h2")
+            .load()
+            .migrate();
+        registry.add("replica-datasource.url", () -> REPLICA_URL);
+        // Heartbeats are driven by the tests
+        registry.add("replica-datasource.heartbeat-interval-ms", () -> "3600000");
+        registry.add("replica-datasource.max-lag-ms", () -> "5000");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private int primaryUserCount;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ReadWriteRoutingDataSource.clearPin();
+        replicaUpdate("DELETE FROM users");
+        List<Map<String, Object>> users = new JdbcTemplate(primaryDataSource).queryForList(
+            "SELECT id, username, email, password, role, score, status FROM users");
+        for (Map<String, Object> user : users) {
+            replicaUpdate("INSERT INTO users (id, username, email, password, role, score, status) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                user.get("id"), user.get("username"), user.get("email"), user.get("password"), user.get("role"),
+                user.get("score"), user.get("status"));
+        }
+        primaryUserCount = users.size();
+        replicaUpdate("INSERT INTO users (id, username, email, password, role, score, status) VALUES (?, ?, ?, 'x', 'ANNOTATOR', 0, 'ACTIVE')",
+            1_000_000L, REPLICA_ONLY_USER, REPLICA_ONLY_USER + "@example.com");
+        catchUpReplica();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadWriteRoutingDataSource.clearPin();
+    }
+
+    @Test
+    public void testReadOnlyTransactionsUseReplica() {
+        assertTrue(replicaLagMonitor.isReplicaUsable());
+
+        assertTrue(readOnly(this::usernames).contains(REPLICA_ONLY_USER));
+        assertFalse(readWrite(this::usernames).contains(REPLICA_ONLY_USER));
+    }
+
+    @Test
+    public void testReadsAfterWriteStayOnPrimary() {
+        readWrite(() -> userRepository.findByUsername("admin").orElseThrow());
+        assertFalse(readOnly(this::usernames).contains(REPLICA_ONLY_USER), "Read after write must see the primary");
+
+        // A new request starts unpinned
+        ReadWriteRoutingDataSource.clearPin();
+        assertTrue(readOnly(this::usernames).contains(REPLICA_ONLY_USER));
+    }
+
+    @Test
+    public void testLaggingReplicaFallsBackToPrimary() throws Exception {
+        replicaUpdate("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", System.currentTimeMillis() - 60_000);
+        replicaLagMonitor.heartbeat();
+
+        assertFalse(replicaLagMonitor.isReplicaUsable());
+        assertTrue(replicaLagMonitor.getLagMs() >= 60_000);
+        assertFalse(readOnly(this::usernames).contains(REPLICA_ONLY_USER));
+
+        catchUpReplica();
+        assertTrue(readOnly(this::usernames).contains(REPLICA_ONLY_USER));
+    }
+
+    @Test
+    public void testDashboardStatisticsReadFromReplica() throws Exception {
+        String token = jwtUtils.generateTokenFromUsername("admin");
+        String body = mockMvc.perform(get("/api/tasks/statistics").contextPath("/api")
+                .header("Authorization", "Bearer " + token))
+            .andReturn().getResponse().getContentAsString();
+        JsonNode statistics = objectMapper.readTree(body).path("statistics");
+
+        // The replica-only user is counted, so the dashboard did not touch the primary
+        assertEquals(primaryUserCount + 1, statistics.path("totalUsers").asInt(), body);
+    }
+
+    private List<String> usernames() {
+        return userRepository.findAll().stream().map(User::getUsername).collect(Collectors.toList());
+    }
+
+    private <T> T readOnly(Supplier<T> work) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template.execute(status -> work.get());
+    }
+
+    private <T> T readWrite(Supplier<T> work) {
+        return new TransactionTemplate(transactionManager).execute(status -> work.get());
+    }
+
+    // Writes the primary's heartbeat, copies it to the replica ("replication") and lets the monitor see it
+    private void catchUpReplica() throws Exception {
+        replicaLagMonitor.heartbeat();
+        Long beatAt = new JdbcTemplate(primaryDataSource).queryForObject(
+            "SELECT beat_at FROM replication_heartbeat WHERE id = 1", Long.class);
+        replicaUpdate("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", beatAt);
+        replicaLagMonitor.heartbeat();
+    }
+
+    private static void replicaUpdate(String sql, Object... args) throws Exception {
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.TaskStageCounterService;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Review eligibility (POST /tasks/review/eligibility and /tasks/review/batch): the single query over the selection
+ * gives every document the answer of the former per-task scan, under which a document is taken once any of its tasks
+ * has a REVIEW or EXPERT_REVIEW assignment, whatever the state of that assignment or of the annotation.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ReviewEligibilityTest {
+
+    private static final long UNKNOWN_ID = 987654321L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private TaskStageCounterService taskStageCounterService;
+
+    @Test
+    public void testEligibilityMatchesPerTaskRule() throws Exception {
+        Document fresh = createDocument();
+
+        // Annotation still open on one of two annotators: no review yet
+        Document annotating = createDocument();
+        Task annotatingTask = createTask(annotating);
+        assign(annotatingTask, "ANNOTATION", "annotator1", "annotator2");
+        complete(annotatingTask, TaskAssignment.AssignmentType.ANNOTATION, "annotator1");
+
+        // Inspection is not a review
+        Document inspected = createDocument();
+        Task inspectedTask = createTask(inspected);
+        assign(inspectedTask, "ANNOTATION", "annotator1");
+        complete(inspectedTask, TaskAssignment.AssignmentType.ANNOTATION, "annotator1");
+        assign(inspectedTask, "INSPECTION", "reviewer1");
+
+        // Reviewed by an expert, and the review is done
+        Document reviewed = createDocument();
+        Task reviewedTask = createTask(reviewed);
+        assign(reviewedTask, "ANNOTATION", "annotator1");
+        complete(reviewedTask, TaskAssignment.AssignmentType.ANNOTATION, "annotator1");
+        assign(reviewedTask, "EXPERT_REVIEW", "expert1");
+        complete(reviewedTask, TaskAssignment.AssignmentType.EXPERT_REVIEW, "expert1");
+
+        // A review assigned although the annotation is not finished
+        Document reviewPending = createDocument();
+        Task reviewPendingTask = createTask(reviewPending);
+        assign(reviewPendingTask, "ANNOTATION", "annotator2");
+        assign(reviewPendingTask, "REVIEW", "reviewer2");
+
+        // Several tasks on one document: the review on the second one counts
+        Document reviewedLater = createDocument();
+        assign(createTask(reviewedLater), "ANNOTATION", "annotator3");
+        assign(createTask(reviewedLater), "REVIEW", "reviewer3");
+
+        Document severalUnreviewed = createDocument();
+        assign(createTask(severalUnreviewed), "ANNOTATION", "annotator3");
+        assign(createTask(severalUnreviewed), "AI_ANNOTATION", "ai_annotator1");
+
+        List<Long> selection = List.of(reviewed.getId(), fresh.getId(), UNKNOWN_ID, annotating.getId(),
+            reviewPending.getId(), inspected.getId(), reviewedLater.getId(), severalUnreviewed.getId(),
+            reviewed.getId());
+        JsonNode eligibility = call(post("/api/tasks/review/eligibility")
+            .content(json(Map.of("documentIds", selection)))).path("eligibility");
+
+        assertEquals(8, eligibility.size(), eligibility.toString());
+        assertMatchesPerTaskRule(eligibility);
+        assertEquals(Set.of(fresh.getId(), annotating.getId(), inspected.getId(), severalUnreviewed.getId()),
+            eligibleIds(eligibility));
+        assertEquals("文档不存在", eligibility.path(String.valueOf(UNKNOWN_ID)).path("reason").asText());
+        assertEquals("已存在审核任务", eligibility.path(reviewed.getId().toString()).path("reason").asText());
+    }
+
+    @Test
+    public void testBatchCreatesReviewTasksForEligibleDocumentsOnly() throws Exception {
+        Document fresh = createDocument();
+        Document annotating = createDocument();
+        assign(createTask(annotating), "ANNOTATION", "annotator1", "annotator2");
+        Document reviewed = createDocument();
+        assign(createTask(reviewed), "EXPERT_REVIEW", "expert2");
+
+        List<Long> selection = List.of(fresh.getId(), reviewed.getId(), UNKNOWN_ID, annotating.getId());
+        JsonNode response = call(post("/api/tasks/review/batch").content(json(Map.of(
+            "documentIds", selection, "taskTitle", "review " + UUID.randomUUID()))));
+
+        assertEquals(2, response.path("createdCount").asInt(), response.toString());
+        assertEquals(2, response.path("errors").size(), response.toString());
+        assertMatchesPerTaskRule(response.path("eligibility"));
+        Set<Long> reviewedDocuments = new HashSet<>();
+        for (JsonNode task : response.path("tasks")) {
+            assertEquals("REVIEW", task.path("taskType").asText(), task.toString());
+            reviewedDocuments.add(taskRepository.findById(task.path("id").asLong()).orElseThrow().getDocument().getId());
+        }
+        assertEquals(Set.of(fresh.getId(), annotating.getId()), reviewedDocuments);
+
+        // A review task without reviewers does not take the document yet; once a reviewer is assigned it does
+        Task reviewTask = taskRepository.findById(response.path("tasks").get(0).path("id").asLong()).orElseThrow();
+        Long reviewTaskDocumentId = reviewTask.getDocument().getId();
+        JsonNode before = call(post("/api/tasks/review/eligibility")
+            .content(json(Map.of("documentIds", List.of(reviewTaskDocumentId))))).path("eligibility");
+        assertMatchesPerTaskRule(before);
+        assertTrue(before.path(reviewTaskDocumentId.toString()).path("eligible").asBoolean(), before.toString());
+
+        assign(reviewTask, "REVIEW", "reviewer1");
+        JsonNode repeated = call(post("/api/tasks/review/batch").content(json(Map.of(
+            "documentIds", selection, "taskTitle", "review again " + UUID.randomUUID()))));
+        assertMatchesPerTaskRule(repeated.path("eligibility"));
+        assertEquals(1, repeated.path("createdCount").asInt(), repeated.toString());
+        assertFalse(repeated.path("eligibility").path(reviewTaskDocumentId.toString()).path("eligible").asBoolean());
+    }
+
+    // The rule as it was evaluated before: every task of the document, and the assignments of each task
+    private void assertMatchesPerTaskRule(JsonNode eligibility) {
+        assertTrue(eligibility.size() > 0, eligibility.toString());
+        eligibility.fieldNames().forEachRemaining(id -> {
+            Long documentId = Long.valueOf(id);
+            boolean hasReviewTask = taskRepository.findAll().stream()
+                .filter(task -> task.getDocument() != null && task.getDocument().getId().equals(documentId))
+                .anyMatch(task -> taskAssignmentRepository.findByTaskId(task.getId()).stream()
+                    .anyMatch(assignment -> assignment.getAssignmentType() == TaskAssignment.AssignmentType.REVIEW
+                        || assignment.getAssignmentType() == TaskAssignment.AssignmentType.EXPERT_REVIEW));
+            boolean expected = documentRepository.findById(documentId).isPresent() && !hasReviewTask;
+            assertEquals(expected, eligibility.path(id).path("eligible").asBoolean(), "Eligibility of document " + id);
+        });
+    }
+
+    private Set<Long> eligibleIds(JsonNode eligibility) {
+        Set<Long> ids = new HashSet<>();
+        eligibility.fieldNames().forEachRemaining(id -> {
+            if (eligibility.path(id).path("eligible").asBoolean()) {
+                ids.add(Long.valueOf(id));
+            }
+        });
+        return ids;
+    }
+
+    private Document createDocument() {
+        String filename = UUID.randomUUID() + ".pdf";
+        return documentRepository.save(new Document(filename, filename, "./test-uploads/" + filename, 100L,
+            "application/pdf", null, null, user("admin")));
+    }
+
+    private Task createTask(Document document) {
+        return taskRepository.save(new Task("eligibility " + document.getFilename(), null, document, null, null,
+            user("admin")));
+    }
+
+    private void assign(Task task, String assignmentType, String... usernames) throws Exception {
+        List<Long> userIds = new ArrayList<>();
+        for (String username : usernames) {
+            userIds.add(user(username).getId());
+        }
+        JsonNode response = call(post("/api/tasks/" + task.getId() + "/assign")
+            .content(json(Map.of("userIds", userIds, "assignmentType", assignmentType))));
+        assertEquals(usernames.length, response.path("assignments").size(), response.toString());
+    }
+
+    // Completes assignments the way a submission does, without advancing the workflow
+    private void complete(Task task, TaskAssignment.AssignmentType type, String... usernames) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            for (String username : usernames) {
+                TaskAssignment assignment = taskAssignmentRepository
+                    .findByTaskIdAndUserIdAndAssignmentType(task.getId(), user(username).getId(), type).orElseThrow();
+                TaskAssignment.AssignmentStatus previousStatus = assignment.getStatus();
+                assignment.setStatus(TaskAssignment.AssignmentStatus.COMPLETED);
+                taskStageCounterService.onAssignmentStatusChanged(assignment, previousStatus);
+            }
+        });
+    }
+
+    private User user(String username) {
+        return userRepository.findByUsername(username).orElseThrow();
+    }
+
+    private JsonNode call(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + jwtUtils.generateTokenFromUsername("admin"))
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        return objectMapper.readTree(body);
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+}
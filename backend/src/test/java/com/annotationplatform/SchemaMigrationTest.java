@@ -0,0 +1,229 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.repository.TaskRepository;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationState;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the Flyway migrations: every version applies and Hibernate's ddl-auto=validate accepts the resulting schema,
+ * both on an empty database and on one created by ddl-auto=update before migrations existed (baselined at V1, so only
+ * V2 onwards runs over the existing rows), and startup refuses a database whose pooled id generators are behind its
+ * rows. The MySQL scripts run on a real server (see {@link MySqlTestDatabase}).
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class SchemaMigrationTest {
+
+    // The query indexes the repositories rely on, as "table(columns)"
+    private static final String[] QUERY_INDEXES = {
+        "documents(checksum)",
+        "documents(folder_id,created_at)",
+        "documents(category_id,folder_path)",
+        "tasks(batch_id)",
+        "tasks(document_id,status)",
+        "task_assignments(user_id,status,assignment_type)",
+        "annotations(task_id,task_assignment_id)",
+        "quality_checks(task_id,status)",
+        "score_history(user_id,created_at)"
+    };
+
+    // Rows of a database from before migrations, with the ids an identity column had handed out
+    private static final String[] LEGACY_ROWS = {
+        "insert into users (id, username, email, password, role, score, status) " +
+            "values (900, 'legacy-admin', 'legacy-admin@example.com', 'x', 'ADMIN', 0, 'ACTIVE')",
+        "insert into documents (id, filename, original_filename, file_path, file_size, status, uploaded_by) " +
+            "values (300, 'legacy.pdf', 'legacy.pdf', './test-uploads/legacy.pdf', 100, 'UPLOADED', 900)",
+        "insert into tasks (id, title, status, priority, created_by, document_id) " +
+            "values (120, 'legacy task', 'CREATED', 'NORMAL', 900, 300)",
+        "insert into task_assignments (id, assignment_type, status, task_id, user_id) " +
+            "values (40, 'ANNOTATION', 'COMPLETED', 120, 900)",
+        "insert into task_assignments (id, assignment_type, status, task_id, user_id) " +
+            "values (41, 'INSPECTION', 'ASSIGNED', 120, 900)"
+    };
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void testH2MigrationsApplied() throws Exception {
+        assertMigrated(flyway, false);
+        assertQueryIndexes(dataSource);
+    }
+
+    @Test
+    public void testH2BaselinedDatabaseUpgrades() throws Exception {
+        String url = "jdbc:h2:mem:legacy-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        DataSource legacy = new DriverManagerDataSource(url, "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/h2/V1__initial_schema.sql")).execute(legacy);
+        new JdbcTemplate(legacy).batchUpdate(LEGACY_ROWS);
+
+        try (ConfigurableApplicationContext context = start("--spring.datasource.url=" + url)) {
+            assertUpgraded(context);
+        }
+    }
+
+    @Test
+    public void testStartupFailsWhenIdGeneratorIsBehind() throws Exception {
+        String url = "jdbc:h2:mem:behind-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (ConfigurableApplicationContext context = start("--spring.datasource.url=" + url)) {
+            // Rows written around the application after the migrations seeded the generators
+            new JdbcTemplate(context.getBean(DataSource.class)).batchUpdate(LEGACY_ROWS);
+        }
+
+        Exception failure = assertThrows(Exception.class, () -> start("--spring.datasource.url=" + url).close());
+        Throwable cause = failure;
+        while (cause.getCause() != null && !(cause instanceof IllegalStateException)) {
+            cause = cause.getCause();
+        }
+        assertTrue(cause.getMessage().contains("id_generators") && cause.getMessage().contains("tasks"),
+            failure.toString());
+
+        // Nothing was rewritten at startup
+        Long tasks = new JdbcTemplate(new DriverManagerDataSource(url, "sa", "")).queryForObject(
+            "select gen_value from id_generators where gen_name = 'tasks'", Long.class);
+        assertEquals(50L, tasks);
+    }
+
+    @Test
+    public void testMySqlMigrationsMatchEntities() throws Exception {
+        try (MySqlTestDatabase database = MySqlTestDatabase.create();
+             ConfigurableApplicationContext context = start(arguments(database))) {
+            assertMigrated(context.getBean(Flyway.class), false);
+            assertQueryIndexes(context.getBean(DataSource.class));
+        }
+    }
+
+    @Test
+    public void testMySqlBaselinedDatabaseUpgrades() throws Exception {
+        try (MySqlTestDatabase database = MySqlTestDatabase.create()) {
+            database.runScript("db/migration/mysql/V1__initial_schema.sql");
+            database.jdbcTemplate().batchUpdate(LEGACY_ROWS);
+
+            try (ConfigurableApplicationContext context = start(arguments(database))) {
+                assertUpgraded(context);
+            }
+        }
+    }
+
+    // Starting the application runs the migrations and then Hibernate's schema validation. Command line arguments,
+    // because they take precedence over application-test.properties
+    private static ConfigurableApplicationContext start(String... arguments) {
+        return new SpringApplicationBuilder(AnnotationPlatformApplication.class)
+            .profiles("test")
+            .properties("server.port=0", "spring.devtools.restart.enabled=false")
+            .run(arguments);
+    }
+
+    private static String[] arguments(MySqlTestDatabase database) {
+        return database.springProperties().stream().map(property -> "--" + property).toArray(String[]::new);
+    }
+
+    private static void assertUpgraded(ConfigurableApplicationContext context) throws Exception {
+        assertMigrated(context.getBean(Flyway.class), true);
+        assertQueryIndexes(context.getBean(DataSource.class));
+
+        // Existing rows survive, and pooled ids continue above them
+        TaskRepository taskRepository = context.getBean(TaskRepository.class);
+        Task legacy = taskRepository.findById(120L).orElseThrow();
+        assertEquals("legacy task", legacy.getTitle());
+        // Stage counters of the existing assignments are backfilled by the migration, not on first read
+        List<String> counters = new JdbcTemplate(context.getBean(DataSource.class)).query(
+            "select assignment_type, assigned_count, completed_count from task_stage_counters " +
+            "where task_id = 120 order by assignment_type",
+            (row, i) -> row.getString(1) + ":" + row.getInt(2) + "/" + row.getInt(3));
+        assertEquals(List.of("ANNOTATION:1/1", "INSPECTION:1/0"), counters);
+        Task created = taskRepository.save(new Task("after upgrade", null, legacy.getDocument(), null, null,
+            legacy.getCreatedBy()));
+        assertTrue(created.getId() > 120, "New task id " + created.getId() + " must not reuse an existing one");
+    }
+
+    private static void assertMigrated(Flyway flyway, boolean baselined) {
+        MigrationInfo[] migrations = flyway.info().all();
+        assertTrue(migrations.length >= 4, "Expected the initial schema and the later versions");
+        for (MigrationInfo migration : migrations) {
+            String name = "Migration " + migration.getVersion() + " " + migration.getDescription();
+            if (migration.getVersion().getMajorAsString().equals("1")) {
+                assertEquals(baselined, migration.getState() == MigrationState.BASELINE
+                    || migration.getState() == MigrationState.BELOW_BASELINE, name + " " + migration.getState());
+                if (baselined) {
+                    continue;
+                }
+            }
+            assertEquals(MigrationState.SUCCESS, migration.getState(), name);
+        }
+        assertEquals(0, flyway.info().pending().length, "No migration may stay pending");
+    }
+
+    private static void assertQueryIndexes(DataSource dataSource) throws Exception {
+        List<String> indexes = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String table : new String[] {"documents", "tasks", "task_assignments", "annotations",
+                    "quality_checks", "score_history"}) {
+                indexes.addAll(readIndexes(connection.getCatalog(), metaData, table));
+            }
+        }
+        for (String expected : QUERY_INDEXES) {
+            assertTrue(indexes.contains(expected), "Missing index " + expected + ", found " + indexes);
+        }
+    }
+
+    // Index definitions of one table as "table(col1,col2)", in key order
+    private static List<String> readIndexes(String catalog, DatabaseMetaData metaData, String table) throws Exception {
+        List<String> names = new ArrayList<>();
+        List<List<String>> columns = new ArrayList<>();
+        String catalogTable = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        try (ResultSet rs = metaData.getIndexInfo(catalog, null, catalogTable, false, false)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                if (name == null || column == null) {
+                    continue;
+                }
+                int position = rs.getShort("ORDINAL_POSITION");
+                int i = names.indexOf(name);
+                if (i < 0) {
+                    names.add(name);
+                    columns.add(new ArrayList<>());
+                    i = names.size() - 1;
+                }
+                List<String> key = columns.get(i);
+                while (key.size() < position) {
+                    key.add(null);
+                }
+                key.set(position - 1, column.toLowerCase(Locale.ROOT));
+            }
+        }
+        List<String> indexes = new ArrayList<>();
+        for (List<String> key : columns) {
+            indexes.add(table + "(" + String.join(",", key) + ")");
+        }
+        return indexes;
+    }
+}
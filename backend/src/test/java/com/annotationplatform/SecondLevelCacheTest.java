@@ -0,0 +1,224 @@
+package com.annotationplatform;
+
+import com.annotationplatform.repository.FormConfigRepository;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Second-level and query cache for the reference data: repeated reads are served from the cache, and every write
+ * through the existing controllers is visible on the next read (entity, collection and query regions).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class SecondLevelCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private FormConfigRepository formConfigRepository;
+
+    private String token;
+
+    @BeforeEach
+    public void setUp() {
+        token = jwtUtils.generateTokenFromUsername("admin");
+    }
+
+    @Test
+    public void testRepeatedReadsHitEntityAndCollectionRegions() throws Exception {
+        long formConfigId = createFormConfig(null);
+        addField(formConfigId, "title");
+
+        call(get("/api/form-configs/" + formConfigId + "/fields"));
+        long configHits = hits("entity.formConfig");
+        long fieldsHits = hits("entity.formConfig.fields");
+        long fieldHits = hits("entity.formField");
+
+        JsonNode fields = call(get("/api/form-configs/" + formConfigId + "/fields")).path("fields");
+
+        assertEquals(1, fields.size());
+        assertTrue(hits("entity.formConfig") > configHits, "FormConfig should come from the cache");
+        assertTrue(hits("entity.formConfig.fields") > fieldsHits, "FormConfig.fields should come from the cache");
+        assertTrue(hits("entity.formField") > fieldHits, "FormField should come from the cache");
+    }
+
+    @Test
+    public void testFormFieldWritesInvalidateFields() throws Exception {
+        long formConfigId = createFormConfig(null);
+        String fieldsUrl = "/api/form-configs/" + formConfigId + "/fields";
+        assertEquals(0, call(get(fieldsUrl)).path("fields").size());
+
+        long fieldId = addField(formConfigId, "title");
+        JsonNode fields = call(get(fieldsUrl)).path("fields");
+        assertEquals(1, fields.size());
+        assertEquals("title", fields.get(0).path("fieldName").asText());
+
+        call(put("/api/form-configs/fields/" + fieldId).content(json(Map.of("label", "Renamed"))));
+        assertEquals("Renamed", call(get(fieldsUrl)).path("fields").get(0).path("label").asText());
+
+        call(delete("/api/form-configs/fields/" + fieldId));
+        assertEquals(0, call(get(fieldsUrl)).path("fields").size());
+    }
+
+    @Test
+    public void testCategoryWritesInvalidateChildren() throws Exception {
+        long rootId = createCategory(null);
+        assertEquals(0, findCategory(rootId).path("children").size());
+
+        long childId = createCategory(rootId);
+        JsonNode children = findCategory(rootId).path("children");
+        assertEquals(1, children.size());
+        assertEquals(childId, children.get(0).path("id").asLong());
+
+        String name = "renamed-" + UUID.randomUUID();
+        call(put("/api/categories/" + childId).content(json(Map.of("name", name))));
+        assertEquals(name, findCategory(rootId).path("children").get(0).path("name").asText());
+
+        call(delete("/api/categories/" + childId));
+        assertEquals(0, findCategory(rootId).path("children").size());
+    }
+
+    @Test
+    public void testDocumentTypeFormConfigAssignmentsInvalidated() throws Exception {
+        long first = createFormConfig(null);
+        long second = createFormConfig(null);
+        long documentTypeId = call(post("/api/document-types")
+                .content(json(Map.of("name", "type-" + UUID.randomUUID()))))
+            .path("documentType").path("id").asLong();
+        String formConfigsUrl = "/api/document-types/" + documentTypeId + "/form-configs";
+
+        call(post(formConfigsUrl).content(json(Map.of("formConfigIds", List.of(first)))));
+        assertEquals(List.of(first), ids(call(get(formConfigsUrl)).path("formConfigs")));
+
+        call(post(formConfigsUrl).content(json(Map.of("formConfigIds", List.of(second)))));
+        assertEquals(List.of(second), ids(call(get(formConfigsUrl)).path("formConfigs")));
+    }
+
+    @Test
+    public void testQueryCacheInvalidatedByInserts() throws Exception {
+        formConfigRepository.findIndependentFormConfigs();
+        long queryHits = statistics().getQueryCacheHitCount();
+        int before = formConfigRepository.findIndependentFormConfigs().size();
+        assertTrue(statistics().getQueryCacheHitCount() > queryHits, "Second run should be a query cache hit");
+
+        long created = createFormConfig(null);
+
+        List<Long> after = new ArrayList<>();
+        formConfigRepository.findIndependentFormConfigs().forEach(config -> after.add(config.getId()));
+        assertEquals(before + 1, after.size());
+        assertTrue(after.contains(created));
+    }
+
+    @Test
+    public void testHitRateMetricsExported() throws Exception {
+        long formConfigId = createFormConfig(null);
+        call(get("/api/form-configs/" + formConfigId));
+        call(get("/api/form-configs/" + formConfigId));
+
+        FunctionCounter regionHits = meterRegistry.find("hibernate.second.level.cache.requests")
+            .tag("region", "entity.formConfig")
+            .tag("result", "hit")
+            .functionCounter();
+        assertNotNull(regionHits, "Per-region hit counter should be registered");
+        assertTrue(regionHits.count() > 0);
+        assertNotNull(meterRegistry.find("hibernate.cache.query.requests").tag("result", "hit").functionCounter());
+    }
+
+    private long createFormConfig(Long categoryId) throws Exception {
+        Map<String, Object> request = new HashMap<>();
+        request.put("name", "config-" + UUID.randomUUID());
+        request.put("categoryId", categoryId);
+        return call(post("/api/form-configs").content(json(request))).path("formConfig").path("id").asLong();
+    }
+
+    private long addField(long formConfigId, String fieldName) throws Exception {
+        return call(post("/api/form-configs/" + formConfigId + "/fields")
+                .content(json(Map.of("fieldName", fieldName, "fieldType", "TEXT", "label", fieldName))))
+            .path("field").path("id").asLong();
+    }
+
+    private long createCategory(Long parentId) throws Exception {
+        Map<String, Object> request = new HashMap<>();
+        request.put("name", "category-" + UUID.randomUUID());
+        request.put("parentId", parentId);
+        return call(post("/api/categories").content(json(request))).path("category").path("id").asLong();
+    }
+
+    // The root category as it appears in the category tree
+    private JsonNode findCategory(long id) throws Exception {
+        for (JsonNode category : call(get("/api/categories")).path("categories")) {
+            if (category.path("id").asLong() == id) {
+                return category;
+            }
+        }
+        fail("Category " + id + " missing from the tree");
+        return null;
+    }
+
+    private JsonNode call(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private static List<Long> ids(JsonNode nodes) {
+        List<Long> ids = new ArrayList<>();
+        nodes.forEach(node -> ids.add(node.path("id").asLong()));
+        return ids;
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private long hits(String region) {
+        return statistics().getDomainDataRegionStatistics(region).getHitCount();
+    }
+}
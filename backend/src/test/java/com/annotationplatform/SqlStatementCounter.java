@@ -0,0 +1,158 @@
+package com.annotationplatform;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Counts the SQL statements sent through the application DataSource by the current thread.
+ *
+ * Import {@link Config} into a @SpringBootTest to wrap the DataSource, call {@link #reset()} before the code under test
+ * and assert afterwards, e.g. {@code SqlStatementCounter.assertSelectCount(3)}. MockMvc requests run on the test thread,
+ * so the counts cover the whole request (security filter, controller, services); statements from background workers
+ * such as the submission outbox are not included. A JDBC batch counts as one statement however many rows it carries,
+ * so the counts track database round trips.
+ */
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<List<Statement>> STATEMENTS = ThreadLocal.withInitial(ArrayList::new);
+
+    private SqlStatementCounter() {
+    }
+
+    public static void reset() {
+        STATEMENTS.get().clear();
+    }
+
+    public static long selectCount() {
+        return count(QueryType.SELECT);
+    }
+
+    public static long insertCount() {
+        return count(QueryType.INSERT);
+    }
+
+    public static long updateCount() {
+        return count(QueryType.UPDATE);
+    }
+
+    public static long deleteCount() {
+        return count(QueryType.DELETE);
+    }
+
+    public static long totalCount() {
+        return STATEMENTS.get().size();
+    }
+
+    /**
+     * Statement counts by type, e.g. {SELECT=3, INSERT=1}
+     */
+    public static Map<QueryType, Long> counts() {
+        Map<QueryType, Long> counts = new EnumMap<>(QueryType.class);
+        for (Statement statement : STATEMENTS.get()) {
+            counts.merge(statement.type, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    public static void assertSelectCount(long max) {
+        assertCount("SELECT", selectCount(), max);
+    }
+
+    public static void assertInsertCount(long max) {
+        assertCount("INSERT", insertCount(), max);
+    }
+
+    public static void assertUpdateCount(long max) {
+        assertCount("UPDATE", updateCount(), max);
+    }
+
+    public static void assertDeleteCount(long max) {
+        assertCount("DELETE", deleteCount(), max);
+    }
+
+    public static void assertTotalCount(long max) {
+        assertCount("total", totalCount(), max);
+    }
+
+    private static long count(QueryType type) {
+        return STATEMENTS.get().stream().filter(statement -> statement.type == type).count();
+    }
+
+    // The failure message lists the captured SQL so the repeated (N+1) statement is visible directly
+    private static void assertCount(String kind, long actual, long max) {
+        if (actual > max) {
+            fail("Expected at most " + max + " " + kind + " statements but " + actual + " were executed:\n"
+                + describeStatements());
+        }
+    }
+
+    public static String describeStatements() {
+        return STATEMENTS.get().stream()
+            .map(statement -> "  " + statement.sql)
+            .collect(Collectors.joining("\n"));
+    }
+
+    private static final class Statement {
+        private final QueryType type;
+        private final String sql;
+
+        private Statement(String sql) {
+            this.type = QueryUtils.getQueryType(sql);
+            this.sql = sql;
+        }
+    }
+
+    private static final class CountingListener implements QueryExecutionListener {
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            List<Statement> statements = STATEMENTS.get();
+            for (QueryInfo queryInfo : queryInfoList) {
+                statements.add(new Statement(queryInfo.getQuery()));
+            }
+        }
+    }
+
+    /**
+     * Wraps the application DataSource in a counting proxy
+     */
+    @TestConfiguration
+    public static class Config {
+
+        @Bean
+        public static BeanPostProcessor sqlStatementCounterPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource) {
+                        return ProxyDataSourceBuilder.create((DataSource) bean)
+                            .name(beanName)
+                            .listener(new CountingListener())
+                            .build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.TaskAssignmentService;
+import com.annotationplatform.service.TaskPurgeService;
+import com.annotationplatform.service.WorkloadTracker;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Task purge: a selection larger than the chunk size is deleted chunk by chunk together with every row that refers to
+ * its tasks, in an order the H2 foreign keys accept; large selections run in the background with their progress
+ * reported per chunk, and a chunk that fails leaves the job FAILED with the earlier chunks deleted and the rest intact.
+ * Each test starts the application on an empty database of its own with a chunk size of three tasks.
+ */
+public class TaskPurgeTest {
+
+    private static final int CHUNK_SIZE = 3;
+    private static final int ASYNC_THRESHOLD = 4;
+    private static final int TASKS = 7;
+
+    // Rows each fixture task has in every table that refers to it
+    private static final Map<String, Integer> ROWS_PER_TASK = new LinkedHashMap<>();
+
+    static {
+        ROWS_PER_TASK.put("scoreHistory", 1);
+        ROWS_PER_TASK.put("annotationHistory", 1);
+        ROWS_PER_TASK.put("qualityChecks", 1);
+        ROWS_PER_TASK.put("annotations", 2);
+        ROWS_PER_TASK.put("batchDocumentSubmissions", 1);
+        ROWS_PER_TASK.put("batchDocuments", 1);
+        ROWS_PER_TASK.put("stageCounters", 1);
+        ROWS_PER_TASK.put("outboxEvents", 1);
+        ROWS_PER_TASK.put("assignments", 2);
+        ROWS_PER_TASK.put("tasks", 1);
+    }
+
+    @Test
+    public void testPurgeDeletesEveryChunkWithDependentRows() throws Exception {
+        try (ConfigurableApplicationContext context = start(1000)) {
+            List<Long> taskIds = createTasks(context, TASKS);
+            List<Long> kept = createTasks(context, 1);
+            User annotator = user(context, "annotator1");
+            WorkloadTracker workloadTracker = context.getBean(WorkloadTracker.class);
+            int open = workloadTracker.getOpenAssignments(annotator.getId(), TaskAssignment.AssignmentType.ANNOTATION);
+
+            TaskPurgeService.PurgeJob job = context.getBean(TaskPurgeService.class).purge(taskIds);
+
+            assertEquals(TaskPurgeService.PurgeStatus.COMPLETED, job.getStatus(), job.getError());
+            assertEquals(TASKS, job.getProcessedTasks());
+            assertEquals(expectedRows(TASKS), job.getDeletedRows());
+            assertEquals(expectedRows(0), countRows(context, taskIds));
+            assertEquals(expectedRows(1), countRows(context, kept));
+            // The bulk delete bypasses assignment events, so the tracker is reconciled with the database
+            assertEquals(open - TASKS, workloadTracker.getOpenAssignments(annotator.getId(),
+                TaskAssignment.AssignmentType.ANNOTATION));
+        }
+    }
+
+    @Test
+    public void testBackgroundPurgeReportsProgressPerChunk() throws Exception {
+        try (ConfigurableApplicationContext context = start(30000)) {
+            List<Long> taskIds = createTasks(context, TASKS);
+            MockMvc mockMvc = mockMvc(context);
+
+            // The second chunk waits for a task row another transaction holds, so the first chunk's progress is visible
+            try (Connection lock = lockTask(context, taskIds.get(CHUNK_SIZE))) {
+                String jobId = startBackgroundPurge(context, mockMvc, taskIds);
+                JsonNode running = awaitJob(context, mockMvc, jobId,
+                    job -> job.path("processedTasks").asInt() == CHUNK_SIZE);
+                assertEquals("RUNNING", running.path("status").asText(), running.toString());
+                assertEquals(TASKS, running.path("totalTasks").asInt());
+                assertEquals(CHUNK_SIZE, running.path("deletedRows").path("tasks").asInt(), running.toString());
+                assertTrue(running.path("finishedAt").isNull(), running.toString());
+                lock.rollback();
+
+                JsonNode finished = awaitJob(context, mockMvc, jobId, job -> !job.path("finishedAt").isNull());
+                assertEquals("COMPLETED", finished.path("status").asText(), finished.toString());
+                assertEquals(TASKS, finished.path("processedTasks").asInt());
+                assertEquals(objectMapper().valueToTree(expectedRows(TASKS)), finished.path("deletedRows"));
+            }
+            assertEquals(expectedRows(0), countRows(context, taskIds));
+        }
+    }
+
+    @Test
+    public void testFailedChunkStopsBackgroundPurge() throws Exception {
+        try (ConfigurableApplicationContext context = start(500)) {
+            List<Long> taskIds = createTasks(context, TASKS);
+            MockMvc mockMvc = mockMvc(context);
+
+            // The lock outlasts the lock timeout, so the second chunk fails and rolls back
+            JsonNode failed;
+            try (Connection lock = lockTask(context, taskIds.get(CHUNK_SIZE))) {
+                String jobId = startBackgroundPurge(context, mockMvc, taskIds);
+                failed = awaitJob(context, mockMvc, jobId, job -> !job.path("finishedAt").isNull());
+                lock.rollback();
+            }
+
+            assertEquals("FAILED", failed.path("status").asText(), failed.toString());
+            assertFalse(failed.path("error").asText().isEmpty(), failed.toString());
+            assertEquals(CHUNK_SIZE, failed.path("processedTasks").asInt());
+            assertEquals(objectMapper().valueToTree(expectedRows(CHUNK_SIZE)), failed.path("deletedRows"));
+            assertEquals(expectedRows(0), countRows(context, taskIds.subList(0, CHUNK_SIZE)));
+            assertEquals(expectedRows(TASKS - CHUNK_SIZE), countRows(context, taskIds.subList(CHUNK_SIZE, TASKS)));
+        }
+    }
+
+    private static String startBackgroundPurge(ApplicationContext context, MockMvc mockMvc, List<Long> taskIds)
+            throws Exception {
+        MvcResult result = perform(context, mockMvc, post("/api/tasks/batch/delete")
+            .content(objectMapper().writeValueAsString(Map.of("taskIds", taskIds))));
+        assertEquals(202, result.getResponse().getStatus(), result.getResponse().getContentAsString());
+        JsonNode response = objectMapper().readTree(result.getResponse().getContentAsString());
+        assertTrue(response.path("async").asBoolean(), response.toString());
+        assertEquals(TASKS, response.path("totalTasks").asInt());
+        return response.path("jobId").asText();
+    }
+
+    private static JsonNode awaitJob(ApplicationContext context, MockMvc mockMvc, String jobId,
+                                     Predicate<JsonNode> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (true) {
+            MvcResult result = perform(context, mockMvc, get("/api/tasks/purge/" + jobId));
+            assertEquals(200, result.getResponse().getStatus());
+            JsonNode job = objectMapper().readTree(result.getResponse().getContentAsString());
+            if (condition.test(job)) {
+                return job;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "Purge job " + jobId + " stuck at " + job);
+            Thread.sleep(50);
+        }
+    }
+
+    // Holds the task row in an open transaction until the returned connection is rolled back
+    private static Connection lockTask(ApplicationContext context, Long taskId) throws Exception {
+        Connection connection = context.getBean(DataSource.class).getConnection();
+        connection.setAutoCommit(false);
+        try (PreparedStatement select = connection.prepareStatement("select id from tasks where id = ? for update")) {
+            select.setLong(1, taskId);
+            select.executeQuery().close();
+        }
+        return connection;
+    }
+
+    // Tasks with two annotation assignments and a row in every table that refers to a task
+    private static List<Long> createTasks(ApplicationContext context, int count) {
+        User admin = user(context, "admin");
+        User annotator1 = user(context, "annotator1");
+        User annotator2 = user(context, "annotator2");
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> taskIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String filename = UUID.randomUUID() + ".pdf";
+            Document document = context.getBean(DocumentRepository.class).save(new Document(filename, filename,
+                "./test-uploads/" + filename, 100L, "application/pdf", null, null, admin));
+            Task task = context.getBean(TaskRepository.class).save(new Task("purge " + filename, null, document, null,
+                null, admin));
+            List<TaskAssignment> assignments = context.getBean(TransactionTemplate.class).execute(tx -> context
+                .getBean(TaskAssignmentService.class)
+                .assignUsers(context.getBean(TaskRepository.class).findById(task.getId()).orElseThrow(),
+                    List.of(annotator1.getId(), annotator2.getId()), TaskAssignment.AssignmentType.ANNOTATION)
+                .getCreatedAssignments());
+            assertEquals(2, assignments.size());
+
+            long id = 1_000_000L + task.getId() * 10;
+            jdbc.update("insert into annotations (id, annotation_data, status, version, task_id, task_assignment_id) " +
+                "values (?, '{}', 'SUBMITTED', 0, ?, ?), (?, '{}', 'SUBMITTED', 0, ?, ?)",
+                id, task.getId(), assignments.get(0).getId(), id + 1, task.getId(), assignments.get(1).getId());
+            jdbc.update("insert into quality_checks (id, status, annotation_a_id, annotation_b_id, annotator_a_id, " +
+                "annotator_b_id, task_id) values (?, 'PENDING', ?, ?, ?, ?, ?)",
+                id, id, id + 1, annotator1.getId(), annotator2.getId(), task.getId());
+            jdbc.update("insert into score_history (id, created_at, new_score, previous_score, score_change, " +
+                "score_type, annotation_id, quality_check_id, task_id, user_id) " +
+                "values (?, ?, 1, 0, 1, 'TASK_COMPLETION', ?, ?, ?, ?)",
+                id, now, id, id, task.getId(), annotator1.getId());
+            jdbc.update("insert into document_annotation_history (id, action_type, created_at, field_name, new_value, " +
+                "version, annotation_id, document_id, task_id, user_id) values (?, 'CREATE', ?, 'title', 'x', 1, ?, ?, ?, ?)",
+                id, now, id + 1, document.getId(), task.getId(), annotator2.getId());
+            jdbc.update("insert into batch_documents (id, batch_id, document_id, task_id) values (?, ?, ?, ?)",
+                id, "BATCH_PURGE_" + task.getId(), document.getId(), task.getId());
+            jdbc.update("insert into batch_document_submissions (id, submitted_at, batch_document_id, user_id) " +
+                "values (?, ?, ?, ?)", id, now, id, annotator1.getId());
+            jdbc.update("insert into outbox_events (id, attempts, created_at, event_type, next_attempt_at, status, " +
+                "task_id) values (?, 0, ?, 'ANNOTATION_SUBMITTED', ?, 'COMPLETED', ?)", id, now, now, task.getId());
+            taskIds.add(task.getId());
+        }
+        return taskIds;
+    }
+
+    private static Map<String, Integer> expectedRows(int tasks) {
+        Map<String, Integer> rows = new LinkedHashMap<>();
+        ROWS_PER_TASK.forEach((table, perTask) -> rows.put(table, perTask * tasks));
+        return rows;
+    }
+
+    private static Map<String, Integer> countRows(ApplicationContext context, List<Long> taskIds) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        String ids = taskIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("scoreHistory", "select count(*) from score_history where task_id in (" + ids + ")");
+        queries.put("annotationHistory", "select count(*) from document_annotation_history where task_id in (" + ids + ")");
+        queries.put("qualityChecks", "select count(*) from quality_checks where task_id in (" + ids + ")");
+        queries.put("annotations", "select count(*) from annotations where task_id in (" + ids + ")");
+        queries.put("batchDocumentSubmissions", "select count(*) from batch_document_submissions s " +
+            "join batch_documents bd on bd.id = s.batch_document_id where bd.task_id in (" + ids + ")");
+        queries.put("batchDocuments", "select count(*) from batch_documents where task_id in (" + ids + ")");
+        queries.put("stageCounters", "select count(*) from task_stage_counters where task_id in (" + ids + ")");
+        queries.put("outboxEvents", "select count(*) from outbox_events where task_id in (" + ids + ")");
+        queries.put("assignments", "select count(*) from task_assignments where task_id in (" + ids + ")");
+        queries.put("tasks", "select count(*) from tasks where id in (" + ids + ")");
+        Map<String, Integer> rows = new LinkedHashMap<>();
+        queries.forEach((table, sql) -> rows.put(table, jdbc.queryForObject(sql, Integer.class)));
+        return rows;
+    }
+
+    private static MockMvc mockMvc(ApplicationContext context) {
+        return MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+            .apply(SecurityMockMvcConfigurers.springSecurity()).build();
+    }
+
+    private static MvcResult perform(ApplicationContext context, MockMvc mockMvc, MockHttpServletRequestBuilder request)
+            throws Exception {
+        return mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + context.getBean(JwtUtils.class).generateTokenFromUsername("admin"))
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn();
+    }
+
+    private static ObjectMapper objectMapper() {
+        return new ObjectMapper();
+    }
+
+    private static User user(ApplicationContext context, String username) {
+        return context.getBean(UserRepository.class).findByUsername(username).orElseThrow();
+    }
+
+    // Command line arguments, because they take precedence over application-test.properties
+    private static ConfigurableApplicationContext start(int lockTimeoutMillis) {
+        return new SpringApplicationBuilder(AnnotationPlatformApplication.class)
+            .profiles("test")
+            .properties("server.port=0", "spring.devtools.restart.enabled=false")
+            .run("--spring.datasource.url=jdbc:h2:mem:purge-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT="
+                    + lockTimeoutMillis,
+                "--task-purge.chunk-size=" + CHUNK_SIZE,
+                "--task-purge.async-threshold=" + ASYNC_THRESHOLD);
+    }
+}
@@ -0,0 +1,316 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.TaskStageCounter;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.TaskStageCounterRepository;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.AnnotationSubmissionService;
+import com.annotationplatform.service.TaskAssignmentService;
+import com.annotationplatform.service.TaskStageCounterService;
+import com.annotationplatform.service.WorkflowService;
+import com.annotationplatform.service.WorkloadTracker;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Per-stage assignment counters: kept in step with the assignments in the same transaction, created exactly once when
+ * several transactions add the first assignment of a stage, and driving the task workflow one transition at a time.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class TaskStageCounterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private TaskStageCounterRepository taskStageCounterRepository;
+
+    @Autowired
+    private TaskStageCounterService taskStageCounterService;
+
+    @Autowired
+    private TaskAssignmentService taskAssignmentService;
+
+    @Autowired
+    private WorkloadTracker workloadTracker;
+
+    @Autowired
+    private WorkflowService workflowService;
+
+    @Autowired
+    private AnnotationSubmissionService annotationSubmissionService;
+
+    @Test
+    public void testCountersDriveTheWorkflow() throws Exception {
+        Task task = createTask();
+        User annotator1 = user("annotator1");
+        User annotator2 = user("annotator2");
+        Map<Long, Long> assignments = assign(task, annotator1, annotator2);
+        assertCounter(task, TaskAssignment.AssignmentType.ANNOTATION, 2, 0);
+        assertEquals(Task.TaskStatus.ASSIGNED, status(task));
+
+        submit(task, assignments.get(annotator1.getId()), "annotator1");
+        assertCounter(task, TaskAssignment.AssignmentType.ANNOTATION, 2, 1);
+        awaitStatus(task, Task.TaskStatus.ANNOTATING);
+
+        submit(task, assignments.get(annotator2.getId()), "annotator2");
+        assertCounter(task, TaskAssignment.AssignmentType.ANNOTATION, 2, 2);
+        awaitStatus(task, Task.TaskStatus.ANNOTATED);
+    }
+
+    @Test
+    public void testSubmissionLeavesWorkflowToOutbox() throws Exception {
+        Task task = createTask();
+        User annotator1 = user("annotator1");
+        User annotator2 = user("annotator2");
+        Map<Long, Long> assignments = assign(task, annotator1, annotator2);
+        submit(task, assignments.get(annotator1.getId()), "annotator1");
+        awaitStatus(task, Task.TaskStatus.ANNOTATING);
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            Task managed = taskRepository.findById(task.getId()).orElseThrow();
+            TaskAssignment assignment = taskAssignmentRepository.findById(assignments.get(annotator2.getId())).orElseThrow();
+            try {
+                annotationSubmissionService.submit(managed, assignment, annotator2, Map.of("title", "same"), null, null);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            // Counters are current, but the task only advances in the outbox after commit
+            assertCounter(task, TaskAssignment.AssignmentType.ANNOTATION, 2, 2);
+            assertEquals(Task.TaskStatus.ANNOTATING, managed.getStatus());
+        });
+        awaitStatus(task, Task.TaskStatus.ANNOTATED);
+    }
+
+    @Test
+    public void testMissingCounterRebuiltFromAssignments() throws Exception {
+        Task task = createTask();
+        User annotator1 = user("annotator1");
+        User annotator2 = user("annotator2");
+        Map<Long, Long> assignments = assign(task, annotator1, annotator2);
+
+        // A task whose assignments predate the counters
+        transactionTemplate.executeWithoutResult(tx -> taskStageCounterService.deleteByTaskIds(List.of(task.getId())));
+
+        submit(task, assignments.get(annotator1.getId()), "annotator1");
+        assertCounter(task, TaskAssignment.AssignmentType.ANNOTATION, 2, 1);
+    }
+
+    @Test
+    public void testWorkflowStatusReadDoesNotCreateCounters() throws Exception {
+        Task task = createTask();
+        assign(task, user("annotator1"), user("annotator2"));
+        transactionTemplate.executeWithoutResult(tx -> taskStageCounterService.deleteByTaskIds(List.of(task.getId())));
+
+        WorkflowService.WorkflowStatus workflowStatus = workflowService.getWorkflowStatus(
+            taskRepository.findById(task.getId()).orElseThrow());
+        assertEquals(2, workflowStatus.getAnnotationAssignments());
+        assertEquals(0, workflowStatus.getAnnotationCompleted());
+        assertTrue(taskStageCounterRepository.findByTaskId(task.getId()).isEmpty());
+    }
+
+    @Test
+    public void testWorkflowAdvancesOneStepPerCall() throws Exception {
+        Task task = createTask();
+        Map<Long, Long> assignments = assign(task, user("annotator1"), user("annotator2"));
+        assertEquals(Task.TaskStatus.ASSIGNED, status(task));
+
+        // Both annotations complete without advancing the workflow (as a submission does before its outbox step)
+        transactionTemplate.executeWithoutResult(tx -> {
+            for (Long assignmentId : assignments.values()) {
+                TaskAssignment assignment = taskAssignmentRepository.findById(assignmentId).orElseThrow();
+                TaskAssignment.AssignmentStatus previousStatus = assignment.getStatus();
+                assignment.setStatus(TaskAssignment.AssignmentStatus.COMPLETED);
+                taskStageCounterService.onAssignmentStatusChanged(assignment, previousStatus);
+            }
+        });
+        assertEquals(Task.TaskStatus.ASSIGNED, status(task));
+
+        // ASSIGNED -> ANNOTATING -> ANNOTATED both hold, but each advance takes one transition
+        advance(task);
+        assertEquals(Task.TaskStatus.ANNOTATING, status(task));
+        advance(task);
+        assertEquals(Task.TaskStatus.ANNOTATED, status(task));
+    }
+
+    @Test
+    public void testConcurrentFirstAssignmentsCreateOneCounter() throws Exception {
+        Task task = createTask();
+        List<User> users = new ArrayList<>();
+        for (String role : List.of("annotator", "reviewer", "expert")) {
+            for (int i = 1; i <= 3; i++) {
+                users.add(user(role + i));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(users.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (User user : users) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    Task detached = taskRepository.findById(task.getId()).orElseThrow();
+                    return taskAssignmentService.assignUsers(detached, List.of(user.getId()),
+                        TaskAssignment.AssignmentType.ANNOTATION).getCreatedAssignments().size();
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(1, result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(users.size(), taskAssignmentRepository
+            .findByTaskIdAndAssignmentType(task.getId(), TaskAssignment.AssignmentType.ANNOTATION).size());
+        assertCounter(task, TaskAssignment.AssignmentType.ANNOTATION, users.size(), 0);
+    }
+
+    @Test
+    public void testRolledBackAssignmentLeavesCountersUnchanged() {
+        Task task = createTask();
+        User annotator1 = user("annotator1");
+        int openAssignments = workloadTracker.getOpenAssignments(annotator1.getId(), TaskAssignment.AssignmentType.ANNOTATION);
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            taskAssignmentService.assignUsers(task, List.of(annotator1.getId()), TaskAssignment.AssignmentType.ANNOTATION);
+            tx.setRollbackOnly();
+        });
+
+        assertTrue(taskAssignmentRepository
+            .findByTaskIdAndAssignmentType(task.getId(), TaskAssignment.AssignmentType.ANNOTATION).isEmpty());
+        assertTrue(taskStageCounterRepository
+            .findByTaskIdAndAssignmentType(task.getId(), TaskAssignment.AssignmentType.ANNOTATION).isEmpty());
+        assertEquals(Task.TaskStatus.CREATED, status(task));
+        assertEquals(openAssignments,
+            workloadTracker.getOpenAssignments(annotator1.getId(), TaskAssignment.AssignmentType.ANNOTATION));
+    }
+
+    private Task createTask() {
+        String filename = UUID.randomUUID() + ".pdf";
+        Document document = documentRepository.save(new Document(filename, filename, "./test-uploads/" + filename, 100L,
+            "application/pdf", null, null, user("admin")));
+        return taskRepository.save(new Task("counters " + filename, null, document, null, null, user("admin")));
+    }
+
+    // Admin assignment, returns assignment ID by user ID
+    private Map<Long, Long> assign(Task task, User... users) throws Exception {
+        List<Long> userIds = new ArrayList<>();
+        for (User user : users) {
+            userIds.add(user.getId());
+        }
+        JsonNode response = call(post("/api/tasks/" + task.getId() + "/assign")
+            .content(json(Map.of("userIds", userIds, "assignmentType", "ANNOTATION"))), "admin");
+        Map<Long, Long> assignments = new HashMap<>();
+        for (JsonNode assignment : response.path("assignments")) {
+            assignments.put(assignment.path("user").path("id").asLong(), assignment.path("id").asLong());
+        }
+        assertEquals(users.length, assignments.size(), response.toString());
+        return assignments;
+    }
+
+    private void submit(Task task, Long assignmentId, String username) throws Exception {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("taskId", task.getId());
+        request.put("taskAssignmentId", assignmentId);
+        request.put("annotationData", Map.of("title", "same"));
+        JsonNode response = call(post("/api/annotations").content(json(request)), username);
+        assertTrue(response.has("annotation"), response.toString());
+    }
+
+    private void assertCounter(Task task, TaskAssignment.AssignmentType type, int assigned, int completed) {
+        TaskStageCounter counter = taskStageCounterRepository.findByTaskIdAndAssignmentType(task.getId(), type).orElseThrow();
+        assertEquals(assigned, counter.getAssignedCount(), "assigned " + type);
+        assertEquals(completed, counter.getCompletedCount(), "completed " + type);
+    }
+
+    private void advance(Task task) {
+        transactionTemplate.executeWithoutResult(tx ->
+            workflowService.advanceTaskWorkflow(taskRepository.findById(task.getId()).orElseThrow()));
+    }
+
+    private Task.TaskStatus status(Task task) {
+        return taskRepository.findById(task.getId()).orElseThrow().getStatus();
+    }
+
+    // The workflow may advance after the request returns
+    private void awaitStatus(Task task, Task.TaskStatus expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (status(task) != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, status(task));
+    }
+
+    private User user(String username) {
+        return userRepository.findByUsername(username).orElseThrow();
+    }
+
+    private JsonNode call(MockHttpServletRequestBuilder request, String username) throws Exception {
+        String body = mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + jwtUtils.generateTokenFromUsername(username))
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+}
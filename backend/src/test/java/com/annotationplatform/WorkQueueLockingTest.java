@@ -0,0 +1,263 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.WorkQueueService;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Work queue claims under concurrency: annotators claiming at the same time never exceed a task's required annotators
+ * or claim a task twice, the annotation queue only hands out annotation tasks (never review or batch tasks), and
+ * releasing an expired lease waits for, and then respects, work started on the claim.
+ * The MySQL variants exercise FOR UPDATE SKIP LOCKED and the row locks on a real server (see {@link MySqlTestDatabase});
+ * on H2 claims are serialized in process. Each test starts the application on an empty database of its own, so that
+ * the annotators compete for exactly the tasks it creates.
+ */
+public class WorkQueueLockingTest {
+
+    private static final int TASKS = 6;
+    private static final int ANNOTATORS = 8;
+    // Claimable annotation slots per task without a document type override
+    private static final int REQUIRED_ANNOTATORS = 2;
+
+    @Test
+    public void testConcurrentClaimsOnH2() throws Exception {
+        try (ConfigurableApplicationContext context = start(
+                "--spring.datasource.url=jdbc:h2:mem:queue-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")) {
+            assertConcurrentClaims(context);
+        }
+    }
+
+    @Test
+    public void testConcurrentClaimsOnMySql() throws Exception {
+        try (MySqlTestDatabase database = MySqlTestDatabase.create();
+             ConfigurableApplicationContext context = start(arguments(database))) {
+            assertConcurrentClaims(context);
+        }
+    }
+
+    @Test
+    public void testExpiredLeaseReleaseRechecksUnderRowLockOnMySql() throws Exception {
+        try (MySqlTestDatabase database = MySqlTestDatabase.create();
+             ConfigurableApplicationContext context = start(arguments(database))) {
+            WorkQueueService workQueueService = context.getBean(WorkQueueService.class);
+            TaskAssignmentRepository taskAssignmentRepository = context.getBean(TaskAssignmentRepository.class);
+            String prefix = "lease-" + UUID.randomUUID().toString().substring(0, 8);
+            createTasks(context, prefix, 3);
+            User annotator = createAnnotators(context, prefix, 1).get(0);
+
+            TaskAssignment idle = workQueueService.claimNext(annotator, TaskAssignment.AssignmentType.ANNOTATION).orElseThrow();
+            TaskAssignment annotated = workQueueService.claimNext(annotator, TaskAssignment.AssignmentType.ANNOTATION).orElseThrow();
+            TaskAssignment started = workQueueService.claimNext(annotator, TaskAssignment.AssignmentType.ANNOTATION).orElseThrow();
+            database.jdbcTemplate().update("update task_assignments set lease_expires_at = ? where id in (?, ?, ?)",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)),
+                idle.getId(), annotated.getId(), started.getId());
+
+            // Work on two of the claims is in flight while the expired leases are released: an annotation insert
+            // (its foreign key check holds a shared lock on the assignment row) and a status change
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try (Connection connection = database.dataSource().getConnection()) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "insert into annotations (id, annotation_data, status, version, task_id, task_assignment_id) " +
+                        "values (1, '{}', 'DRAFT', 1, ?, ?)");
+                     PreparedStatement update = connection.prepareStatement(
+                        "update task_assignments set status = 'IN_PROGRESS' where id = ?")) {
+                    insert.setLong(1, annotated.getTask().getId());
+                    insert.setLong(2, annotated.getId());
+                    insert.executeUpdate();
+                    update.setLong(1, started.getId());
+                    update.executeUpdate();
+                }
+
+                Future<?> release = executor.submit(workQueueService::releaseExpiredLeases);
+                Thread.sleep(1000);
+                assertFalse(release.isDone(), "Release must wait for the row locks held by the work in flight");
+                connection.commit();
+                release.get(30, TimeUnit.SECONDS);
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertFalse(taskAssignmentRepository.existsById(idle.getId()), "An expired idle claim is released");
+            assertTrue(taskAssignmentRepository.existsById(annotated.getId()), "A claim with an annotation is kept");
+            assertTrue(taskAssignmentRepository.existsById(started.getId()), "A claim already in progress is kept");
+        }
+    }
+
+    @Test
+    public void testAnnotationQueueSkipsReviewAndBatchTasksOnH2() throws Exception {
+        try (ConfigurableApplicationContext context = start(
+                "--spring.datasource.url=jdbc:h2:mem:queue-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")) {
+            MockMvc mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .apply(SecurityMockMvcConfigurers.springSecurity()).build();
+            String prefix = "types-" + UUID.randomUUID().toString().substring(0, 8);
+            User admin = context.getBean(UserRepository.class).findByUsername("admin").orElseThrow();
+            DocumentRepository documentRepository = context.getBean(DocumentRepository.class);
+            List<Long> documentIds = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                String filename = prefix + "-doc-" + i + ".pdf";
+                documentIds.add(documentRepository.save(new Document(filename, filename, "./test-uploads/" + filename,
+                    100L, "application/pdf", null, null, admin)).getId());
+            }
+
+            // The quality review page and the batch page create CREATED tasks on their own documents
+            JsonNode review = call(context, mockMvc, post("/api/tasks/review/batch").content(json(Map.of(
+                "documentIds", List.of(documentIds.get(0)), "taskTitle", prefix + " review"))), "admin");
+            assertEquals(1, review.path("createdCount").asInt(), review.toString());
+            JsonNode batch = call(context, mockMvc, post("/api/tasks/batch").content(json(Map.of(
+                "batchName", prefix + " batch", "documentIds", documentIds.subList(1, 3)))), "admin");
+            assertTrue(batch.path("task").path("id").asLong() > 0, batch.toString());
+            Task annotation = createTasks(context, prefix, 1).get(0);
+            User annotator = createAnnotators(context, prefix, 1).get(0);
+
+            JsonNode first = call(context, mockMvc, post("/api/work/next").param("type", "ANNOTATION"),
+                annotator.getUsername());
+            assertTrue(first.path("claimed").asBoolean(), first.toString());
+            assertEquals(annotation.getId().longValue(), first.path("assignment").path("task").path("id").asLong());
+            JsonNode second = call(context, mockMvc, post("/api/work/next").param("type", "ANNOTATION"),
+                annotator.getUsername());
+            assertFalse(second.path("claimed").asBoolean(), "Review and batch tasks are not annotation work: " + second);
+        }
+    }
+
+    // Every annotator claims until the queue is empty for them, all at once
+    private static void assertConcurrentClaims(ApplicationContext context) throws Exception {
+        WorkQueueService workQueueService = context.getBean(WorkQueueService.class);
+        String prefix = "queue-" + UUID.randomUUID().toString().substring(0, 8);
+        List<Task> tasks = createTasks(context, prefix, TASKS);
+        List<User> annotators = createAnnotators(context, prefix, ANNOTATORS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(ANNOTATORS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (User annotator : annotators) {
+                results.add(executor.submit(() -> {
+                    startSignal.await();
+                    int claimed = 0;
+                    while (workQueueService.claimNext(annotator, TaskAssignment.AssignmentType.ANNOTATION).isPresent()) {
+                        claimed++;
+                    }
+                    return claimed;
+                }));
+            }
+            startSignal.countDown();
+            for (Future<Integer> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // A claimer may have skipped a row another one held locked at that moment; a quiet pass picks up the rest
+        for (User annotator : annotators) {
+            Optional<TaskAssignment> claimed;
+            do {
+                claimed = workQueueService.claimNext(annotator, TaskAssignment.AssignmentType.ANNOTATION);
+            } while (claimed.isPresent());
+        }
+
+        TaskAssignmentRepository taskAssignmentRepository = context.getBean(TaskAssignmentRepository.class);
+        TaskRepository taskRepository = context.getBean(TaskRepository.class);
+        for (Task task : tasks) {
+            List<TaskAssignment> assignments = taskAssignmentRepository.findByTaskIdAndAssignmentType(task.getId(),
+                TaskAssignment.AssignmentType.ANNOTATION);
+            Set<Long> assignees = new HashSet<>();
+            for (TaskAssignment assignment : assignments) {
+                assertTrue(assignees.add(assignment.getUser().getId()),
+                    "Task " + task.getId() + " claimed twice by user " + assignment.getUser().getId());
+            }
+            assertEquals(REQUIRED_ANNOTATORS, assignments.size(), "Annotators on task " + task.getId());
+            // Fully staffed tasks move on to annotation
+            assertEquals(Task.TaskStatus.ANNOTATING, taskRepository.findById(task.getId()).orElseThrow().getStatus());
+        }
+    }
+
+    // Command line arguments, because they take precedence over application-test.properties
+    private static ConfigurableApplicationContext start(String... arguments) {
+        return new SpringApplicationBuilder(AnnotationPlatformApplication.class)
+            .profiles("test")
+            .properties("server.port=0", "spring.devtools.restart.enabled=false")
+            .run(arguments);
+    }
+
+    private static JsonNode call(ApplicationContext context, MockMvc mockMvc, MockHttpServletRequestBuilder request,
+                                 String username) throws Exception {
+        String body = mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + context.getBean(JwtUtils.class).generateTokenFromUsername(username))
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse().getContentAsString();
+        return context.getBean(ObjectMapper.class).readTree(body);
+    }
+
+    private static String json(Object value) throws Exception {
+        return new ObjectMapper().writeValueAsString(value);
+    }
+
+    private static String[] arguments(MySqlTestDatabase database) {
+        return database.springProperties().stream().map(property -> "--" + property).toArray(String[]::new);
+    }
+
+    private static List<Task> createTasks(ApplicationContext context, String prefix, int count) {
+        User admin = context.getBean(UserRepository.class).findByUsername("admin").orElseThrow();
+        DocumentRepository documentRepository = context.getBean(DocumentRepository.class);
+        TaskRepository taskRepository = context.getBean(TaskRepository.class);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String filename = prefix + "-" + i + ".pdf";
+            Document document = documentRepository.save(new Document(filename, filename, "./test-uploads/" + filename,
+                100L, "application/pdf", null, null, admin));
+            tasks.add(taskRepository.save(new Task(prefix + " " + i, null, document, null, null, admin)));
+        }
+        return tasks;
+    }
+
+    private static List<User> createAnnotators(ApplicationContext context, String prefix, int count) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        List<User> annotators = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String username = prefix + "-" + i;
+            annotators.add(userRepository.save(new User(username, username + "@example.com", "x", User.Role.ANNOTATOR)));
+        }
+        return annotators;
+    }
+}
@@ -0,0 +1,204 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.Document;
+import com.annotationplatform.entity.Task;
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.DocumentRepository;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.repository.TaskRepository;
+import com.annotationplatform.repository.UserRepository;
+import com.annotationplatform.service.TaskAssignmentService;
+import com.annotationplatform.service.TaskStageCounterService;
+import com.annotationplatform.utils.JwtUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Batch workflow status (POST /tasks/workflow-status:batch): the statuses computed from one GROUP BY over the
+ * assignments are the ones the per-task endpoint reads from the stage counters, unknown ids are listed as not found,
+ * and a request is limited to 500 ids.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class WorkflowStatusBatchTest {
+
+    private static final int MAX_BATCH = 500;
+    private static final long UNKNOWN_ID = 987654321L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskAssignmentRepository taskAssignmentRepository;
+
+    @Autowired
+    private TaskAssignmentService taskAssignmentService;
+
+    @Autowired
+    private TaskStageCounterService taskStageCounterService;
+
+    @Test
+    public void testBatchMatchesPerTaskStatus() throws Exception {
+        Task unassigned = createTask();
+
+        Task annotating = createTask();
+        assign(annotating, TaskAssignment.AssignmentType.ANNOTATION, "annotator1", "annotator2", "annotator3");
+        complete(annotating, TaskAssignment.AssignmentType.ANNOTATION, "annotator1", "annotator2");
+
+        Task everyStage = createTask();
+        assign(everyStage, TaskAssignment.AssignmentType.AI_ANNOTATION, "ai_annotator1");
+        assign(everyStage, TaskAssignment.AssignmentType.ANNOTATION, "annotator1", "annotator2");
+        assign(everyStage, TaskAssignment.AssignmentType.INSPECTION, "reviewer1");
+        assign(everyStage, TaskAssignment.AssignmentType.EXPERT_REVIEW, "expert1", "expert2");
+        complete(everyStage, TaskAssignment.AssignmentType.AI_ANNOTATION, "ai_annotator1");
+        complete(everyStage, TaskAssignment.AssignmentType.ANNOTATION, "annotator1", "annotator2");
+        complete(everyStage, TaskAssignment.AssignmentType.EXPERT_REVIEW, "expert2");
+
+        // Assignments from before the stage counters: the per-task endpoint counts them from the assignments too
+        Task legacy = createTask();
+        assign(legacy, TaskAssignment.AssignmentType.ANNOTATION, "annotator3");
+        complete(legacy, TaskAssignment.AssignmentType.ANNOTATION, "annotator3");
+        transactionTemplate.executeWithoutResult(tx -> taskStageCounterService.deleteByTaskIds(List.of(legacy.getId())));
+
+        List<Task> tasks = List.of(unassigned, annotating, everyStage, legacy);
+        List<Long> taskIds = new ArrayList<>();
+        for (Task task : tasks) {
+            taskIds.add(task.getId());
+        }
+        taskIds.add(1, UNKNOWN_ID);
+        JsonNode batch = call(post("/api/tasks/workflow-status:batch").content(json(Map.of("taskIds", taskIds))));
+
+        JsonNode statuses = batch.path("workflowStatuses");
+        assertEquals(tasks.size(), statuses.size(), batch.toString());
+        for (Task task : tasks) {
+            JsonNode single = call(get("/api/tasks/" + task.getId() + "/workflow-status")).path("workflowStatus");
+            assertTrue(single.has("progressPercentage"), single.toString());
+            assertEquals(single, statuses.path(task.getId().toString()), "Workflow status of task " + task.getId());
+        }
+        assertEquals(3, statuses.path(annotating.getId().toString()).path("annotationAssignments").asInt());
+        assertEquals(2, statuses.path(annotating.getId().toString()).path("annotationCompleted").asInt());
+        assertEquals(1, statuses.path(everyStage.getId().toString()).path("expertCompleted").asInt());
+        assertEquals(1, statuses.path(legacy.getId().toString()).path("annotationCompleted").asInt());
+        assertEquals(List.of(UNKNOWN_ID), ids(batch.path("notFound")));
+    }
+
+    @Test
+    public void testBatchSizeLimit() throws Exception {
+        Task task = createTask();
+        List<Long> taskIds = new ArrayList<>();
+        taskIds.add(task.getId());
+        for (long i = 1; taskIds.size() < MAX_BATCH; i++) {
+            taskIds.add(UNKNOWN_ID + i);
+        }
+
+        JsonNode full = call(post("/api/tasks/workflow-status:batch").content(json(Map.of("taskIds", taskIds))));
+        assertEquals(1, full.path("workflowStatuses").size(), full.toString());
+        assertEquals(MAX_BATCH - 1, full.path("notFound").size());
+
+        taskIds.add(UNKNOWN_ID);
+        MvcResult tooMany = perform(post("/api/tasks/workflow-status:batch").content(json(Map.of("taskIds", taskIds))));
+        assertEquals(400, tooMany.getResponse().getStatus());
+        assertEquals(400, perform(post("/api/tasks/workflow-status:batch")
+            .content(json(Map.of("taskIds", List.of())))).getResponse().getStatus());
+        assertEquals(400, perform(post("/api/tasks/workflow-status:batch")
+            .content(json(Map.of("taskIds", List.of("x"))))).getResponse().getStatus());
+    }
+
+    private Task createTask() {
+        String filename = UUID.randomUUID() + ".pdf";
+        Document document = documentRepository.save(new Document(filename, filename, "./test-uploads/" + filename, 100L,
+            "application/pdf", null, null, user("admin")));
+        return taskRepository.save(new Task("workflow status " + filename, null, document, null, null, user("admin")));
+    }
+
+    private void assign(Task task, TaskAssignment.AssignmentType type, String... usernames) {
+        List<Long> userIds = new ArrayList<>();
+        for (String username : usernames) {
+            userIds.add(user(username).getId());
+        }
+        transactionTemplate.executeWithoutResult(tx -> assertEquals(usernames.length, taskAssignmentService
+            .assignUsers(taskRepository.findById(task.getId()).orElseThrow(), userIds, type)
+            .getCreatedAssignments().size()));
+    }
+
+    // Completes assignments the way a submission does, without advancing the workflow
+    private void complete(Task task, TaskAssignment.AssignmentType type, String... usernames) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            for (String username : usernames) {
+                TaskAssignment assignment = taskAssignmentRepository
+                    .findByTaskIdAndUserIdAndAssignmentType(task.getId(), user(username).getId(), type).orElseThrow();
+                TaskAssignment.AssignmentStatus previousStatus = assignment.getStatus();
+                assignment.setStatus(TaskAssignment.AssignmentStatus.COMPLETED);
+                taskStageCounterService.onAssignmentStatusChanged(assignment, previousStatus);
+            }
+        });
+    }
+
+    private List<Long> ids(JsonNode array) {
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode id : array) {
+            ids.add(id.asLong());
+        }
+        return ids;
+    }
+
+    private User user(String username) {
+        return userRepository.findByUsername(username).orElseThrow();
+    }
+
+    private JsonNode call(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = perform(request);
+        assertEquals(200, result.getResponse().getStatus(), result.getResponse().getContentAsString());
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private MvcResult perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request.contextPath("/api")
+                .header("Authorization", "Bearer " + jwtUtils.generateTokenFromUsername("admin"))
+                .contentType(MediaType.APPLICATION_JSON))
+            .andReturn();
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+}
@@ -0,0 +1,100 @@
+package com.annotationplatform;
+
+import com.annotationplatform.entity.TaskAssignment;
+import com.annotationplatform.entity.User;
+import com.annotationplatform.repository.TaskAssignmentRepository;
+import com.annotationplatform.service.TaskStageCounterService;
+import com.annotationplatform.service.WorkloadTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkloadTrackerTest {
+
+    private static final TaskAssignment.AssignmentType ANNOTATION = TaskAssignment.AssignmentType.ANNOTATION;
+
+    private TaskAssignmentRepository repository;
+    private WorkloadTracker workloadTracker;
+    private List<User> users;
+
+    @BeforeEach
+    public void setUp() {
+        repository = Mockito.mock(TaskAssignmentRepository.class);
+        workloadTracker = new WorkloadTracker();
+        ReflectionTestUtils.setField(workloadTracker, "taskAssignmentRepository", repository);
+        users = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            User user = new User();
+            user.setId(id);
+            users.add(user);
+        }
+    }
+
+    @Test
+    public void testSelectionFollowsCommittedDeltas() {
+        openCounts(new Object[]{1L, ANNOTATION, 3L}, new Object[]{2L, ANNOTATION, 1L});
+        workloadTracker.reconcile();
+        assertEquals(List.of(3L, 4L), ids(workloadTracker.selectLeastLoaded(users, 2, ANNOTATION)));
+
+        assigned(3L);
+        assigned(4L);
+        assigned(4L);
+        assertEquals(List.of(5L, 2L, 3L), ids(workloadTracker.selectLeastLoaded(users, 3, ANNOTATION)));
+
+        completed(1L);
+        completed(1L);
+        assertEquals(List.of(1L), ids(workloadTracker.selectLeastLoaded(users.subList(0, 2), 1, ANNOTATION)));
+    }
+
+    @Test
+    public void testExcludedAndFullUsersSkipped() {
+        openCounts(new Object[]{1L, ANNOTATION, 3L}, new Object[]{2L, ANNOTATION, 1L}, new Object[]{5L, ANNOTATION, 2L});
+        workloadTracker.reconcile();
+
+        List<User> selected = workloadTracker.selectLeastLoaded(users, 5, ANNOTATION, Set.of(3L), 2);
+        assertEquals(List.of(4L, 2L), ids(selected));
+    }
+
+    @Test
+    public void testDeltaDuringReconcileIsKept() {
+        openCounts(new Object[]{1L, ANNOTATION, 1L});
+        workloadTracker.reconcile();
+
+        // The assignment commits while the reconcile query runs and is not part of its result
+        Mockito.when(repository.countByStatusInGroupByUserAndType(ArgumentMatchers.any())).thenAnswer(invocation -> {
+            assigned(2L);
+            return List.<Object[]>of(new Object[]{1L, ANNOTATION, 1L});
+        });
+        workloadTracker.reconcile();
+
+        assertEquals(1, workloadTracker.getOpenAssignments(2L, ANNOTATION));
+        assertEquals(List.of(3L, 1L, 2L), ids(workloadTracker.selectLeastLoaded(users.subList(0, 3), 3, ANNOTATION)));
+    }
+
+    private void openCounts(Object[]... rows) {
+        Mockito.when(repository.countByStatusInGroupByUserAndType(ArgumentMatchers.any())).thenReturn(List.of(rows));
+    }
+
+    private void assigned(Long userId) {
+        workloadTracker.onAssignmentChanged(new TaskStageCounterService.AssignmentChangedEvent(this, null, userId,
+            ANNOTATION, null, TaskAssignment.AssignmentStatus.ASSIGNED));
+    }
+
+    private void completed(Long userId) {
+        workloadTracker.onAssignmentChanged(new TaskStageCounterService.AssignmentChangedEvent(this, null, userId,
+            ANNOTATION, TaskAssignment.AssignmentStatus.ASSIGNED, TaskAssignment.AssignmentStatus.COMPLETED));
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+}